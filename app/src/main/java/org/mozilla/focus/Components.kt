@@ -52,6 +52,8 @@ import mozilla.components.service.location.MozillaLocationService
 import mozilla.components.service.nimbus.NimbusApi
 import mozilla.components.support.locale.LocaleManager
 import org.mozilla.focus.activity.MainActivity
+import org.mozilla.focus.autocomplete.DomainAutocompleteIndex
+import org.mozilla.focus.browser.BlockedTrackersCounter
 import org.mozilla.focus.browser.BlockedTrackersMiddleware
 import org.mozilla.focus.cfr.CfrMiddleware
 import org.mozilla.focus.components.EngineProvider
@@ -64,17 +66,22 @@ import org.mozilla.focus.ext.components
 import org.mozilla.focus.ext.settings
 import org.mozilla.focus.media.MediaSessionService
 import org.mozilla.focus.notification.PrivateNotificationMiddleware
+import org.mozilla.focus.open.AppMetadataLoader
+import org.mozilla.focus.perf.StartupTracer
+import org.mozilla.focus.perf.StoreDispatchProfiler
 import org.mozilla.focus.search.SearchFilterMiddleware
 import org.mozilla.focus.search.SearchMigration
 import org.mozilla.focus.state.AppState
 import org.mozilla.focus.state.AppStore
 import org.mozilla.focus.state.Screen
 import org.mozilla.focus.telemetry.GleanMetricsService
+import org.mozilla.focus.telemetry.InstalledAppsCache
 import org.mozilla.focus.telemetry.TelemetryMiddleware
 import org.mozilla.focus.telemetry.startuptelemetry.AppStartReasonProvider
 import org.mozilla.focus.telemetry.startuptelemetry.StartupActivityLog
 import org.mozilla.focus.telemetry.startuptelemetry.StartupStateProvider
 import org.mozilla.focus.topsites.DefaultTopSitesStorage
+import org.mozilla.focus.utils.AppConstants
 import org.mozilla.focus.utils.Settings
 import java.util.Locale
 
@@ -86,7 +93,12 @@ class Components(
     private val engineOverride: Engine? = null,
     private val clientOverride: Client? = null,
 ) {
-    val appStore: AppStore by lazy {
+    /**
+     * Records how long the initialization of every component below took. Must be the first property.
+     */
+    val startupTracer = StartupTracer(recordOrigins = AppConstants.isDevBuild)
+
+    val appStore: AppStore by traced {
         AppStore(
             AppState(
                 screen = if (context.settings.isFirstRun) Screen.FirstRun else Screen.Home,
@@ -95,15 +107,15 @@ class Components(
         )
     }
 
-    val appStartReasonProvider by lazy { AppStartReasonProvider() }
+    val appStartReasonProvider by traced { AppStartReasonProvider() }
 
-    val startupActivityLog by lazy { StartupActivityLog() }
+    val startupActivityLog by traced { StartupActivityLog() }
 
-    val startupStateProvider by lazy { StartupStateProvider(startupActivityLog, appStartReasonProvider) }
+    val startupStateProvider by traced { StartupStateProvider(startupActivityLog, appStartReasonProvider) }
 
-    val settings by lazy { Settings(context) }
+    val settings by traced { Settings(context) }
 
-    val engineDefaultSettings by lazy {
+    val engineDefaultSettings by traced {
         DefaultSettings(
             requestInterceptor = AppContentInterceptor(context),
             trackingProtectionPolicy = settings.createTrackingProtectionPolicy(),
@@ -116,7 +128,7 @@ class Components(
         )
     }
 
-    val engine: Engine by lazy {
+    val engine: Engine by traced {
         engineOverride ?: EngineProvider.createEngine(context, engineDefaultSettings).apply {
             this@Components.settings.setupSafeBrowsing(this)
             WebCompatFeature.install(this)
@@ -124,16 +136,16 @@ class Components(
         }
     }
 
-    val client: ClientWrapper by lazy {
+    val client: ClientWrapper by traced {
         ClientWrapper(clientOverride ?: EngineProvider.createClient(context))
     }
 
-    val trackingProtectionUseCases by lazy { TrackingProtectionUseCases(store, engine) }
+    val trackingProtectionUseCases by traced { TrackingProtectionUseCases(store, engine) }
 
-    val settingsUseCases by lazy { SettingsUseCases(engine, store) }
+    val settingsUseCases by traced { SettingsUseCases(engine, store) }
 
     @Suppress("DEPRECATION")
-    private val locationService: LocationService by lazy {
+    private val locationService: LocationService by traced {
         if (BuildConfig.MLS_TOKEN.isEmpty()) {
             LocationService.default()
         } else {
@@ -141,34 +153,48 @@ class Components(
         }
     }
 
-    val store by lazy {
+    val blockedTrackersCounter by traced { BlockedTrackersCounter(context) }
+
+    /**
+     * Opt-in profiler for the middlewares of [store]. Enabled from the secret settings.
+     */
+    val storeDispatchProfiler by traced {
+        StoreDispatchProfiler(
+            enabled = settings.isStoreDispatchProfilerEnabled,
+            countAllocations = settings.shouldCountStoreDispatchAllocations,
+        )
+    }
+
+    val store by traced {
         BrowserStore(
-            middleware = listOf(
-                PrivateNotificationMiddleware(context),
-                TelemetryMiddleware(),
-                DownloadMiddleware(context, DownloadService::class.java),
-                SanityCheckMiddleware(),
-                // We are currently using the default location service. We should consider using
-                // an actual implementation:
-                // https://github.com/mozilla-mobile/focus-android/issues/4781
-                RegionMiddleware(context, locationService),
-                SearchMiddleware(context, migration = SearchMigration(context)),
-                SearchFilterMiddleware(),
-                PromptMiddleware(),
-                AdsTelemetryMiddleware(adsTelemetry),
-                BlockedTrackersMiddleware(context),
-                RecordingDevicesMiddleware(context),
-                CfrMiddleware(context),
-            ) + EngineMiddleware.create(
-                engine,
-                // We are disabling automatic suspending of engine sessions under memory pressure.
-                // Instead we solely rely on GeckoView and the Android system to reclaim memory
-                // when needed. For details, see:
-                // https://bugzilla.mozilla.org/show_bug.cgi?id=1752594
-                // https://github.com/mozilla-mobile/fenix/issues/12731
-                // https://github.com/mozilla-mobile/android-components/issues/11300
-                // https://github.com/mozilla-mobile/android-components/issues/11653
-                trimMemoryAutomatically = false,
+            middleware = storeDispatchProfiler.instrument(
+                listOf(
+                    PrivateNotificationMiddleware(context),
+                    TelemetryMiddleware(),
+                    DownloadMiddleware(context, DownloadService::class.java),
+                    SanityCheckMiddleware(),
+                    // We are currently using the default location service. We should consider using
+                    // an actual implementation:
+                    // https://github.com/mozilla-mobile/focus-android/issues/4781
+                    RegionMiddleware(context, locationService),
+                    SearchMiddleware(context, migration = SearchMigration(context)),
+                    SearchFilterMiddleware(),
+                    PromptMiddleware(),
+                    AdsTelemetryMiddleware(adsTelemetry),
+                    BlockedTrackersMiddleware(blockedTrackersCounter),
+                    RecordingDevicesMiddleware(context),
+                    CfrMiddleware(context),
+                ) + EngineMiddleware.create(
+                    engine,
+                    // We are disabling automatic suspending of engine sessions under memory pressure.
+                    // Instead we solely rely on GeckoView and the Android system to reclaim memory
+                    // when needed. For details, see:
+                    // https://bugzilla.mozilla.org/show_bug.cgi?id=1752594
+                    // https://github.com/mozilla-mobile/fenix/issues/12731
+                    // https://github.com/mozilla-mobile/android-components/issues/11300
+                    // https://github.com/mozilla-mobile/android-components/issues/11653
+                    trimMemoryAutomatically = false,
+                ),
             ),
         ).apply {
             MediaSessionFeature(context, MediaSessionService::class.java, this).start()
@@ -178,47 +204,53 @@ class Components(
     /**
      * The [CustomTabsServiceStore] holds global custom tabs related data.
      */
-    val customTabsStore by lazy { CustomTabsServiceStore() }
+    val customTabsStore by traced { CustomTabsServiceStore() }
 
-    val sessionUseCases: SessionUseCases by lazy { SessionUseCases(store) }
+    val sessionUseCases: SessionUseCases by traced { SessionUseCases(store) }
 
-    val tabsUseCases: TabsUseCases by lazy { TabsUseCases(store) }
+    val tabsUseCases: TabsUseCases by traced { TabsUseCases(store) }
 
-    val cookieBannerStorage: GeckoCookieBannersStorage by lazy { EngineProvider.createCookieBannerStorage(context) }
+    val cookieBannerStorage: GeckoCookieBannersStorage by traced { EngineProvider.createCookieBannerStorage(context) }
 
-    val publicSuffixList by lazy { PublicSuffixList(context) }
+    val publicSuffixList by traced { PublicSuffixList(context) }
 
-    val searchUseCases: SearchUseCases by lazy {
+    val searchUseCases: SearchUseCases by traced {
         SearchUseCases(store, tabsUseCases, sessionUseCases)
     }
 
-    val contextMenuUseCases: ContextMenuUseCases by lazy { ContextMenuUseCases(store) }
+    val contextMenuUseCases: ContextMenuUseCases by traced { ContextMenuUseCases(store) }
 
-    val downloadsUseCases: DownloadsUseCases by lazy { DownloadsUseCases(store) }
+    val downloadsUseCases: DownloadsUseCases by traced { DownloadsUseCases(store) }
 
-    val appLinksUseCases: AppLinksUseCases by lazy { AppLinksUseCases(context.applicationContext) }
+    val appLinksUseCases: AppLinksUseCases by traced { AppLinksUseCases(context.applicationContext) }
 
-    val customTabsUseCases: CustomTabsUseCases by lazy { CustomTabsUseCases(store, sessionUseCases.loadUrl) }
+    val customTabsUseCases: CustomTabsUseCases by traced { CustomTabsUseCases(store, sessionUseCases.loadUrl) }
 
-    val crashReporter: CrashReporter by lazy { createCrashReporter(context) }
+    val crashReporter: CrashReporter by traced { createCrashReporter(context) }
 
-    val metrics: GleanMetricsService by lazy { GleanMetricsService(context) }
+    val metrics: GleanMetricsService by traced { GleanMetricsService(context) }
 
-    val experiments: NimbusApi by lazy {
+    val experiments: NimbusApi by traced {
         createNimbus(context, BuildConfig.NIMBUS_ENDPOINT)
     }
 
-    val adsTelemetry: AdsTelemetry by lazy { AdsTelemetry() }
+    val adsTelemetry: AdsTelemetry by traced { AdsTelemetry() }
+
+    val searchTelemetry: InContentTelemetry by traced { InContentTelemetry() }
 
-    val searchTelemetry: InContentTelemetry by lazy { InContentTelemetry() }
+    val icons by traced { BrowserIcons(context, client) }
 
-    val icons by lazy { BrowserIcons(context, client) }
+    val domainAutocompleteIndex by traced { DomainAutocompleteIndex(context) }
 
-    val topSitesStorage by lazy { DefaultTopSitesStorage(PinnedSiteStorage(context)) }
+    val appMetadataLoader by traced { AppMetadataLoader(context, installedApps) }
 
-    val topSitesUseCases: TopSitesUseCases by lazy { TopSitesUseCases(topSitesStorage) }
+    val installedApps by traced { InstalledAppsCache(context) }
 
-    val appLinksInterceptor by lazy {
+    val topSitesStorage by traced { DefaultTopSitesStorage(PinnedSiteStorage(context)) }
+
+    val topSitesUseCases: TopSitesUseCases by traced { TopSitesUseCases(topSitesStorage) }
+
+    val appLinksInterceptor by traced {
         AppLinksInterceptor(
             context,
             interceptLinkClicks = true,
@@ -227,6 +259,8 @@ class Components(
             },
         )
     }
+
+    private fun <T> traced(initializer: () -> T) = startupTracer.traced(initializer)
 }
 
 private fun createCrashReporter(context: Context): CrashReporter {
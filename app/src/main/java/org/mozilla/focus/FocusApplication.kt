@@ -6,22 +6,22 @@
 package org.mozilla.focus
 
 import android.content.Context
+import android.content.res.Configuration
 import android.os.Build
 import android.os.StrictMode
 import android.util.Log.INFO
+import androidx.annotation.VisibleForTesting
 import androidx.appcompat.app.AppCompatDelegate
 import androidx.lifecycle.ProcessLifecycleOwner
 import androidx.preference.PreferenceManager
 import androidx.work.Configuration.Builder
 import androidx.work.Configuration.Provider
 import kotlinx.coroutines.CoroutineScope
-import kotlinx.coroutines.DelicateCoroutinesApi
 import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.GlobalScope
 import kotlinx.coroutines.Job
-import kotlinx.coroutines.launch
 import mozilla.components.support.base.facts.register
 import mozilla.components.support.base.log.Log
+import mozilla.components.support.base.log.logger.Logger
 import mozilla.components.support.base.log.sink.AndroidLogSink
 import mozilla.components.support.ktx.android.content.isMainProcess
 import mozilla.components.support.locale.LocaleAwareApplication
@@ -31,14 +31,18 @@ import mozilla.components.support.webextensions.WebExtensionSupport
 import org.mozilla.focus.biometrics.LockObserver
 import org.mozilla.focus.experiments.finishNimbusInitialization
 import org.mozilla.focus.ext.settings
+import org.mozilla.focus.locale.LocaleManager
 import org.mozilla.focus.navigation.StoreLink
 import org.mozilla.focus.nimbus.FocusNimbus
+import org.mozilla.focus.perf.StartupTaskScheduler
+import org.mozilla.focus.perf.StartupTaskScheduler.ThreadAffinity.BACKGROUND
 import org.mozilla.focus.session.VisibilityLifeCycleCallback
 import org.mozilla.focus.telemetry.FactsProcessor
 import org.mozilla.focus.telemetry.ProfilerMarkerFactProcessor
 import org.mozilla.focus.telemetry.TelemetryWrapper
 import org.mozilla.focus.utils.AdjustHelper
 import org.mozilla.focus.utils.AppConstants
+import org.mozilla.telemetry.TelemetryHolder
 import kotlin.coroutines.CoroutineContext
 
 @Suppress("TooManyFunctions")
@@ -52,10 +56,14 @@ open class FocusApplication : LocaleAwareApplication(), Provider, CoroutineScope
     var visibilityLifeCycleCallback: VisibilityLifeCycleCallback? = null
         private set
 
+    private val logger = Logger("FocusApplication")
+
     private val storeLink by lazy { StoreLink(components.appStore, components.store) }
     private val lockObserver by lazy { LockObserver(this, components.store, components.appStore) }
 
-    @OptIn(DelicateCoroutinesApi::class)
+    @VisibleForTesting
+    internal val startupTaskScheduler by lazy { StartupTaskScheduler() }
+
     override fun onCreate() {
         super.onCreate()
 
@@ -63,20 +71,45 @@ open class FocusApplication : LocaleAwareApplication(), Provider, CoroutineScope
         components.crashReporter.install(this)
 
         if (isMainProcess()) {
-            initializeNimbus()
+            addStartupTasks()
+            startupTaskScheduler.start()
+        }
+    }
 
-            PreferenceManager.setDefaultValues(this, R.xml.settings, false)
+    /**
+     * The initialization steps of the main process. Tasks that don't need the main thread run in parallel
+     * in the background. Tasks that are not required for the first frame run after [onCreate].
+     */
+    @Suppress("LongMethod")
+    private fun addStartupTasks() = with(startupTaskScheduler) {
+        add(TASK_NIMBUS, BACKGROUND) { initializeNimbus() }
+        add(TASK_DEFAULT_PREFERENCES, BACKGROUND) {
+            PreferenceManager.setDefaultValues(this@FocusApplication, R.xml.settings, false)
+            components.settings.loadSnapshot()
+        }
 
-            setTheme(this)
-            components.engine.warmUp()
+        // The engine needs the main thread and reads its settings from the default preferences: It starts as soon as
+        // they have been set, the other background tasks finish in the meantime.
+        add(TASK_ENGINE, dependsOn = setOf(TASK_DEFAULT_PREFERENCES)) { components.engine.warmUp() }
+        add(TASK_THEME, dependsOn = setOf(TASK_DEFAULT_PREFERENCES)) { setTheme(this@FocusApplication) }
 
-            TelemetryWrapper.init(this)
-            components.metrics.initialize(this)
+        add(TASK_TELEMETRY, BACKGROUND, dependsOn = setOf(TASK_DEFAULT_PREFERENCES)) {
+            TelemetryWrapper.init(this@FocusApplication)
+        }
+        add(TASK_GLEAN, dependsOn = setOf(TASK_TELEMETRY)) {
+            components.metrics.initialize(this@FocusApplication)
             FactsProcessor.initialize()
+        }
+        add(TASK_MEGAZORD, BACKGROUND, requiredForFirstFrame = false, dependsOn = setOf(TASK_NIMBUS)) {
             finishSetupMegazord()
+        }
 
+        add(TASK_PROFILER_MARKERS, dependsOn = setOf(TASK_ENGINE)) {
             ProfilerMarkerFactProcessor.create { components.engine.profiler }.register()
+            components.startupTracer.startEmittingMarkers()
+        }
 
+        add(TASK_LIFECYCLE, dependsOn = setOf(TASK_GLEAN)) {
             enableStrictMode()
 
             AdjustHelper.setupAdjustIfNeeded(this@FocusApplication)
@@ -87,14 +120,27 @@ open class FocusApplication : LocaleAwareApplication(), Provider, CoroutineScope
 
             storeLink.start()
 
-            initializeWebExtensionSupport()
+            components.appStartReasonProvider.registerInAppOnCreate(this@FocusApplication)
+            components.startupActivityLog.registerInAppOnCreate(this@FocusApplication)
 
-            setupLeakCanary()
+            ProcessLifecycleOwner.get().lifecycle.addObserver(lockObserver)
+            ProcessLifecycleOwner.get().lifecycle.addObserver(components.blockedTrackersCounter)
+            ProcessLifecycleOwner.get().lifecycle.addObserver(components.installedApps)
+        }
 
-            components.appStartReasonProvider.registerInAppOnCreate(this)
-            components.startupActivityLog.registerInAppOnCreate(this)
+        add(TASK_WEB_EXTENSIONS, requiredForFirstFrame = false, dependsOn = setOf(TASK_ENGINE)) {
+            initializeWebExtensionSupport()
+        }
+        add(TASK_LEAK_CANARY, requiredForFirstFrame = false) { setupLeakCanary() }
+        add(TASK_AUTOCOMPLETE, BACKGROUND, requiredForFirstFrame = false) {
+            components.domainAutocompleteIndex.initialize()
+        }
 
-            ProcessLifecycleOwner.get().lifecycle.addObserver(lockObserver)
+        // Only once all other tasks are finished, so that the report is complete.
+        if (AppConstants.isDevBuild) {
+            add(TASK_STARTUP_REPORT, BACKGROUND, requiredForFirstFrame = false, dependsOn = taskNames) {
+                logger.debug(components.startupTracer.dump())
+            }
         }
     }
 
@@ -142,18 +188,15 @@ open class FocusApplication : LocaleAwareApplication(), Provider, CoroutineScope
         RustLog.enable(components.crashReporter)
     }
 
-    @OptIn(DelicateCoroutinesApi::class) // GlobalScope usage
     private fun finishSetupMegazord() {
-        GlobalScope.launch(Dispatchers.IO) {
-            // We need to use an unwrapped client because native components do not support private
-            // requests.
-            @Suppress("Deprecation")
-            RustHttpConfig.setClient(lazy { components.client.unwrap() })
-
-            // Now viaduct (the RustHttp client) is initialized we can ask Nimbus to fetch
-            // experiments recipes from the server.
-            finishNimbusInitialization(components.experiments)
-        }
+        // We need to use an unwrapped client because native components do not support private
+        // requests.
+        @Suppress("Deprecation")
+        RustHttpConfig.setClient(lazy { components.client.unwrap() })
+
+        // Now viaduct (the RustHttp client) is initialized we can ask Nimbus to fetch
+        // experiments recipes from the server.
+        finishNimbusInitialization(components.experiments)
     }
 
     private fun setTheme(context: Context) {
@@ -232,5 +275,38 @@ open class FocusApplication : LocaleAwareApplication(), Provider, CoroutineScope
         )
     }
 
+    override fun onTrimMemory(level: Int) {
+        super.onTrimMemory(level)
+
+        // The process is likely to be killed: Don't lose the events that are still buffered.
+        TelemetryWrapper.persistEvents()
+    }
+
+    override fun onConfigurationChanged(newConfig: Configuration) {
+        super.onConfigurationChanged(newConfig)
+
+        // Resources localized for the previous configuration won't be asked for again.
+        LocaleManager.getInstance().clearLocalizedResources()
+
+        // Pings serialize measurements like the locale once and reuse them until invalidated.
+        TelemetryHolder.getOrNull()?.builders?.forEach { it.invalidateStaticMeasurements() }
+    }
+
     override fun getWorkManagerConfiguration() = Builder().setMinimumLoggingLevel(INFO).build()
+
+    private companion object {
+        const val TASK_NIMBUS = "nimbus"
+        const val TASK_DEFAULT_PREFERENCES = "default-preferences"
+        const val TASK_ENGINE = "engine"
+        const val TASK_THEME = "theme"
+        const val TASK_TELEMETRY = "telemetry"
+        const val TASK_GLEAN = "glean"
+        const val TASK_MEGAZORD = "megazord"
+        const val TASK_PROFILER_MARKERS = "profiler-markers"
+        const val TASK_LIFECYCLE = "lifecycle"
+        const val TASK_WEB_EXTENSIONS = "web-extensions"
+        const val TASK_LEAK_CANARY = "leak-canary"
+        const val TASK_AUTOCOMPLETE = "autocomplete"
+        const val TASK_STARTUP_REPORT = "startup-report"
+    }
 }
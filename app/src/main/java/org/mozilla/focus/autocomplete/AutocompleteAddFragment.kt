@@ -4,7 +4,6 @@
 
 package org.mozilla.focus.autocomplete
 
-import android.content.Context
 import android.os.Bundle
 import android.view.LayoutInflater
 import android.view.Menu
@@ -17,7 +16,6 @@ import kotlinx.coroutines.Dispatchers.IO
 import kotlinx.coroutines.Dispatchers.Main
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.launch
-import mozilla.components.browser.domains.CustomDomains
 import org.mozilla.focus.GleanMetrics.Autocomplete
 import org.mozilla.focus.R
 import org.mozilla.focus.databinding.FragmentAutocompleteAddDomainBinding
@@ -82,8 +80,10 @@ class AutocompleteAddFragment : BaseSettingsLikeFragment(), CoroutineScope {
         R.id.save -> {
             val domain = binding.domainView.text.toString().trim()
 
+            val domainAutocompleteIndex = requireComponents.domainAutocompleteIndex
+
             launch(IO) {
-                val domains = CustomDomains.load(requireActivity())
+                val domains = domainAutocompleteIndex.getCustomDomains()
                 val error = when {
                     domain.isEmpty() -> getString(R.string.preference_autocomplete_add_error)
                     domains.contains(domain) -> getString(R.string.preference_autocomplete_duplicate_url_error)
@@ -94,7 +94,7 @@ class AutocompleteAddFragment : BaseSettingsLikeFragment(), CoroutineScope {
                     if (error != null) {
                         binding.domainView.error = error
                     } else {
-                        saveDomainAndClose(requireActivity().applicationContext, domain)
+                        saveDomainAndClose(domain)
                     }
                 }
             }
@@ -104,9 +104,11 @@ class AutocompleteAddFragment : BaseSettingsLikeFragment(), CoroutineScope {
         else -> false
     }
 
-    private fun saveDomainAndClose(context: Context, domain: String) {
+    private fun saveDomainAndClose(domain: String) {
+        val domainAutocompleteIndex = requireComponents.domainAutocompleteIndex
+
         launch(IO) {
-            CustomDomains.add(context, domain)
+            domainAutocompleteIndex.addCustomDomain(domain)
             Autocomplete.domainAdded.add()
             TelemetryWrapper.saveAutocompleteDomainEvent(TelemetryWrapper.AutoCompleteEventSource.SETTINGS)
         }
@@ -18,33 +18,30 @@ import android.widget.CompoundButton
 import android.widget.TextView
 import androidx.core.content.ContextCompat
 import androidx.core.view.isVisible
+import androidx.recyclerview.widget.AdapterListUpdateCallback
 import androidx.recyclerview.widget.ItemTouchHelper
 import androidx.recyclerview.widget.ItemTouchHelper.SimpleCallback
 import androidx.recyclerview.widget.LinearLayoutManager
 import androidx.recyclerview.widget.RecyclerView
 import kotlinx.coroutines.CoroutineScope
-import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Dispatchers.IO
 import kotlinx.coroutines.Dispatchers.Main
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.launch
-import kotlinx.coroutines.withContext
-import mozilla.components.browser.domains.CustomDomains
 import org.mozilla.focus.GleanMetrics.Autocomplete
 import org.mozilla.focus.R
 import org.mozilla.focus.databinding.FragmentAutocompleteCustomdomainsBinding
+import org.mozilla.focus.ext.components
 import org.mozilla.focus.ext.requireComponents
 import org.mozilla.focus.ext.showToolbar
 import org.mozilla.focus.settings.BaseSettingsLikeFragment
+import org.mozilla.focus.settings.DomainList
 import org.mozilla.focus.state.AppAction
 import org.mozilla.focus.state.Screen
 import org.mozilla.focus.telemetry.TelemetryWrapper
 import org.mozilla.focus.utils.ViewUtils
-import java.util.Collections
 import kotlin.coroutines.CoroutineContext
 
-typealias DomainFormatter = (String) -> String
-
 /**
  * Fragment showing settings UI listing all custom autocomplete domains entered by the user.
  */
@@ -196,22 +193,22 @@ open class AutocompleteListFragment : BaseSettingsLikeFragment(), CoroutineScope
      * Adapter implementation for the list of custom autocomplete domains.
      */
     inner class DomainListAdapter : RecyclerView.Adapter<RecyclerView.ViewHolder>() {
-        private val domains: MutableList<String> = mutableListOf()
+        private val domains = DomainList<String>(
+            this@AutocompleteListFragment,
+            AdapterListUpdateCallback(this),
+            urlOf = { it },
+        )
         private val selectedDomains: MutableList<String> = mutableListOf()
 
-        fun refresh(context: Context, body: (() -> Unit)? = null) {
-            launch(Main) {
-                val updatedDomains =
-                    withContext(Dispatchers.Default) {
-                        CustomDomains.load(context)
-                    }
-
-                domains.clear()
-                domains.addAll(updatedDomains)
+        init {
+            setHasStableIds(true)
+        }
 
-                notifyDataSetChanged()
+        fun refresh(context: Context, body: (() -> Unit)? = null) {
+            val domainAutocompleteIndex = context.components.domainAutocompleteIndex
 
-                body?.invoke()
+            launch(Main) {
+                domains.submit(domainAutocompleteIndex.getCustomDomains(), body)
             }
         }
 
@@ -221,6 +218,12 @@ open class AutocompleteListFragment : BaseSettingsLikeFragment(), CoroutineScope
                 else -> DomainViewHolder.LAYOUT_ID
             }
 
+        override fun getItemId(position: Int) =
+            when (position) {
+                domains.size -> AddActionViewHolder.ITEM_ID
+                else -> domains[position].id
+            }
+
         override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): RecyclerView.ViewHolder =
             when (viewType) {
                 AddActionViewHolder.LAYOUT_ID ->
@@ -231,7 +234,7 @@ open class AutocompleteListFragment : BaseSettingsLikeFragment(), CoroutineScope
                 DomainViewHolder.LAYOUT_ID ->
                     DomainViewHolder(
                         LayoutInflater.from(parent.context).inflate(viewType, parent, false),
-                    ) { AutocompleteDomainFormatter.format(it) }
+                    )
                 else -> throw IllegalArgumentException("Unknown view type: $viewType")
             }
 
@@ -258,11 +261,13 @@ open class AutocompleteListFragment : BaseSettingsLikeFragment(), CoroutineScope
         fun selection(): List<String> = selectedDomains
 
         fun move(from: Int, to: Int) {
-            Collections.swap(domains, from, to)
-            notifyItemMoved(from, to)
+            domains.move(from, to)
+
+            val domainAutocompleteIndex = requireComponents.domainAutocompleteIndex
+            val reorderedDomains = domains.items.map { it.value }
 
             launch(IO) {
-                CustomDomains.save(activity!!.applicationContext, domains)
+                domainAutocompleteIndex.setCustomDomains(reorderedDomains)
                 Autocomplete.listOrderChanged.add()
                 TelemetryWrapper.reorderAutocompleteDomainEvent(from, to)
             }
@@ -274,7 +279,6 @@ open class AutocompleteListFragment : BaseSettingsLikeFragment(), CoroutineScope
      */
     private class DomainViewHolder(
         itemView: View,
-        val domainFormatter: DomainFormatter? = null,
     ) : RecyclerView.ViewHolder(itemView) {
         val domainView: TextView = itemView.findViewById(R.id.domainView)
         val checkBoxView: CheckBox = itemView.findViewById(R.id.checkbox)
@@ -285,13 +289,14 @@ open class AutocompleteListFragment : BaseSettingsLikeFragment(), CoroutineScope
         }
 
         fun bind(
-            domain: String,
+            item: DomainList.Item<String>,
             isSelectionMode: Boolean,
             selectedDomains: MutableList<String>,
             itemTouchHelper: ItemTouchHelper,
             fragment: AutocompleteListFragment,
         ) {
-            domainView.text = domainFormatter?.invoke(domain) ?: domain
+            val domain = item.value
+            domainView.text = item.displayText
 
             checkBoxView.isVisible = isSelectionMode
             checkBoxView.isChecked = selectedDomains.contains(domain)
@@ -346,6 +351,9 @@ open class AutocompleteListFragment : BaseSettingsLikeFragment(), CoroutineScope
 
         companion object {
             val LAYOUT_ID = R.layout.item_add_custom_domain
+
+            // Domains have non-negative IDs.
+            const val ITEM_ID = -1L
         }
     }
 }
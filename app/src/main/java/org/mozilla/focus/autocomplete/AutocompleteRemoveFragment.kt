@@ -4,7 +4,6 @@
 
 package org.mozilla.focus.autocomplete
 
-import android.content.Context
 import android.view.Menu
 import android.view.MenuInflater
 import android.view.MenuItem
@@ -14,7 +13,6 @@ import kotlinx.coroutines.Dispatchers.Main
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
-import mozilla.components.browser.domains.CustomDomains
 import org.mozilla.focus.GleanMetrics.Autocomplete
 import org.mozilla.focus.R
 import org.mozilla.focus.ext.requireComponents
@@ -34,18 +32,20 @@ class AutocompleteRemoveFragment : AutocompleteListFragment(), CoroutineScope {
 
     override fun onMenuItemSelected(menuItem: MenuItem): Boolean = when (menuItem.itemId) {
         R.id.remove -> {
-            removeSelectedDomains(requireActivity().applicationContext)
+            removeSelectedDomains()
             true
         }
         else -> false
     }
 
-    private fun removeSelectedDomains(context: Context) {
+    private fun removeSelectedDomains() {
         val domains = (binding.domainList.adapter as DomainListAdapter).selection()
         if (domains.isNotEmpty()) {
+            val domainAutocompleteIndex = requireComponents.domainAutocompleteIndex
+
             launch(Main) {
                 withContext(Dispatchers.Default) {
-                    CustomDomains.remove(context, domains)
+                    domainAutocompleteIndex.removeCustomDomains(domains)
                     Autocomplete.domainRemoved.add()
                     TelemetryWrapper.removeAutocompleteDomainsEvent(domains.size)
                 }
@@ -0,0 +1,159 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.autocomplete
+
+import android.content.Context
+import androidx.core.os.LocaleListCompat
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import mozilla.components.browser.domains.CustomDomains
+import mozilla.components.browser.domains.Domains
+import mozilla.components.browser.domains.autocomplete.DomainAutocompleteResult
+import java.util.Locale
+
+/**
+ * In-memory autocomplete index over the shipped and the custom domain lists.
+ *
+ * The lists are loaded and indexed in the background once [initialize] is called. Until then there are
+ * no suggestions. Suggestions from the custom list win over the shipped list. The custom list is kept
+ * in memory as well: Changes go through this class, which saves them and updates the index.
+ *
+ * The shipped list depends on the countries of the default locales. If they have changed since the
+ * list has been loaded then [initialize] loads it again.
+ */
+class DomainAutocompleteIndex(
+    private val context: Context,
+    private val scope: CoroutineScope = CoroutineScope(Dispatchers.IO),
+    private val loadShippedDomains: (Context) -> List<String> = { Domains.load(it) },
+    private val loadCustomDomains: (Context) -> List<String> = { CustomDomains.load(it) },
+    private val saveCustomDomains: (Context, List<String>) -> Unit = { context, domains ->
+        CustomDomains.save(context, domains)
+    },
+    private val getDefaultLocales: () -> String = { LocaleListCompat.getDefault().toLanguageTags() },
+) {
+    @Volatile
+    private var shippedIndex = DomainTrie.EMPTY
+
+    @Volatile
+    private var customIndex = DomainTrie.EMPTY
+
+    private var customDomains: List<String> = emptyList()
+    private val customDomainsLock = Mutex()
+
+    @Volatile
+    private var shippedDomainsLocales: String? = null
+    private val shippedDomainsLock = Mutex()
+
+    private val loading = scope.async(start = CoroutineStart.LAZY) {
+        customDomainsLock.withLock {
+            customDomains = loadCustomDomains(context)
+            customIndex = DomainTrie.build(customDomains)
+        }
+
+        updateShippedIndex()
+    }
+
+    /**
+     * Start loading the domain lists in the background, if that hasn't happened yet. Loads the
+     * shipped list again if the default locales have changed since it has been loaded.
+     */
+    fun initialize() {
+        if (loading.start()) {
+            return
+        }
+
+        val locales = shippedDomainsLocales
+        if (locales != null && locales != getDefaultLocales()) {
+            scope.launch { updateShippedIndex() }
+        }
+    }
+
+    /**
+     * Return the suggestion for the given input. This is a lookup in memory: It can be called for
+     * every keystroke on the main thread.
+     */
+    fun getAutocompleteSuggestion(
+        query: String,
+        useCustomDomains: Boolean,
+        useShippedDomains: Boolean,
+    ): DomainAutocompleteResult? {
+        if (useCustomDomains) {
+            find(customIndex, query, SOURCE_CUSTOM)?.let { return it }
+        }
+
+        if (useShippedDomains) {
+            find(shippedIndex, query, SOURCE_SHIPPED)?.let { return it }
+        }
+
+        return null
+    }
+
+    /**
+     * Return the custom domains, in the order of their priority.
+     */
+    suspend fun getCustomDomains(): List<String> {
+        loading.await()
+        return customDomainsLock.withLock { customDomains }
+    }
+
+    /**
+     * Add a domain to the end of the custom list.
+     */
+    suspend fun addCustomDomain(domain: String) = updateCustomDomains { it + domain }
+
+    /**
+     * Remove the given domains from the custom list.
+     */
+    suspend fun removeCustomDomains(domains: List<String>) = updateCustomDomains { it - domains.toSet() }
+
+    /**
+     * Replace the custom list, e.g. after the user has reordered it.
+     */
+    suspend fun setCustomDomains(domains: List<String>) = updateCustomDomains { domains.toList() }
+
+    private suspend fun updateCustomDomains(update: (List<String>) -> List<String>) {
+        loading.await()
+
+        customDomainsLock.withLock {
+            val domains = update(customDomains)
+
+            // The custom list is short: Rebuilding its index is cheaper than keeping it balanced.
+            customIndex = DomainTrie.build(domains)
+            customDomains = domains
+
+            saveCustomDomains(context, domains)
+        }
+    }
+
+    private suspend fun updateShippedIndex() {
+        shippedDomainsLock.withLock {
+            val locales = getDefaultLocales()
+            if (locales == shippedDomainsLocales) {
+                return
+            }
+
+            shippedIndex = DomainTrie.build(loadShippedDomains(context))
+            shippedDomainsLocales = locales
+        }
+    }
+
+    private fun find(index: DomainTrie, query: String, source: String): DomainAutocompleteResult? {
+        val entry = index.find(query.lowercase(Locale.US)) ?: return null
+
+        // Like the list based providers: Complete the input as the user has typed it.
+        val text = query + entry.text.substring(query.length)
+        return DomainAutocompleteResult(query, text, entry.url, source, index.size)
+    }
+
+    companion object {
+        const val SOURCE_CUSTOM = "custom"
+        const val SOURCE_SHIPPED = "default"
+    }
+}
@@ -0,0 +1,123 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.autocomplete
+
+/**
+ * Prefix index over a list of domains. For a query it returns the same suggestion as walking the list
+ * in order and picking the first domain whose "www." form or host starts with the query, in a time
+ * proportional to the length of the query.
+ *
+ * Every node knows the best entry (the one with the lowest priority) below it, so a lookup is a walk
+ * down the query. Children are kept in sorted arrays to keep the nodes small.
+ */
+internal class DomainTrie private constructor(
+    private val root: Node,
+    val size: Int,
+) {
+    /**
+     * A suggestion: [text] is the completed input, [url] the URL to load.
+     */
+    class Entry(val text: String, val url: String)
+
+    private class Node {
+        var chars = CharArray(0)
+        var children = arrayOfNulls<Node>(0)
+        var best: Entry? = null
+        var bestPriority = Int.MAX_VALUE
+
+        fun child(char: Char): Node? {
+            val index = chars.binarySearch(char)
+            return if (index >= 0) children[index] else null
+        }
+
+        fun getOrAddChild(char: Char): Node {
+            val index = chars.binarySearch(char)
+            if (index >= 0) {
+                return children[index]!!
+            }
+
+            val insertAt = -index - 1
+            val child = Node()
+
+            chars = CharArray(chars.size + 1).also { newChars ->
+                chars.copyInto(newChars, 0, 0, insertAt)
+                newChars[insertAt] = char
+                chars.copyInto(newChars, insertAt + 1, insertAt)
+            }
+            children = arrayOfNulls<Node>(children.size + 1).also { newChildren ->
+                children.copyInto(newChildren, 0, 0, insertAt)
+                newChildren[insertAt] = child
+                children.copyInto(newChildren, insertAt + 1, insertAt)
+            }
+
+            return child
+        }
+    }
+
+    /**
+     * Return the best entry whose text starts with [query] or null if there is none. The lookup is
+     * case-sensitive: Pass the query in lowercase, like the domains in the lists.
+     */
+    fun find(query: String): Entry? {
+        var node = root
+        for (char in query) {
+            node = node.child(char) ?: return null
+        }
+        return node.best
+    }
+
+    companion object {
+        private val URL_PATTERN = Regex("""(https?://)?(www\.)?(.+)?""")
+        private const val GROUP_PROTOCOL = 1
+        private const val GROUP_WWW = 2
+        private const val GROUP_HOST = 3
+
+        val EMPTY = DomainTrie(Node(), 0)
+
+        /**
+         * Build the index for the given domains, highest priority first. Domains can be stored with or
+         * without protocol and "www." (e.g. "https://www.mozilla.org").
+         */
+        fun build(domains: List<String>): DomainTrie {
+            val root = Node()
+            var size = 0
+
+            domains.forEach { domain ->
+                val groups = URL_PATTERN.matchEntire(domain)?.groups ?: return@forEach
+                val host = groups[GROUP_HOST]?.value ?: return@forEach
+                val protocol = groups[GROUP_PROTOCOL]?.value ?: "http://"
+                val www = groups[GROUP_WWW]?.value.orEmpty()
+
+                val url = protocol + www + host
+                val wwwText = "www.$host"
+
+                // The "www." form wins over the host of the same domain, like in the list based providers.
+                insert(root, wwwText, Entry(wwwText, url), size * 2)
+                insert(root, host, Entry(host, url), size * 2 + 1)
+
+                size++
+            }
+
+            return DomainTrie(root, size)
+        }
+
+        private fun insert(root: Node, text: String, entry: Entry, priority: Int) {
+            var node = root
+            node.offer(entry, priority)
+
+            for (char in text) {
+                node = node.getOrAddChild(char)
+                node.offer(entry, priority)
+            }
+        }
+
+        private fun Node.offer(entry: Entry, priority: Int) {
+            if (priority < bestPriority) {
+                best = entry
+                bestPriority = priority
+            }
+        }
+    }
+}
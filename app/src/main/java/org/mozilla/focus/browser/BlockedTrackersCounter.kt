@@ -0,0 +1,101 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.browser
+
+import android.content.Context
+import androidx.annotation.VisibleForTesting
+import androidx.lifecycle.DefaultLifecycleObserver
+import androidx.lifecycle.LifecycleOwner
+import androidx.preference.PreferenceManager
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import org.mozilla.focus.R
+import org.mozilla.focus.ext.settings
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Counts blocked trackers in memory. Recording a blocked tracker only updates an atomic counter, the
+ * total is written to [android.content.SharedPreferences] in the background: [FLUSH_DELAY_MS] after
+ * the first unsaved tracker and when the app goes to the background (see [onStop]).
+ *
+ * The saved total is loaded in the background when the counter is created, so recording never
+ * reads from disk.
+ */
+class BlockedTrackersCounter(
+    private val context: Context,
+    private val scope: CoroutineScope = CoroutineScope(Dispatchers.IO),
+    private val flushDelayMillis: Long = FLUSH_DELAY_MS,
+) : DefaultLifecycleObserver {
+
+    private val preferences by lazy { PreferenceManager.getDefaultSharedPreferences(context) }
+    private val recordedCount = AtomicInteger()
+    private val hasUnsavedCount = AtomicBoolean(false)
+
+    @Volatile
+    private var savedCount: Int? = null
+
+    init {
+        scope.launch { loadSavedCount() }
+    }
+
+    /**
+     * The number of trackers blocked since the app has been installed.
+     */
+    val totalCount: Int
+        get() = loadSavedCount() + recordedCount.get()
+
+    /**
+     * Record a blocked tracker.
+     */
+    fun record() {
+        recordedCount.incrementAndGet()
+
+        if (hasUnsavedCount.compareAndSet(false, true)) {
+            scope.launch {
+                delay(flushDelayMillis)
+                flush()
+            }
+        }
+    }
+
+    /**
+     * Write the total to disk if it has changed since it has been written last.
+     */
+    @VisibleForTesting
+    internal fun flush() {
+        if (!hasUnsavedCount.getAndSet(false)) {
+            return
+        }
+
+        preferences
+            .edit()
+            .putInt(
+                context.getString(R.string.pref_key_privacy_total_trackers_blocked_count),
+                totalCount,
+            )
+            .apply()
+    }
+
+    override fun onStop(owner: LifecycleOwner) {
+        scope.launch { flush() }
+    }
+
+    /**
+     * The total saved by previous sessions. Read from disk once: usually in the background right
+     * after the counter has been created.
+     */
+    private fun loadSavedCount(): Int {
+        return savedCount ?: synchronized(this) {
+            savedCount ?: context.settings.getTotalBlockedTrackersCount().also { savedCount = it }
+        }
+    }
+
+    companion object {
+        const val FLUSH_DELAY_MS = 5000L
+    }
+}
@@ -4,27 +4,21 @@
 
 package org.mozilla.focus.browser
 
-import android.content.Context
-import androidx.preference.PreferenceManager
 import mozilla.components.browser.state.action.BrowserAction
 import mozilla.components.browser.state.action.TrackingProtectionAction
 import mozilla.components.browser.state.state.BrowserState
 import mozilla.components.lib.state.Middleware
 import mozilla.components.lib.state.MiddlewareContext
-import org.mozilla.focus.R
-import org.mozilla.focus.ext.settings
 
 /**
  * [Middleware] to record the number of blocked trackers in response to [BrowserAction]s.
- * @param context The application context.
+ * @param counter The [BlockedTrackersCounter] keeping the count. It never touches the disk on the
+ * store thread.
  */
 class BlockedTrackersMiddleware(
-    private val context: Context,
+    private val counter: BlockedTrackersCounter,
 ) : Middleware<BrowserState, BrowserAction> {
 
-    private val settings = context.settings
-    private val preferences = PreferenceManager.getDefaultSharedPreferences(context)
-
     override fun invoke(
         context: MiddlewareContext<BrowserState, BrowserAction>,
         next: (BrowserAction) -> Unit,
@@ -32,7 +26,7 @@ class BlockedTrackersMiddleware(
     ) {
         when (action) {
             is TrackingProtectionAction.TrackerBlockedAction -> {
-                incrementCount()
+                counter.record()
             }
             else -> {
                 // no-op
@@ -41,15 +35,4 @@ class BlockedTrackersMiddleware(
 
         next(action)
     }
-
-    private fun incrementCount() {
-        val blockedTrackersCount = settings.getTotalBlockedTrackersCount()
-        preferences
-            .edit()
-            .putInt(
-                context.getString(R.string.pref_key_privacy_total_trackers_blocked_count),
-                blockedTrackersCount + 1,
-            )
-            .apply()
-    }
 }
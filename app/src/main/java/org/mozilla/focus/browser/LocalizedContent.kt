@@ -5,8 +5,10 @@ package org.mozilla.focus.browser
 
 import android.content.Context
 import android.content.pm.PackageManager
+import android.content.res.Resources
 import android.view.View
 import androidx.collection.ArrayMap
+import androidx.core.os.ConfigurationCompat
 import mozilla.components.support.utils.ext.getPackageInfoCompat
 import org.mozilla.focus.R
 import org.mozilla.focus.locale.Locales
@@ -14,6 +16,7 @@ import org.mozilla.focus.utils.HtmlLoader
 import org.mozilla.focus.utils.SupportUtils.manifestoURL
 import org.mozilla.geckoview.BuildConfig
 import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
 
 object LocalizedContent {
     // We can't use "about:" because webview silently swallows about: pages, hence we use
@@ -23,11 +26,20 @@ object LocalizedContent {
     const val URL_GPL = "focus:gpl"
     const val URL_LICENSES = "focus:licenses"
 
+    /**
+     * Rendered pages by URL, locale and layout direction.
+     */
+    private val pages = ConcurrentHashMap<String, String>()
+
     /**
      * Load the content for focus:about
      */
     fun loadAbout(context: Context): String {
         val resources = Locales.getLocalizedResources(context)
+        return cached(URL_ABOUT, context, resources) { renderAbout(context, resources) }
+    }
+
+    private fun renderAbout(context: Context, resources: Resources): String {
         val substitutionMap: MutableMap<String, String> = ArrayMap()
         val appName = context.resources.getString(R.string.app_name)
         val learnMoreURL = manifestoURL
@@ -60,6 +72,10 @@ object LocalizedContent {
      */
     fun loadRights(context: Context): String {
         val resources = Locales.getLocalizedResources(context)
+        return cached(URL_RIGHTS, context, resources) { renderRights(context, resources) }
+    }
+
+    private fun renderRights(context: Context, resources: Resources): String {
         val substitutionMap: MutableMap<String, String> = ArrayMap()
         val appName = context.resources.getString(R.string.app_name)
         val mplUrl = "https://www.mozilla.org/en-US/MPL/"
@@ -89,8 +105,26 @@ object LocalizedContent {
         return HtmlLoader.loadResourceFile(context, R.raw.gpl, emptyMap())
     }
 
+    /**
+     * Forget all rendered pages, e.g. after the user has picked another language.
+     */
+    fun clearCache() {
+        pages.clear()
+    }
+
+    private inline fun cached(url: String, context: Context, resources: Resources, render: () -> String): String {
+        val locale = ConfigurationCompat.getLocales(resources.configuration)[0]
+        val key = "$url ${locale?.toLanguageTag()} ${getLayoutDirection(context)}"
+
+        return pages[key] ?: render().also { pages[key] = it }
+    }
+
     private fun putLayoutDirectionIntoMap(substitutionMap: MutableMap<String, String>, context: Context) {
-        val direction: String = when (context.resources.configuration.layoutDirection) {
+        substitutionMap["%dir%"] = getLayoutDirection(context)
+    }
+
+    private fun getLayoutDirection(context: Context): String {
+        return when (context.resources.configuration.layoutDirection) {
             View.LAYOUT_DIRECTION_LTR -> {
                 "ltr"
             }
@@ -101,6 +135,5 @@ object LocalizedContent {
                 "auto"
             }
         }
-        substitutionMap["%dir%"] = direction
     }
 }
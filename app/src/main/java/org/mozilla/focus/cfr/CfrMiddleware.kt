@@ -7,46 +7,105 @@ import android.content.Context
 import androidx.core.net.toUri
 import mozilla.components.browser.state.action.BrowserAction
 import mozilla.components.browser.state.action.ContentAction
+import mozilla.components.browser.state.action.CustomTabListAction
+import mozilla.components.browser.state.action.TabListAction
 import mozilla.components.browser.state.action.TrackingProtectionAction
 import mozilla.components.browser.state.selector.findTabOrCustomTabOrSelectedTab
 import mozilla.components.browser.state.state.BrowserState
 import mozilla.components.lib.state.Middleware
 import mozilla.components.lib.state.MiddlewareContext
+import mozilla.components.service.nimbus.NimbusApi
+import org.mozilla.experiments.nimbus.NimbusInterface
+import org.mozilla.experiments.nimbus.internal.EnrolledExperiment
 import org.mozilla.focus.ext.components
 import org.mozilla.focus.ext.truncatedHost
 import org.mozilla.focus.nimbus.FocusNimbus
 import org.mozilla.focus.nimbus.Onboarding
 import org.mozilla.focus.state.AppAction
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * Middleware used to intercept browser store actions in order to decide when should we display a specific CFR
+ *
+ * This middleware sees every action of the store. The onboarding configuration is read from Nimbus
+ * once and only read again after experiments have been updated. Whether a tab shows a Mozilla page
+ * is cached per tab until the URL of the tab changes.
  */
-class CfrMiddleware(private val appContext: Context) : Middleware<BrowserState, BrowserAction> {
-    private val onboardingFeature = FocusNimbus.features.onboarding
-    private lateinit var onboardingConfig: Onboarding
+class CfrMiddleware(
+    private val appContext: Context,
+    private val experiments: () -> NimbusApi = { appContext.components.experiments },
+    private val loadOnboardingConfig: (Context) -> Onboarding = {
+        FocusNimbus.features.onboarding.value(context = it)
+    },
+) : Middleware<BrowserState, BrowserAction> {
     private val components = appContext.components
     private var isCurrentTabSecure = false
     private var tpExposureAlreadyRecorded = false
 
+    // Incremented by every experiments update, so that a configuration read while experiments were
+    // being updated is not kept.
+    private val experimentsGeneration = AtomicInteger()
+
+    @Volatile
+    private var onboardingConfig: CachedOnboardingConfig? = null
+    private var isObservingExperiments = false
+
+    // Only accessed from the store thread.
+    private val mozillaHostCache = HashMap<String, CachedHost>()
+
     override fun invoke(
         context: MiddlewareContext<BrowserState, BrowserAction>,
         next: (BrowserAction) -> Unit,
         action: BrowserAction,
     ) {
-        onboardingConfig = onboardingFeature.value(context = appContext)
-        if (onboardingConfig.isCfrEnabled) {
+        if (getOnboardingConfig().isCfrEnabled) {
             if (action is ContentAction.UpdateSecurityInfoAction) {
                 isCurrentTabSecure = action.securityInfo.secure
             }
 
             next(action)
 
+            invalidateMozillaHostCache(action)
             showTrackingProtectionCfr(action, context)
         } else {
             next(action)
         }
     }
 
+    private fun getOnboardingConfig(): Onboarding {
+        val generation = experimentsGeneration.get()
+        onboardingConfig?.takeIf { it.generation == generation }?.let { return it.config }
+
+        if (!isObservingExperiments) {
+            isObservingExperiments = true
+            experiments().register(
+                object : NimbusInterface.Observer {
+                    override fun onUpdatesApplied(updated: List<EnrolledExperiment>) {
+                        // Read the configuration again with the next action.
+                        experimentsGeneration.incrementAndGet()
+                    }
+                },
+            )
+        }
+
+        return loadOnboardingConfig(appContext).also { onboardingConfig = CachedOnboardingConfig(generation, it) }
+    }
+
+    private fun invalidateMozillaHostCache(action: BrowserAction) {
+        when (action) {
+            is ContentAction.UpdateUrlAction -> mozillaHostCache.remove(action.sessionId)
+            is TabListAction.RemoveTabAction -> mozillaHostCache.remove(action.tabId)
+            is TabListAction.RemoveTabsAction -> action.tabIds.forEach { mozillaHostCache.remove(it) }
+            is CustomTabListAction.RemoveCustomTabAction -> mozillaHostCache.remove(action.tabId)
+            is TabListAction.RemoveAllTabsAction,
+            is TabListAction.RemoveAllPrivateTabsAction,
+            -> mozillaHostCache.clear()
+            else -> {
+                // no-op
+            }
+        }
+    }
+
     private fun showTrackingProtectionCfr(
         action: BrowserAction,
         context: MiddlewareContext<BrowserState, BrowserAction>,
@@ -66,9 +125,17 @@ class CfrMiddleware(private val appContext: Context) : Middleware<BrowserState,
     }
 
     private fun isMozillaUrl(browserState: BrowserState): Boolean {
-        return browserState.findTabOrCustomTabOrSelectedTab(
-            browserState.selectedTabId,
-        )?.content?.url?.toUri()?.truncatedHost()?.substringBefore(".") == ("mozilla")
+        val tab = browserState.findTabOrCustomTabOrSelectedTab(browserState.selectedTabId) ?: return false
+        val url = tab.content.url
+
+        val cached = mozillaHostCache[tab.id]
+        if (cached != null && cached.url == url) {
+            return cached.isMozilla
+        }
+
+        val isMozilla = url.toUri().truncatedHost()?.substringBefore(".") == ("mozilla")
+        mozillaHostCache[tab.id] = CachedHost(url, isMozilla)
+        return isMozilla
     }
 
     private fun isActionSecure(action: BrowserAction) =
@@ -84,3 +151,7 @@ class CfrMiddleware(private val appContext: Context) : Middleware<BrowserState,
             !components.appStore.state.showEraseTabsCfr
         )
 }
+
+private class CachedHost(val url: String, val isMozilla: Boolean)
+
+private class CachedOnboardingConfig(val generation: Int, val config: Onboarding)
@@ -18,6 +18,7 @@ import android.widget.CompoundButton
 import android.widget.TextView
 import androidx.core.content.ContextCompat
 import androidx.core.view.isVisible
+import androidx.recyclerview.widget.AdapterListUpdateCallback
 import androidx.recyclerview.widget.ItemTouchHelper
 import androidx.recyclerview.widget.ItemTouchHelper.SimpleCallback
 import androidx.recyclerview.widget.LinearLayoutManager
@@ -29,21 +30,19 @@ import kotlinx.coroutines.launch
 import mozilla.components.concept.engine.content.blocking.TrackingProtectionException
 import org.mozilla.focus.GleanMetrics.TrackingProtectionExceptions
 import org.mozilla.focus.R
-import org.mozilla.focus.autocomplete.AutocompleteDomainFormatter
 import org.mozilla.focus.databinding.FragmentExceptionsDomainsBinding
 import org.mozilla.focus.ext.components
 import org.mozilla.focus.ext.requireComponents
 import org.mozilla.focus.ext.showToolbar
 import org.mozilla.focus.settings.BaseSettingsLikeFragment
+import org.mozilla.focus.settings.DomainList
 import org.mozilla.focus.state.AppAction
 import org.mozilla.focus.state.Screen
 import org.mozilla.focus.telemetry.TelemetryWrapper
 import org.mozilla.focus.utils.ViewUtils
-import java.util.Collections
 import kotlin.coroutines.CoroutineContext
 
 private const val REMOVE_EXCEPTIONS_DISABLED_ALPHA = 0.5f
-typealias DomainFormatter = (String) -> String
 
 /**
  * Fragment showing settings UI listing all exception domains.
@@ -209,27 +208,35 @@ open class ExceptionsListFragment : BaseSettingsLikeFragment(), CoroutineScope {
      * Adapter implementation for the list of exception domains.
      */
     inner class DomainListAdapter : RecyclerView.Adapter<RecyclerView.ViewHolder>() {
-        private var exceptions: List<TrackingProtectionException> = emptyList()
+        private val exceptions = DomainList<TrackingProtectionException>(
+            this@ExceptionsListFragment,
+            AdapterListUpdateCallback(this),
+            urlOf = { it.url },
+        )
         private val selectedExceptions: MutableList<TrackingProtectionException> = mutableListOf()
 
+        init {
+            setHasStableIds(true)
+        }
+
         fun refresh(context: Context, body: (() -> Unit)? = null) {
             this@ExceptionsListFragment.launch(Dispatchers.Main) {
                 context.components.trackingProtectionUseCases.fetchExceptions {
-                    exceptions = it
-                    notifyDataSetChanged()
-                    body?.invoke()
+                    exceptions.submit(it, body)
                 }
             }
         }
 
         override fun getItemViewType(position: Int) = DomainViewHolder.LAYOUT_ID
 
+        override fun getItemId(position: Int) = exceptions[position].id
+
         override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): RecyclerView.ViewHolder =
             when (viewType) {
                 DomainViewHolder.LAYOUT_ID ->
                     DomainViewHolder(
                         LayoutInflater.from(parent.context).inflate(viewType, parent, false),
-                    ) { AutocompleteDomainFormatter.format(it) }
+                    )
                 else -> throw IllegalArgumentException("Unknown view type: $viewType")
             }
 
@@ -256,8 +263,7 @@ open class ExceptionsListFragment : BaseSettingsLikeFragment(), CoroutineScope {
         fun selection(): List<TrackingProtectionException> = selectedExceptions
 
         fun move(from: Int, to: Int) {
-            Collections.swap(exceptions, from, to)
-            notifyItemMoved(from, to)
+            exceptions.move(from, to)
 
             // The underlying storage in GeckoView doesn't support ordering - and ordering is also
             // not necessary. We may just need to remove this feature from this list.
@@ -269,7 +275,6 @@ open class ExceptionsListFragment : BaseSettingsLikeFragment(), CoroutineScope {
      */
     private class DomainViewHolder(
         itemView: View,
-        val domainFormatter: DomainFormatter? = null,
     ) : RecyclerView.ViewHolder(itemView) {
         val domainView: TextView = itemView.findViewById(R.id.domainView)
         val checkBoxView: CheckBox = itemView.findViewById(R.id.checkbox)
@@ -280,13 +285,14 @@ open class ExceptionsListFragment : BaseSettingsLikeFragment(), CoroutineScope {
         }
 
         fun bind(
-            exception: TrackingProtectionException,
+            item: DomainList.Item<TrackingProtectionException>,
             isSelectionMode: Boolean,
             selectedExceptions: MutableList<TrackingProtectionException>,
             itemTouchHelper: ItemTouchHelper,
             fragment: ExceptionsListFragment,
         ) {
-            domainView.text = domainFormatter?.invoke(exception.url) ?: exception.url
+            val exception = item.value
+            domainView.text = item.displayText
 
             checkBoxView.isVisible = isSelectionMode
             checkBoxView.isChecked = selectedExceptions.contains(exception)
@@ -886,8 +886,7 @@ class BrowserFragment :
             tabUrl = tab.content.url,
             isTrackingProtectionOn = tab.trackingProtection.ignoredOnTrackingProtection.not(),
             isConnectionSecure = tab.content.securityInfo.secure,
-            blockedTrackersCount = requireContext().settings
-                .getTotalBlockedTrackersCount(),
+            blockedTrackersCount = requireComponents.blockedTrackersCounter.totalCount,
             toggleTrackingProtection = ::toggleTrackingProtection,
             updateTrackingProtectionPolicy = { tracker, isEnabled ->
                 EngineSharedPreferencesListener(requireContext())
@@ -18,8 +18,6 @@ import androidx.lifecycle.ViewModelProvider
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
-import mozilla.components.browser.domains.autocomplete.CustomDomainsProvider
-import mozilla.components.browser.domains.autocomplete.ShippedDomainsProvider
 import mozilla.components.browser.state.action.ContentAction
 import mozilla.components.browser.state.selector.findTab
 import mozilla.components.browser.state.state.SessionState
@@ -111,8 +109,6 @@ class UrlInputFragment :
     private var job = Job()
     override val coroutineContext: CoroutineContext
         get() = job + Dispatchers.Main
-    private val shippedDomainsProvider = ShippedDomainsProvider()
-    private val customDomainsProvider = CustomDomainsProvider()
     private var _binding: FragmentUrlinputBinding? = null
     private val binding get() = _binding!!
     private lateinit var searchSuggestionsViewModel: SearchSuggestionsViewModel
@@ -180,10 +176,7 @@ class UrlInputFragment :
             job = Job()
         }
 
-        activity?.let {
-            shippedDomainsProvider.initialize(it.applicationContext)
-            customDomainsProvider.initialize(it.applicationContext)
-        }
+        requireComponents.domainAutocompleteIndex.initialize()
 
         // Hide status bar background if the parent activity can be casted to MainActivity
         (requireActivity() as? MainActivity)?.hideStatusBarBackground()
@@ -261,8 +254,7 @@ class UrlInputFragment :
             InputToolbarIntegration(
                 binding.browserToolbar,
                 fragment = this,
-                shippedDomainsProvider = shippedDomainsProvider,
-                customDomainsProvider = customDomainsProvider,
+                domainAutocompleteIndex = requireComponents.domainAutocompleteIndex,
             ),
             owner = this,
             view = binding.browserToolbar,
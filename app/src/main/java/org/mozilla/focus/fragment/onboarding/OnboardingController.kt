@@ -17,10 +17,11 @@ import androidx.annotation.VisibleForTesting
 import androidx.core.os.bundleOf
 import mozilla.components.feature.search.widget.BaseVoiceSearchActivity
 import mozilla.components.support.base.log.logger.Logger
-import mozilla.components.support.utils.Browsers
+import org.mozilla.focus.ext.components
 import org.mozilla.focus.ext.settings
 import org.mozilla.focus.state.AppAction
 import org.mozilla.focus.state.AppStore
+import org.mozilla.focus.telemetry.InstalledAppsCache
 import org.mozilla.focus.utils.ManufacturerCodes
 import org.mozilla.focus.utils.SupportUtils
 import org.mozilla.focus.widget.DefaultBrowserPreference
@@ -37,6 +38,7 @@ class DefaultOnboardingController(
     val appStore: AppStore,
     val context: Context,
     val selectedTabId: String?,
+    private val installedApps: InstalledAppsCache = context.components.installedApps,
 ) : OnboardingController {
 
     override fun handleFinishOnBoarding() {
@@ -45,10 +47,17 @@ class DefaultOnboardingController(
     }
 
     override fun handleGetStartedButtonClicked() {
-        if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.M || Browsers.all(context).isDefaultBrowser) {
+        if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.M) {
             handleFinishOnBoarding()
-        } else {
-            navigateToOnBoardingSecondScreen()
+            return
+        }
+
+        installedApps.withBrowsers { browsers ->
+            if (browsers.isDefaultBrowser) {
+                handleFinishOnBoarding()
+            } else {
+                navigateToOnBoardingSecondScreen()
+            }
         }
     }
 
@@ -58,17 +67,25 @@ class DefaultOnboardingController(
             handleFinishOnBoarding()
             return
         }
-        val isDefault = Browsers.all(context).isDefaultBrowser
-        if (isDefault) {
-            handleFinishOnBoarding()
-        } else {
-            makeFocusDefaultBrowser(activityResultLauncher)
+        installedApps.withBrowsers { browsers ->
+            if (browsers.isDefaultBrowser) {
+                handleFinishOnBoarding()
+            } else {
+                makeFocusDefaultBrowser(activityResultLauncher)
+            }
         }
     }
 
     override fun handleActivityResultImplementation(activityResult: ActivityResult) {
-        if (activityResult.resultCode == Activity.RESULT_OK && Browsers.all(context).isDefaultBrowser) {
-            handleFinishOnBoarding()
+        if (activityResult.resultCode != Activity.RESULT_OK) {
+            return
+        }
+
+        // The user has just picked a default browser, without leaving the app.
+        installedApps.withBrowsers(refreshDefaultBrowser = true) { browsers ->
+            if (browsers.isDefaultBrowser) {
+                handleFinishOnBoarding()
+            }
         }
     }
 
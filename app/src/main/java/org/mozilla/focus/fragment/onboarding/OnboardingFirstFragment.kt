@@ -33,6 +33,9 @@ class OnboardingFirstFragment : Fragment() {
         container: ViewGroup?,
         savedInstanceState: Bundle?,
     ): View {
+        // The buttons need to know whether this app is the default browser.
+        requireComponents.installedApps.warmUp()
+
         onboardingInteractor = DefaultOnboardingInteractor(
             DefaultOnboardingController(
                 onboardingStorage = OnboardingStorage(requireContext()),
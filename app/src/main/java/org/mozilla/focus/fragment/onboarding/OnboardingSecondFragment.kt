@@ -42,6 +42,9 @@ class OnboardingSecondFragment : Fragment() {
         container: ViewGroup?,
         savedInstanceState: Bundle?,
     ): View {
+        // The buttons need to know whether this app is the default browser.
+        requireComponents.installedApps.warmUp()
+
         onboardingInteractor = DefaultOnboardingInteractor(
             DefaultOnboardingController(
                 onboardingStorage = OnboardingStorage(requireContext()),
@@ -14,9 +14,6 @@ import androidx.core.content.res.ResourcesCompat
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.cancel
 import kotlinx.coroutines.flow.mapNotNull
-import mozilla.components.browser.domains.autocomplete.CustomDomainsProvider
-import mozilla.components.browser.domains.autocomplete.DomainAutocompleteResult
-import mozilla.components.browser.domains.autocomplete.ShippedDomainsProvider
 import mozilla.components.browser.toolbar.BrowserToolbar
 import mozilla.components.compose.cfr.CFRPopup
 import mozilla.components.compose.cfr.CFRPopupProperties
@@ -25,6 +22,7 @@ import mozilla.components.lib.state.ext.flowScoped
 import mozilla.components.support.base.feature.LifecycleAwareFeature
 import mozilla.components.support.ktx.kotlinx.coroutines.flow.ifChanged
 import org.mozilla.focus.R
+import org.mozilla.focus.autocomplete.DomainAutocompleteIndex
 import org.mozilla.focus.ext.components
 import org.mozilla.focus.ext.settings
 import org.mozilla.focus.fragment.UrlInputFragment
@@ -34,8 +32,7 @@ import org.mozilla.focus.ui.theme.focusTypography
 class InputToolbarIntegration(
     private val toolbar: BrowserToolbar,
     private val fragment: UrlInputFragment,
-    shippedDomainsProvider: ShippedDomainsProvider,
-    customDomainsProvider: CustomDomainsProvider,
+    domainAutocompleteIndex: DomainAutocompleteIndex,
 ) : LifecycleAwareFeature {
     private val settings = toolbar.context.settings
 
@@ -85,14 +82,11 @@ class InputToolbarIntegration(
         }
 
         toolbar.setAutocompleteListener { text, delegate ->
-            var result: DomainAutocompleteResult? = null
-            if (useCustomDomainProvider) {
-                result = customDomainsProvider.getAutocompleteSuggestion(text)
-            }
-
-            if (useShippedDomainProvider && result == null) {
-                result = shippedDomainsProvider.getAutocompleteSuggestion(text)
-            }
+            val result = domainAutocompleteIndex.getAutocompleteSuggestion(
+                text,
+                useCustomDomains = useCustomDomainProvider,
+                useShippedDomains = useShippedDomainProvider,
+            )
 
             if (result != null) {
                 delegate.applyAutocompleteResult(
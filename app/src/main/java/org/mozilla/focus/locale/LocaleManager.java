@@ -13,7 +13,9 @@ import androidx.preference.PreferenceManager;
 import org.mozilla.focus.R;
 import org.mozilla.focus.generated.LocaleList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -27,16 +29,32 @@ import java.util.concurrent.atomic.AtomicReference;
  *   this.
  * * It's lazy.
  * * It relies on using the SharedPreferences file owned by the app for performance.
+ * * It caches the Resources for the selected locale, see {@link #getLocalizedResources(Context)}.
  */
 public class LocaleManager {
     private static String PREF_LOCALE = null;
 
+    // A few configurations are enough: Typically one per orientation and night mode.
+    private static final int MAX_LOCALIZED_RESOURCES = 4;
+
     // These are volatile because we don't impose restrictions
     // over which thread calls our methods.
     private volatile Locale currentLocale;
     private boolean systemLocaleDidChange;
     private static final AtomicReference<LocaleManager> instance = new AtomicReference<>();
 
+    // Localized Resources by selected locale and the configuration they were created for.
+    private final Map<ResourcesKey, Resources> localizedResources =
+            new LinkedHashMap<ResourcesKey, Resources>(MAX_LOCALIZED_RESOURCES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ResourcesKey, Resources> eldest) {
+                    return size() > MAX_LOCALIZED_RESOURCES;
+                }
+            };
+
+    // Held here because SharedPreferences only keeps a weak reference to its listeners.
+    private SharedPreferences.OnSharedPreferenceChangeListener localeListener;
+
     public static LocaleManager getInstance() {
         LocaleManager localeManager = instance.get();
         if (localeManager != null) {
@@ -74,7 +92,21 @@ public class LocaleManager {
             PREF_LOCALE = context.getResources().getString(R.string.pref_key_locale);
         }
 
-        return PreferenceManager.getDefaultSharedPreferences(context);
+        final SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+
+        synchronized (this) {
+            if (localeListener == null) {
+                localeListener = (sharedPreferences, key) -> {
+                    if (PREF_LOCALE.equals(key)) {
+                        currentLocale = null;
+                        clearLocalizedResources();
+                    }
+                };
+                preferences.registerOnSharedPreferenceChangeListener(localeListener);
+            }
+        }
+
+        return preferences;
     }
 
     /**
@@ -102,6 +134,65 @@ public class LocaleManager {
         return currentLocale = Locales.parseLocaleCode(current);
     }
 
+    /**
+     * Get a Resources instance with the currently selected locale applied.
+     *
+     * Resources for a locale other than the one of the context are created once per configuration
+     * and then reused, until the selected locale changes or {@link #clearLocalizedResources()} is
+     * called. They are created from the application context, because they outlive the calling one.
+     */
+    public Resources getLocalizedResources(Context context) {
+        final Resources currentResources = context.getResources();
+        final Configuration currentConfiguration = currentResources.getConfiguration();
+
+        final Locale currentLocale = getCurrentLocale(context);
+        final Locale viewLocale = currentConfiguration.locale;
+
+        if (currentLocale == null || viewLocale == null || currentLocale.equals(viewLocale)) {
+            return currentResources;
+        }
+
+        final ResourcesKey key = new ResourcesKey(currentLocale, currentConfiguration);
+        synchronized (localizedResources) {
+            final Resources resources = localizedResources.get(key);
+            if (resources != null) {
+                return resources;
+            }
+        }
+
+        // Locales that only differ in ways the language tag doesn't show (e.g. a legacy language
+        // code) still match. This is rare, so it's not worth caching.
+        if (currentLocale.toLanguageTag().equals(viewLocale.toLanguageTag())) {
+            return currentResources;
+        }
+
+        final Configuration configuration = new Configuration(currentConfiguration);
+        configuration.setLocale(currentLocale);
+
+        final Context applicationContext = context.getApplicationContext();
+        final Resources resources = (applicationContext != null ? applicationContext : context)
+                .createConfigurationContext(configuration)
+                .getResources();
+
+        synchronized (localizedResources) {
+            // Copy the configuration for the key, the one of the context may be updated in place.
+            localizedResources.put(
+                    new ResourcesKey(currentLocale, new Configuration(currentConfiguration)),
+                    resources);
+        }
+
+        return resources;
+    }
+
+    /**
+     * Forget all cached localized Resources, e.g. after the system configuration changed.
+     */
+    public void clearLocalizedResources() {
+        synchronized (localizedResources) {
+            localizedResources.clear();
+        }
+    }
+
     /**
      * Returns a list of supported locale codes
      */
@@ -109,4 +200,32 @@ public class LocaleManager {
         return LocaleList.BUNDLED_LOCALES;
     }
 
+    private static final class ResourcesKey {
+        private final Locale locale;
+        private final Configuration configuration;
+        private final int hashCode;
+
+        private ResourcesKey(Locale locale, Configuration configuration) {
+            this.locale = locale;
+            this.configuration = configuration;
+            this.hashCode = 31 * locale.hashCode() + configuration.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ResourcesKey)) {
+                return false;
+            }
+
+            final ResourcesKey key = (ResourcesKey) other;
+            return hashCode == key.hashCode
+                    && locale.equals(key.locale)
+                    && configuration.equals(key.configuration);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
 }
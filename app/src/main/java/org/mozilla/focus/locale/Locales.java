@@ -5,7 +5,6 @@
 package org.mozilla.focus.locale;
 
 import android.content.Context;
-import android.content.res.Configuration;
 import android.content.res.Resources;
 import java.util.Locale;
 
@@ -84,22 +83,6 @@ public class Locales {
      * Get a Resources instance with the currently selected locale applied.
      */
     public static Resources getLocalizedResources(Context context) {
-        final Resources currentResources = context.getResources();
-
-        final Locale currentLocale = LocaleManager.getInstance().getCurrentLocale(context);
-        final Locale viewLocale = currentResources.getConfiguration().locale;
-
-        if (currentLocale == null || viewLocale == null) {
-            return currentResources;
-        }
-
-        if (currentLocale.toLanguageTag().equals(viewLocale.toLanguageTag())) {
-            return currentResources;
-        }
-
-        final Configuration configuration = new Configuration(currentResources.getConfiguration());
-        configuration.setLocale(currentLocale);
-
-        return context.createConfigurationContext(configuration).getResources();
+        return LocaleManager.getInstance().getLocalizedResources(context);
     }
 }
@@ -9,6 +9,7 @@ import mozilla.components.lib.state.Middleware
 import mozilla.components.lib.state.MiddlewareContext
 import mozilla.components.support.locale.LocaleManager
 import mozilla.components.support.locale.LocaleUseCases
+import org.mozilla.focus.browser.LocalizedContent
 import org.mozilla.focus.locale.Locales
 import org.mozilla.focus.settings.InstalledSearchEnginesSettingsFragment
 import org.mozilla.gecko.util.ThreadUtils.runOnUiThread
@@ -57,6 +58,7 @@ class LanguageMiddleware(val activity: Activity, private val localeUseCase: Loca
      */
     private fun setCurrentLanguage(languageTag: String) {
         InstalledSearchEnginesSettingsFragment.languageChanged = true
+        LocalizedContent.clearCache()
         val locale: Locale?
         if (languageTag == LanguageStorage.LOCALE_SYSTEM_DEFAULT) {
             LocaleManager.resetToSystemDefault(activity, localeUseCase)
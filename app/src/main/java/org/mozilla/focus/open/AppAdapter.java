@@ -4,7 +4,7 @@
 
 package org.mozilla.focus.open;
 
-import android.content.Context;
+import android.annotation.SuppressLint;
 import android.content.pm.ActivityInfo;
 import android.graphics.drawable.Drawable;
 import android.view.LayoutInflater;
@@ -12,29 +12,32 @@ import android.view.ViewGroup;
 
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 public class AppAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
     static class App {
-        private final Context context;
         private final ActivityInfo info;
         private final String label;
+        private final Drawable icon;
 
-        public App(Context context, ActivityInfo info) {
-            this.context = context;
+        public App(ActivityInfo info, String label, Drawable icon) {
             this.info = info;
-            this.label = info.loadLabel(context.getPackageManager()).toString();
+            this.label = label;
+            this.icon = icon;
         }
 
         public String getLabel() {
             return label;
         }
 
-        public Drawable loadIcon() {
-            return info.loadIcon(context.getPackageManager());
+        /**
+         * Return a copy of the icon: The same app may be shown by multiple views, e.g. when the
+         * sheet is opened again.
+         */
+        public Drawable newIcon() {
+            final Drawable.ConstantState state = icon.getConstantState();
+            return state != null ? state.newDrawable() : icon;
         }
 
         public String getPackageName() {
@@ -51,26 +54,32 @@ public class AppAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         void onAppSelected(App app);
     }
 
-    private final List<App> apps;
-    private final App store;
+    private List<App> apps = Collections.emptyList();
+    private App store;
     private OnAppSelectedListener listener;
 
-    public AppAdapter(Context context, ActivityInfo[] infoArray, ActivityInfo store) {
-        final List<App> apps = new ArrayList<>(infoArray.length);
-
-        for (ActivityInfo info : infoArray) {
-            apps.add(new App(context, info));
-        }
+    /**
+     * Show the given apps, sorted by label, and the store (or null if there is none).
+     */
+    @SuppressLint("NotifyDataSetChanged") // The list is only set once the apps are loaded.
+    /* package */ void setApps(List<App> apps, App store) {
+        this.apps = apps;
+        this.store = store;
+        notifyDataSetChanged();
+    }
 
-        Collections.sort(apps, new Comparator<App>() {
-            @Override
-            public int compare(App app1, App app2) {
-                return app1.getLabel().compareTo(app2.getLabel());
-            }
-        });
+    /**
+     * Show the given store below the apps.
+     */
+    /* package */ void setStore(App store) {
+        final boolean hadStore = this.store != null;
+        this.store = store;
 
-        this.apps = apps;
-        this.store = store != null ? new App(context, store) : null;
+        if (hadStore) {
+            notifyItemChanged(apps.size());
+        } else {
+            notifyItemInserted(apps.size());
+        }
     }
 
     @Override
@@ -0,0 +1,195 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.open;
+
+import android.content.Context;
+import android.content.pm.ActivityInfo;
+import android.content.pm.PackageManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+import androidx.core.content.pm.PackageInfoCompat;
+
+import org.mozilla.focus.telemetry.InstalledAppsCache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads the labels and icons of the apps shown in the "Open with" sheet.
+ *
+ * Both come from slow PackageManager calls, so they are loaded in the background and kept in a
+ * size-bounded LRU cache. Entries are keyed by package, package version and activity and are
+ * dropped when the package is changed, replaced or removed (as reported by
+ * {@link InstalledAppsCache}). Opening the sheet again for the same apps is served from the cache
+ * without any PackageManager call.
+ */
+public class AppMetadataLoader {
+    @VisibleForTesting static final int MAX_ENTRIES = 64;
+
+    private static final long UNKNOWN_VERSION = -1;
+
+    interface Callback {
+        /**
+         * Called on the main thread with the apps, sorted by label, and the store (or null if there
+         * is none).
+         */
+        void onAppsLoaded(List<AppAdapter.App> apps, @Nullable AppAdapter.App store);
+    }
+
+    interface StoreCallback {
+        /**
+         * Called on the main thread with the store.
+         */
+        void onStoreLoaded(AppAdapter.App store);
+    }
+
+    private final PackageManager packageManager;
+    private final Executor executor;
+    private final Executor mainExecutor;
+
+    private final LruCache<String, AppAdapter.App> cache = new LruCache<>(MAX_ENTRIES);
+
+    // The last known version of every package with cached apps. Looking up the version is a
+    // PackageManager call itself: It is only done in the background and the result is kept until the
+    // package changes.
+    private final Map<String, Long> versionCodes = new ConcurrentHashMap<>();
+
+    public AppMetadataLoader(Context context, InstalledAppsCache installedApps) {
+        this(context, Executors.newSingleThreadExecutor(), new Handler(Looper.getMainLooper())::post);
+
+        installedApps.addPackageChangeListener(this::invalidate);
+    }
+
+    @VisibleForTesting
+    AppMetadataLoader(Context context, Executor executor, Executor mainExecutor) {
+        this.packageManager = context.getApplicationContext().getPackageManager();
+        this.executor = executor;
+        this.mainExecutor = mainExecutor;
+    }
+
+    /**
+     * Return the apps for the given activities, sorted by label, if all of them are cached. Return
+     * null otherwise.
+     *
+     * This only looks at the cache: It can be called on the main thread.
+     */
+    @Nullable
+    @MainThread
+    public List<AppAdapter.App> getCachedApps(@NonNull ActivityInfo[] infoArray) {
+        final List<AppAdapter.App> apps = new ArrayList<>(infoArray.length);
+
+        for (ActivityInfo info : infoArray) {
+            final Long versionCode = versionCodes.get(info.packageName);
+            final AppAdapter.App app = versionCode != null ? cache.get(keyOf(info, versionCode)) : null;
+            if (app == null) {
+                return null;
+            }
+            apps.add(app);
+        }
+
+        sort(apps);
+        return apps;
+    }
+
+    /**
+     * Load the apps for the given activities and the store in the background and pass them to
+     * {@code callback} on the main thread.
+     */
+    public void load(@NonNull final ActivityInfo[] infoArray, @Nullable final ActivityInfo store,
+                     @NonNull final Callback callback) {
+        executor.execute(() -> {
+            final List<AppAdapter.App> apps = new ArrayList<>(infoArray.length);
+            for (ActivityInfo info : infoArray) {
+                apps.add(loadApp(info));
+            }
+            sort(apps);
+
+            final AppAdapter.App storeApp = store != null ? loadApp(store) : null;
+
+            mainExecutor.execute(() -> callback.onAppsLoaded(apps, storeApp));
+        });
+    }
+
+    /**
+     * Load the store in the background and pass it to {@code callback} on the main thread. For
+     * sheets whose apps have been taken from the cache (see {@link #getCachedApps(ActivityInfo[])}).
+     */
+    public void loadStore(@NonNull final ActivityInfo store, @NonNull final StoreCallback callback) {
+        executor.execute(() -> {
+            final AppAdapter.App storeApp = loadApp(store);
+
+            mainExecutor.execute(() -> callback.onStoreLoaded(storeApp));
+        });
+    }
+
+    /**
+     * Drop all cached entries of the given package.
+     */
+    public void invalidate(@NonNull String packageName) {
+        final String prefix = packageName + "@";
+
+        versionCodes.remove(packageName);
+
+        for (String key : cache.snapshot().keySet()) {
+            if (key.startsWith(prefix)) {
+                cache.remove(key);
+            }
+        }
+    }
+
+    @WorkerThread
+    private AppAdapter.App loadApp(ActivityInfo info) {
+        final long versionCode = loadVersionCode(info.packageName);
+        final String key = keyOf(info, versionCode);
+
+        final AppAdapter.App cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final AppAdapter.App app = new AppAdapter.App(
+                info,
+                info.loadLabel(packageManager).toString(),
+                info.loadIcon(packageManager));
+
+        cache.put(key, app);
+        versionCodes.put(info.packageName, versionCode);
+        return app;
+    }
+
+    @WorkerThread
+    private long loadVersionCode(String packageName) {
+        final Long known = versionCodes.get(packageName);
+        if (known != null) {
+            return known;
+        }
+
+        try {
+            return PackageInfoCompat.getLongVersionCode(packageManager.getPackageInfo(packageName, 0));
+        } catch (PackageManager.NameNotFoundException e) {
+            return UNKNOWN_VERSION;
+        }
+    }
+
+    private static String keyOf(ActivityInfo info, long versionCode) {
+        return info.packageName + "@" + versionCode + "/" + info.name;
+    }
+
+    private static void sort(List<AppAdapter.App> apps) {
+        Collections.sort(apps, (app1, app2) -> app1.getLabel().compareTo(app2.getLabel()));
+    }
+}
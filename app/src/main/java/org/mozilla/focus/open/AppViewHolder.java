@@ -27,7 +27,7 @@ public class AppViewHolder extends RecyclerView.ViewHolder {
     public void bind(final AppAdapter.App app, final AppAdapter.OnAppSelectedListener listener) {
         titleView.setText(app.getLabel());
 
-        iconView.setImageDrawable(app.loadIcon());
+        iconView.setImageDrawable(app.newIcon());
 
         itemView.setOnClickListener(createListenerWrapper(app, listener));
     }
@@ -25,7 +25,7 @@ public class InstallBannerViewHolder extends RecyclerView.ViewHolder implements
     }
 
     public void bind(AppAdapter.App store) {
-        iconView.setImageDrawable(store.loadIcon());
+        iconView.setImageDrawable(store.newIcon());
     }
 
     @Override
@@ -32,6 +32,8 @@ import org.mozilla.focus.R;
 import org.mozilla.focus.ext.ContextKt;
 import org.mozilla.focus.telemetry.TelemetryWrapper;
 
+import java.util.List;
+
 public class OpenWithFragment extends AppCompatDialogFragment implements AppAdapter.OnAppSelectedListener {
     public static final String FRAGMENT_TAG = "open_with";
 
@@ -75,13 +77,35 @@ public class OpenWithFragment extends AppCompatDialogFragment implements AppAdap
         final RecyclerView appList = view.findViewById(R.id.apps);
         appList.setLayoutManager(new LinearLayoutManager(wrapper, RecyclerView.VERTICAL, false));
 
-        AppAdapter adapter = new AppAdapter(
-                wrapper,
-                (ActivityInfo[]) getArguments().getParcelableArray(ARGUMENT_KEY_APPS),
-                getArguments().getParcelable(ARGUMENT_STORE));
+        final AppAdapter adapter = new AppAdapter();
         adapter.setOnAppSelectedListener(this);
         appList.setAdapter(adapter);
 
+        final ActivityInfo[] apps = (ActivityInfo[]) getArguments().getParcelableArray(ARGUMENT_KEY_APPS);
+        final ActivityInfo store = getArguments().getParcelable(ARGUMENT_STORE);
+        final AppMetadataLoader loader = ContextKt.getComponents(wrapper).getAppMetadataLoader();
+
+        // Show the apps right away if they have been shown before. Otherwise (and for the store, which
+        // is not needed for the first frame of the sheet) they are loaded in the background.
+        final List<AppAdapter.App> cachedApps = loader.getCachedApps(apps);
+        if (cachedApps != null) {
+            adapter.setApps(cachedApps, null);
+
+            if (store != null) {
+                loader.loadStore(store, loadedStore -> {
+                    if (isAdded()) {
+                        adapter.setStore(loadedStore);
+                    }
+                });
+            }
+        } else {
+            loader.load(apps, store, (loadedApps, loadedStore) -> {
+                if (isAdded()) {
+                    adapter.setApps(loadedApps, loadedStore);
+                }
+            });
+        }
+
         return dialog;
     }
 
@@ -0,0 +1,152 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.perf
+
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Concurrent histogram with log-linear buckets, e.g. for latencies in milliseconds.
+ *
+ * Values below `2^(subBucketBits + 1)` get a bucket each. Above that every power of two is split into
+ * `2^subBucketBits` buckets of equal width, so the relative error of a bucket is at most
+ * `2^-subBucketBits` (12.5% with the default). Values of `2^maxExponent` and above share the last
+ * bucket, negative values are counted as 0.
+ *
+ * Recording is thread-safe, lock-free and does not allocate. Reading takes a [Snapshot].
+ */
+class LatencyHistogram(
+    private val subBucketBits: Int = DEFAULT_SUB_BUCKET_BITS,
+    private val maxExponent: Int = DEFAULT_MAX_EXPONENT,
+) {
+    private val subBucketCount = 1 shl subBucketBits
+    private val linearLimit = 2L * subBucketCount
+
+    init {
+        require(subBucketBits in 0..MAX_SUB_BUCKET_BITS) { "Invalid number of sub-bucket bits: $subBucketBits" }
+        require(maxExponent in subBucketBits + 1 until Long.SIZE_BITS - 1) { "Invalid maximum exponent: $maxExponent" }
+    }
+
+    /**
+     * The number of buckets.
+     */
+    val bucketCount = (linearLimit + (maxExponent - subBucketBits - 1) * subBucketCount).toInt()
+
+    private val counts = AtomicLongArray(bucketCount)
+
+    /**
+     * Record one value.
+     */
+    fun record(value: Long) {
+        counts.incrementAndGet(bucketOf(value))
+    }
+
+    /**
+     * Return the counts recorded so far.
+     */
+    fun snapshot(): Snapshot = Snapshot(LongArray(bucketCount) { counts.get(it) })
+
+    /**
+     * Return the counts recorded so far and reset them. Every value recorded concurrently is part of
+     * either this snapshot or the next one.
+     */
+    fun snapshotAndReset(): Snapshot = Snapshot(LongArray(bucketCount) { counts.getAndSet(it, 0L) })
+
+    /**
+     * Return the index of the bucket counting [value].
+     */
+    fun bucketOf(value: Long): Int {
+        if (value < linearLimit) {
+            return value.coerceAtLeast(0L).toInt()
+        }
+
+        val exponent = Long.SIZE_BITS - 1 - java.lang.Long.numberOfLeadingZeros(value)
+        if (exponent >= maxExponent) {
+            return bucketCount - 1
+        }
+
+        val subBucket = (value ushr (exponent - subBucketBits)).toInt() - subBucketCount
+        return linearLimit.toInt() + (exponent - subBucketBits - 1) * subBucketCount + subBucket
+    }
+
+    /**
+     * Return the smallest value counted by the bucket with the given [index].
+     */
+    fun lowerBoundOf(index: Int): Long {
+        if (index < linearLimit) {
+            return index.toLong()
+        }
+
+        val offset = index - linearLimit.toInt()
+        val exponent = offset / subBucketCount + subBucketBits + 1
+        val subBucket = offset % subBucketCount
+        return (1L shl exponent) + (subBucket.toLong() shl (exponent - subBucketBits))
+    }
+
+    /**
+     * The counts of a histogram at one point in time. Snapshots of histograms with the same bucket
+     * layout can be merged, e.g. to combine the histograms of multiple sessions.
+     */
+    inner class Snapshot internal constructor(private val counts: LongArray) {
+        /**
+         * The number of recorded values.
+         */
+        val count: Long = counts.sum()
+
+        /**
+         * Return a snapshot with the counts of this snapshot and [other] added up.
+         */
+        fun merge(other: Snapshot): Snapshot {
+            require(other.counts.size == counts.size) { "Histograms have different bucket layouts" }
+            return Snapshot(LongArray(counts.size) { counts[it] + other.counts[it] })
+        }
+
+        /**
+         * Return the lower bound of the bucket containing the given [percentile] (0 to 100) of the
+         * recorded values, or 0 if there are none.
+         */
+        fun percentile(percentile: Double): Long {
+            require(percentile in 0.0..PERCENT) { "Invalid percentile: $percentile" }
+
+            if (count == 0L) {
+                return 0L
+            }
+
+            val rank = Math.ceil(count * percentile / PERCENT).toLong().coerceAtLeast(1L)
+            var seen = 0L
+            for (index in counts.indices) {
+                seen += counts[index]
+                if (seen >= rank) {
+                    return lowerBoundOf(index)
+                }
+            }
+            return lowerBoundOf(counts.size - 1)
+        }
+
+        /**
+         * Call [action] with the lower bound and the count of every bucket that is not empty, in
+         * increasing order.
+         */
+        inline fun forEachNonEmptyBucket(action: (lowerBound: Long, count: Long) -> Unit) {
+            for (index in 0 until bucketCount) {
+                val count = countAt(index)
+                if (count > 0L) {
+                    action(lowerBoundOf(index), count)
+                }
+            }
+        }
+
+        /**
+         * Return the count of the bucket with the given [index].
+         */
+        fun countAt(index: Int): Long = counts[index]
+    }
+
+    private companion object {
+        const val DEFAULT_SUB_BUCKET_BITS = 3
+        const val DEFAULT_MAX_EXPONENT = 20
+        const val MAX_SUB_BUCKET_BITS = 10
+        const val PERCENT = 100.0
+    }
+}
@@ -0,0 +1,275 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.perf
+
+import android.os.Handler
+import android.os.Looper
+import androidx.annotation.MainThread
+import mozilla.components.support.base.log.logger.Logger
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Runs the initialization steps of the application as a dependency graph.
+ *
+ * Every task declares the tasks it depends on, the thread it has to run on and whether it has to be
+ * finished before the first frame can be drawn. [start] runs the required main thread tasks right
+ * away (in the order they were added, as far as their dependencies allow) while the background
+ * tasks run in parallel on a small thread pool. It returns once all required tasks are finished.
+ * Tasks that are not required for the first frame run afterwards: On the main thread they are posted
+ * to the main looper, in the background they run as soon as their dependencies are finished.
+ */
+class StartupTaskScheduler(
+    private val backgroundExecutor: Executor = createBackgroundExecutor(),
+    private val mainExecutor: Executor = createMainExecutor(),
+) {
+    enum class ThreadAffinity {
+        MAIN,
+        BACKGROUND,
+    }
+
+    /**
+     * How long a task took and on which thread it ran. [startMillis] is relative to [start].
+     */
+    data class TaskTiming(
+        val name: String,
+        val threadName: String,
+        val startMillis: Long,
+        val durationMillis: Long,
+    )
+
+    private val logger = Logger("StartupTaskScheduler")
+
+    private val tasks = LinkedHashMap<String, Task>()
+    private val timings = CopyOnWriteArrayList<TaskTiming>()
+
+    private var started = false
+    private var startNanos = 0L
+
+    /**
+     * The time it took [start] to finish all tasks required for the first frame.
+     */
+    var firstFrameTasksMillis: Long = 0L
+        private set
+
+    /**
+     * The time the main thread spent in [start] waiting for background tasks.
+     */
+    var mainThreadWaitMillis: Long = 0L
+        private set
+
+    /**
+     * The names of all tasks added so far.
+     */
+    val taskNames: Set<String>
+        get() = tasks.keys.toSet()
+
+    /**
+     * Add a task with the given (unique) [name]. All tasks have to be added before calling [start].
+     */
+    fun add(
+        name: String,
+        thread: ThreadAffinity = ThreadAffinity.MAIN,
+        requiredForFirstFrame: Boolean = true,
+        dependsOn: Set<String> = emptySet(),
+        block: () -> Unit,
+    ) {
+        check(!started) { "Can't add task $name after the scheduler has been started" }
+        require(!tasks.containsKey(name)) { "Duplicate task: $name" }
+
+        tasks[name] = Task(name, thread, requiredForFirstFrame, dependsOn, block)
+    }
+
+    /**
+     * Run all tasks and return once the tasks required for the first frame are finished. If a
+     * required task fails then its exception is rethrown wrapped in an [IllegalStateException].
+     * Deferred tasks that fail are only logged. Tasks that depend on a failed task fail as well,
+     * without running.
+     */
+    @MainThread
+    fun start() {
+        check(!started) { "Scheduler has already been started" }
+        started = true
+
+        val orderedTasks = sortTasks()
+
+        startNanos = System.nanoTime()
+
+        orderedTasks
+            .filter { it.dependencies.isEmpty() }
+            .forEach { dispatch(it) }
+
+        var waitNanos = 0L
+
+        orderedTasks
+            .filter { it.thread == ThreadAffinity.MAIN && it.required }
+            .forEach { task ->
+                val waitStart = System.nanoTime()
+                task.dependencies.forEach { await(it) }
+                waitNanos += System.nanoTime() - waitStart
+
+                run(task)
+                await(task)
+            }
+
+        val waitStart = System.nanoTime()
+        orderedTasks
+            .filter { it.required }
+            .forEach { await(it) }
+        waitNanos += System.nanoTime() - waitStart
+
+        firstFrameTasksMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)
+        mainThreadWaitMillis = TimeUnit.NANOSECONDS.toMillis(waitNanos)
+
+        logger.info(
+            "Startup tasks required for the first frame finished after ${firstFrameTasksMillis}ms " +
+                "(waited ${mainThreadWaitMillis}ms for background tasks)",
+        )
+    }
+
+    /**
+     * Return the timings of all tasks that have finished so far, in the order they were started.
+     */
+    fun getTimings(): List<TaskTiming> = timings.sortedBy { it.startMillis }
+
+    /**
+     * Resolve the dependencies of all tasks and return them in a stable topological order.
+     */
+    private fun sortTasks(): List<Task> {
+        tasks.values.forEach { task ->
+            task.dependencies = task.dependsOn.map { name ->
+                val dependency = requireNotNull(tasks[name]) { "Task ${task.name} depends on unknown task $name" }
+                require(dependency.required || !task.required) {
+                    "Task ${task.name} is required for the first frame but depends on deferred task $name"
+                }
+                dependency.dependents.add(task)
+                dependency
+            }
+            task.remainingDependencies.set(task.dependencies.size)
+        }
+
+        val sorted = ArrayList<Task>(tasks.size)
+        val remaining = tasks.values.toMutableList()
+
+        while (remaining.isNotEmpty()) {
+            val next = remaining.firstOrNull { task -> task.dependencies.all { it in sorted } }
+            checkNotNull(next) { "Dependency cycle between tasks: ${remaining.joinToString { it.name }}" }
+
+            sorted.add(next)
+            remaining.remove(next)
+        }
+
+        return sorted
+    }
+
+    /**
+     * Hand a task whose dependencies are all finished to its thread. Required main thread tasks are
+     * run by [start] itself.
+     */
+    private fun dispatch(task: Task) {
+        when {
+            task.thread == ThreadAffinity.BACKGROUND -> backgroundExecutor.execute { run(task) }
+            !task.required -> mainExecutor.execute { run(task) }
+        }
+    }
+
+    /**
+     * Run the task on the current thread and record its error, if any: Exceptions are thrown by
+     * [await] on the thread waiting for the task, never on a pool thread.
+     */
+    private fun run(task: Task) {
+        val start = System.nanoTime()
+
+        val failedDependency = task.dependencies.firstOrNull { it.error != null }
+        if (failedDependency != null) {
+            task.error = IllegalStateException("Dependency ${failedDependency.name} failed", failedDependency.error)
+        } else {
+            try {
+                task.block()
+            } catch (@Suppress("TooGenericExceptionCaught") e: Throwable) {
+                task.error = e
+            }
+        }
+
+        val timing = TaskTiming(
+            task.name,
+            Thread.currentThread().name,
+            TimeUnit.NANOSECONDS.toMillis(start - startNanos),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+        )
+        timings.add(timing)
+        task.finished.countDown()
+
+        logger.debug("Startup task ${timing.name} took ${timing.durationMillis}ms on ${timing.threadName}")
+
+        task.error?.let { error ->
+            if (!task.required) {
+                logger.error("Deferred startup task ${task.name} failed", error)
+            }
+        }
+
+        // Dependents of a failed task are dispatched as well, so that they fail in turn.
+        task.dependents
+            .filter { it.remainingDependencies.decrementAndGet() == 0 }
+            .forEach { dispatch(it) }
+    }
+
+    private fun await(task: Task) {
+        task.finished.await()
+
+        task.error?.let { error ->
+            throw IllegalStateException("Startup task ${task.name} failed", error)
+        }
+    }
+
+    private class Task(
+        val name: String,
+        val thread: ThreadAffinity,
+        val required: Boolean,
+        val dependsOn: Set<String>,
+        val block: () -> Unit,
+    ) {
+        var dependencies: List<Task> = emptyList()
+        val dependents = mutableListOf<Task>()
+        val remainingDependencies = AtomicInteger()
+        val finished = CountDownLatch(1)
+
+        @Volatile
+        var error: Throwable? = null
+    }
+
+    private companion object {
+        private const val BACKGROUND_THREADS = 3
+        private const val KEEP_ALIVE_SECONDS = 5L
+
+        fun createBackgroundExecutor(): Executor {
+            val threadCount = AtomicInteger()
+            val threadFactory = ThreadFactory { runnable ->
+                Thread(runnable, "StartupTask-${threadCount.incrementAndGet()}")
+            }
+
+            // The threads are only needed during startup: Let them go once they are idle.
+            return ThreadPoolExecutor(
+                BACKGROUND_THREADS,
+                BACKGROUND_THREADS,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                LinkedBlockingQueue(),
+                threadFactory,
+            ).apply { allowCoreThreadTimeOut(true) }
+        }
+
+        fun createMainExecutor(): Executor {
+            val handler = Handler(Looper.getMainLooper())
+            return Executor { handler.post(it) }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.perf
+
+import android.os.Looper
+import mozilla.components.support.base.Component
+import mozilla.components.support.base.facts.Action
+import mozilla.components.support.base.facts.Fact
+import mozilla.components.support.base.facts.collect
+import org.mozilla.focus.telemetry.ProfilerMarkerFactProcessor
+import java.io.PrintWriter
+import java.io.StringWriter
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+import kotlin.properties.PropertyDelegateProvider
+
+/**
+ * Traces the lazy initialization of components during startup.
+ *
+ * Properties delegated to [traced] record how long their initializer took (with and without the
+ * components it initialized in turn), the thread it ran on and the code that accessed the property
+ * first. Once [startEmittingMarkers] is called every trace is also added as a profiler marker via
+ * [ProfilerMarkerFactProcessor].
+ *
+ * Finding the code that accessed a property requires capturing a stack trace. This only happens if
+ * [recordOrigins] is set, e.g. in debug builds.
+ */
+class StartupTracer(
+    private val recordOrigins: Boolean = false,
+    private val collectFact: (Fact) -> Unit = { it.collect() },
+) {
+    /**
+     * The initialization of one component. [startMillis] is relative to the creation of the tracer,
+     * [selfMillis] excludes the time spent initializing other traced components. [parent] is the
+     * component whose initializer accessed this one, [origin] the first stack frame outside of the
+     * traced components that triggered the initialization (null unless origins are recorded).
+     */
+    data class Trace(
+        val name: String,
+        val threadName: String,
+        val isMainThread: Boolean,
+        val startMillis: Long,
+        val durationMillis: Long,
+        val selfMillis: Long,
+        val parent: String?,
+        val origin: String?,
+    )
+
+    private class Frame(val name: String) {
+        var childNanos = 0L
+    }
+
+    private class Marker(val trace: Trace, val durationNanos: Long, val endNanos: Long)
+
+    private val createdNanos = System.nanoTime()
+    private val traces = CopyOnWriteArrayList<Trace>()
+    private val pendingMarkers = ConcurrentLinkedQueue<Marker>()
+
+    @Volatile
+    private var emitMarkers = false
+
+    private val frames = object : ThreadLocal<ArrayDeque<Frame>>() {
+        override fun initialValue() = ArrayDeque<Frame>()
+    }
+
+    /**
+     * Return a delegate provider for a lazy property whose initialization is traced with the name of
+     * the class and the property, e.g. "Components.engine".
+     */
+    fun <T> traced(initializer: () -> T) = PropertyDelegateProvider<Any, Lazy<T>> { thisRef, property ->
+        TracedLazy("${thisRef.javaClass.simpleName}.${property.name}", initializer)
+    }
+
+    /**
+     * Run [block] and record how long it took as [name].
+     */
+    fun <T> trace(name: String, block: () -> T): T {
+        val frames = frames.get()!!
+        val parent = frames.lastOrNull()
+        val origin = if (recordOrigins && parent == null) findOrigin() else null
+
+        val frame = Frame(name)
+        frames.addLast(frame)
+
+        val start = System.nanoTime()
+        try {
+            return block()
+        } finally {
+            val end = System.nanoTime()
+            val duration = end - start
+
+            frames.removeLast()
+            parent?.let { it.childNanos += duration }
+
+            val trace = Trace(
+                name,
+                Thread.currentThread().name,
+                Looper.getMainLooper()?.thread == Thread.currentThread(),
+                TimeUnit.NANOSECONDS.toMillis(start - createdNanos),
+                TimeUnit.NANOSECONDS.toMillis(duration),
+                TimeUnit.NANOSECONDS.toMillis(duration - frame.childNanos),
+                parent?.name,
+                origin,
+            )
+
+            traces.add(trace)
+            pendingMarkers.add(Marker(trace, duration, end))
+        }
+    }
+
+    /**
+     * Emit all traces recorded so far, and every trace recorded from now on, as profiler markers.
+     * Must only be called once the [ProfilerMarkerFactProcessor] is registered.
+     */
+    fun startEmittingMarkers() {
+        emitMarkers = true
+        flushMarkers()
+    }
+
+    /**
+     * Return all traces, in the order the components started to initialize.
+     */
+    fun getTraces(): List<Trace> = traces.sortedBy { it.startMillis }
+
+    /**
+     * Write a human-readable startup report: One line per component, nested components indented
+     * below the component that initialized them.
+     */
+    fun dump(writer: PrintWriter) {
+        val traces = getTraces()
+        val byParent = traces.groupBy { it.parent }
+
+        fun write(trace: Trace, depth: Int) {
+            writer.println(
+                "  ".repeat(depth) +
+                    "${trace.name}: ${trace.durationMillis}ms (self ${trace.selfMillis}ms) " +
+                    "at +${trace.startMillis}ms on ${trace.threadName}" +
+                    (trace.origin?.let { " from $it" } ?: ""),
+            )
+            byParent[trace.name].orEmpty().forEach { write(it, depth + 1) }
+        }
+
+        writer.println("Startup trace (${traces.size} components)")
+        byParent[null].orEmpty().forEach { write(it, 0) }
+        writer.flush()
+    }
+
+    /**
+     * Return the report written by [dump] as a string.
+     */
+    fun dump(): String {
+        val writer = StringWriter()
+        dump(PrintWriter(writer))
+        return writer.toString()
+    }
+
+    /**
+     * Emit the pending markers. Markers are only emitted once the outermost traced initializer of
+     * this thread has finished: A fact processor may access a component that is still initializing.
+     */
+    private fun flushMarkers() {
+        if (!emitMarkers || frames.get()!!.isNotEmpty()) {
+            return
+        }
+
+        while (true) {
+            val marker = pendingMarkers.poll() ?: break
+            val trace = marker.trace
+
+            collectFact(
+                Fact(
+                    Component.SUPPORT_BASE,
+                    Action.IMPLEMENTATION_DETAIL,
+                    trace.name,
+                    metadata = mapOf(
+                        ProfilerMarkerFactProcessor.KEY_DURATION_MILLIS to marker.durationNanos / NANOS_PER_MILLI,
+                        ProfilerMarkerFactProcessor.KEY_END_MILLIS_AGO to
+                            (System.nanoTime() - marker.endNanos) / NANOS_PER_MILLI,
+                        ProfilerMarkerFactProcessor.KEY_TEXT to
+                            "${trace.threadName}${trace.origin?.let { ", $it" } ?: ""}",
+                    ),
+                ),
+            )
+        }
+    }
+
+    private fun findOrigin(): String? {
+        return Throwable().stackTrace
+            .firstOrNull { element ->
+                element.className != StartupTracer::class.java.name &&
+                    !element.className.startsWith(StartupTracer::class.java.name + "$") &&
+                    !element.className.startsWith("kotlin.") &&
+                    !element.className.startsWith("org.mozilla.focus.Components")
+            }
+            ?.let { "${it.className}.${it.methodName}:${it.lineNumber}" }
+    }
+
+    private inner class TracedLazy<T>(name: String, initializer: () -> T) : Lazy<T> {
+        private val delegate = lazy { trace(name, initializer) }
+
+        override val value: T
+            get() {
+                if (delegate.isInitialized()) {
+                    return delegate.value
+                }
+
+                val value = delegate.value
+                flushMarkers()
+                return value
+            }
+
+        override fun isInitialized() = delegate.isInitialized()
+    }
+
+    private companion object {
+        private const val NANOS_PER_MILLI = 1_000_000.0
+    }
+}
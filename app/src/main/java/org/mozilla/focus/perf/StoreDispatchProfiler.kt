@@ -0,0 +1,334 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.perf
+
+import android.os.Debug
+import mozilla.components.lib.state.Action
+import mozilla.components.lib.state.Middleware
+import mozilla.components.lib.state.MiddlewareContext
+import mozilla.components.lib.state.State
+import java.io.PrintWriter
+import java.io.StringWriter
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Opt-in profiler for the middleware chain of a store.
+ *
+ * [instrument] wraps every middleware of a store. While the profiler is [enabled] every wrapper
+ * measures the time spent in its middleware (excluding the middlewares after it) for every action
+ * and records it in a latency histogram per middleware and action type. The time spent in the
+ * reducer is recorded as [REDUCER]. The most recent samples are kept in a ring buffer.
+ *
+ * While the profiler is disabled the wrappers only pass the action on.
+ */
+class StoreDispatchProfiler(
+    enabled: Boolean = false,
+    countAllocations: Boolean = false,
+) {
+    /**
+     * Whether dispatched actions are measured.
+     */
+    @Volatile
+    var enabled: Boolean = enabled
+
+    /**
+     * Whether the number of objects allocated by every middleware is counted as well. Counting
+     * allocations slows down the whole runtime: Only enable it while looking for allocations.
+     */
+    @Volatile
+    var countAllocations: Boolean = false
+        set(value) {
+            if (field == value) {
+                return
+            }
+            field = value
+            @Suppress("DEPRECATION")
+            if (value) Debug.startAllocCounting() else Debug.stopAllocCounting()
+        }
+
+    private val stages = ConcurrentHashMap<String, Stage>()
+    private val recentSamples = RingBuffer(RING_BUFFER_SIZE)
+
+    init {
+        this.countAllocations = countAllocations
+    }
+
+    /**
+     * Wrap the given [middleware] and add a probe for the reducer after the last one.
+     */
+    fun <S : State, A : Action> instrument(middleware: List<Middleware<S, A>>): List<Middleware<S, A>> {
+        return middleware.map { ProfilingMiddleware(stage(stageName(it)), it) } + ReducerProbe(stage(REDUCER))
+    }
+
+    /**
+     * Forget all recorded samples.
+     */
+    fun reset() {
+        stages.values.forEach { it.histograms.clear() }
+        recentSamples.clear()
+    }
+
+    /**
+     * Return the recorded histograms, slowest middleware and action type (by total time) first.
+     */
+    fun getHistograms(): List<Histogram> {
+        return stages.values
+            .flatMap { it.histograms.values }
+            .sortedByDescending { it.totalNanos.get() }
+    }
+
+    /**
+     * Return the most recent samples, oldest first.
+     */
+    fun getRecentSamples(): List<Sample> = recentSamples.snapshot()
+
+    /**
+     * Write a human-readable report of all histograms and the most recent samples.
+     */
+    fun dump(writer: PrintWriter, recentSampleCount: Int = DEFAULT_RECENT_SAMPLE_COUNT) {
+        writer.println("Store dispatch profile (times in microseconds)")
+        writer.println("middleware / action: count, mean, p50, p90, p99, max, allocations")
+
+        getHistograms().forEach { histogram ->
+            writer.println(
+                "${histogram.stage} / ${histogram.actionType}: " +
+                    "${histogram.count.get()}, " +
+                    "${histogram.meanMicros()}, " +
+                    "${histogram.percentileMicros(PERCENTILE_50)}, " +
+                    "${histogram.percentileMicros(PERCENTILE_90)}, " +
+                    "${histogram.percentileMicros(PERCENTILE_99)}, " +
+                    "${TimeUnit.NANOSECONDS.toMicros(histogram.maxNanos.get())}, " +
+                    "${histogram.allocations.get()}",
+            )
+        }
+
+        writer.println()
+        writer.println("Most recent samples:")
+
+        getRecentSamples().takeLast(recentSampleCount).forEach { sample ->
+            writer.println(
+                "${sample.stage} / ${sample.actionType}: " +
+                    "${TimeUnit.NANOSECONDS.toMicros(sample.nanos)}us, ${sample.allocations} allocations",
+            )
+        }
+
+        writer.flush()
+    }
+
+    /**
+     * Return the report written by [dump] as a string.
+     */
+    fun dump(): String {
+        val writer = StringWriter()
+        dump(PrintWriter(writer))
+        return writer.toString()
+    }
+
+    private fun stage(name: String): Stage {
+        return stages[name] ?: Stage(name).let { stages.putIfAbsent(name, it) ?: it }
+    }
+
+    // Anonymous middleware has no simple name.
+    private fun stageName(middleware: Any): String {
+        return middleware.javaClass.simpleName.ifEmpty { middleware.javaClass.name }
+    }
+
+    private fun record(stage: Stage, action: Any, nanos: Long, allocations: Long) {
+        val actionType = action.javaClass
+        val histogram = stage.histograms[actionType]
+            ?: Histogram(stage.name, actionType.simpleName.ifEmpty { actionType.name }).let {
+                stage.histograms.putIfAbsent(actionType, it) ?: it
+            }
+
+        histogram.record(nanos, allocations)
+        recentSamples.add(histogram, nanos, allocations)
+    }
+
+    @Suppress("DEPRECATION")
+    private fun allocationCount(): Long = if (countAllocations) Debug.getThreadAllocCount().toLong() else 0L
+
+    /**
+     * A middleware (or the reducer) and the histograms of the action types it has processed.
+     */
+    private class Stage(val name: String) {
+        val histograms = ConcurrentHashMap<Class<*>, Histogram>()
+    }
+
+    /**
+     * Latency histogram of one middleware and action type. Bucket `i` counts samples that took
+     * less than `2^i` microseconds (and at least `2^(i-1)`).
+     */
+    class Histogram internal constructor(
+        val stage: String,
+        val actionType: String,
+    ) {
+        val count = AtomicLong()
+        val totalNanos = AtomicLong()
+        val maxNanos = AtomicLong()
+        val allocations = AtomicLong()
+        val buckets = AtomicLongArray(BUCKET_COUNT)
+
+        internal fun record(nanos: Long, allocations: Long) {
+            count.incrementAndGet()
+            totalNanos.addAndGet(nanos)
+            this.allocations.addAndGet(allocations)
+            buckets.incrementAndGet(bucketOf(nanos))
+
+            var max = maxNanos.get()
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get()
+            }
+        }
+
+        fun meanMicros(): Long {
+            val count = count.get()
+            return if (count == 0L) 0 else TimeUnit.NANOSECONDS.toMicros(totalNanos.get() / count)
+        }
+
+        /**
+         * Return the upper bound (in microseconds) of the bucket containing the given percentile.
+         */
+        fun percentileMicros(percentile: Int): Long {
+            val count = count.get()
+            if (count == 0L) {
+                return 0
+            }
+
+            val rank = (count * percentile + PERCENT - 1) / PERCENT
+            var seen = 0L
+            for (bucket in 0 until BUCKET_COUNT) {
+                seen += buckets.get(bucket)
+                if (seen >= rank) {
+                    return 1L shl bucket
+                }
+            }
+            return 1L shl (BUCKET_COUNT - 1)
+        }
+
+        private fun bucketOf(nanos: Long): Int {
+            val micros = TimeUnit.NANOSECONDS.toMicros(nanos)
+            val bucket = Long.SIZE_BITS - java.lang.Long.numberOfLeadingZeros(micros)
+            return bucket.coerceAtMost(BUCKET_COUNT - 1)
+        }
+    }
+
+    data class Sample(
+        val stage: String,
+        val actionType: String,
+        val nanos: Long,
+        val allocations: Long,
+    )
+
+    /**
+     * Fixed-size buffer (a power of two) of the most recent samples. Writers never block: Concurrent writers claim
+     * different slots and a reader may see a slot that is being overwritten.
+     */
+    private class RingBuffer(private val size: Int) {
+        private val mask = size - 1
+        private val position = AtomicLong()
+        private val histograms = arrayOfNulls<Histogram>(size)
+        private val nanos = LongArray(size)
+        private val allocations = LongArray(size)
+
+        fun add(histogram: Histogram, nanos: Long, allocations: Long) {
+            val index = (position.getAndIncrement() and mask.toLong()).toInt()
+            this.nanos[index] = nanos
+            this.allocations[index] = allocations
+            histograms[index] = histogram
+        }
+
+        fun snapshot(): List<Sample> {
+            val end = position.get()
+            val start = maxOf(0L, end - size)
+
+            return (start until end).mapNotNull { position ->
+                val index = (position and mask.toLong()).toInt()
+                histograms[index]?.let { histogram ->
+                    Sample(histogram.stage, histogram.actionType, nanos[index], allocations[index])
+                }
+            }
+        }
+
+        fun clear() {
+            histograms.fill(null)
+            position.set(0L)
+        }
+    }
+
+    /**
+     * Measures the time spent in [middleware], not counting the time spent in the middlewares
+     * (and the reducer) it passes the action on to.
+     */
+    private inner class ProfilingMiddleware<S : State, A : Action>(
+        private val stage: Stage,
+        private val middleware: Middleware<S, A>,
+    ) : Middleware<S, A> {
+        override fun invoke(context: MiddlewareContext<S, A>, next: (A) -> Unit, action: A) {
+            if (!enabled) {
+                middleware(context, next, action)
+                return
+            }
+
+            var downstreamNanos = 0L
+            var downstreamAllocations = 0L
+
+            val startAllocations = allocationCount()
+            val start = System.nanoTime()
+
+            middleware(
+                context,
+                { nextAction ->
+                    val nextStart = System.nanoTime()
+                    val nextStartAllocations = allocationCount()
+                    next(nextAction)
+                    downstreamAllocations += allocationCount() - nextStartAllocations
+                    downstreamNanos += System.nanoTime() - nextStart
+                },
+                action,
+            )
+
+            val nanos = System.nanoTime() - start - downstreamNanos
+            val allocations = allocationCount() - startAllocations - downstreamAllocations
+
+            record(stage, action, nanos, allocations)
+        }
+    }
+
+    /**
+     * The last middleware of the chain: Everything it passes the action on to is the reducer.
+     */
+    private inner class ReducerProbe<S : State, A : Action>(
+        private val stage: Stage,
+    ) : Middleware<S, A> {
+        override fun invoke(context: MiddlewareContext<S, A>, next: (A) -> Unit, action: A) {
+            if (!enabled) {
+                next(action)
+                return
+            }
+
+            val startAllocations = allocationCount()
+            val start = System.nanoTime()
+
+            next(action)
+
+            record(stage, action, System.nanoTime() - start, allocationCount() - startAllocations)
+        }
+    }
+
+    companion object {
+        const val REDUCER = "Reducer"
+
+        private const val RING_BUFFER_SIZE = 1024
+        private const val DEFAULT_RECENT_SAMPLE_COUNT = 50
+        private const val BUCKET_COUNT = 24
+        private const val PERCENT = 100
+        private const val PERCENTILE_50 = 50
+        private const val PERCENTILE_90 = 90
+        private const val PERCENTILE_99 = 99
+    }
+}
@@ -0,0 +1,119 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.perf
+
+import java.util.concurrent.atomic.AtomicIntegerArray
+
+/**
+ * Probabilistic counter of distinct values (HyperLogLog) with a fixed size.
+ *
+ * Values are added as 64-bit hashes, see [hash]. With the default precision the counter takes 1024
+ * registers and the estimate is typically within 3% of the real number; small numbers are exact in
+ * practice. Adding is thread-safe, lock-free and does not allocate.
+ */
+class UniqueCounter(
+    private val precision: Int = DEFAULT_PRECISION,
+) {
+    init {
+        require(precision in MIN_PRECISION..MAX_PRECISION) { "Invalid precision: $precision" }
+    }
+
+    private val registerCount = 1 shl precision
+    private val registers = AtomicIntegerArray(registerCount)
+
+    /**
+     * Add a value by its [hash]. The hash must be well distributed over all 64 bits.
+     */
+    fun add(hash: Long) {
+        val index = (hash ushr (Long.SIZE_BITS - precision)).toInt()
+        val rank = java.lang.Long.numberOfLeadingZeros((hash shl precision) or (1L shl (precision - 1))) + 1
+
+        var current = registers.get(index)
+        while (rank > current && !registers.compareAndSet(index, current, rank)) {
+            current = registers.get(index)
+        }
+    }
+
+    /**
+     * Add all values of [other], which must have the same precision.
+     */
+    fun merge(other: UniqueCounter) {
+        require(other.precision == precision) { "Counters have different precisions" }
+
+        for (index in 0 until registerCount) {
+            val rank = other.registers.get(index)
+            var current = registers.get(index)
+            while (rank > current && !registers.compareAndSet(index, current, rank)) {
+                current = registers.get(index)
+            }
+        }
+    }
+
+    /**
+     * Return the estimated number of distinct values added.
+     */
+    fun estimate(): Long {
+        var sum = 0.0
+        var emptyRegisters = 0
+
+        for (index in 0 until registerCount) {
+            val rank = registers.get(index)
+            sum += 1.0 / (1L shl rank)
+            if (rank == 0) {
+                emptyRegisters++
+            }
+        }
+
+        val alpha = ALPHA / (1 + ALPHA_CORRECTION / registerCount)
+        val estimate = alpha * registerCount * registerCount / sum
+
+        // Linear counting is more accurate while many registers are still empty.
+        return if (estimate <= SMALL_RANGE_FACTOR * registerCount && emptyRegisters > 0) {
+            Math.round(registerCount * Math.log(registerCount.toDouble() / emptyRegisters))
+        } else {
+            Math.round(estimate)
+        }
+    }
+
+    /**
+     * Forget all values.
+     */
+    fun reset() {
+        for (index in 0 until registerCount) {
+            registers.set(index, 0)
+        }
+    }
+
+    companion object {
+        private const val DEFAULT_PRECISION = 10
+        private const val MIN_PRECISION = 4
+        private const val MAX_PRECISION = 16
+        private const val ALPHA = 0.7213
+        private const val ALPHA_CORRECTION = 1.079
+        private const val SMALL_RANGE_FACTOR = 2.5
+
+        private const val FNV_OFFSET_BASIS = -0x340d631b7bdddcdbL
+        private const val FNV_PRIME = 0x100000001b3L
+        private const val MIX_1 = -0xae502812aa7333L
+        private const val MIX_2 = -0x3b314601e57a13adL
+        private const val MIX_SHIFT = 33
+
+        /**
+         * Return a 64-bit hash of the characters of [value] from [start] (inclusive) to [end]
+         * (exclusive), ignoring case. Hashing a range avoids creating a substring.
+         */
+        fun hash(value: CharSequence, start: Int = 0, end: Int = value.length): Long {
+            var hash = FNV_OFFSET_BASIS
+            for (index in start until end) {
+                hash = (hash xor Character.toLowerCase(value[index]).code.toLong()) * FNV_PRIME
+            }
+
+            // FNV mixes the low bits badly: Finish with the MurmurHash3 finalizer.
+            hash = (hash xor (hash ushr MIX_SHIFT)) * MIX_1
+            hash = (hash xor (hash ushr MIX_SHIFT)) * MIX_2
+            return hash xor (hash ushr MIX_SHIFT)
+        }
+    }
+}
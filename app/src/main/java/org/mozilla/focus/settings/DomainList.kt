@@ -0,0 +1,142 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.settings
+
+import androidx.annotation.MainThread
+import androidx.recyclerview.widget.DiffUtil
+import androidx.recyclerview.widget.ListUpdateCallback
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import org.mozilla.focus.autocomplete.AutocompleteDomainFormatter
+import java.util.Collections
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * The items of a list of domains in the settings (e.g. tracking protection exceptions or custom
+ * autocomplete domains), shared by the adapters of these lists.
+ *
+ * New values are turned into items (with their display text and a stable ID) and diffed against
+ * the current items in the background. Only the differences are dispatched to [updateCallback]. The
+ * first load of a long list is dispatched in two steps: the first page right away, then the rest.
+ *
+ * Must only be used from the main thread. [scope] should run on the main thread.
+ */
+class DomainList<T : Any>(
+    private val scope: CoroutineScope,
+    private val updateCallback: ListUpdateCallback,
+    private val urlOf: (T) -> String,
+    private val pageSize: Int = PAGE_SIZE,
+    private val backgroundDispatcher: CoroutineDispatcher = Dispatchers.Default,
+) {
+    /**
+     * A domain and the text shown for it. The [id] of a URL never changes.
+     */
+    data class Item<T>(
+        val value: T,
+        val url: String,
+        val displayText: String,
+        val id: Long,
+    )
+
+    private val ids = ConcurrentHashMap<String, Long>()
+    private val nextId = AtomicLong()
+
+    private var generation = 0
+
+    /**
+     * The items that have been dispatched to [updateCallback].
+     */
+    var items: List<Item<T>> = emptyList()
+        private set
+
+    val size: Int
+        get() = items.size
+
+    operator fun get(position: Int): Item<T> = items[position]
+
+    /**
+     * Replace the list with [values]. [onCommitted] is called once all of them have been dispatched. A
+     * newer call to [submit] supersedes this one.
+     */
+    @MainThread
+    fun submit(values: List<T>, onCommitted: (() -> Unit)? = null): Job {
+        val generation = ++generation
+
+        return scope.launch {
+            val firstPage = items.isEmpty() && values.size > pageSize
+            if (firstPage && !apply(generation) { createItems(values.subList(0, pageSize)) }) {
+                return@launch
+            }
+
+            if (apply(generation) { createItems(values) }) {
+                onCommitted?.invoke()
+            }
+        }
+    }
+
+    /**
+     * Move an item, e.g. while the user drags it. The move is dispatched right away.
+     */
+    @MainThread
+    fun move(from: Int, to: Int) {
+        items = items.toMutableList().also { Collections.swap(it, from, to) }
+        updateCallback.onMoved(from, to)
+    }
+
+    /**
+     * Diff the items created by [create] against the current items in the background and dispatch
+     * the result. Return false if a newer list has been submitted in the meantime.
+     */
+    private suspend fun apply(generation: Int, create: () -> List<Item<T>>): Boolean {
+        val newItems = withContext(backgroundDispatcher) { create() }
+
+        while (generation == this.generation) {
+            val oldItems = items
+            val result = withContext(backgroundDispatcher) {
+                DiffUtil.calculateDiff(DiffCallback(oldItems, newItems), false)
+            }
+
+            // The items may have been moved while diffing. Diff again in this case.
+            if (generation == this.generation && oldItems === items) {
+                items = newItems
+                result.dispatchUpdatesTo(updateCallback)
+                return true
+            }
+        }
+
+        return false
+    }
+
+    private fun createItems(values: List<T>): List<Item<T>> = values.map { value ->
+        val url = urlOf(value)
+        Item(value, url, AutocompleteDomainFormatter.format(url), idOf(url))
+    }
+
+    private fun idOf(url: String): Long = ids[url] ?: nextId.getAndIncrement().let { ids.putIfAbsent(url, it) ?: it }
+
+    private class DiffCallback<T>(
+        private val oldItems: List<Item<T>>,
+        private val newItems: List<Item<T>>,
+    ) : DiffUtil.Callback() {
+        override fun getOldListSize() = oldItems.size
+
+        override fun getNewListSize() = newItems.size
+
+        override fun areItemsTheSame(oldItemPosition: Int, newItemPosition: Int) =
+            oldItems[oldItemPosition].id == newItems[newItemPosition].id
+
+        override fun areContentsTheSame(oldItemPosition: Int, newItemPosition: Int) =
+            oldItems[oldItemPosition] == newItems[newItemPosition]
+    }
+
+    companion object {
+        const val PAGE_SIZE = 50
+    }
+}
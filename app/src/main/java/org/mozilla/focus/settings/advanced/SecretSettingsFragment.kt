@@ -6,7 +6,10 @@ package org.mozilla.focus.settings.advanced
 
 import android.content.SharedPreferences
 import android.os.Bundle
+import androidx.appcompat.app.AlertDialog
+import androidx.preference.Preference
 import androidx.preference.SwitchPreferenceCompat
+import mozilla.components.support.base.log.logger.Logger
 import org.mozilla.focus.R
 import org.mozilla.focus.ext.getPreferenceKey
 import org.mozilla.focus.ext.requireComponents
@@ -18,6 +21,8 @@ class SecretSettingsFragment :
     BaseSettingsFragment(),
     SharedPreferences.OnSharedPreferenceChangeListener {
 
+    private val logger = Logger("SecretSettings")
+
     override fun onStart() {
         super.onStart()
         showToolbar(getString(R.string.preference_secret_settings))
@@ -31,12 +36,46 @@ class SecretSettingsFragment :
     override fun onSharedPreferenceChanged(sharedPreferences: SharedPreferences, key: String) {
         val nimbusPreviewPref =
             findPreference<SwitchPreferenceCompat>(getPreferenceKey(R.string.pref_key_use_nimbus_preview))
-        if (key == nimbusPreviewPref?.key) {
-            requireComponents.settings.shouldUseNimbusPreview = nimbusPreviewPref.isChecked
-            quitTheApp()
+        when (key) {
+            nimbusPreviewPref?.key -> {
+                requireComponents.settings.shouldUseNimbusPreview = nimbusPreviewPref.isChecked
+                quitTheApp()
+            }
+            // Read the changed value from the preferences: Settings may not have published its new
+            // snapshot yet, listeners are called in no particular order.
+            getPreferenceKey(R.string.pref_key_store_dispatch_profiler) -> {
+                requireComponents.storeDispatchProfiler.enabled = sharedPreferences.getBoolean(key, false)
+            }
+            getPreferenceKey(R.string.pref_key_store_dispatch_profiler_allocations) -> {
+                requireComponents.storeDispatchProfiler.countAllocations = sharedPreferences.getBoolean(key, false)
+            }
         }
     }
 
+    override fun onPreferenceTreeClick(preference: Preference): Boolean {
+        if (preference.key == getPreferenceKey(R.string.pref_key_store_dispatch_profiler_report)) {
+            showStoreDispatchProfile()
+            return true
+        }
+
+        return super.onPreferenceTreeClick(preference)
+    }
+
+    private fun showStoreDispatchProfile() {
+        val profiler = requireComponents.storeDispatchProfiler
+        val report = profiler.dump()
+
+        // Also write the report to the log, so that it can be pulled with adb.
+        logger.info(report)
+
+        AlertDialog.Builder(requireContext())
+            .setTitle(R.string.preference_store_dispatch_profiler_report)
+            .setMessage(report)
+            .setPositiveButton(android.R.string.ok, null)
+            .setNeutralButton(R.string.store_dispatch_profiler_reset) { _, _ -> profiler.reset() }
+            .show()
+    }
+
     private fun quitTheApp() {
         exitProcess(0)
     }
@@ -4,10 +4,8 @@
 
 package org.mozilla.focus.telemetry
 
-import android.content.Context
 import android.content.pm.ActivityInfo
-import android.content.pm.PackageManager
-import mozilla.components.support.utils.ext.getPackageInfoCompat
+import androidx.annotation.WorkerThread
 
 object FenixProductDetector {
     enum class FenixVersion(val packageName: String) {
@@ -16,11 +14,12 @@ object FenixProductDetector {
         FIREFOX_BETA("org.mozilla.firefox_beta"),
     }
 
-    fun getInstalledFenixVersions(context: Context): List<String> {
+    @WorkerThread
+    fun getInstalledFenixVersions(installedApps: InstalledAppsCache): List<String> {
         val fenixVersions = mutableListOf<String>()
 
         for (product in FenixVersion.values()) {
-            if (packageIsInstalled(context, product.packageName)) {
+            if (installedApps.isInstalled(product.packageName)) {
                 fenixVersions.add(product.packageName)
             }
         }
@@ -36,14 +35,4 @@ object FenixProductDetector {
         }
         return false
     }
-
-    private fun packageIsInstalled(context: Context, packageName: String): Boolean {
-        try {
-            context.packageManager.getPackageInfoCompat(packageName, 0)
-        } catch (e: PackageManager.NameNotFoundException) {
-            return false
-        }
-
-        return true
-    }
 }
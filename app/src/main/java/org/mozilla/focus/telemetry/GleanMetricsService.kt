@@ -95,8 +95,8 @@ class GleanMetricsService(context: Context) : MetricsService {
         settings: Settings,
         context: Context,
     ) = CoroutineScope(IO).async {
-        val installedBrowsers = BrowsersCache.all(context)
-        val hasFenixInstalled = FenixProductDetector.getInstalledFenixVersions(context).isNotEmpty()
+        val installedBrowsers = components.installedApps.getBrowsers()
+        val hasFenixInstalled = FenixProductDetector.getInstalledFenixVersions(components.installedApps).isNotEmpty()
         val isFenixDefaultBrowser = FenixProductDetector.isFenixDefaultBrowser(installedBrowsers.defaultBrowser)
         val isFocusDefaultBrowser = installedBrowsers.isDefaultBrowser
 
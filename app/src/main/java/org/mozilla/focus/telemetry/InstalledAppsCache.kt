@@ -0,0 +1,249 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.telemetry
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.content.pm.PackageManager
+import android.net.Uri
+import androidx.annotation.MainThread
+import androidx.annotation.VisibleForTesting
+import androidx.annotation.WorkerThread
+import androidx.lifecycle.DefaultLifecycleObserver
+import androidx.lifecycle.LifecycleOwner
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import mozilla.components.support.utils.Browsers
+import mozilla.components.support.utils.ext.getPackageInfoCompat
+import mozilla.components.support.utils.ext.resolveActivityCompat
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * Caches the installed browsers (including the default browser) and whether packages are installed.
+ *
+ * Both are loaded lazily, with PackageManager calls that must not happen on the main thread. Once
+ * loaded they can be read without any IPC. Entries are invalidated by package broadcasts: A package
+ * that is added may be a new browser; a package that is changed or removed only invalidates the
+ * browsers if it is one of them. The default browser can also change without any package broadcast
+ * (in the system settings): Whenever the app comes to the foreground (see [onStart]) the default
+ * browser is resolved again, a single PackageManager call, and the browsers are only invalidated if
+ * it has changed.
+ *
+ * The main thread reads the browsers through [withBrowsers].
+ *
+ * This is the only package broadcast receiver of the app: Other caches of package data register a
+ * [PackageChangeListener] instead of their own receiver.
+ */
+@Suppress("LongParameterList")
+class InstalledAppsCache(
+    private val context: Context,
+    private val scope: CoroutineScope = CoroutineScope(Dispatchers.IO),
+    private val loadBrowsers: (Context) -> Browsers = { Browsers.all(it) },
+    private val loadIsInstalled: (Context, String) -> Boolean = ::isPackageInstalled,
+    private val loadDefaultBrowserPackage: (Context) -> String? = ::resolveDefaultBrowserPackage,
+    private val mainDispatcher: CoroutineDispatcher = Dispatchers.Main,
+    registerReceiver: Boolean = true,
+) : DefaultLifecycleObserver {
+    /**
+     * Notified on the main thread when a package has been added (including updates), changed or
+     * removed.
+     */
+    fun interface PackageChangeListener {
+        fun onPackageChanged(packageName: String)
+    }
+
+    private val lock = Any()
+
+    @Volatile
+    private var browsers: Browsers? = null
+
+    // Incremented on every invalidation of the browsers, so that a load that was started before does
+    // not store an outdated result.
+    private var generation = 0
+
+    private val installedPackages = ConcurrentHashMap<String, Boolean>()
+
+    private val packageChangeListeners = CopyOnWriteArrayList<PackageChangeListener>()
+
+    @Volatile
+    private var defaultBrowserCheck: Job? = null
+
+    init {
+        if (registerReceiver) {
+            val filter = IntentFilter().apply {
+                addAction(Intent.ACTION_PACKAGE_ADDED)
+                addAction(Intent.ACTION_PACKAGE_CHANGED)
+                addAction(Intent.ACTION_PACKAGE_REMOVED)
+                addDataScheme("package")
+            }
+
+            context.applicationContext.registerReceiver(
+                object : BroadcastReceiver() {
+                    override fun onReceive(context: Context, intent: Intent) {
+                        val packageName = intent.data?.schemeSpecificPart ?: return
+                        onPackageChanged(packageName, added = intent.action == Intent.ACTION_PACKAGE_ADDED)
+                    }
+                },
+                filter,
+            )
+        }
+    }
+
+    /**
+     * Register a listener for package changes.
+     */
+    fun addPackageChangeListener(listener: PackageChangeListener) {
+        packageChangeListeners.add(listener)
+    }
+
+    /**
+     * Load the browsers in the background if they are not loaded yet.
+     */
+    fun warmUp() {
+        if (browsers == null) {
+            scope.launch { getBrowsers() }
+        }
+    }
+
+    /**
+     * Return the installed browsers, loading them if needed.
+     */
+    @WorkerThread
+    fun getBrowsers(): Browsers {
+        browsers?.let { return it }
+
+        val generation = synchronized(lock) { generation }
+        val loaded = loadBrowsers(context)
+
+        synchronized(lock) {
+            if (generation == this.generation) {
+                browsers = loaded
+            }
+        }
+
+        return loaded
+    }
+
+    /**
+     * Pass the installed browsers to [callback] on the main thread: Right away if they are loaded
+     * and up to date, otherwise once they have been loaded in the background.
+     *
+     * @param refreshDefaultBrowser Resolve the default browser again before, e.g. because the user
+     * may just have changed it.
+     */
+    @MainThread
+    fun withBrowsers(refreshDefaultBrowser: Boolean = false, callback: (Browsers) -> Unit) {
+        val loaded = browsers
+        if (loaded != null && !refreshDefaultBrowser && defaultBrowserCheck?.isActive != true) {
+            callback(loaded)
+            return
+        }
+
+        scope.launch {
+            defaultBrowserCheck?.join()
+            if (refreshDefaultBrowser) {
+                checkDefaultBrowser()
+            }
+
+            val browsers = getBrowsers()
+            withContext(mainDispatcher) { callback(browsers) }
+        }
+    }
+
+    /**
+     * Return the installed browsers if they are loaded, or null otherwise. This never calls the
+     * PackageManager.
+     */
+    @VisibleForTesting
+    internal fun getBrowsersIfLoaded(): Browsers? = browsers
+
+    /**
+     * Return whether a package is installed, asking the PackageManager only if the package has not
+     * been looked up since its last change.
+     */
+    @WorkerThread
+    fun isInstalled(packageName: String): Boolean {
+        installedPackages[packageName]?.let { return it }
+
+        return loadIsInstalled(context, packageName).also { installed ->
+            installedPackages[packageName] = installed
+        }
+    }
+
+    @VisibleForTesting
+    internal fun onPackageChanged(packageName: String, added: Boolean) {
+        installedPackages.remove(packageName)
+
+        browsers?.let { browsers ->
+            val isBrowser = browsers.installedBrowsers.any { it.packageName == packageName } ||
+                browsers.defaultBrowser?.packageName == packageName
+
+            if (added || isBrowser) {
+                invalidateBrowsers()
+            }
+        }
+
+        packageChangeListeners.forEach { it.onPackageChanged(packageName) }
+    }
+
+    override fun onStart(owner: LifecycleOwner) {
+        if (browsers != null) {
+            defaultBrowserCheck = scope.launch { checkDefaultBrowser() }
+        }
+    }
+
+    /**
+     * Invalidate the browsers if the default browser is not the one they have been loaded with.
+     */
+    @WorkerThread
+    private fun checkDefaultBrowser() {
+        val browsers = browsers ?: return
+
+        // Browsers reports no default browser if the system resolves to anything but a browser
+        // (e.g. the app chooser).
+        val defaultBrowser = loadDefaultBrowserPackage(context)
+            ?.takeIf { packageName -> browsers.installedBrowsers.any { it.packageName == packageName } }
+
+        if (defaultBrowser != browsers.defaultBrowser?.packageName) {
+            invalidateBrowsers()
+        }
+    }
+
+    private fun invalidateBrowsers() {
+        synchronized(lock) {
+            generation++
+            browsers = null
+        }
+    }
+
+    private companion object {
+        // The URL Browsers resolves to find the default browser.
+        private const val SAMPLE_BROWSER_URL = "http://www.mozilla.org/index.html"
+
+        fun resolveDefaultBrowserPackage(context: Context): String? {
+            val intent = Intent(Intent.ACTION_VIEW, Uri.parse(SAMPLE_BROWSER_URL))
+            return context.packageManager
+                .resolveActivityCompat(intent, PackageManager.MATCH_DEFAULT_ONLY)
+                ?.activityInfo
+                ?.packageName
+        }
+
+        fun isPackageInstalled(context: Context, packageName: String): Boolean {
+            return try {
+                context.packageManager.getPackageInfoCompat(packageName, 0)
+                true
+            } catch (e: PackageManager.NameNotFoundException) {
+                false
+            }
+        }
+    }
+}
@@ -23,6 +23,9 @@ import mozilla.components.support.base.facts.FactProcessor
  * )
  * ```
  *
+ * If the metadata of the fact contains [KEY_DURATION_MILLIS] a marker with this duration is added instead,
+ * ending [KEY_END_MILLIS_AGO] milliseconds ago, with the optional [KEY_TEXT].
+ *
  * This allows us to add profiler markers from android-components code. Using the Fact API for this
  * purpose, rather than calling [Profiler.addMarker] directly inside components, has trade-offs. Its
  * downsides are that it is less explicit and tooling does not work as well on it. However, we felt
@@ -58,6 +61,11 @@ constructor(
         }
 
         val markerName = fact.item
+        val durationMillis = fact.metadata?.get(KEY_DURATION_MILLIS) as? Double
+        if (durationMillis != null) {
+            addDurationMarker(markerName, durationMillis, fact.metadata)
+            return
+        }
 
         // Java profiler markers can only be added from the main thread so, for now, we push all
         // markers to the the main thread (which also groups all the markers together,
@@ -78,7 +86,28 @@ constructor(
         }
     }
 
+    private fun addDurationMarker(markerName: String, durationMillis: Double, metadata: Map<String, Any>?) {
+        val endMillisAgo = metadata?.get(KEY_END_MILLIS_AGO) as? Double ?: 0.0
+        val text = metadata?.get(KEY_TEXT) as? String
+
+        val profiler = profilerProvider()
+        val end = profiler?.getProfilerTime()?.minus(endMillisAgo)
+        val start = end?.minus(durationMillis)
+
+        if (getMyLooper() == mainHandler.looper) {
+            profiler?.addMarker(markerName, start, end, text)
+        } else {
+            mainHandler.post {
+                profiler?.addMarker(markerName, start, end, text)
+            }
+        }
+    }
+
     companion object {
+        const val KEY_DURATION_MILLIS = "durationMillis"
+        const val KEY_END_MILLIS_AGO = "endMillisAgo"
+        const val KEY_TEXT = "text"
+
         fun create(profilerProvider: () -> Profiler?) =
             ProfilerMarkerFactProcessor(profilerProvider)
     }
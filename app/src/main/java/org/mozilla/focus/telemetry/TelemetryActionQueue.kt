@@ -0,0 +1,78 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.telemetry
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.launch
+import mozilla.components.support.base.log.logger.Logger
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Bounded queue handing items over to a background coroutine that processes them in batches.
+ *
+ * [enqueue] never blocks: If [capacity] items are already waiting, the new item is dropped and
+ * counted in [droppedCount]. Items are processed in the order they have been enqueued.
+ *
+ * @param processBatch Called on [scope] with up to [batchSize] items. The list is reused for the
+ * next batch and must not be kept.
+ */
+class TelemetryActionQueue<T : Any>(
+    private val scope: CoroutineScope = CoroutineScope(Dispatchers.IO),
+    capacity: Int = DEFAULT_CAPACITY,
+    private val batchSize: Int = DEFAULT_BATCH_SIZE,
+    private val processBatch: (List<T>) -> Unit,
+) {
+    private val logger = Logger("TelemetryActionQueue")
+    private val channel = Channel<T>(capacity)
+    private val started = AtomicBoolean(false)
+    private val dropped = AtomicLong()
+    private val processed = AtomicLong()
+
+    /**
+     * The number of items that have been dropped because the queue was full.
+     */
+    val droppedCount: Long
+        get() = dropped.get()
+
+    /**
+     * The number of items that have been processed.
+     */
+    val processedCount: Long
+        get() = processed.get()
+
+    fun enqueue(item: T) {
+        if (started.compareAndSet(false, true)) {
+            scope.launch { processItems() }
+        }
+
+        if (channel.trySend(item).isFailure && dropped.incrementAndGet() == 1L) {
+            logger.warn("Telemetry queue is full. Dropping actions.")
+        }
+    }
+
+    private suspend fun processItems() {
+        val batch = ArrayList<T>(batchSize)
+
+        for (item in channel) {
+            batch.add(item)
+
+            while (batch.size < batchSize) {
+                batch.add(channel.tryReceive().getOrNull() ?: break)
+            }
+
+            processBatch(batch)
+            processed.addAndGet(batch.size.toLong())
+            batch.clear()
+        }
+    }
+
+    companion object {
+        const val DEFAULT_CAPACITY = 256
+        const val DEFAULT_BATCH_SIZE = 32
+    }
+}
@@ -4,6 +4,8 @@
 
 package org.mozilla.focus.telemetry
 
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
 import mozilla.components.browser.state.action.BrowserAction
 import mozilla.components.browser.state.action.ContentAction
 import mozilla.components.browser.state.action.CustomTabListAction
@@ -25,7 +27,19 @@ import org.mozilla.focus.GleanMetrics.Downloads
 import org.mozilla.focus.GleanMetrics.TabCount
 import kotlin.collections.forEach as withEach
 
-class TelemetryMiddleware : Middleware<BrowserState, BrowserAction> {
+/**
+ * Records telemetry for [BrowserAction]s.
+ *
+ * The middleware only turns an action into a small immutable [ActionSummary] and enqueues it. All
+ * recording (including looking up tabs) happens in batches on a background dispatcher.
+ */
+class TelemetryMiddleware(
+    scope: CoroutineScope = CoroutineScope(Dispatchers.IO),
+) : Middleware<BrowserState, BrowserAction> {
+    private val queue = TelemetryActionQueue<ActionSummary>(scope) { summaries ->
+        summaries.withEach { record(it) }
+    }
+
     override fun invoke(
         context: MiddlewareContext<BrowserState, BrowserAction>,
         next: (BrowserAction) -> Unit,
@@ -33,49 +47,65 @@ class TelemetryMiddleware : Middleware<BrowserState, BrowserAction> {
     ) {
         next(action)
 
-        when (action) {
-            is TabListAction.AddTabAction -> {
-                collectTelemetry(action.tab, context)
+        val summary = when (action) {
+            is TabListAction.AddTabAction -> ActionSummary.TabsAdded(listOf(action.tab), context.state)
+            is TabListAction.AddMultipleTabsAction -> ActionSummary.TabsAdded(action.tabs, context.state)
+            is CustomTabListAction.TurnCustomTabIntoNormalTabAction -> ActionSummary.CustomTabTurnedIntoNormalTab(
+                context.state.tabs.size,
+            )
+            is ContentAction.UpdateLoadingStateAction -> if (!action.loading) {
+                ActionSummary.LoadingFinished(action.sessionId, context.state)
+            } else {
+                null
             }
-            is TabListAction.AddMultipleTabsAction -> action.tabs.withEach {
-                collectTelemetry(it, context)
+            is DownloadAction.AddDownloadAction -> ActionSummary.DownloadStarted
+            is DownloadAction.UpdateDownloadAction -> if (action.download.status == DownloadState.Status.CANCELLED) {
+                ActionSummary.DownloadCanceled
+            } else {
+                null
+            }
+            else -> null
+        }
+
+        summary?.let { queue.enqueue(it) }
+    }
+
+    private fun record(summary: ActionSummary) {
+        when (summary) {
+            is ActionSummary.TabsAdded -> summary.tabs.withEach {
+                collectTelemetry(it, summary.state)
             }
 
-            is CustomTabListAction.TurnCustomTabIntoNormalTabAction -> {
+            is ActionSummary.CustomTabTurnedIntoNormalTab -> {
                 TabCount.newTabOpened.record(
-                    TabCount.NewTabOpenedExtra(context.state.tabs.size, "custom tab"),
+                    TabCount.NewTabOpenedExtra(summary.tabCount, "custom tab"),
                 )
             }
 
-            is ContentAction.UpdateLoadingStateAction -> {
-                context.state.findTab(action.sessionId)?.let { tab ->
+            is ActionSummary.LoadingFinished -> {
+                summary.state.findTab(summary.tabId)?.let { tab ->
                     // Record UriOpened event when a page finishes loading
-                    if (!tab.content.loading && !action.loading) {
+                    if (!tab.content.loading) {
                         Browser.totalUriCount.add()
                     }
                 }
             }
-            is DownloadAction.AddDownloadAction -> {
+            ActionSummary.DownloadStarted -> {
                 Downloads.downloadStarted.record(NoExtras())
             }
-            is DownloadAction.UpdateDownloadAction -> {
-                if (action.download.status == DownloadState.Status.CANCELLED) {
-                    Downloads.downloadCanceled.record(NoExtras())
+            ActionSummary.DownloadCanceled -> {
+                Downloads.downloadCanceled.record(NoExtras())
 
-                    TelemetryWrapper.downloadDialogDownloadEvent(sentToDownload = false)
-                }
-            }
-            else -> {
-                // no-op
+                TelemetryWrapper.downloadDialogDownloadEvent(sentToDownload = false)
             }
         }
     }
 
     private fun collectTelemetry(
         tab: SessionState,
-        context: MiddlewareContext<BrowserState, BrowserAction>,
+        state: BrowserState,
     ) {
-        val tabCount = context.state.tabs.size
+        val tabCount = state.tabs.size
 
         when (tab.source) {
             is SessionState.Source.External.ActionView -> {
@@ -101,7 +131,7 @@ class TelemetryMiddleware : Middleware<BrowserState, BrowserAction> {
                 TelemetryWrapper.openHomescreenShortcutEvent()
             }
             SessionState.Source.Internal.NewTab -> {
-                val parentTab = (tab as TabSessionState).parentId?.let { context.state.findTab(it) }
+                val parentTab = (tab as TabSessionState).parentId?.let { state.findTab(it) }
                 if (parentTab?.content?.windowRequest?.type == WindowRequest.Type.OPEN) {
                     TabCount.newTabOpened.record(
                         TabCount.NewTabOpenedExtra(tabCount, "Window.open()"),
@@ -119,6 +149,19 @@ class TelemetryMiddleware : Middleware<BrowserState, BrowserAction> {
         }
     }
 
+    /**
+     * What the middleware needs to know about an action to record telemetry for it. [BrowserState]
+     * is immutable: Keeping a reference to the state the action was reduced into is enough to look
+     * up tabs later.
+     */
+    sealed class ActionSummary {
+        class TabsAdded(val tabs: List<SessionState>, val state: BrowserState) : ActionSummary()
+        class CustomTabTurnedIntoNormalTab(val tabCount: Int) : ActionSummary()
+        class LoadingFinished(val tabId: String, val state: BrowserState) : ActionSummary()
+        object DownloadStarted : ActionSummary()
+        object DownloadCanceled : ActionSummary()
+    }
+
     /**
      * This method creates a list of options used to share with Telemetry and was migrated from A-C.
      *
@@ -9,7 +9,6 @@ package org.mozilla.focus.telemetry
 import android.content.Context
 import mozilla.components.browser.state.search.SearchEngine
 import mozilla.components.browser.state.state.selectedOrDefaultSearchEngine
-import mozilla.components.support.utils.Browsers
 import org.mozilla.focus.R
 import org.mozilla.focus.ext.components
 import org.mozilla.telemetry.TelemetryHolder
@@ -45,9 +44,10 @@ internal class TelemetrySettingsProvider(
         return when (key) {
             prefKeyDefaultBrowser -> {
                 // The default browser is not actually a setting. We determine if we are the
-                // default and then inject this into telemetry.
+                // default and then inject this into telemetry. Pings are built in the background:
+                // Loading the browsers here is fine, but they are usually cached already.
                 val context = TelemetryHolder.get().configuration.context
-                val browsers = Browsers.all(context)
+                val browsers = context.components.installedApps.getBrowsers()
                 browsers.isDefaultBrowser.toString()
             }
             prefKeySearchEngine -> {
@@ -22,6 +22,8 @@ import org.json.JSONObject
 import org.mozilla.focus.BuildConfig
 import org.mozilla.focus.R
 import org.mozilla.focus.ext.components
+import org.mozilla.focus.perf.LatencyHistogram
+import org.mozilla.focus.perf.UniqueCounter
 import org.mozilla.focus.utils.AppConstants
 import org.mozilla.focus.utils.MobileMetricsPingStorage
 import org.mozilla.focus.utils.UrlUtils
@@ -36,10 +38,8 @@ import org.mozilla.telemetry.ping.TelemetryCorePingBuilder
 import org.mozilla.telemetry.ping.TelemetryEventPingBuilder
 import org.mozilla.telemetry.ping.TelemetryMobileMetricsPingBuilder
 import org.mozilla.telemetry.schedule.jobscheduler.JobSchedulerTelemetryScheduler
-import org.mozilla.telemetry.serialize.JSONPingSerializer
-import org.mozilla.telemetry.storage.FileTelemetryStorage
-import java.net.MalformedURLException
-import java.net.URL
+import org.mozilla.telemetry.serialize.StreamingJSONPingSerializer
+import org.mozilla.telemetry.storage.SegmentedTelemetryStorage
 import java.text.SimpleDateFormat
 import java.util.Date
 import java.util.Locale
@@ -53,12 +53,16 @@ object TelemetryWrapper {
     private const val TELEMETRY_APP_NAME_FOCUS = "Focus"
     private const val TELEMETRY_APP_NAME_KLAR = "Klar"
     private const val LAST_MOBILE_METRICS_PINGS = "LAST_MOBILE_METRICS_PINGS"
+    private const val UPLOAD_BATCH_SIZE = 20
 
     private val dateFormat = SimpleDateFormat("yyyyMMdd", Locale.US)
 
-    private const val HISTOGRAM_SIZE = 200
-    private const val BUCKET_SIZE_MS = 100
-    private const val HISTOGRAM_MIN_INDEX = 0
+    private val HISTOGRAM_SCHEMES = arrayOf("http://", "https://")
+    private val AUTHORITY_TERMINATORS = charArrayOf('/', '?', '#')
+    private val COMMON_SUBDOMAINS = arrayOf("www.", "mobile.", "m.")
+    private const val PERCENTILE_50 = 50.0
+    private const val PERCENTILE_95 = 95.0
+    private const val PERCENTILE_99 = 99.0
 
     private val isEnabledByDefault: Boolean
         get() = !AppConstants.isKlarBuild
@@ -166,6 +170,9 @@ object TelemetryWrapper {
         const val SEARCH_SUGGESTION = "search_suggestion"
         const val TOTAL_URI_COUNT = "total_uri_count"
         const val UNIQUE_DOMAINS_COUNT = "unique_domains_count"
+        const val P50 = "p50"
+        const val P95 = "p95"
+        const val P99 = "p99"
         const val SUBMIT_CRASH = "submit_crash"
     }
 
@@ -191,76 +198,72 @@ object TelemetryWrapper {
     @JvmStatic
     @Suppress("LongMethod")
     fun init(context: Context) {
-        // When initializing the telemetry library it will make sure that all directories exist and
-        // are readable/writable.
-        val threadPolicy = StrictMode.allowThreadDiskWrites()
-        try {
-            val resources = context.resources
-
-            val telemetryEnabled = isTelemetryEnabled(context)
-
-            val configuration = TelemetryConfiguration(context)
-                .setServerEndpoint("https://incoming.telemetry.mozilla.org")
-                .setAppName(if (AppConstants.isKlarBuild) TELEMETRY_APP_NAME_KLAR else TELEMETRY_APP_NAME_FOCUS)
-                .setUpdateChannel(BuildConfig.BUILD_TYPE)
-                .setPreferencesImportantForTelemetry(
-                    resources.getString(R.string.pref_key_search_engine),
-                    resources.getString(R.string.pref_key_privacy_block_ads),
-                    resources.getString(R.string.pref_key_privacy_block_analytics),
-                    resources.getString(R.string.pref_key_privacy_block_social),
-                    resources.getString(R.string.pref_key_privacy_block_other3),
-                    resources.getString(R.string.pref_key_performance_block_javascript),
-                    resources.getString(R.string.pref_key_performance_enable_cookies),
-                    resources.getString(R.string.pref_key_performance_block_webfonts),
-                    resources.getString(R.string.pref_key_locale),
-                    resources.getString(R.string.pref_key_secure),
-                    resources.getString(R.string.pref_key_default_browser),
-                    resources.getString(R.string.pref_key_autocomplete_preinstalled),
-                    resources.getString(R.string.pref_key_autocomplete_custom),
-                    resources.getString(R.string.pref_key_remote_debugging),
-                    resources.getString(R.string.pref_key_show_search_suggestions),
-                )
-                .setSettingsProvider(TelemetrySettingsProvider(context))
-                .setCollectionEnabled(telemetryEnabled)
-                .setUploadEnabled(telemetryEnabled)
-                .setBuildId(TelemetryConfiguration(context).buildId)
-
-            val serializer = JSONPingSerializer()
-            val storage = FileTelemetryStorage(configuration, serializer)
-            val client = TelemetryClient(context.components.client.unwrap())
-            val scheduler = JobSchedulerTelemetryScheduler()
-
-            TelemetryHolder.set(
-                Telemetry(configuration, storage, client, scheduler)
-                    .addPingBuilder(TelemetryCorePingBuilder(configuration))
-                    .addPingBuilder(TelemetryEventPingBuilder(configuration))
-                    .also {
-                        if (!dayPassedSinceLastUpload(context)) return@also
-
-                        runBlocking {
-                            val metricsStorage = MobileMetricsPingStorage(context)
-                            val mobileMetrics = metricsStorage.load() ?: JSONObject()
-                            metricsStorage.clearStorage()
-
-                            it.addPingBuilder(
-                                TelemetryMobileMetricsPingBuilder(
-                                    mobileMetrics,
-                                    configuration,
-                                ),
-                            )
-                        }
-
-                        // Record new edited date
-                        PreferenceManager.getDefaultSharedPreferences(context)
-                            .edit()
-                            .putLong(LAST_MOBILE_METRICS_PINGS, (dateFormat.format(Date()).toLong()))
-                            .apply()
-                    }
-                    .setDefaultSearchProvider(createDefaultSearchProvider(context)),
+        // Runs as a background startup task: Creating the telemetry directories on disk doesn't
+        // block the main thread.
+        val resources = context.resources
+
+        val telemetryEnabled = isTelemetryEnabled(context)
+
+        val configuration = TelemetryConfiguration(context)
+            .setServerEndpoint("https://incoming.telemetry.mozilla.org")
+            .setAppName(if (AppConstants.isKlarBuild) TELEMETRY_APP_NAME_KLAR else TELEMETRY_APP_NAME_FOCUS)
+            .setUpdateChannel(BuildConfig.BUILD_TYPE)
+            .setPreferencesImportantForTelemetry(
+                resources.getString(R.string.pref_key_search_engine),
+                resources.getString(R.string.pref_key_privacy_block_ads),
+                resources.getString(R.string.pref_key_privacy_block_analytics),
+                resources.getString(R.string.pref_key_privacy_block_social),
+                resources.getString(R.string.pref_key_privacy_block_other3),
+                resources.getString(R.string.pref_key_performance_block_javascript),
+                resources.getString(R.string.pref_key_performance_enable_cookies),
+                resources.getString(R.string.pref_key_performance_block_webfonts),
+                resources.getString(R.string.pref_key_locale),
+                resources.getString(R.string.pref_key_secure),
+                resources.getString(R.string.pref_key_default_browser),
+                resources.getString(R.string.pref_key_autocomplete_preinstalled),
+                resources.getString(R.string.pref_key_autocomplete_custom),
+                resources.getString(R.string.pref_key_remote_debugging),
+                resources.getString(R.string.pref_key_show_search_suggestions),
             )
-        } finally {
-            StrictMode.setThreadPolicy(threadPolicy)
-        }
+            .setSettingsProvider(TelemetrySettingsProvider(context))
+            .setCollectionEnabled(telemetryEnabled)
+            .setUploadEnabled(telemetryEnabled)
+            .setUploadBatchSize(UPLOAD_BATCH_SIZE)
+            .setBuildId(TelemetryConfiguration(context).buildId)
+
+        val serializer = StreamingJSONPingSerializer()
+        val storage = SegmentedTelemetryStorage(configuration, serializer)
+        val client = TelemetryClient(context.components.client.unwrap())
+        val scheduler = JobSchedulerTelemetryScheduler()
+
+        TelemetryHolder.set(
+            Telemetry(configuration, storage, client, scheduler)
+                .addPingBuilder(TelemetryCorePingBuilder(configuration))
+                .addPingBuilder(TelemetryEventPingBuilder(configuration))
+                .also {
+                    if (!dayPassedSinceLastUpload(context)) return@also
+
+                    runBlocking {
+                        val metricsStorage = MobileMetricsPingStorage(context)
+                        val mobileMetrics = metricsStorage.load() ?: JSONObject()
+                        metricsStorage.clearStorage()
+
+                        it.addPingBuilder(
+                            TelemetryMobileMetricsPingBuilder(
+                                mobileMetrics,
+                                configuration,
+                            ),
+                        )
+                    }
+
+                    // Record new edited date
+                    PreferenceManager.getDefaultSharedPreferences(context)
+                        .edit()
+                        .putLong(LAST_MOBILE_METRICS_PINGS, (dateFormat.format(Date()).toLong()))
+                        .apply()
+                }
+                .setDefaultSearchProvider(createDefaultSearchProvider(context)),
+        )
     }
 
     val clientId: String
@@ -299,57 +302,106 @@ object TelemetryWrapper {
         TelemetryEvent.create(Category.ACTION, Method.FOREGROUND, Object.APP).queue()
     }
 
-    @VisibleForTesting var histogram = IntArray(HISTOGRAM_SIZE)
-
-    @VisibleForTesting var domainMap = HashSet<String>()
+    /**
+     * Page load times of the current session in milliseconds.
+     */
+    @VisibleForTesting val loadTimes = LatencyHistogram()
 
-    @VisibleForTesting var numUri = 0
+    /**
+     * The domains loaded in the current session, counted without keeping them.
+     */
+    @VisibleForTesting val uniqueDomains = UniqueCounter()
 
+    /**
+     * Record a page load. Only web pages (http and https) are counted, like before, when URLs with
+     * other schemes failed to parse. This is thread-safe and does not allocate: The domain is hashed
+     * straight from the URL.
+     */
     @JvmStatic
     fun addLoadToHistogram(url: String, newLoadTime: Long) {
-        try {
-            domainMap.add(UrlUtils.stripCommonSubdomains(URL(url).host))
-            numUri++
-            var histogramLoadIndex = (newLoadTime / BUCKET_SIZE_MS).toInt()
-
-            if (histogramLoadIndex > (HISTOGRAM_SIZE - 2)) {
-                histogramLoadIndex = HISTOGRAM_SIZE - 1
-            } else if (histogramLoadIndex < HISTOGRAM_MIN_INDEX) {
-                histogramLoadIndex = HISTOGRAM_MIN_INDEX
-            }
+        val scheme = HISTOGRAM_SCHEMES.firstOrNull { url.startsWith(it, ignoreCase = true) } ?: return
+
+        val authorityStart = scheme.length
+        var authorityEnd = authorityStart
+        while (authorityEnd < url.length && url[authorityEnd] !in AUTHORITY_TERMINATORS) {
+            authorityEnd++
+        }
 
-            histogram[histogramLoadIndex]++
-        } catch (e: MalformedURLException) {
-            // ignore invalid URLs
+        // Skip the user info ("user:password@") and the port.
+        val hostStart = url.lastIndexOf('@', authorityEnd - 1).takeIf { it >= authorityStart }?.plus(1)
+            ?: authorityStart
+        val hostEnd = hostEnd(url, hostStart, authorityEnd)
+        if (hostStart == hostEnd) {
+            return
         }
+
+        uniqueDomains.add(UniqueCounter.hash(url, hostStart + commonSubdomainLength(url, hostStart), hostEnd))
+        loadTimes.record(newLoadTime)
+    }
+
+    /**
+     * The end of the host starting at [hostStart], in an authority ending at [authorityEnd]: Either
+     * the start of the port or the end of the authority. The host may be an IPv6 address in
+     * brackets, which contains colons.
+     */
+    private fun hostEnd(url: String, hostStart: Int, authorityEnd: Int): Int {
+        val searchFrom = if (url.getOrNull(hostStart) == '[') {
+            url.indexOf(']', hostStart).takeIf { it in hostStart until authorityEnd } ?: hostStart
+        } else {
+            hostStart
+        }
+
+        return url.indexOf(':', searchFrom).takeIf { it in searchFrom until authorityEnd } ?: authorityEnd
+    }
+
+    /**
+     * The length of the subdomain that [UrlUtils.stripCommonSubdomains] would strip from the host
+     * starting at [hostStart].
+     */
+    private fun commonSubdomainLength(url: String, hostStart: Int): Int {
+        return COMMON_SUBDOMAINS.firstOrNull { url.startsWith(it, hostStart, ignoreCase = true) }?.length ?: 0
     }
 
     @JvmStatic
     fun stopSession() {
         TelemetryHolder.get().recordSessionEnd()
 
+        val loadTimes = loadTimes.snapshotAndReset()
+
+        // Only the buckets with page loads (by their lower bound in milliseconds) and a summary.
         val histogramEvent = TelemetryEvent.create(Category.HISTOGRAM, Method.FOREGROUND, Object.BROWSER)
-        for (bucketIndex in histogram.indices) {
-            histogramEvent.extra((bucketIndex * BUCKET_SIZE_MS).toString(), histogram[bucketIndex].toString())
+        loadTimes.forEachNonEmptyBucket { lowerBound, count ->
+            histogramEvent.extra(lowerBound.toString(), count.toString())
         }
+        histogramEvent.extra(Extra.P50, loadTimes.percentile(PERCENTILE_50).toString())
+        histogramEvent.extra(Extra.P95, loadTimes.percentile(PERCENTILE_95).toString())
+        histogramEvent.extra(Extra.P99, loadTimes.percentile(PERCENTILE_99).toString())
         histogramEvent.queue()
 
-        // Clear histogram array after queueing it
-        histogram = IntArray(HISTOGRAM_SIZE)
-
         TelemetryEvent.create(Category.ACTION, Method.OPEN, Object.BROWSER).extra(
             Extra.UNIQUE_DOMAINS_COUNT,
-            domainMap.size.toString(),
+            uniqueDomains.estimate().toString(),
         ).queue()
-        domainMap.clear()
+        uniqueDomains.reset()
 
         TelemetryEvent.create(Category.ACTION, Method.OPEN, Object.BROWSER).extra(
             Extra.TOTAL_URI_COUNT,
-            numUri.toString(),
+            loadTimes.count.toString(),
         ).queue()
-        numUri = 0
 
         TelemetryEvent.create(Category.ACTION, Method.BACKGROUND, Object.APP).queue()
+
+        // The app might get killed in the background: Write buffered events to disk now.
+        TelemetryHolder.get().persistEvents()
+    }
+
+    /**
+     * Write buffered events to disk, e.g. when the system asks the app to trim its memory and the
+     * process might get killed soon. Does nothing if telemetry has not been initialized yet.
+     */
+    @JvmStatic
+    fun persistEvents() {
+        TelemetryHolder.getOrNull()?.persistEvents()
     }
 
     @JvmStatic
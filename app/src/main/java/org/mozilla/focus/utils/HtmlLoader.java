@@ -12,14 +12,35 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class HtmlLoader {
+    /**
+     * Tokens that can be substituted, e.g. %shortMessage%.
+     */
+    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("%[A-Za-z0-9_-]+%");
+
+    /**
+     * Compiled templates by resource ID. Raw resources don't depend on the configuration.
+     */
+    private static final Map<Integer, Template> templates = new HashMap<>();
+
+    /**
+     * Data URIs by screen density and resource ID.
+     */
+    private static final Map<Long, String> dataURIs = new HashMap<>();
 
     /**
      * Load a given (html or css) resource file into a String. The input can contain tokens that will
      * be replaced with localised strings.
      *
+     * The resource file is only read and split into literal text and tokens the first time it is loaded.
+     *
      * @param substitutionTable A table of substitions, e.g. %shortMessage% -> "Error loading page..."
      *                          Can be null, in which case no substitutions will be made.
      * @return The file content, with all substitutions having being made.
@@ -27,7 +48,24 @@ public class HtmlLoader {
     public static String loadResourceFile(@NonNull final Context context,
                                            @NonNull final @RawRes int resourceID,
                                            @Nullable final Map<String, String> substitutionTable) {
+        return getTemplate(context, resourceID).render(substitutionTable);
+    }
 
+    private static Template getTemplate(@NonNull final Context context, final @RawRes int resourceID) {
+        synchronized (templates) {
+            Template template = templates.get(resourceID);
+            if (template == null) {
+                template = Template.compile(readResourceFile(context, resourceID));
+                templates.put(resourceID, template);
+            }
+            return template;
+        }
+    }
+
+    /**
+     * Read a resource file into a String, without line breaks.
+     */
+    private static String readResourceFile(@NonNull final Context context, final @RawRes int resourceID) {
         try (final BufferedReader fileReader =
                      new BufferedReader(new InputStreamReader(context.getResources().openRawResource(resourceID), StandardCharsets.UTF_8))) {
 
@@ -35,12 +73,6 @@ public class HtmlLoader {
 
             String line;
             while ((line = fileReader.readLine()) != null) {
-                if (substitutionTable != null) {
-                    for (final Map.Entry<String, String> entry : substitutionTable.entrySet()) {
-                        line = line.replace(entry.getKey(), entry.getValue());
-                    }
-                }
-
                 outputBuffer.append(line);
             }
 
@@ -50,10 +82,85 @@ public class HtmlLoader {
         }
     }
 
+    /**
+     * A resource file split into literal text and the tokens between them.
+     */
+    /* package-private */ static final class Template {
+        private final String[] literals;
+        private final String[] tokens;
+        private final int literalLength;
+
+        private Template(final String[] literals, final String[] tokens) {
+            this.literals = literals;
+            this.tokens = tokens;
+
+            int length = 0;
+            for (final String literal : literals) {
+                length += literal.length();
+            }
+            this.literalLength = length;
+        }
+
+        /* package-private */ static Template compile(final String content) {
+            final List<String> literals = new ArrayList<>();
+            final List<String> tokens = new ArrayList<>();
+
+            final Matcher matcher = PLACEHOLDER_PATTERN.matcher(content);
+            int position = 0;
+            while (matcher.find()) {
+                literals.add(content.substring(position, matcher.start()));
+                tokens.add(matcher.group());
+                position = matcher.end();
+            }
+            literals.add(content.substring(position));
+
+            return new Template(literals.toArray(new String[0]), tokens.toArray(new String[0]));
+        }
+
+        /**
+         * Return the content with all tokens replaced by their value in the substitution table. Tokens
+         * that are not in the table are kept.
+         */
+        /* package-private */ String render(@Nullable final Map<String, String> substitutionTable) {
+            if (tokens.length == 0) {
+                return literals[0];
+            }
+
+            final StringBuilder builder = new StringBuilder(literalLength + 64 * tokens.length);
+
+            for (int i = 0; i < tokens.length; i++) {
+                builder.append(literals[i]);
+
+                final String value = substitutionTable != null ? substitutionTable.get(tokens[i]) : null;
+                builder.append(value != null ? value : tokens[i]);
+            }
+            builder.append(literals[tokens.length]);
+
+            return builder.toString();
+        }
+    }
+
     private final static byte[] pngHeader = new byte[] { -119, 80, 78, 71, 13, 10, 26, 10 };
 
+    /**
+     * Load a png drawable as a base64 encoded data URI. The URI is cached for the current screen density.
+     */
     public static String loadPngAsDataURI(@NonNull final Context context,
                                           @NonNull final @DrawableRes int resourceID) {
+        final long key = ((long) context.getResources().getConfiguration().densityDpi << 32) | (resourceID & 0xFFFFFFFFL);
+
+        synchronized (dataURIs) {
+            String dataURI = dataURIs.get(key);
+            if (dataURI == null) {
+                dataURI = encodePngAsDataURI(context, resourceID);
+                dataURIs.put(key, dataURI);
+            }
+            return dataURI;
+        }
+    }
+
+    private static String encodePngAsDataURI(@NonNull final Context context,
+                                             @NonNull final @DrawableRes int resourceID) {
 
         final StringBuilder builder = new StringBuilder();
         builder.append("data:image/png;base64,");
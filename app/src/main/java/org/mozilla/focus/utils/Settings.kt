@@ -11,17 +11,15 @@ import android.content.res.Configuration
 import android.content.res.Resources
 import android.view.accessibility.AccessibilityManager
 import androidx.annotation.VisibleForTesting
+import androidx.annotation.WorkerThread
 import androidx.preference.PreferenceManager
 import mozilla.components.concept.engine.Engine
 import mozilla.components.concept.engine.EngineSession
 import mozilla.components.concept.engine.mediaquery.PreferredColorScheme
 import mozilla.components.support.ktx.android.content.PreferencesHolder
-import mozilla.components.support.ktx.android.content.booleanPreference
 import org.mozilla.focus.R
 import org.mozilla.focus.cookiebanner.CookieBannerOption
 import org.mozilla.focus.nimbus.FocusNimbus
-import org.mozilla.focus.searchsuggestions.SearchSuggestionsPreferences
-import org.mozilla.focus.utils.AppConstants.isKlarBuild
 
 /**
  * A simple wrapper for SharedPreferences that makes reading preference a little bit easier.
@@ -38,6 +36,30 @@ class Settings(
         const val NO_VALUE = "no value"
     }
 
+    private val keys = SettingsSnapshot.Keys(context)
+
+    private val snapshotLock = Any()
+
+    @Volatile
+    private var currentSnapshot: SettingsSnapshot? = null
+
+    // SharedPreferences only keeps a weak reference to its listeners.
+    private val preferenceChangeListener = SharedPreferences.OnSharedPreferenceChangeListener { _, _ ->
+        refreshSnapshot()
+    }
+
+    /**
+     * The values of all preferences. Reading a setting is a field access on the current snapshot.
+     */
+    private val snapshot: SettingsSnapshot
+        get() = currentSnapshot ?: synchronized(snapshotLock) {
+            currentSnapshot ?: SettingsSnapshot.read(preferences, keys).also { currentSnapshot = it }
+        }
+
+    init {
+        preferences.registerOnSharedPreferenceChangeListener(preferenceChangeListener)
+    }
+
     private val accessibilityManager =
         context.getSystemService(Context.ACCESSIBILITY_SERVICE) as AccessibilityManager?
 
@@ -88,19 +110,19 @@ class Settings(
 
     private fun getCookiePolicy(shouldBlockCookiesValue: String) =
         when (shouldBlockCookiesValue) {
-            context.getString(R.string.yes) ->
+            keys.cookiesYes ->
                 EngineSession.TrackingProtectionPolicy.CookiePolicy.ACCEPT_NONE
 
-            context.getString(R.string.third_party_tracker) ->
+            keys.cookiesThirdPartyTracker ->
                 EngineSession.TrackingProtectionPolicy.CookiePolicy.ACCEPT_NON_TRACKERS
 
-            context.getString(R.string.third_party_only) ->
+            keys.cookiesThirdPartyOnly ->
                 EngineSession.TrackingProtectionPolicy.CookiePolicy.ACCEPT_ONLY_FIRST_PARTY
 
-            context.getString(R.string.cross_site) ->
+            keys.cookiesCrossSite ->
                 EngineSession.TrackingProtectionPolicy.CookiePolicy.ACCEPT_FIRST_PARTY_AND_ISOLATE_OTHERS
 
-            context.getString(R.string.no) -> {
+            keys.cookiesNo -> {
                 EngineSession.TrackingProtectionPolicy.CookiePolicy.ACCEPT_ALL
             }
 
@@ -130,16 +152,16 @@ class Settings(
 
                 // Get the updated cookie policy for the corresponding value
                 when (shouldBlockCookiesValue) {
-                    context.getString(R.string.yes) ->
+                    keys.cookiesYes ->
                         EngineSession.TrackingProtectionPolicy.CookiePolicy.ACCEPT_NONE
 
-                    context.getString(R.string.third_party_tracker) ->
+                    keys.cookiesThirdPartyTracker ->
                         EngineSession.TrackingProtectionPolicy.CookiePolicy.ACCEPT_NON_TRACKERS
 
-                    context.getString(R.string.third_party_only) ->
+                    keys.cookiesThirdPartyOnly ->
                         EngineSession.TrackingProtectionPolicy.CookiePolicy.ACCEPT_ONLY_FIRST_PARTY
 
-                    context.getString(R.string.cross_site) ->
+                    keys.cookiesCrossSite ->
                         EngineSession.TrackingProtectionPolicy.CookiePolicy.ACCEPT_FIRST_PARTY_AND_ISOLATE_OTHERS
 
                     else -> {
@@ -162,44 +184,45 @@ class Settings(
 
     @Deprecated("This is no longer used. Read search engines from BrowserStore instead")
     val defaultSearchEngineName: String
-        get() = preferences.getString(getPreferenceKey(R.string.pref_key_search_engine), "")!!
+        get() = snapshot.defaultSearchEngineName
 
     val openLinksInExternalApp: Boolean
-        get() = preferences.getBoolean(
-            getPreferenceKey(R.string.pref_key_open_links_in_external_app),
-            false,
-        )
+        get() = snapshot.openLinksInExternalApp
 
     var isExperimentationEnabled: Boolean
-        get() = preferences.getBoolean(getPreferenceKey(R.string.pref_key_studies), !isKlarBuild)
+        get() = snapshot.isExperimentationEnabled
         set(value) {
             preferences.edit()
-                .putBoolean(getPreferenceKey(R.string.pref_key_studies), value)
+                .putBoolean(keys.studies, value)
                 .commit()
+            refreshSnapshot()
         }
 
     var shouldShowCfrForTrackingProtection: Boolean
-        get() = preferences.getBoolean(getPreferenceKey(R.string.pref_cfr_visibility_for_tracking_protection), true)
+        get() = snapshot.shouldShowCfrForTrackingProtection
         set(value) {
             preferences.edit()
-                .putBoolean(getPreferenceKey(R.string.pref_cfr_visibility_for_tracking_protection), value)
+                .putBoolean(keys.cfrVisibilityForTrackingProtection, value)
                 .apply()
+            refreshSnapshot()
         }
 
     var shouldShowStartBrowsingCfr: Boolean
-        get() = preferences.getBoolean(getPreferenceKey(R.string.pref_cfr_visibility_for_start_browsing), true)
+        get() = snapshot.shouldShowStartBrowsingCfr
         set(value) {
             preferences.edit()
-                .putBoolean(getPreferenceKey(R.string.pref_cfr_visibility_for_start_browsing), value)
+                .putBoolean(keys.cfrVisibilityForStartBrowsing, value)
                 .apply()
+            refreshSnapshot()
         }
 
     var isFirstRun: Boolean
-        get() = preferences.getBoolean(getPreferenceKey(R.string.firstrun_shown), true)
+        get() = snapshot.isFirstRun
         set(value) {
             preferences.edit()
-                .putBoolean(getPreferenceKey(R.string.firstrun_shown), value)
+                .putBoolean(keys.firstRunShown, value)
                 .apply()
+            refreshSnapshot()
         }
 
     /**
@@ -207,116 +230,65 @@ class Settings(
      * the default value will be the one from Nimbus.
      */
     var isNewOnboardingEnable: Boolean
-        get() = preferences.getBoolean(
-            getPreferenceKey(R.string.new_onboarding_enabled),
-            FocusNimbus.features.onboarding.value(context).isEnabled,
-        )
+        get() = snapshot.isNewOnboardingEnabled
+            ?: FocusNimbus.features.onboarding.value(context).isEnabled
         set(value) {
             preferences.edit()
-                .putBoolean(getPreferenceKey(R.string.new_onboarding_enabled), value)
+                .putBoolean(keys.newOnboardingEnabled, value)
                 .apply()
+            refreshSnapshot()
         }
 
     var shouldShowPrivacySecuritySettingsToolTip: Boolean
-        get() = preferences.getBoolean(getPreferenceKey(R.string.pref_tool_tip_privacy_security_settings), true)
+        get() = snapshot.shouldShowPrivacySecuritySettingsToolTip
         set(value) {
             preferences.edit()
-                .putBoolean(getPreferenceKey(R.string.pref_tool_tip_privacy_security_settings), value)
+                .putBoolean(keys.privacySecurityToolTip, value)
                 .apply()
+            refreshSnapshot()
         }
 
-    fun shouldEnableRemoteDebugging(): Boolean =
-        preferences.getBoolean(
-            getPreferenceKey(R.string.pref_key_remote_debugging),
-            false,
-        )
+    fun shouldEnableRemoteDebugging(): Boolean = snapshot.shouldEnableRemoteDebugging
 
-    fun shouldShowSearchSuggestions(): Boolean =
-        preferences.getBoolean(
-            getPreferenceKey(R.string.pref_key_show_search_suggestions),
-            false,
-        )
+    fun shouldShowSearchSuggestions(): Boolean = snapshot.shouldShowSearchSuggestions
 
-    fun shouldBlockWebFonts(): Boolean =
-        preferences.getBoolean(
-            getPreferenceKey(R.string.pref_key_performance_block_webfonts),
-            false,
-        )
+    fun shouldBlockWebFonts(): Boolean = snapshot.shouldBlockWebFonts
 
-    fun shouldBlockJavaScript(): Boolean =
-        preferences.getBoolean(
-            getPreferenceKey(R.string.pref_key_performance_block_javascript),
-            false,
-        )
+    fun shouldBlockJavaScript(): Boolean = snapshot.shouldBlockJavaScript
 
-    fun shouldBlockCookiesValue(): String =
-        preferences.getString(
-            getPreferenceKey(
-                R.string
-                    .pref_key_performance_enable_cookies,
-            ),
-            NO_VALUE,
-        )!!
+    fun shouldBlockCookiesValue(): String = snapshot.blockCookiesValue
 
     private fun setBlockCookiesValue(newValue: String) {
         preferences.edit()
-            .putString(getPreferenceKey(R.string.pref_key_performance_enable_cookies), newValue)
+            .putString(keys.enableCookies, newValue)
             .apply()
+        refreshSnapshot()
     }
 
-    fun shouldUseBiometrics(): Boolean =
-        preferences.getBoolean(getPreferenceKey(R.string.pref_key_biometric), false)
+    fun shouldUseBiometrics(): Boolean = snapshot.shouldUseBiometrics
 
-    fun shouldUseSecureMode(): Boolean =
-        preferences.getBoolean(getPreferenceKey(R.string.pref_key_secure), false)
+    fun shouldUseSecureMode(): Boolean = snapshot.shouldUseSecureMode
 
     fun setDefaultSearchEngineByName(name: String) {
         preferences.edit()
-            .putString(getPreferenceKey(R.string.pref_key_search_engine), name)
+            .putString(keys.searchEngine, name)
             .apply()
+        refreshSnapshot()
     }
 
-    fun shouldAutocompleteFromShippedDomainList() =
-        preferences.getBoolean(
-            getPreferenceKey(R.string.pref_key_autocomplete_preinstalled),
-            true,
-        )
+    fun shouldAutocompleteFromShippedDomainList() = snapshot.shouldAutocompleteFromShippedDomainList
 
-    fun shouldAutocompleteFromCustomDomainList() =
-        preferences.getBoolean(
-            getPreferenceKey(R.string.pref_key_autocomplete_custom),
-            true,
-        )
+    fun shouldAutocompleteFromCustomDomainList() = snapshot.shouldAutocompleteFromCustomDomainList
 
-    fun shouldBlockAdTrackers() =
-        preferences.getBoolean(
-            getPreferenceKey(R.string.pref_key_privacy_block_ads),
-            true,
-        )
+    fun shouldBlockAdTrackers() = snapshot.shouldBlockAdTrackers
 
-    private fun shouldUseSafeBrowsing() =
-        preferences.getBoolean(
-            getPreferenceKey(R.string.pref_key_safe_browsing),
-            true,
-        )
+    private fun shouldUseSafeBrowsing() = snapshot.shouldUseSafeBrowsing
 
-    fun shouldBlockAnalyticTrackers() =
-        preferences.getBoolean(
-            getPreferenceKey(R.string.pref_key_privacy_block_analytics),
-            true,
-        )
+    fun shouldBlockAnalyticTrackers() = snapshot.shouldBlockAnalyticTrackers
 
-    fun shouldBlockSocialTrackers() =
-        preferences.getBoolean(
-            getPreferenceKey(R.string.pref_key_privacy_block_social),
-            true,
-        )
+    fun shouldBlockSocialTrackers() = snapshot.shouldBlockSocialTrackers
 
-    fun shouldBlockOtherTrackers() =
-        preferences.getBoolean(
-            getPreferenceKey(R.string.pref_key_privacy_block_other3),
-            false,
-        )
+    fun shouldBlockOtherTrackers() = snapshot.shouldBlockOtherTrackers
 
     /**
      * This is automatically inferred based on the current system status. Not a setting in our app.
@@ -324,56 +296,33 @@ class Settings(
     fun isAccessibilityEnabled() =
         accessibilityManager?.isTouchExplorationEnabled ?: false || switchServiceIsEnabled
 
-    fun userHasToggledSearchSuggestions(): Boolean =
-        preferences.getBoolean(SearchSuggestionsPreferences.TOGGLED_SUGGESTIONS_PREF, false)
-
-    fun userHasDismissedNoSuggestionsMessage(): Boolean =
-        preferences.getBoolean(SearchSuggestionsPreferences.DISMISSED_NO_SUGGESTIONS_PREF, false)
-
-    fun hasRequestedDesktop() = preferences.getBoolean(
-        getPreferenceKey(R.string.has_requested_desktop),
-        false,
-    )
-
-    fun getAppLaunchCount() = preferences.getInt(
-        getPreferenceKey(R.string.app_launch_count),
-        0,
-    )
-
-    fun getTotalBlockedTrackersCount() = preferences.getInt(
-        getPreferenceKey(R.string.pref_key_privacy_total_trackers_blocked_count),
-        0,
-    )
-
-    fun hasSocialBlocked() = preferences.getBoolean(
-        getPreferenceKey(R.string.pref_key_privacy_block_social),
-        true,
-    )
-
-    fun hasAdvertisingBlocked() = preferences.getBoolean(
-        getPreferenceKey(R.string.pref_key_privacy_block_ads),
-        true,
-    )
-
-    fun hasAnalyticsBlocked() = preferences.getBoolean(
-        getPreferenceKey(R.string.pref_key_privacy_block_analytics),
-        true,
-    )
-
-    var lightThemeSelected by booleanPreference(
-        getPreferenceKey(R.string.pref_key_light_theme),
-        false,
-    )
-
-    var darkThemeSelected by booleanPreference(
-        getPreferenceKey(R.string.pref_key_dark_theme),
-        false,
-    )
-
-    var useDefaultThemeSelected by booleanPreference(
-        getPreferenceKey(R.string.pref_key_default_theme),
-        false,
-    )
+    fun userHasToggledSearchSuggestions(): Boolean = snapshot.userHasToggledSearchSuggestions
+
+    fun userHasDismissedNoSuggestionsMessage(): Boolean = snapshot.userHasDismissedNoSuggestionsMessage
+
+    fun hasRequestedDesktop() = snapshot.hasRequestedDesktop
+
+    fun getAppLaunchCount() = snapshot.appLaunchCount
+
+    fun getTotalBlockedTrackersCount() = snapshot.totalBlockedTrackersCount
+
+    fun hasSocialBlocked() = snapshot.shouldBlockSocialTrackers
+
+    fun hasAdvertisingBlocked() = snapshot.shouldBlockAdTrackers
+
+    fun hasAnalyticsBlocked() = snapshot.shouldBlockAnalyticTrackers
+
+    var lightThemeSelected: Boolean
+        get() = snapshot.lightThemeSelected
+        set(value) = putBoolean(keys.lightTheme, value)
+
+    var darkThemeSelected: Boolean
+        get() = snapshot.darkThemeSelected
+        set(value) = putBoolean(keys.darkTheme, value)
+
+    var useDefaultThemeSelected: Boolean
+        get() = snapshot.useDefaultThemeSelected
+        set(value) = putBoolean(keys.defaultTheme, value)
 
     /**
      * Sets Preferred Color scheme based on Dark/Light Theme Settings or Current Configuration
@@ -390,47 +339,50 @@ class Settings(
         }
     }
 
+    val isStoreDispatchProfilerEnabled: Boolean
+        get() = snapshot.isStoreDispatchProfilerEnabled
+
+    val shouldCountStoreDispatchAllocations: Boolean
+        get() = snapshot.shouldCountStoreDispatchAllocations
+
     var shouldUseNimbusPreview: Boolean
-        get() = preferences.getBoolean(getPreferenceKey(R.string.pref_key_use_nimbus_preview), false)
+        get() = snapshot.shouldUseNimbusPreview
         set(value) {
             preferences.edit()
-                .putBoolean(getPreferenceKey(R.string.pref_key_use_nimbus_preview), value)
+                .putBoolean(keys.useNimbusPreview, value)
                 .commit()
+            refreshSnapshot()
         }
 
     fun addSearchWidgetInstalled(count: Int) {
-        val key = getPreferenceKey(R.string.pref_key_search_widget_installed)
+        val key = keys.searchWidgetInstalled
         val newValue = preferences.getInt(key, 0) + count
         preferences.edit()
             .putInt(key, newValue)
             .apply()
+        refreshSnapshot()
     }
 
     val searchWidgetInstalled: Boolean
-        get() = 0 < preferences.getInt(
-            getPreferenceKey(R.string.pref_key_search_widget_installed),
-            0,
-        )
+        get() = 0 < snapshot.searchWidgetInstalledCount
 
     /**
      * This is used for promote search widget dialog to appear only at the first data clearing and
      * at the 5th one.
      */
     fun addClearBrowsingSessions(count: Int) {
-        val key = getPreferenceKey(R.string.pref_key_clear_browsing_sessions)
+        val key = keys.clearBrowsingSessions
         val newValue = preferences.getInt(key, 0) + count
         preferences.edit()
             .putInt(key, newValue)
             .apply()
+        refreshSnapshot()
     }
 
-    fun getClearBrowsingSessions() = preferences.getInt(
-        getPreferenceKey(R.string.pref_key_clear_browsing_sessions),
-        0,
-    )
+    fun getClearBrowsingSessions() = snapshot.clearBrowsingSessions
 
     fun getHttpsOnlyMode(): Engine.HttpsOnlyMode {
-        return if (preferences.getBoolean(getPreferenceKey(R.string.pref_key_https_only), true)) {
+        return if (snapshot.isHttpsOnlyEnabled) {
             Engine.HttpsOnlyMode.ENABLED
         } else {
             Engine.HttpsOnlyMode.DISABLED
@@ -443,14 +395,13 @@ class Settings(
      */
     @VisibleForTesting
     var isCookieBannerEnable: Boolean
-        get() = preferences.getBoolean(
-            getPreferenceKey(R.string.pref_key_cookie_banner_enabled),
-            FocusNimbus.features.cookieBanner.value(context).isCookieHandlingEnabled,
-        )
+        get() = snapshot.isCookieBannerEnabled
+            ?: FocusNimbus.features.cookieBanner.value(context).isCookieHandlingEnabled
         set(value) {
             preferences.edit()
-                .putBoolean(getPreferenceKey(R.string.pref_key_cookie_banner_enabled), value)
+                .putBoolean(keys.cookieBannerEnabled, value)
                 .apply()
+            refreshSnapshot()
         }
 
     fun saveCurrentCookieBannerOptionInSharePref(
@@ -458,16 +409,15 @@ class Settings(
     ) {
         preferences.edit()
             .putString(
-                context.getString(R.string.pref_key_cookie_banner_settings),
+                keys.cookieBannerSettings,
                 context.getString(cookieBannerOption.prefKeyId),
             ).apply()
+        refreshSnapshot()
     }
 
     fun getCurrentCookieBannerOptionFromSharePref(): CookieBannerOption {
-        val optionValue = preferences.getString(
-            context.getString(R.string.pref_key_cookie_banner_settings),
-            context.getString(CookieBannerOption.CookieBannerDisabled().prefKeyId),
-        )
+        val optionValue = snapshot.cookieBannerOption
+            ?: context.getString(CookieBannerOption.CookieBannerDisabled().prefKeyId)
         return when (optionValue) {
             context.getString(CookieBannerOption.CookieBannerDisabled().prefKeyId) ->
                 CookieBannerOption.CookieBannerDisabled()
@@ -479,8 +429,31 @@ class Settings(
         }
     }
 
-    private fun getPreferenceKey(resourceId: Int): String =
-        context.getString(resourceId)
+    private fun putBoolean(key: String, value: Boolean) {
+        preferences.edit()
+            .putBoolean(key, value)
+            .apply()
+        refreshSnapshot()
+    }
+
+    /**
+     * Read the snapshot if that hasn't happened yet. Called during startup on a background thread,
+     * so that the first read on the main thread doesn't load the preferences from disk.
+     */
+    @WorkerThread
+    fun loadSnapshot() {
+        snapshot
+    }
+
+    /**
+     * Read and publish a new snapshot. Changes written by [Settings] itself are published right away,
+     * all others once [SharedPreferences] notifies the listener.
+     */
+    private fun refreshSnapshot() {
+        synchronized(snapshotLock) {
+            currentSnapshot = SettingsSnapshot.read(preferences, keys)
+        }
+    }
 
     override val preferences: SharedPreferences
         get() = PreferenceManager.getDefaultSharedPreferences(context)
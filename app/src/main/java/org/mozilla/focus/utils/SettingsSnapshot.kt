@@ -0,0 +1,162 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.utils
+
+import android.content.Context
+import android.content.SharedPreferences
+import org.mozilla.focus.R
+import org.mozilla.focus.searchsuggestions.SearchSuggestionsPreferences
+import org.mozilla.focus.utils.AppConstants.isKlarBuild
+
+/**
+ * The values of the preferences read by [Settings] at one point in time.
+ *
+ * A snapshot is immutable: [Settings] replaces it as a whole whenever a preference changes. Values
+ * whose default comes from Nimbus are null if the preference has not been set.
+ */
+@Suppress("LongParameterList")
+data class SettingsSnapshot(
+    val defaultSearchEngineName: String,
+    val openLinksInExternalApp: Boolean,
+    val isExperimentationEnabled: Boolean,
+    val shouldShowCfrForTrackingProtection: Boolean,
+    val shouldShowStartBrowsingCfr: Boolean,
+    val isFirstRun: Boolean,
+    val isNewOnboardingEnabled: Boolean?,
+    val shouldShowPrivacySecuritySettingsToolTip: Boolean,
+    val shouldEnableRemoteDebugging: Boolean,
+    val shouldShowSearchSuggestions: Boolean,
+    val shouldBlockWebFonts: Boolean,
+    val shouldBlockJavaScript: Boolean,
+    val blockCookiesValue: String,
+    val shouldUseBiometrics: Boolean,
+    val shouldUseSecureMode: Boolean,
+    val shouldAutocompleteFromShippedDomainList: Boolean,
+    val shouldAutocompleteFromCustomDomainList: Boolean,
+    val shouldBlockAdTrackers: Boolean,
+    val shouldUseSafeBrowsing: Boolean,
+    val shouldBlockAnalyticTrackers: Boolean,
+    val shouldBlockSocialTrackers: Boolean,
+    val shouldBlockOtherTrackers: Boolean,
+    val userHasToggledSearchSuggestions: Boolean,
+    val userHasDismissedNoSuggestionsMessage: Boolean,
+    val hasRequestedDesktop: Boolean,
+    val appLaunchCount: Int,
+    val totalBlockedTrackersCount: Int,
+    val lightThemeSelected: Boolean,
+    val darkThemeSelected: Boolean,
+    val useDefaultThemeSelected: Boolean,
+    val isStoreDispatchProfilerEnabled: Boolean,
+    val shouldCountStoreDispatchAllocations: Boolean,
+    val shouldUseNimbusPreview: Boolean,
+    val searchWidgetInstalledCount: Int,
+    val clearBrowsingSessions: Int,
+    val isHttpsOnlyEnabled: Boolean,
+    val isCookieBannerEnabled: Boolean?,
+    val cookieBannerOption: String?,
+) {
+    /**
+     * The preference keys (and the preference values that are compared against), resolved from the
+     * string resources once.
+     */
+    @Suppress("UndocumentedPublicProperty")
+    class Keys(context: Context) {
+        val searchEngine = context.getString(R.string.pref_key_search_engine)
+        val openLinksInExternalApp = context.getString(R.string.pref_key_open_links_in_external_app)
+        val studies = context.getString(R.string.pref_key_studies)
+        val cfrVisibilityForTrackingProtection = context.getString(R.string.pref_cfr_visibility_for_tracking_protection)
+        val cfrVisibilityForStartBrowsing = context.getString(R.string.pref_cfr_visibility_for_start_browsing)
+        val firstRunShown = context.getString(R.string.firstrun_shown)
+        val newOnboardingEnabled = context.getString(R.string.new_onboarding_enabled)
+        val privacySecurityToolTip = context.getString(R.string.pref_tool_tip_privacy_security_settings)
+        val remoteDebugging = context.getString(R.string.pref_key_remote_debugging)
+        val showSearchSuggestions = context.getString(R.string.pref_key_show_search_suggestions)
+        val blockWebFonts = context.getString(R.string.pref_key_performance_block_webfonts)
+        val blockJavaScript = context.getString(R.string.pref_key_performance_block_javascript)
+        val enableCookies = context.getString(R.string.pref_key_performance_enable_cookies)
+        val biometric = context.getString(R.string.pref_key_biometric)
+        val secure = context.getString(R.string.pref_key_secure)
+        val autocompletePreinstalled = context.getString(R.string.pref_key_autocomplete_preinstalled)
+        val autocompleteCustom = context.getString(R.string.pref_key_autocomplete_custom)
+        val blockAds = context.getString(R.string.pref_key_privacy_block_ads)
+        val safeBrowsing = context.getString(R.string.pref_key_safe_browsing)
+        val blockAnalytics = context.getString(R.string.pref_key_privacy_block_analytics)
+        val blockSocial = context.getString(R.string.pref_key_privacy_block_social)
+        val blockOther = context.getString(R.string.pref_key_privacy_block_other3)
+        val hasRequestedDesktop = context.getString(R.string.has_requested_desktop)
+        val appLaunchCount = context.getString(R.string.app_launch_count)
+        val totalTrackersBlockedCount = context.getString(R.string.pref_key_privacy_total_trackers_blocked_count)
+        val lightTheme = context.getString(R.string.pref_key_light_theme)
+        val darkTheme = context.getString(R.string.pref_key_dark_theme)
+        val defaultTheme = context.getString(R.string.pref_key_default_theme)
+        val storeDispatchProfiler = context.getString(R.string.pref_key_store_dispatch_profiler)
+        val storeDispatchProfilerAllocations = context.getString(R.string.pref_key_store_dispatch_profiler_allocations)
+        val useNimbusPreview = context.getString(R.string.pref_key_use_nimbus_preview)
+        val searchWidgetInstalled = context.getString(R.string.pref_key_search_widget_installed)
+        val clearBrowsingSessions = context.getString(R.string.pref_key_clear_browsing_sessions)
+        val httpsOnly = context.getString(R.string.pref_key_https_only)
+        val cookieBannerEnabled = context.getString(R.string.pref_key_cookie_banner_enabled)
+        val cookieBannerSettings = context.getString(R.string.pref_key_cookie_banner_settings)
+        val toggledSuggestions = SearchSuggestionsPreferences.TOGGLED_SUGGESTIONS_PREF
+        val dismissedNoSuggestions = SearchSuggestionsPreferences.DISMISSED_NO_SUGGESTIONS_PREF
+
+        val cookiesYes = context.getString(R.string.yes)
+        val cookiesThirdPartyTracker = context.getString(R.string.third_party_tracker)
+        val cookiesThirdPartyOnly = context.getString(R.string.third_party_only)
+        val cookiesCrossSite = context.getString(R.string.cross_site)
+        val cookiesNo = context.getString(R.string.no)
+    }
+
+    companion object {
+        /**
+         * Read a snapshot from [preferences]. This loads the preferences from disk if that hasn't
+         * happened yet.
+         */
+        @Suppress("LongMethod")
+        fun read(preferences: SharedPreferences, keys: Keys) = SettingsSnapshot(
+            defaultSearchEngineName = preferences.getString(keys.searchEngine, "")!!,
+            openLinksInExternalApp = preferences.getBoolean(keys.openLinksInExternalApp, false),
+            isExperimentationEnabled = preferences.getBoolean(keys.studies, !isKlarBuild),
+            shouldShowCfrForTrackingProtection = preferences.getBoolean(keys.cfrVisibilityForTrackingProtection, true),
+            shouldShowStartBrowsingCfr = preferences.getBoolean(keys.cfrVisibilityForStartBrowsing, true),
+            isFirstRun = preferences.getBoolean(keys.firstRunShown, true),
+            isNewOnboardingEnabled = preferences.getBooleanOrNull(keys.newOnboardingEnabled),
+            shouldShowPrivacySecuritySettingsToolTip = preferences.getBoolean(keys.privacySecurityToolTip, true),
+            shouldEnableRemoteDebugging = preferences.getBoolean(keys.remoteDebugging, false),
+            shouldShowSearchSuggestions = preferences.getBoolean(keys.showSearchSuggestions, false),
+            shouldBlockWebFonts = preferences.getBoolean(keys.blockWebFonts, false),
+            shouldBlockJavaScript = preferences.getBoolean(keys.blockJavaScript, false),
+            blockCookiesValue = preferences.getString(keys.enableCookies, Settings.NO_VALUE)!!,
+            shouldUseBiometrics = preferences.getBoolean(keys.biometric, false),
+            shouldUseSecureMode = preferences.getBoolean(keys.secure, false),
+            shouldAutocompleteFromShippedDomainList = preferences.getBoolean(keys.autocompletePreinstalled, true),
+            shouldAutocompleteFromCustomDomainList = preferences.getBoolean(keys.autocompleteCustom, true),
+            shouldBlockAdTrackers = preferences.getBoolean(keys.blockAds, true),
+            shouldUseSafeBrowsing = preferences.getBoolean(keys.safeBrowsing, true),
+            shouldBlockAnalyticTrackers = preferences.getBoolean(keys.blockAnalytics, true),
+            shouldBlockSocialTrackers = preferences.getBoolean(keys.blockSocial, true),
+            shouldBlockOtherTrackers = preferences.getBoolean(keys.blockOther, false),
+            userHasToggledSearchSuggestions = preferences.getBoolean(keys.toggledSuggestions, false),
+            userHasDismissedNoSuggestionsMessage = preferences.getBoolean(keys.dismissedNoSuggestions, false),
+            hasRequestedDesktop = preferences.getBoolean(keys.hasRequestedDesktop, false),
+            appLaunchCount = preferences.getInt(keys.appLaunchCount, 0),
+            totalBlockedTrackersCount = preferences.getInt(keys.totalTrackersBlockedCount, 0),
+            lightThemeSelected = preferences.getBoolean(keys.lightTheme, false),
+            darkThemeSelected = preferences.getBoolean(keys.darkTheme, false),
+            useDefaultThemeSelected = preferences.getBoolean(keys.defaultTheme, false),
+            isStoreDispatchProfilerEnabled = preferences.getBoolean(keys.storeDispatchProfiler, false),
+            shouldCountStoreDispatchAllocations = preferences.getBoolean(keys.storeDispatchProfilerAllocations, false),
+            shouldUseNimbusPreview = preferences.getBoolean(keys.useNimbusPreview, false),
+            searchWidgetInstalledCount = preferences.getInt(keys.searchWidgetInstalled, 0),
+            clearBrowsingSessions = preferences.getInt(keys.clearBrowsingSessions, 0),
+            isHttpsOnlyEnabled = preferences.getBoolean(keys.httpsOnly, true),
+            isCookieBannerEnabled = preferences.getBooleanOrNull(keys.cookieBannerEnabled),
+            cookieBannerOption = preferences.getString(keys.cookieBannerSettings, null),
+        )
+
+        private fun SharedPreferences.getBooleanOrNull(key: String) =
+            if (contains(key)) getBoolean(key, false) else null
+    }
+}
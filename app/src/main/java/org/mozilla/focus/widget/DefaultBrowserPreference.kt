@@ -14,9 +14,9 @@ import androidx.core.os.bundleOf
 import androidx.preference.Preference
 import androidx.preference.PreferenceViewHolder
 import com.google.android.material.switchmaterial.SwitchMaterial
-import mozilla.components.support.utils.Browsers
 import org.mozilla.focus.GleanMetrics.SetDefaultBrowser
 import org.mozilla.focus.R
+import org.mozilla.focus.ext.components
 import org.mozilla.focus.ext.tryAsActivity
 import org.mozilla.focus.utils.SupportUtils.openDefaultBrowserSumoPage
 
@@ -27,8 +27,7 @@ class DefaultBrowserPreference @JvmOverloads constructor(
 ) : Preference(context, attrs, defStyleAttr) {
 
     private var switchView: SwitchMaterial? = null
-    private val browsers
-        get() = Browsers.all(context)
+    private val installedApps = context.components.installedApps
 
     init {
         widgetLayoutResource = R.layout.preference_default_browser
@@ -43,12 +42,21 @@ class DefaultBrowserPreference @JvmOverloads constructor(
         update()
     }
 
+    /**
+     * Show whether this app is the default browser. Called whenever the settings are resumed: The
+     * user may just have changed the default browser.
+     */
     fun update() {
-        switchView?.isChecked = browsers.isDefaultBrowser
+        installedApps.withBrowsers(refreshDefaultBrowser = true) { browsers ->
+            switchView?.isChecked = browsers.isDefaultBrowser
+        }
     }
 
     public override fun onClick() {
-        val isDefault = browsers.isDefaultBrowser
+        installedApps.withBrowsers { browsers -> onClick(browsers.isDefaultBrowser) }
+    }
+
+    private fun onClick(isDefault: Boolean) {
         when {
             Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q -> {
                 context.getSystemService(RoleManager::class.java).also {
@@ -0,0 +1,142 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.autocomplete
+
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.UnconfinedTestDispatcher
+import kotlinx.coroutines.test.runTest
+import mozilla.components.support.test.mock
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+
+@OptIn(ExperimentalCoroutinesApi::class)
+class DomainAutocompleteIndexTest {
+    private val shippedDomains = listOf(
+        "https://www.mozilla.org",
+        "http://example.com",
+        "facebook.com",
+        "https://www.firefox.com",
+        "fandom.com",
+    )
+
+    private var savedDomains: List<String>? = null
+
+    private fun createIndex(customDomains: List<String> = emptyList()) = DomainAutocompleteIndex(
+        mock(),
+        TestScope(UnconfinedTestDispatcher()),
+        loadShippedDomains = { shippedDomains },
+        loadCustomDomains = { customDomains },
+        saveCustomDomains = { _, domains -> savedDomains = domains },
+        getDefaultLocales = { "en-US" },
+    ).apply { initialize() }
+
+    @Test
+    fun `WHEN looking up a query THEN the suggestion matches the first matching domain of the list`() {
+        val index = createIndex()
+        val queries = listOf(
+            "", "w", "www.", "www.f", "f", "fa", "fan", "moz", "example", "example.com", "x", "www.x",
+            "Moz", "WWW.m", "FaN", "eXample.COM", "X",
+        )
+
+        queries.forEach { query ->
+            val expected = findInList(shippedDomains, query)
+            val result = index.getAutocompleteSuggestion(query, useCustomDomains = true, useShippedDomains = true)
+
+            assertEquals("Text for '$query'", expected?.first, result?.text)
+            assertEquals("URL for '$query'", expected?.second, result?.url)
+        }
+    }
+
+    @Test
+    fun `WHEN the query is not lowercase THEN the suggestion completes the input as typed`() {
+        val index = createIndex()
+
+        val result = index.getAutocompleteSuggestion("WWW.Moz", useCustomDomains = true, useShippedDomains = true)!!
+
+        assertEquals("WWW.Moz", result.input)
+        assertEquals("WWW.Mozilla.org", result.text)
+        assertEquals("https://www.mozilla.org", result.url)
+    }
+
+    @Test
+    fun `WHEN looking up a query THEN custom domains win over shipped domains`() {
+        val index = createIndex(customDomains = listOf("mozilla.de"))
+
+        val custom = index.getAutocompleteSuggestion("moz", useCustomDomains = true, useShippedDomains = true)!!
+        assertEquals("mozilla.de", custom.text)
+        assertEquals("http://mozilla.de", custom.url)
+        assertEquals(DomainAutocompleteIndex.SOURCE_CUSTOM, custom.source)
+        assertEquals(1, custom.totalItems)
+
+        val shipped = index.getAutocompleteSuggestion("moz", useCustomDomains = false, useShippedDomains = true)!!
+        assertEquals("mozilla.org", shipped.text)
+        assertEquals(DomainAutocompleteIndex.SOURCE_SHIPPED, shipped.source)
+        assertEquals(shippedDomains.size, shipped.totalItems)
+
+        assertNull(index.getAutocompleteSuggestion("moz", useCustomDomains = false, useShippedDomains = false))
+    }
+
+    @Test
+    fun `WHEN custom domains are added, reordered and removed THEN the suggestions and the saved list are updated`() = runTest {
+        val index = createIndex(customDomains = listOf("abc.com"))
+
+        index.addCustomDomain("abd.com")
+        assertEquals(listOf("abc.com", "abd.com"), savedDomains)
+        assertEquals("abc.com", index.getAutocompleteSuggestion("ab", true, false)?.text)
+        assertEquals("abd.com", index.getAutocompleteSuggestion("abd", true, false)?.text)
+
+        index.setCustomDomains(listOf("abd.com", "abc.com"))
+        assertEquals("abd.com", index.getAutocompleteSuggestion("ab", true, false)?.text)
+
+        index.removeCustomDomains(listOf("abd.com"))
+        assertEquals(listOf("abc.com"), index.getCustomDomains())
+        assertEquals(listOf("abc.com"), savedDomains)
+        assertNull(index.getAutocompleteSuggestion("abd", true, false))
+    }
+
+    @Test
+    fun `WHEN the default locales have changed THEN the shipped domains are loaded again`() {
+        var locales = "en-US"
+        val index = DomainAutocompleteIndex(
+            mock(),
+            TestScope(UnconfinedTestDispatcher()),
+            loadShippedDomains = { if (locales == "de-DE") listOf("mozilla.de") else shippedDomains },
+            loadCustomDomains = { emptyList() },
+            saveCustomDomains = { _, _ -> },
+            getDefaultLocales = { locales },
+        ).apply { initialize() }
+
+        assertEquals("mozilla.org", index.getAutocompleteSuggestion("moz", false, true)?.text)
+
+        index.initialize()
+        assertEquals("mozilla.org", index.getAutocompleteSuggestion("moz", false, true)?.text)
+
+        locales = "de-DE"
+        index.initialize()
+        assertEquals("mozilla.de", index.getAutocompleteSuggestion("moz", false, true)?.text)
+    }
+
+    /**
+     * The list based lookup of the android-components domain providers: Case-insensitive, completing
+     * the query as typed.
+     */
+    private fun findInList(domains: List<String>, rawQuery: String): Pair<String, String>? {
+        val query = rawQuery.lowercase()
+        fun complete(text: String) = rawQuery + text.substring(rawQuery.length)
+
+        domains.forEach { domain ->
+            val protocol = if (domain.startsWith("https://")) "https://" else "http://"
+            val withoutProtocol = domain.removePrefix("https://").removePrefix("http://")
+            val host = withoutProtocol.removePrefix("www.")
+            val url = protocol + withoutProtocol
+
+            if ("www.$host".startsWith(query)) return complete("www.$host") to url
+            if (host.startsWith(query)) return complete(host) to url
+        }
+        return null
+    }
+}
@@ -0,0 +1,75 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.browser
+
+import androidx.preference.PreferenceManager
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.StandardTestDispatcher
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.advanceTimeBy
+import kotlinx.coroutines.test.runCurrent
+import mozilla.components.support.test.mock
+import mozilla.components.support.test.robolectric.testContext
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mozilla.focus.R
+import org.mozilla.focus.ext.settings
+import org.robolectric.RobolectricTestRunner
+
+@OptIn(ExperimentalCoroutinesApi::class)
+@RunWith(RobolectricTestRunner::class)
+class BlockedTrackersCounterTest {
+    private lateinit var scope: TestScope
+    private lateinit var counter: BlockedTrackersCounter
+
+    @Before
+    fun setUp() {
+        scope = TestScope(StandardTestDispatcher())
+        counter = BlockedTrackersCounter(testContext, scope, flushDelayMillis = 1000)
+    }
+
+    @Test
+    fun `WHEN trackers are blocked THEN the total is written to disk after the flush delay`() {
+        repeat(100) { counter.record() }
+
+        assertEquals(100, counter.totalCount)
+        assertEquals(0, testContext.settings.getTotalBlockedTrackersCount())
+
+        scope.advanceTimeBy(1001)
+        scope.runCurrent()
+
+        assertEquals(100, testContext.settings.getTotalBlockedTrackersCount())
+    }
+
+    @Test
+    fun `WHEN the app goes to the background THEN the total is written to disk right away`() {
+        counter.record()
+
+        counter.onStop(mock())
+        scope.runCurrent()
+
+        assertEquals(1, testContext.settings.getTotalBlockedTrackersCount())
+    }
+
+    @Test
+    fun `GIVEN a saved total WHEN the counter is created THEN the total is loaded in the background`() {
+        PreferenceManager.getDefaultSharedPreferences(testContext).edit()
+            .putInt(testContext.getString(R.string.pref_key_privacy_total_trackers_blocked_count), 10)
+            .apply()
+        counter = BlockedTrackersCounter(testContext, scope, flushDelayMillis = 1000)
+
+        scope.runCurrent()
+        counter.record()
+
+        assertEquals(11, counter.totalCount)
+
+        counter.onStop(mock())
+        scope.runCurrent()
+
+        assertEquals(11, testContext.settings.getTotalBlockedTrackersCount())
+    }
+}
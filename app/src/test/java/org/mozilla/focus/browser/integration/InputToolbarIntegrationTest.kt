@@ -54,7 +54,6 @@ class InputToolbarIntegrationTest {
             toolbar,
             fragment,
             mock(),
-            mock(),
         )
     }
 
@@ -12,15 +12,23 @@ import mozilla.components.browser.state.state.createTab
 import mozilla.components.browser.state.store.BrowserStore
 import mozilla.components.concept.engine.EngineSession
 import mozilla.components.concept.engine.content.blocking.Tracker
+import mozilla.components.service.nimbus.NimbusApi
+import mozilla.components.support.test.any
 import mozilla.components.support.test.ext.joinBlocking
 import mozilla.components.support.test.libstate.ext.waitUntilIdle
+import mozilla.components.support.test.mock
 import mozilla.components.support.test.robolectric.testContext
+import org.junit.Assert.assertEquals
 import org.junit.Assert.assertFalse
 import org.junit.Assert.assertTrue
 import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
+import org.mockito.Mockito.doAnswer
+import org.mockito.Mockito.times
+import org.mockito.Mockito.verify
 import org.mockito.MockitoAnnotations
+import org.mozilla.experiments.nimbus.NimbusInterface
 import org.mozilla.focus.ext.components
 import org.mozilla.focus.nimbus.FocusNimbus
 import org.mozilla.focus.nimbus.Onboarding
@@ -108,6 +116,80 @@ class CfrMiddlewareTest {
         }
     }
 
+    @Test
+    fun `GIVEN a mozilla tab WHEN its URL changes THEN the tracking protection CFR can be shown`() {
+        if (onboardingExperiment.isCfrEnabled) {
+            val mozillaTab = createTab(tabUrl = "https://www.mozilla.org")
+            val trackerBlockedAction = TrackingProtectionAction.TrackerBlockedAction(
+                tabId = "1",
+                tracker = Tracker(
+                    url = "test.org",
+                    trackingCategories = listOf(EngineSession.TrackingProtectionPolicy.TrackingCategory.AD),
+                    cookiePolicies = listOf(EngineSession.TrackingProtectionPolicy.CookiePolicy.ACCEPT_NONE),
+                ),
+            )
+
+            browserStore.dispatch(TabListAction.AddTabAction(mozillaTab, select = true)).joinBlocking()
+            browserStore.dispatch(ContentAction.UpdateSecurityInfoAction("1", SecurityInfoState(secure = true))).joinBlocking()
+            browserStore.dispatch(trackerBlockedAction).joinBlocking()
+            appStore.waitUntilIdle()
+
+            assertFalse(appStore.state.showTrackingProtectionCfrForTab.getOrDefault("1", false))
+
+            browserStore.dispatch(ContentAction.UpdateUrlAction("1", "https://www.test.org")).joinBlocking()
+            browserStore.dispatch(trackerBlockedAction).joinBlocking()
+            appStore.waitUntilIdle()
+
+            assertTrue(appStore.state.showTrackingProtectionCfrForTab.getOrDefault("1", false))
+        }
+    }
+
+    @Test
+    fun `WHEN actions are dispatched THEN the middleware subscribes to experiment updates only once`() {
+        val experiments: NimbusApi = mock()
+        val store = BrowserStore(middleware = listOf(CfrMiddleware(testContext) { experiments }))
+
+        store.dispatch(TabListAction.AddTabAction(createTab())).joinBlocking()
+        store.dispatch(ContentAction.UpdateUrlAction("1", "https://www.mozilla.org")).joinBlocking()
+        store.dispatch(ContentAction.UpdateProgressAction("1", 50)).joinBlocking()
+
+        verify(experiments, times(1)).register(any())
+    }
+
+    @Test
+    fun `WHEN experiments are updated while the configuration is read THEN it is read again with the next action`() {
+        val experiments: NimbusApi = mock()
+        var observer: NimbusInterface.Observer? = null
+        doAnswer {
+            observer = it.getArgument(0)
+            null
+        }.`when`(experiments).register(any())
+
+        var loads = 0
+        val middleware = CfrMiddleware(
+            testContext,
+            experiments = { experiments },
+            loadOnboardingConfig = {
+                loads++
+                if (loads == 1) {
+                    // The update lands after the configuration has been read from Nimbus.
+                    observer!!.onUpdatesApplied(emptyList())
+                }
+                onboardingExperiment
+            },
+        )
+        val store = BrowserStore(middleware = listOf(middleware))
+
+        store.dispatch(TabListAction.AddTabAction(createTab())).joinBlocking()
+        assertEquals(1, loads)
+
+        store.dispatch(ContentAction.UpdateProgressAction("1", 50)).joinBlocking()
+        assertEquals(2, loads)
+
+        store.dispatch(ContentAction.UpdateProgressAction("1", 100)).joinBlocking()
+        assertEquals(2, loads)
+    }
+
     private fun createTab(
         tabUrl: String = "https://www.test.org",
         tabId: Int = 1,
@@ -0,0 +1,121 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.locale
+
+import android.content.Context
+import android.content.ContextWrapper
+import android.content.res.Configuration
+import android.content.res.Resources
+import androidx.preference.PreferenceManager
+import mozilla.components.support.test.robolectric.testContext
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertSame
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mozilla.focus.R
+import org.robolectric.RobolectricTestRunner
+import java.util.Locale
+
+@RunWith(RobolectricTestRunner::class)
+class LocaleManagerTest {
+    private val localeManager = LocaleManager()
+    private val context = CountingContext(testContext)
+
+    @Test
+    fun `WHEN no locale is selected THEN the resources of the context are returned`() {
+        assertSame(context.resources, localeManager.getLocalizedResources(context))
+        assertEquals(0, context.created)
+    }
+
+    @Test
+    fun `WHEN the selected locale is the one of the context THEN the resources of the context are returned`() {
+        selectLocale(context.resources.configuration.locale.toLanguageTag())
+
+        assertSame(context.resources, localeManager.getLocalizedResources(context))
+        assertEquals(0, context.created)
+    }
+
+    @Test
+    fun `WHEN localized resources are requested repeatedly THEN they are created once`() {
+        selectLocale("de-DE")
+
+        val resources = localeManager.getLocalizedResources(context)
+        repeat(10) {
+            assertSame(resources, localeManager.getLocalizedResources(context))
+        }
+
+        assertEquals(Locale.GERMANY, resources.configuration.locale)
+        assertEquals(1, context.created)
+    }
+
+    @Test
+    fun `WHEN the selected locale changes THEN resources for the new locale are created`() {
+        selectLocale("de-DE")
+        localeManager.getLocalizedResources(context)
+
+        selectLocale("fr-FR")
+        val resources = localeManager.getLocalizedResources(context)
+
+        assertEquals(Locale.FRANCE, resources.configuration.locale)
+        assertEquals(2, context.created)
+    }
+
+    @Test
+    fun `WHEN the configuration changes THEN resources are created again`() {
+        selectLocale("de-DE")
+        val resources = localeManager.getLocalizedResources(context)
+
+        // E.g. the device has been rotated: The configuration is part of the cache key.
+        val configuration = Configuration(testContext.resources.configuration).apply {
+            orientation = if (orientation == Configuration.ORIENTATION_LANDSCAPE) {
+                Configuration.ORIENTATION_PORTRAIT
+            } else {
+                Configuration.ORIENTATION_LANDSCAPE
+            }
+        }
+        context.configurationResources = testContext.createConfigurationContext(configuration).resources
+
+        val changedResources = localeManager.getLocalizedResources(context)
+
+        assertNotSame(resources, changedResources)
+        assertEquals(configuration.orientation, changedResources.configuration.orientation)
+        assertEquals(Locale.GERMANY, changedResources.configuration.locale)
+        assertEquals(2, context.created)
+    }
+
+    @Test
+    fun `WHEN the cache is cleared THEN resources are created again`() {
+        selectLocale("de-DE")
+        val resources = localeManager.getLocalizedResources(context)
+
+        localeManager.clearLocalizedResources()
+
+        assertNotSame(resources, localeManager.getLocalizedResources(context))
+        assertEquals(2, context.created)
+    }
+
+    private fun selectLocale(languageTag: String) {
+        PreferenceManager.getDefaultSharedPreferences(testContext).edit()
+            .putString(testContext.getString(R.string.pref_key_locale), languageTag)
+            .apply()
+    }
+
+    private class CountingContext(base: Context) : ContextWrapper(base) {
+        var created = 0
+
+        // The resources after a configuration change, if any.
+        var configurationResources: Resources? = null
+
+        override fun getApplicationContext(): Context = this
+
+        override fun getResources(): Resources = configurationResources ?: super.getResources()
+
+        override fun createConfigurationContext(overrideConfiguration: Configuration): Context {
+            created++
+            return super.createConfigurationContext(overrideConfiguration)
+        }
+    }
+}
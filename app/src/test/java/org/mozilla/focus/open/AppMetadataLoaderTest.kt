@@ -0,0 +1,127 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.open
+
+import android.content.Context
+import android.content.pm.ActivityInfo
+import android.content.pm.ApplicationInfo
+import android.content.pm.PackageInfo
+import android.content.pm.PackageManager
+import android.graphics.drawable.ColorDrawable
+import mozilla.components.support.test.any
+import mozilla.components.support.test.mock
+import mozilla.components.support.test.whenever
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.ArgumentMatchers.anyInt
+import org.mockito.ArgumentMatchers.anyString
+import org.mockito.Mockito.times
+import org.mockito.Mockito.verify
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class AppMetadataLoaderTest {
+    private val packageManager: PackageManager = mock()
+    private val context: Context = mock()
+
+    private lateinit var loader: AppMetadataLoader
+    private var loaded: List<AppAdapter.App>? = null
+    private var loadedStore: AppAdapter.App? = null
+
+    @Before
+    fun setUp() {
+        whenever(context.applicationContext).thenReturn(context)
+        whenever(context.packageManager).thenReturn(packageManager)
+        whenever(packageManager.getPackageInfo(anyString(), anyInt())).thenReturn(PackageInfo())
+        whenever(packageManager.loadItemIcon(any(), any())).thenReturn(ColorDrawable())
+
+        // Run everything right away.
+        loader = AppMetadataLoader(context, { it.run() }, { it.run() })
+    }
+
+    @Test
+    fun `WHEN apps are loaded THEN they are sorted by label`() {
+        load(arrayOf(activity("org.mozilla.b", "B"), activity("org.mozilla.a", "A")), activity("store", "Store"))
+
+        assertEquals(listOf("A", "B"), loaded!!.map { it.label })
+        assertEquals("Store", loadedStore!!.label)
+    }
+
+    @Test
+    fun `GIVEN loaded apps WHEN loading them again THEN they are served from the cache`() {
+        val apps = arrayOf(activity("org.mozilla.b", "B"), activity("org.mozilla.a", "A"))
+        assertNull(loader.getCachedApps(apps))
+
+        load(apps)
+        load(apps)
+
+        assertEquals(listOf("A", "B"), loader.getCachedApps(apps)!!.map { it.label })
+        verify(packageManager, times(2)).loadItemIcon(any(), any())
+        verify(packageManager, times(2)).getPackageInfo(anyString(), anyInt())
+    }
+
+    @Test
+    fun `GIVEN cached apps WHEN only the store is loaded THEN the apps are not loaded again`() {
+        val apps = arrayOf(activity("org.mozilla.a", "A"))
+        load(apps)
+
+        var store: AppAdapter.App? = null
+        loader.loadStore(activity("store", "Store")) { store = it }
+
+        assertEquals("Store", store!!.label)
+        verify(packageManager, times(2)).loadItemIcon(any(), any())
+    }
+
+    @Test
+    fun `GIVEN loaded apps WHEN a package changes THEN its apps are loaded again`() {
+        val apps = arrayOf(activity("org.mozilla.b", "B"), activity("org.mozilla.a", "A"))
+        load(apps)
+
+        loader.invalidate("org.mozilla.a")
+
+        assertNull(loader.getCachedApps(apps))
+        assertNotNull(loader.getCachedApps(arrayOf(apps[0])))
+
+        load(apps)
+
+        verify(packageManager, times(3)).loadItemIcon(any(), any())
+    }
+
+    @Test
+    fun `WHEN a package is updated THEN apps of the previous version are not used`() {
+        val app = activity("org.mozilla.a", "A")
+        load(arrayOf(app))
+
+        whenever(packageManager.getPackageInfo(anyString(), anyInt())).thenReturn(
+            PackageInfo().apply {
+                @Suppress("DEPRECATION")
+                versionCode = 2
+            },
+        )
+        loader.invalidate("org.mozilla.a")
+        app.nonLocalizedLabel = "A2"
+        load(arrayOf(app))
+
+        assertEquals(listOf("A2"), loader.getCachedApps(arrayOf(app))!!.map { it.label })
+    }
+
+    private fun load(apps: Array<ActivityInfo>, store: ActivityInfo? = null) {
+        loader.load(apps, store) { loadedApps, loadedStoreApp ->
+            loaded = loadedApps
+            loadedStore = loadedStoreApp
+        }
+    }
+
+    private fun activity(packageName: String, label: String) = ActivityInfo().apply {
+        this.packageName = packageName
+        this.name = "$packageName.Activity"
+        this.nonLocalizedLabel = label
+        this.applicationInfo = ApplicationInfo().apply { this.packageName = packageName }
+    }
+}
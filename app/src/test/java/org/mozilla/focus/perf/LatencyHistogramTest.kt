@@ -0,0 +1,72 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.perf
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class LatencyHistogramTest {
+    private val histogram = LatencyHistogram()
+
+    @Test
+    fun `WHEN values are recorded THEN every bucket bounds its values with a relative error of at most 12,5 percent`() {
+        assertEquals(0, histogram.bucketOf(-5))
+        assertEquals(histogram.bucketCount - 1, histogram.bucketOf(Long.MAX_VALUE))
+
+        var previousBucket = 0
+        for (value in 0L until 1_000_000L) {
+            val bucket = histogram.bucketOf(value)
+            val lowerBound = histogram.lowerBoundOf(bucket)
+
+            assertTrue(bucket == previousBucket || bucket == previousBucket + 1)
+            assertTrue(lowerBound <= value)
+            assertTrue(value - lowerBound <= lowerBound / 8)
+            previousBucket = bucket
+        }
+    }
+
+    @Test
+    fun `WHEN querying percentiles THEN the lower bound of the bucket with the percentile is returned`() {
+        assertEquals(0L, histogram.snapshot().percentile(50.0))
+
+        (1L..100L).forEach { histogram.record(it * 10) }
+        val snapshot = histogram.snapshot()
+
+        assertEquals(100L, snapshot.count)
+        assertEquals(histogram.lowerBoundOf(histogram.bucketOf(500)), snapshot.percentile(50.0))
+        assertEquals(histogram.lowerBoundOf(histogram.bucketOf(950)), snapshot.percentile(95.0))
+        assertEquals(histogram.lowerBoundOf(histogram.bucketOf(990)), snapshot.percentile(99.0))
+    }
+
+    @Test
+    fun `WHEN snapshots are merged THEN their counts are added up`() {
+        histogram.record(10)
+        val first = histogram.snapshotAndReset()
+        histogram.record(10)
+        histogram.record(1000)
+
+        val merged = first.merge(histogram.snapshot())
+
+        assertEquals(3L, merged.count)
+        assertEquals(2L, merged.countAt(histogram.bucketOf(10)))
+        assertEquals(1L, merged.countAt(histogram.bucketOf(1000)))
+        assertEquals(1L, histogram.snapshot().countAt(histogram.bucketOf(10)))
+    }
+
+    @Test
+    fun `WHEN recording from multiple threads THEN no value is lost`() {
+        val executor = Executors.newFixedThreadPool(4)
+        repeat(4) {
+            executor.execute { repeat(10_000) { value -> histogram.record(value.toLong()) } }
+        }
+        executor.shutdown()
+        executor.awaitTermination(10, TimeUnit.SECONDS)
+
+        assertEquals(40_000L, histogram.snapshot().count)
+    }
+}
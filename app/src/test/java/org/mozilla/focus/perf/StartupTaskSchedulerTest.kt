@@ -0,0 +1,146 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.perf
+
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertThrows
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.mozilla.focus.perf.StartupTaskScheduler.ThreadAffinity.BACKGROUND
+import java.util.Collections
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+
+class StartupTaskSchedulerTest {
+    private val backgroundExecutor = Executors.newFixedThreadPool(2)
+    private val mainQueue = mutableListOf<Runnable>()
+    private val mainExecutor = Executor { mainQueue.add(it) }
+
+    private val scheduler = StartupTaskScheduler(backgroundExecutor, mainExecutor)
+    private val executed: MutableList<String> = Collections.synchronizedList(mutableListOf())
+
+    @After
+    fun tearDown() {
+        backgroundExecutor.shutdownNow()
+    }
+
+    @Test
+    fun `WHEN started THEN required tasks run in dependency order and background tasks run in the background`() {
+        val mainThread = Thread.currentThread()
+        var backgroundThread: Thread? = null
+
+        scheduler.add("background", BACKGROUND) {
+            backgroundThread = Thread.currentThread()
+            Thread.sleep(50)
+            executed.add("background")
+        }
+        scheduler.add("second", dependsOn = setOf("first", "background")) { executed.add("second") }
+        scheduler.add("first") { executed.add("first") }
+
+        scheduler.start()
+
+        assertEquals(listOf("first", "background", "second"), executed)
+        assertNotEquals(mainThread, backgroundThread)
+        assertTrue(scheduler.mainThreadWaitMillis > 0)
+        assertEquals(setOf("first", "background", "second"), scheduler.getTimings().map { it.name }.toSet())
+    }
+
+    @Test
+    fun `WHEN started THEN deferred main thread tasks run after start`() {
+        scheduler.add("required") { executed.add("required") }
+        scheduler.add("deferred", requiredForFirstFrame = false, dependsOn = setOf("required")) {
+            executed.add("deferred")
+        }
+
+        scheduler.start()
+
+        assertEquals(listOf("required"), executed)
+        assertEquals(1, mainQueue.size)
+
+        mainQueue.forEach { it.run() }
+
+        assertEquals(listOf("required", "deferred"), executed)
+    }
+
+    @Test
+    fun `GIVEN a task depending on all other tasks WHEN started THEN it runs last`() {
+        val scheduler = StartupTaskScheduler(Executor { it.run() }, mainExecutor)
+        scheduler.add("background", BACKGROUND, requiredForFirstFrame = false) { executed.add("background") }
+        scheduler.add("deferred", requiredForFirstFrame = false) { executed.add("deferred") }
+        scheduler.add("required") { executed.add("required") }
+        scheduler.add("last", BACKGROUND, requiredForFirstFrame = false, dependsOn = scheduler.taskNames) {
+            executed.add("last")
+        }
+
+        scheduler.start()
+        mainQueue.forEach { it.run() }
+
+        assertEquals(listOf("background", "required", "deferred", "last"), executed)
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun `GIVEN a failing required background task WHEN started THEN start fails`() {
+        scheduler.add("failing", BACKGROUND) { throw IllegalArgumentException("Failed") }
+
+        scheduler.start()
+    }
+
+    @Test
+    fun `GIVEN a failing required main thread task WHEN started THEN start fails right away with the wrapped exception`() {
+        val error = IllegalArgumentException("Failed")
+        scheduler.add("failing") { throw error }
+        scheduler.add("next") { executed.add("next") }
+
+        val thrown = assertThrows(IllegalStateException::class.java) { scheduler.start() }
+
+        assertSame(error, thrown.cause)
+        assertEquals(emptyList<String>(), executed)
+    }
+
+    @Test
+    fun `GIVEN a failing deferred background task WHEN started THEN it is not rethrown and its dependents don't run`() {
+        // Runs background tasks right away: An exception escaping a task would escape start().
+        val scheduler = StartupTaskScheduler(Executor { it.run() }, mainExecutor)
+        scheduler.add("required") { executed.add("required") }
+        scheduler.add("failing", BACKGROUND, requiredForFirstFrame = false) {
+            throw IllegalArgumentException("Failed")
+        }
+        scheduler.add("dependent", requiredForFirstFrame = false, dependsOn = setOf("failing")) {
+            executed.add("dependent")
+        }
+
+        scheduler.start()
+        mainQueue.forEach { it.run() }
+
+        assertEquals(listOf("required"), executed)
+        assertEquals(setOf("required", "failing", "dependent"), scheduler.getTimings().map { it.name }.toSet())
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun `GIVEN a dependency cycle WHEN started THEN start fails`() {
+        scheduler.add("a", dependsOn = setOf("b")) {}
+        scheduler.add("b", dependsOn = setOf("a")) {}
+
+        scheduler.start()
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun `GIVEN an unknown dependency WHEN started THEN start fails`() {
+        scheduler.add("a", dependsOn = setOf("unknown")) {}
+
+        scheduler.start()
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun `GIVEN a required task depending on a deferred task WHEN started THEN start fails`() {
+        scheduler.add("deferred", requiredForFirstFrame = false) {}
+        scheduler.add("required", dependsOn = setOf("deferred")) {}
+
+        scheduler.start()
+    }
+}
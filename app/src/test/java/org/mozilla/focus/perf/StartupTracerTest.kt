@@ -0,0 +1,122 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.perf
+
+import mozilla.components.support.base.facts.Fact
+import mozilla.components.support.test.robolectric.testContext
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mozilla.focus.ext.components
+import org.mozilla.focus.telemetry.ProfilerMarkerFactProcessor
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class StartupTracerTest {
+    private val facts = mutableListOf<Fact>()
+    private val tracer = StartupTracer(recordOrigins = true) { facts.add(it) }
+
+    private inner class Holder {
+        val inner by tracer.traced {
+            Thread.sleep(20)
+            "inner"
+        }
+
+        val outer by tracer.traced {
+            Thread.sleep(20)
+            inner + "-outer"
+        }
+    }
+
+    @Test
+    fun `WHEN a traced property is accessed THEN its initialization is recorded once`() {
+        val holder = Holder()
+
+        assertEquals("inner-outer", holder.outer)
+        assertEquals("inner-outer", holder.outer)
+
+        val traces = tracer.getTraces()
+        assertEquals(listOf("Holder.outer", "Holder.inner"), traces.map { it.name })
+
+        val (outer, inner) = traces
+        assertNull(outer.parent)
+        assertEquals("Holder.outer", inner.parent)
+        assertTrue(outer.isMainThread)
+        assertTrue(outer.origin!!.startsWith(StartupTracerTest::class.java.name))
+        assertTrue(outer.durationMillis >= 40)
+        assertTrue(outer.selfMillis < outer.durationMillis)
+
+        assertTrue(tracer.dump().contains("  Holder.inner"))
+    }
+
+    @Test
+    fun `GIVEN origins are not recorded WHEN a traced property is accessed THEN no origin is captured`() {
+        val tracer = StartupTracer { facts.add(it) }
+        val holder = object {
+            val value by tracer.traced { "value" }
+        }
+
+        assertEquals("value", holder.value)
+        assertNull(tracer.getTraces().single().origin)
+    }
+
+    @Test
+    fun `WHEN markers are enabled THEN every trace is emitted once its outermost initializer has finished`() {
+        val holder = Holder()
+        holder.inner
+
+        assertTrue(facts.isEmpty())
+
+        tracer.startEmittingMarkers()
+
+        assertEquals(listOf("Holder.inner"), facts.map { it.item })
+
+        holder.outer
+
+        assertEquals(listOf("Holder.inner", "Holder.outer"), facts.map { it.item })
+        assertTrue(facts.last().metadata!![ProfilerMarkerFactProcessor.KEY_DURATION_MILLIS] as Double >= 20.0)
+    }
+
+    @Test
+    fun `WHEN the application is created THEN components that are not needed for startup are not initialized`() {
+        val initialized = testContext.components.startupTracer.getTraces().map { it.name }.toSet()
+
+        val unexpected = initialized.intersect(NOT_NEEDED_FOR_STARTUP)
+        assertTrue("Initialized during startup: $unexpected", unexpected.isEmpty())
+    }
+
+    @Test
+    fun `WHEN the application is created THEN component initialization on the main thread stays within its budget`() {
+        val traces = testContext.components.startupTracer.getTraces()
+        val mainThreadMillis = traces.filter { it.isMainThread }.sumOf { it.selfMillis }
+
+        assertTrue(
+            "Main thread spent ${mainThreadMillis}ms initializing components:\n" +
+                testContext.components.startupTracer.dump(),
+            mainThreadMillis <= MAIN_THREAD_BUDGET_MILLIS,
+        )
+    }
+
+    companion object {
+        // Unit tests also pay for class loading and Robolectric, so this is above the on-device
+        // budget. It still catches a component that starts doing disk or network work on the main
+        // thread in its initializer.
+        private const val MAIN_THREAD_BUDGET_MILLIS = 1000L
+
+        private val NOT_NEEDED_FOR_STARTUP = setOf(
+            "Components.icons",
+            "Components.topSitesStorage",
+            "Components.topSitesUseCases",
+            "Components.publicSuffixList",
+            "Components.cookieBannerStorage",
+            "Components.contextMenuUseCases",
+            "Components.downloadsUseCases",
+            "Components.appLinksInterceptor",
+            "Components.customTabsUseCases",
+        )
+    }
+}
@@ -0,0 +1,89 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.perf
+
+import mozilla.components.browser.state.action.BrowserAction
+import mozilla.components.browser.state.action.TabListAction
+import mozilla.components.browser.state.state.BrowserState
+import mozilla.components.browser.state.state.createTab
+import mozilla.components.browser.state.store.BrowserStore
+import mozilla.components.lib.state.Middleware
+import mozilla.components.lib.state.MiddlewareContext
+import mozilla.components.support.test.ext.joinBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class StoreDispatchProfilerTest {
+
+    @Test
+    fun `GIVEN an enabled profiler WHEN actions are dispatched THEN the time of every middleware and the reducer is recorded`() {
+        val profiler = StoreDispatchProfiler(enabled = true)
+        val store = BrowserStore(middleware = profiler.instrument(listOf(SlowMiddleware(), PassThroughMiddleware())))
+
+        store.dispatch(TabListAction.AddTabAction(createTab("https://www.mozilla.org", id = "1"))).joinBlocking()
+        store.dispatch(TabListAction.AddTabAction(createTab("https://www.firefox.com", id = "2"))).joinBlocking()
+
+        val histograms = profiler.getHistograms().filter { it.actionType == "AddTabAction" }
+        assertEquals(
+            setOf("SlowMiddleware", "PassThroughMiddleware", StoreDispatchProfiler.REDUCER),
+            histograms.map { it.stage }.toSet(),
+        )
+        assertTrue(histograms.all { it.count.get() == 2L })
+
+        // The slow middleware is measured without the middlewares after it.
+        val slow = histograms.single { it.stage == "SlowMiddleware" }
+        assertEquals("SlowMiddleware", profiler.getHistograms().first().stage)
+        assertTrue(slow.percentileMicros(50) >= 2000)
+
+        assertEquals(6, profiler.getRecentSamples().count { it.actionType == "AddTabAction" })
+        assertTrue(profiler.dump().contains("SlowMiddleware / AddTabAction: 2"))
+    }
+
+    @Test
+    fun `GIVEN a disabled profiler WHEN actions are dispatched THEN nothing is recorded`() {
+        val profiler = StoreDispatchProfiler(enabled = false)
+        val store = BrowserStore(middleware = profiler.instrument(listOf(SlowMiddleware())))
+
+        store.dispatch(TabListAction.AddTabAction(createTab("https://www.mozilla.org"))).joinBlocking()
+
+        assertEquals(1, store.state.tabs.size)
+        assertTrue(profiler.getHistograms().isEmpty())
+        assertTrue(profiler.getRecentSamples().isEmpty())
+    }
+
+    @Test
+    fun `WHEN the profiler is reset THEN all samples are removed`() {
+        val profiler = StoreDispatchProfiler(enabled = true)
+        val store = BrowserStore(middleware = profiler.instrument(listOf(PassThroughMiddleware())))
+
+        store.dispatch(TabListAction.AddTabAction(createTab("https://www.mozilla.org"))).joinBlocking()
+        profiler.reset()
+
+        assertTrue(profiler.getHistograms().isEmpty())
+        assertTrue(profiler.getRecentSamples().isEmpty())
+    }
+
+    private class SlowMiddleware : Middleware<BrowserState, BrowserAction> {
+        override fun invoke(
+            context: MiddlewareContext<BrowserState, BrowserAction>,
+            next: (BrowserAction) -> Unit,
+            action: BrowserAction,
+        ) {
+            Thread.sleep(3)
+            next(action)
+        }
+    }
+
+    private class PassThroughMiddleware : Middleware<BrowserState, BrowserAction> {
+        override fun invoke(
+            context: MiddlewareContext<BrowserState, BrowserAction>,
+            next: (BrowserAction) -> Unit,
+            action: BrowserAction,
+        ) {
+            next(action)
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.perf
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.math.abs
+
+class UniqueCounterTest {
+
+    @Test
+    fun `WHEN few values are added THEN the estimate is exact`() {
+        val counter = UniqueCounter()
+
+        repeat(3) {
+            counter.add(UniqueCounter.hash("mozilla.org"))
+            counter.add(UniqueCounter.hash("MOZILLA.org"))
+            counter.add(UniqueCounter.hash("https://example.com/", 8, 19))
+        }
+
+        assertEquals(2L, counter.estimate())
+
+        counter.reset()
+        assertEquals(0L, counter.estimate())
+    }
+
+    @Test
+    fun `WHEN many values are added THEN the estimate is close to the real number`() {
+        val counter = UniqueCounter()
+        val other = UniqueCounter()
+
+        repeat(50_000) { counter.add(UniqueCounter.hash("domain$it.com")) }
+        repeat(50_000) { other.add(UniqueCounter.hash("domain${it + 25_000}.com")) }
+        counter.merge(other)
+
+        val error = abs(counter.estimate() - 75_000L) / 75_000.0
+        assertTrue("Error: $error", error < 0.1)
+    }
+}
@@ -0,0 +1,104 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.settings
+
+import androidx.recyclerview.widget.ListUpdateCallback
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.StandardTestDispatcher
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.UnconfinedTestDispatcher
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+@OptIn(ExperimentalCoroutinesApi::class)
+class DomainListTest {
+    private val updates = mutableListOf<String>()
+
+    private val updateCallback = object : ListUpdateCallback {
+        override fun onInserted(position: Int, count: Int) {
+            updates.add("insert $position $count")
+        }
+
+        override fun onRemoved(position: Int, count: Int) {
+            updates.add("remove $position $count")
+        }
+
+        override fun onMoved(fromPosition: Int, toPosition: Int) {
+            updates.add("move $fromPosition $toPosition")
+        }
+
+        override fun onChanged(position: Int, count: Int, payload: Any?) {
+            updates.add("change $position $count")
+        }
+    }
+
+    private fun createList(dispatcher: CoroutineDispatcher = UnconfinedTestDispatcher()) =
+        DomainList<String>(
+            TestScope(dispatcher),
+            updateCallback,
+            urlOf = { it },
+            pageSize = 2,
+            backgroundDispatcher = dispatcher,
+        )
+
+    @Test
+    fun `WHEN a long list is loaded THEN the first page is dispatched first`() {
+        val list = createList()
+        var committed = false
+
+        list.submit(listOf("https://www.mozilla.org", "a.com", "b.com", "c.com")) { committed = true }
+
+        assertEquals(listOf("insert 0 2", "insert 2 2"), updates)
+        assertTrue(committed)
+        assertEquals(listOf("mozilla.org", "a.com", "b.com", "c.com"), list.items.map { it.displayText })
+    }
+
+    @Test
+    fun `WHEN a changed list is submitted THEN only the differences are dispatched and IDs are stable`() {
+        val list = createList()
+        list.submit(listOf("a.com", "b.com", "c.com"))
+        val ids = list.items.associate { it.url to it.id }
+        updates.clear()
+
+        list.submit(listOf("a.com", "c.com", "d.com"))
+
+        assertEquals(setOf("insert 3 1", "remove 1 1"), updates.toSet())
+        assertEquals(ids["a.com"], list[0].id)
+        assertEquals(ids["c.com"], list[1].id)
+        assertEquals(3, list.items.map { it.id }.toSet().size)
+    }
+
+    @Test
+    fun `WHEN a newer list is submitted while diffing THEN the older one is dropped`() {
+        val dispatcher = StandardTestDispatcher()
+        val list = createList(dispatcher)
+        var firstCommitted = false
+        var secondCommitted = false
+
+        list.submit(listOf("a.com")) { firstCommitted = true }
+        list.submit(listOf("b.com")) { secondCommitted = true }
+        dispatcher.scheduler.advanceUntilIdle()
+
+        assertFalse(firstCommitted)
+        assertTrue(secondCommitted)
+        assertEquals(listOf("b.com"), list.items.map { it.url })
+        assertEquals(listOf("insert 0 1"), updates)
+    }
+
+    @Test
+    fun `WHEN an item is moved THEN the move is dispatched right away`() {
+        val list = createList()
+        list.submit(listOf("a.com", "b.com"))
+        updates.clear()
+
+        list.move(0, 1)
+
+        assertEquals(listOf("move 0 1"), updates)
+        assertEquals(listOf("b.com", "a.com"), list.items.map { it.url })
+    }
+}
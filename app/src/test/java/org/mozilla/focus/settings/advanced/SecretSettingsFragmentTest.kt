@@ -0,0 +1,41 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.settings.advanced
+
+import androidx.appcompat.app.AppCompatActivity
+import mozilla.components.support.test.robolectric.testContext
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mozilla.focus.R
+import org.mozilla.focus.ext.components
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class SecretSettingsFragmentTest {
+    @Test
+    fun `WHEN the store dispatch profiler preferences are flipped THEN the profiler follows them`() {
+        val activity = Robolectric.buildActivity(AppCompatActivity::class.java).setup().get()
+        val fragment = SecretSettingsFragment()
+        activity.supportFragmentManager.beginTransaction().add(fragment, null).commitNow()
+
+        val preferences = fragment.preferenceManager.sharedPreferences!!
+        val profiler = testContext.components.storeDispatchProfiler
+        val profilerKey = testContext.getString(R.string.pref_key_store_dispatch_profiler)
+        val allocationsKey = testContext.getString(R.string.pref_key_store_dispatch_profiler_allocations)
+
+        preferences.edit().putBoolean(profilerKey, true).putBoolean(allocationsKey, true).apply()
+
+        assertTrue(profiler.enabled)
+        assertTrue(profiler.countAllocations)
+
+        preferences.edit().putBoolean(profilerKey, false).putBoolean(allocationsKey, false).apply()
+
+        assertFalse(profiler.enabled)
+        assertFalse(profiler.countAllocations)
+    }
+}
@@ -0,0 +1,80 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.telemetry
+
+import androidx.test.core.app.ApplicationProvider
+import org.json.JSONObject
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mozilla.telemetry.config.TelemetryConfiguration
+import org.mozilla.telemetry.measurement.SearchesMeasurement
+import org.mozilla.telemetry.measurement.SessionCountMeasurement
+import org.mozilla.telemetry.storage.MappedCounterStore
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class CounterMeasurementsTest {
+    private lateinit var configuration: TelemetryConfiguration
+
+    @Before
+    fun setUp() {
+        configuration = TelemetryConfiguration(ApplicationProvider.getApplicationContext())
+    }
+
+    @Test
+    fun `WHEN counting sessions THEN flushing returns the count and resets it`() {
+        val measurement = SessionCountMeasurement(configuration)
+
+        repeat(3) { measurement.countSession() }
+
+        assertEquals(3L, measurement.flush())
+        assertEquals(0L, measurement.flush())
+    }
+
+    @Test
+    fun `WHEN recording searches THEN flushing returns the counts per location and engine`() {
+        val measurement = SearchesMeasurement(configuration)
+
+        measurement.recordSearch(SearchesMeasurement.LOCATION_ACTIONBAR, "google")
+        measurement.recordSearch(SearchesMeasurement.LOCATION_ACTIONBAR, "google")
+        measurement.recordSearch(SearchesMeasurement.LOCATION_SUGGESTION, "duckduckgo")
+
+        val searches = measurement.flush() as JSONObject
+
+        assertEquals(2, searches.length())
+        assertEquals(2L, searches.getLong("actionbar.google"))
+        assertEquals(1L, searches.getLong("suggestion.duckduckgo"))
+        assertEquals(0, (measurement.flush() as JSONObject).length())
+    }
+
+    @Test
+    fun `GIVEN counters stored in shared preferences WHEN creating the measurements THEN the counters are migrated`() {
+        configuration.sharedPreferences.edit()
+            .putLong("session_count", 5)
+            .putStringSet("measurements-search-count-keyset", setOf("actionbar.google"))
+            .putInt("measurements-search-count-engine-actionbar.google", 7)
+            .commit()
+
+        val sessions = SessionCountMeasurement(configuration)
+        val searches = SearchesMeasurement(configuration)
+
+        assertEquals(5L, sessions.flush())
+        assertEquals(7L, (searches.flush() as JSONObject).getLong("actionbar.google"))
+        assertFalse(configuration.sharedPreferences.contains("session_count"))
+        assertFalse(configuration.sharedPreferences.contains("measurements-search-count-keyset"))
+    }
+
+    @Test
+    fun `WHEN reopening the counter store THEN the counters are restored from disk`() {
+        SessionCountMeasurement(configuration).countSession()
+
+        val reopened = MappedCounterStore(configuration.dataDirectory)
+
+        assertEquals(1L, reopened.get("session_count"))
+    }
+}
@@ -0,0 +1,182 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.telemetry
+
+import androidx.test.core.app.ApplicationProvider
+import org.json.JSONArray
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mozilla.telemetry.config.TelemetryConfiguration
+import org.mozilla.telemetry.event.TelemetryEvent
+import org.mozilla.telemetry.measurement.EventsMeasurement
+import org.mozilla.telemetry.ping.TelemetryEventPingBuilder
+import org.mozilla.telemetry.serialize.JSONWritable
+import org.robolectric.RobolectricTestRunner
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.StringWriter
+
+@RunWith(RobolectricTestRunner::class)
+class EventsMeasurementTest {
+    private lateinit var configuration: TelemetryConfiguration
+
+    @Before
+    fun setUp() {
+        configuration = TelemetryConfiguration(ApplicationProvider.getApplicationContext())
+            .setEventBufferSize(2)
+    }
+
+    @Test
+    fun `WHEN fewer events than the buffer size are added THEN they are only written when persisted`() {
+        val measurement = EventsMeasurement(configuration)
+        measurement.add(TelemetryEvent.create("action", "click", "first"))
+
+        assertFalse(eventFile.exists())
+        assertEquals(1, measurement.eventCount)
+
+        measurement.persist()
+
+        assertTrue(eventFile.exists())
+        assertEquals(1, EventsMeasurement(configuration).eventCount)
+    }
+
+    @Test
+    fun `WHEN the buffer is full THEN the events are written to disk`() {
+        val measurement = EventsMeasurement(configuration)
+        measurement.add(TelemetryEvent.create("action", "click", "first"))
+        measurement.add(TelemetryEvent.create("action", "click", "second"))
+
+        assertTrue(eventFile.exists())
+        assertEquals(2, EventsMeasurement(configuration).eventCount)
+    }
+
+    @Test
+    fun `WHEN events are on disk and in the buffer THEN they are flushed in the order they were added`() {
+        val measurement = EventsMeasurement(configuration)
+        listOf("first", "second", "third", "fourth", "fifth").forEach {
+            measurement.add(TelemetryEvent.create("action", "click", it))
+        }
+
+        val events = (measurement.flush() as JSONWritable).toJSON() as JSONArray
+
+        assertEquals(
+            listOf("first", "second", "third", "fourth", "fifth"),
+            (0 until events.length()).map { events.getJSONArray(it).getString(3) },
+        )
+        assertFalse(eventFile.exists())
+        assertEquals(0, measurement.eventCount)
+    }
+
+    @Test
+    fun `WHEN a ping builder persists its measurements THEN buffered events are written to disk`() {
+        val builder = TelemetryEventPingBuilder(configuration)
+        builder.eventsMeasurement.add(TelemetryEvent.create("action", "click", "first"))
+
+        builder.persistMeasurements()
+
+        assertTrue(eventFile.exists())
+    }
+
+    @Test
+    fun `WHEN events are counted THEN the event count of older versions is removed from the preferences`() {
+        configuration.sharedPreferences.edit().putLong("event_count", 3).apply()
+
+        assertEquals(0, EventsMeasurement(configuration).eventCount)
+        assertFalse(configuration.sharedPreferences.contains("event_count"))
+    }
+
+    @Test
+    fun `WHEN events are read from disk THEN they are serialized like the original events`() {
+        val events = listOf(
+            TelemetryEvent.create("action", "click", "button"),
+            TelemetryEvent.create("action", "change", "setting", "value"),
+            TelemetryEvent.create("histogram", "foreground", "browser").apply {
+                for (bucket in 0 until 200) {
+                    extra(bucket.toString(), (bucket * 2).toString())
+                }
+            },
+        )
+
+        val measurement = EventsMeasurement(configuration)
+        events.forEach { measurement.add(it) }
+        measurement.persistBufferedEvents()
+
+        val result = measurement.flush() as JSONWritable
+        val expected = JSONArray(events.map { JSONArray(it.toJSON()) })
+
+        assertEquals(expected.toString(), result.toJSON().toString())
+        assertEquals(expected.toString(), StringWriter().also { result.writeJSON(it) }.toString())
+        assertEquals(0, measurement.eventCount)
+    }
+
+    @Test
+    fun `WHEN the last block was not written completely THEN only the complete blocks are read`() {
+        EventsMeasurement(configuration).apply {
+            add(TelemetryEvent.create("action", "click", "first"))
+            add(TelemetryEvent.create("action", "click", "second"))
+        }
+
+        FileOutputStream(File(configuration.dataDirectory, "events2"), true).use {
+            it.write(byteArrayOf(0xE7.toByte(), 0, 0, 1))
+        }
+
+        val measurement = EventsMeasurement(configuration)
+        assertEquals(2, measurement.eventCount)
+
+        measurement.add(TelemetryEvent.create("action", "click", "third"))
+        measurement.persistBufferedEvents()
+
+        val events = measurement.flush() as JSONWritable
+        assertEquals(3, (events.toJSON() as JSONArray).length())
+    }
+
+    @Test
+    fun `WHEN a block header claims more bytes than the file has THEN the block is treated as corrupted`() {
+        EventsMeasurement(configuration).apply {
+            add(TelemetryEvent.create("action", "click", "first"))
+            add(TelemetryEvent.create("action", "click", "second"))
+        }
+        val validLength = eventFile.length()
+
+        // Payload lengths of 2 GB and of 1 KB, both more than the rest of the file.
+        for (payloadLength in listOf(Int.MAX_VALUE, 1024)) {
+            DataOutputStream(FileOutputStream(eventFile, true)).use {
+                it.writeByte(0xE7)
+                it.writeInt(payloadLength)
+                it.writeInt(1)
+                it.writeInt(0)
+                it.write(ByteArray(16))
+            }
+
+            assertEquals(2, EventsMeasurement(configuration).eventCount)
+            assertEquals(validLength, eventFile.length())
+        }
+    }
+
+    @Test
+    fun `WHEN events have been stored by an older version THEN they are sent and the old file is removed`() {
+        val legacyFile = File(configuration.dataDirectory, "events1")
+        legacyFile.writeText("[1,\"action\",\"click\",\"button\"]\n[2,\"action\",\"click\",\"link\"]\n")
+
+        val measurement = EventsMeasurement(configuration)
+        assertEquals(2, measurement.eventCount)
+
+        measurement.add(TelemetryEvent.create("action", "click", "new"))
+
+        val events = (measurement.flush() as JSONWritable).toJSON() as JSONArray
+        assertEquals(3, events.length())
+        assertEquals("button", events.getJSONArray(0).getString(3))
+        assertEquals("new", events.getJSONArray(2).getString(3))
+        assertFalse(legacyFile.exists())
+    }
+
+    private val eventFile: File
+        get() = File(configuration.dataDirectory, "events2")
+}
@@ -0,0 +1,61 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.telemetry
+
+import androidx.test.core.app.ApplicationProvider
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mozilla.telemetry.config.TelemetryConfiguration
+import org.mozilla.telemetry.ping.TelemetryPingBuilder
+import org.mozilla.telemetry.serialize.TelemetryPingSerializer
+import org.mozilla.telemetry.storage.FileTelemetryStorage
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class FileTelemetryStorageTest {
+    private lateinit var configuration: TelemetryConfiguration
+    private lateinit var builder: TelemetryPingBuilder
+    private val serializer = TelemetryPingSerializer { ping -> ping.documentId }
+
+    @Before
+    fun setUp() {
+        configuration = TelemetryConfiguration(ApplicationProvider.getApplicationContext())
+            .setMaximumNumberOfPingsPerType(10)
+        builder = object : TelemetryPingBuilder(configuration, "test", 1) {}
+    }
+
+    @Test
+    fun `WHEN storing more pings than allowed THEN the oldest pings are pruned`() {
+        val storage = FileTelemetryStorage(configuration, serializer)
+        val documentIds = (0 until 15).map { builder.build().also { storage.store(it) }.documentId }
+
+        assertEquals(10, storage.countStoredPings("test"))
+        assertEquals(documentIds.takeLast(10), processAll(storage))
+    }
+
+    @Test
+    fun `WHEN processing pings THEN the pings are processed oldest first and removed`() {
+        val storage = FileTelemetryStorage(configuration, serializer)
+        val documentIds = (0 until 5).map { builder.build().also { storage.store(it) }.documentId }
+
+        val processed = mutableListOf<String>()
+        storage.process("test") { _, serializedPing ->
+            processed.add(serializedPing)
+            processed.size < 3
+        }
+
+        assertEquals(documentIds.take(3), processed)
+        assertEquals(3, storage.countStoredPings("test"))
+        assertEquals(3, FileTelemetryStorage(configuration, serializer).countStoredPings("test"))
+    }
+
+    private fun processAll(storage: FileTelemetryStorage): List<String> {
+        val processed = mutableListOf<String>()
+        storage.process("test") { _, serializedPing -> processed.add(serializedPing) }
+        return processed
+    }
+}
@@ -0,0 +1,170 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.telemetry
+
+import android.content.pm.ActivityInfo
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.UnconfinedTestDispatcher
+import mozilla.components.support.test.mock
+import mozilla.components.support.test.whenever
+import mozilla.components.support.utils.Browsers
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@OptIn(ExperimentalCoroutinesApi::class)
+@RunWith(RobolectricTestRunner::class)
+class InstalledAppsCacheTest {
+    private val dispatcher = UnconfinedTestDispatcher()
+    private var browserLoads = 0
+    private var defaultBrowserPackage: String? = "org.mozilla.firefox"
+    private val installedLookups = mutableListOf<String>()
+    private val installed = mutableSetOf("org.mozilla.firefox")
+
+    private val browsers: Browsers = mock<Browsers>().also {
+        whenever(it.installedBrowsers).thenReturn(listOf(activity("org.mozilla.firefox")))
+        whenever(it.defaultBrowser).thenReturn(activity("org.mozilla.firefox"))
+    }
+
+    private val cache = InstalledAppsCache(
+        mock(),
+        scope = TestScope(dispatcher),
+        loadBrowsers = {
+            browserLoads++
+            browsers
+        },
+        loadIsInstalled = { _, packageName ->
+            installedLookups.add(packageName)
+            installed.contains(packageName)
+        },
+        loadDefaultBrowserPackage = { defaultBrowserPackage },
+        mainDispatcher = dispatcher,
+        registerReceiver = false,
+    )
+
+    @Test
+    fun `WHEN browsers are read twice THEN they are loaded once`() {
+        assertNull(cache.getBrowsersIfLoaded())
+
+        assertSame(browsers, cache.getBrowsers())
+        assertSame(browsers, cache.getBrowsers())
+
+        assertSame(browsers, cache.getBrowsersIfLoaded())
+        assertEquals(1, browserLoads)
+    }
+
+    @Test
+    fun `WHEN an unrelated package changes THEN the browsers are kept`() {
+        cache.getBrowsers()
+
+        cache.onPackageChanged("com.example.app", added = false)
+
+        assertSame(browsers, cache.getBrowsersIfLoaded())
+    }
+
+    @Test
+    fun `WHEN a browser changes or any package is added THEN the browsers are loaded again`() {
+        cache.getBrowsers()
+        cache.onPackageChanged("org.mozilla.firefox", added = false)
+        assertNull(cache.getBrowsersIfLoaded())
+
+        cache.getBrowsers()
+        cache.onPackageChanged("com.example.browser", added = true)
+        assertNull(cache.getBrowsersIfLoaded())
+
+        cache.getBrowsers()
+        assertEquals(3, browserLoads)
+    }
+
+    @Test
+    fun `WHEN the app comes to the foreground with the same default browser THEN the browsers are kept`() {
+        cache.getBrowsers()
+
+        cache.onStart(mock())
+
+        assertSame(browsers, cache.getBrowsersIfLoaded())
+        assertEquals(1, browserLoads)
+    }
+
+    @Test
+    fun `WHEN the app comes to the foreground with another default browser THEN the browsers are loaded again`() {
+        cache.getBrowsers()
+
+        defaultBrowserPackage = "com.android.chrome"
+        cache.onStart(mock())
+        assertNull(cache.getBrowsersIfLoaded())
+
+        // Chrome is not installed as a browser, e.g. the system resolves to the app chooser.
+        cache.getBrowsers()
+        defaultBrowserPackage = null
+        cache.onStart(mock())
+        assertNull(cache.getBrowsersIfLoaded())
+
+        assertEquals(2, browserLoads)
+    }
+
+    @Test
+    fun `WHEN reading the browsers from the main thread THEN they are loaded once and passed to the callback`() {
+        val received = mutableListOf<Browsers>()
+
+        cache.withBrowsers { received.add(it) }
+        cache.withBrowsers { received.add(it) }
+
+        assertEquals(listOf(browsers, browsers), received)
+        assertEquals(1, browserLoads)
+    }
+
+    @Test
+    fun `WHEN refreshing the default browser THEN the browsers are only loaded again if it changed`() {
+        val received = mutableListOf<Browsers>()
+        cache.getBrowsers()
+
+        cache.withBrowsers(refreshDefaultBrowser = true) { received.add(it) }
+        assertEquals(1, browserLoads)
+
+        defaultBrowserPackage = null
+        cache.withBrowsers(refreshDefaultBrowser = true) { received.add(it) }
+        assertEquals(2, browserLoads)
+
+        assertEquals(listOf(browsers, browsers), received)
+    }
+
+    @Test
+    fun `WHEN a package changes THEN the package change listeners are notified`() {
+        val changed = mutableListOf<String>()
+        cache.addPackageChangeListener { changed.add(it) }
+
+        cache.onPackageChanged("com.example.app", added = false)
+        cache.getBrowsers()
+        cache.onPackageChanged("org.mozilla.firefox", added = true)
+
+        assertEquals(listOf("com.example.app", "org.mozilla.firefox"), changed)
+    }
+
+    @Test
+    fun `WHEN looking up installed packages THEN a package is only looked up again after it changed`() {
+        assertTrue(cache.isInstalled("org.mozilla.firefox"))
+        assertFalse(cache.isInstalled("org.mozilla.fenix"))
+        assertTrue(cache.isInstalled("org.mozilla.firefox"))
+        assertEquals(listOf("org.mozilla.firefox", "org.mozilla.fenix"), installedLookups)
+
+        installed.add("org.mozilla.fenix")
+        cache.onPackageChanged("org.mozilla.fenix", added = true)
+
+        assertTrue(cache.isInstalled("org.mozilla.fenix"))
+        assertEquals(
+            listOf("org.mozilla.firefox", "org.mozilla.fenix"),
+            FenixProductDetector.getInstalledFenixVersions(cache),
+        )
+    }
+
+    private fun activity(packageName: String) = ActivityInfo().apply { this.packageName = packageName }
+}
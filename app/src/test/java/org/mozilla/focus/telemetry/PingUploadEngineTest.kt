@@ -0,0 +1,218 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.telemetry
+
+import androidx.test.core.app.ApplicationProvider
+import mozilla.components.concept.fetch.Client
+import mozilla.components.concept.fetch.MutableHeaders
+import mozilla.components.concept.fetch.Request
+import mozilla.components.concept.fetch.Response
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mozilla.telemetry.Telemetry
+import org.mozilla.telemetry.config.TelemetryConfiguration
+import org.mozilla.telemetry.net.TelemetryClient
+import org.mozilla.telemetry.ping.TelemetryPing
+import org.mozilla.telemetry.ping.TelemetryPingBuilder
+import org.mozilla.telemetry.schedule.TelemetryScheduler
+import org.mozilla.telemetry.schedule.jobscheduler.PingUploadEngine
+import org.mozilla.telemetry.storage.TelemetryStorage
+import org.robolectric.RobolectricTestRunner
+import java.io.IOException
+import java.util.Collections
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+@RunWith(RobolectricTestRunner::class)
+class PingUploadEngineTest {
+    private lateinit var configuration: TelemetryConfiguration
+    private lateinit var storage: CountingStorage
+    private lateinit var client: FailingClient
+    private lateinit var telemetry: Telemetry
+
+    @Before
+    fun setUp() {
+        configuration = TelemetryConfiguration(ApplicationProvider.getApplicationContext())
+            .setMaximumParallelUploads(2)
+
+        storage = CountingStorage()
+        client = FailingClient(failingPath = "/broken")
+
+        telemetry = Telemetry(configuration, storage, TelemetryClient(client), TelemetryScheduler { })
+
+        for (type in listOf("core", "broken", "focus-event")) {
+            telemetry.addPingBuilder(TestPingBuilder(configuration, type))
+            storage.pings[type] = 5
+        }
+    }
+
+    @Test
+    fun `GIVEN a failing ping type WHEN uploading THEN the other ping types are still uploaded`() {
+        val needsReschedule = runEngine()
+
+        assertTrue(needsReschedule!!)
+        assertEquals(0, storage.pings["core"])
+        assertEquals(0, storage.pings["focus-event"])
+        assertEquals(5, storage.pings["broken"])
+    }
+
+    @Test
+    fun `GIVEN a failing ping type WHEN uploading again THEN the failing type is backing off`() {
+        runEngine()
+        assertEquals(1, client.requests.count { it == "/broken" })
+
+        storage.pings["core"] = 1
+        val needsReschedule = runEngine()
+
+        assertTrue(needsReschedule!!)
+        assertEquals(0, storage.pings["core"])
+        assertEquals(1, client.requests.count { it == "/broken" })
+    }
+
+    @Test
+    fun `WHEN uploading THEN no more requests than the maximum of parallel uploads are in flight`() {
+        runEngine()
+
+        assertTrue(client.maximumInFlight.get() in 1..2)
+    }
+
+    @Test
+    fun `GIVEN a batch size WHEN uploading THEN pings are uploaded in batches up to the daily limit`() {
+        configuration.setUploadBatchSize(3).setMaximumNumberOfPingUploadsPerDay(4)
+
+        val needsReschedule = runEngine()
+
+        assertTrue(needsReschedule!!)
+        assertEquals(listOf(3, 2), storage.batches["core"])
+        assertEquals(1, storage.pings["core"])
+        assertEquals(1, storage.pings["focus-event"])
+        assertEquals(4, client.requests.count { it == "/core" })
+    }
+
+    @Test
+    fun `WHEN cancelling the engine THEN the request in flight is abandoned and the ping stays stored`() {
+        val blockingClient = BlockingClient()
+        val telemetry = Telemetry(configuration, storage, TelemetryClient(blockingClient), TelemetryScheduler { })
+        telemetry.addPingBuilder(TestPingBuilder(configuration, "core"))
+
+        val engine = PingUploadEngine(telemetry)
+        engine.start { }
+
+        assertTrue(blockingClient.started.await(5, TimeUnit.SECONDS))
+        engine.cancel()
+
+        assertTrue(blockingClient.interrupted.await(5, TimeUnit.SECONDS))
+        assertEquals(5, storage.pings["core"])
+    }
+
+    private fun runEngine(): Boolean? {
+        val result = ArrayBlockingQueue<Boolean>(1)
+        PingUploadEngine(telemetry).start { needsReschedule -> result.add(needsReschedule) }
+        return result.poll(5, TimeUnit.SECONDS)
+    }
+
+    private class TestPingBuilder(
+        configuration: TelemetryConfiguration,
+        type: String,
+    ) : TelemetryPingBuilder(configuration, type, 1)
+
+    /**
+     * [TelemetryStorage] that only keeps the number of stored pings per type.
+     */
+    private class CountingStorage : TelemetryStorage {
+        val pings = ConcurrentHashMap<String, Int>()
+        val batches = ConcurrentHashMap<String, MutableList<Int>>()
+
+        override fun store(ping: TelemetryPing) = Unit
+
+        override fun process(pingType: String, callback: TelemetryStorage.TelemetryStorageCallback): Boolean {
+            while (pings.getValue(pingType) > 0) {
+                if (!callback.onTelemetryPingLoaded("/$pingType", "{}")) {
+                    return false
+                }
+                pings[pingType] = pings.getValue(pingType) - 1
+            }
+            return true
+        }
+
+        override fun processBatch(
+            pingType: String,
+            maximumBatchSize: Int,
+            callback: TelemetryStorage.TelemetryStorageBatchCallback,
+        ): Boolean {
+            while (pings.getValue(pingType) > 0) {
+                val size = minOf(maximumBatchSize, pings.getValue(pingType))
+                batches.getOrPut(pingType) { Collections.synchronizedList(mutableListOf()) }.add(size)
+
+                val processed = callback.onTelemetryPingsLoaded(
+                    List(size) { "/$pingType" },
+                    List(size) { "{}" },
+                )
+                pings[pingType] = pings.getValue(pingType) - processed
+
+                if (processed < size) {
+                    return false
+                }
+            }
+            return true
+        }
+
+        override fun countStoredPings(pingType: String) = pings.getValue(pingType)
+    }
+
+    /**
+     * [Client] that fails all requests to [failingPath] and records how many requests are in
+     * flight at the same time.
+     */
+    private class FailingClient(private val failingPath: String) : Client() {
+        val requests: MutableList<String> = Collections.synchronizedList(mutableListOf())
+        val maximumInFlight = AtomicInteger()
+        private val inFlight = AtomicInteger()
+
+        override fun fetch(request: Request): Response {
+            val path = request.url.removePrefix(DEFAULT_ENDPOINT)
+            requests.add(path)
+            maximumInFlight.accumulateAndGet(inFlight.incrementAndGet(), ::maxOf)
+
+            try {
+                // Keep the request open so that requests of other workers overlap with it.
+                Thread.sleep(10)
+            } finally {
+                inFlight.decrementAndGet()
+            }
+
+            val status = if (path == failingPath) 500 else 200
+            return Response(request.url, status, MutableHeaders(), Response.Body.empty())
+        }
+    }
+
+    /**
+     * [Client] that blocks every request until it is interrupted.
+     */
+    private class BlockingClient : Client() {
+        val started = CountDownLatch(1)
+        val interrupted = CountDownLatch(1)
+
+        override fun fetch(request: Request): Response {
+            started.countDown()
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1))
+            } catch (e: InterruptedException) {
+                interrupted.countDown()
+            }
+            throw IOException("Request aborted")
+        }
+    }
+
+    companion object {
+        private const val DEFAULT_ENDPOINT = "https://incoming.telemetry.mozilla.org"
+    }
+}
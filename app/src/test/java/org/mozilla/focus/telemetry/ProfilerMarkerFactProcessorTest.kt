@@ -70,6 +70,27 @@ class ProfilerMarkerFactProcessorTest {
         verify(profiler).addMarker(fact.item, 100.0, 100.0, null)
     }
 
+    @Test
+    fun `Test a fact with a duration`() {
+        // GIVEN we are on the main thread
+        myLooper = mainHandler.looper // main thread
+        `when`(profiler.getProfilerTime()).thenReturn(100.0)
+
+        // WHEN a fact with a duration that ended 10ms ago is received
+        val fact = newFact(
+            Action.IMPLEMENTATION_DETAIL,
+            metadata = mapOf(
+                ProfilerMarkerFactProcessor.KEY_DURATION_MILLIS to 30.0,
+                ProfilerMarkerFactProcessor.KEY_END_MILLIS_AGO to 10.0,
+                ProfilerMarkerFactProcessor.KEY_TEXT to "main",
+            ),
+        )
+        processor.process(fact)
+
+        // THEN a profiler marker covering this duration is added
+        verify(profiler).addMarker(fact.item, 60.0, 90.0, "main")
+    }
+
     @Test
     fun `Test non-implementation detail`() {
         // WHEN a fact with a non-implementation detail action is received
@@ -92,8 +113,10 @@ class ProfilerMarkerFactProcessorTest {
 private fun newFact(
     action: Action,
     item: String = "itemName",
+    metadata: Map<String, Any>? = null,
 ) = Fact(
     Component.BROWSER_SESSION_STORAGE,
     action,
     item,
+    metadata = metadata,
 )
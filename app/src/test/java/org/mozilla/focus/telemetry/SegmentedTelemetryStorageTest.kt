@@ -0,0 +1,163 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.telemetry
+
+import androidx.test.core.app.ApplicationProvider
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mozilla.telemetry.config.TelemetryConfiguration
+import org.mozilla.telemetry.ping.TelemetryPingBuilder
+import org.mozilla.telemetry.serialize.TelemetryPingSerializer
+import org.mozilla.telemetry.storage.SegmentedTelemetryStorage
+import org.robolectric.RobolectricTestRunner
+import java.io.File
+import java.util.UUID
+
+@RunWith(RobolectricTestRunner::class)
+class SegmentedTelemetryStorageTest {
+    private lateinit var configuration: TelemetryConfiguration
+    private lateinit var builder: TelemetryPingBuilder
+    private lateinit var directory: File
+
+    // Padded so that three pings fill a segment of SEGMENT_SIZE bytes.
+    private val serializer = TelemetryPingSerializer { ping -> ping.documentId.padEnd(PING_SIZE, '-') }
+
+    @Before
+    fun setUp() {
+        configuration = TelemetryConfiguration(ApplicationProvider.getApplicationContext())
+            .setMaximumNumberOfPingsPerType(10)
+        builder = object : TelemetryPingBuilder(configuration, "test", 1) {}
+        directory = File(configuration.dataDirectory, "storage/test")
+    }
+
+    @Test
+    fun `WHEN processing pings THEN the pings are processed oldest first and removed`() {
+        val storage = createStorage()
+        val documentIds = storePings(storage, 5)
+
+        val processed = mutableListOf<String>()
+        assertFalse(
+            storage.process("test") { _, serializedPing ->
+                processed.add(documentIdOf(serializedPing))
+                processed.size < 3
+            },
+        )
+
+        assertEquals(documentIds.take(3), processed)
+        assertEquals(3, storage.countStoredPings("test"))
+        assertEquals(documentIds.drop(2), processAll(storage))
+        assertEquals(0, storage.countStoredPings("test"))
+    }
+
+    @Test
+    fun `WHEN storing more pings than allowed THEN the oldest pings are pruned`() {
+        val storage = createStorage()
+        val documentIds = storePings(storage, 15)
+
+        assertEquals(10, storage.countStoredPings("test"))
+        assertEquals(documentIds.takeLast(10), processAll(storage))
+    }
+
+    @Test
+    fun `WHEN pings were removed before a restart THEN they are not loaded again`() {
+        val storage = createStorage()
+        val documentIds = storePings(storage, 3)
+
+        storage.process("test") { _, serializedPing -> documentIdOf(serializedPing) == documentIds[0] }
+
+        val reopened = createStorage()
+        assertEquals(2, reopened.countStoredPings("test"))
+        assertEquals(documentIds.drop(1), processAll(reopened))
+    }
+
+    @Test
+    fun `WHEN a segment ends with a torn record THEN it is truncated on reopen and new pings can be appended`() {
+        val documentIds = storePings(createStorage(), 2)
+
+        val segment = File(directory, "segment-1.log")
+        val validLength = segment.length()
+        segment.appendBytes(byteArrayOf(1, 0, 0, 0, 0, 0, 0, 0))
+
+        val reopened = createStorage()
+        assertEquals(2, reopened.countStoredPings("test"))
+        assertEquals(validLength, segment.length())
+
+        val moreDocumentIds = storePings(reopened, 1)
+
+        assertEquals(documentIds + moreDocumentIds, processAll(createStorage()))
+    }
+
+    @Test
+    fun `WHEN pings are stored as separate files THEN they are migrated oldest first`() {
+        directory.mkdirs()
+        val documentIds = (0 until 3).map { UUID.randomUUID().toString() }
+        documentIds.forEachIndexed { index, documentId ->
+            File(directory, documentId).apply {
+                writeText("/submit/$documentId\n${documentId.padEnd(PING_SIZE, '-')}")
+                setLastModified(1_000_000L * (index + 1))
+            }
+        }
+
+        val storage = createStorage()
+
+        assertEquals(3, storage.countStoredPings("test"))
+        assertTrue(documentIds.none { File(directory, it).exists() })
+        assertEquals(documentIds, processAll(storage))
+    }
+
+    @Test
+    fun `WHEN an old segment mostly holds removed pings THEN compaction moves its live pings and deletes it`() {
+        val storage = createStorage()
+        val documentIds = storePings(storage, 3)
+
+        // The third ping can't be uploaded, but the segment holding it is mostly removed pings.
+        storage.process("test") { _, serializedPing -> documentIdOf(serializedPing) != documentIds[2] }
+        val moreDocumentIds = storePings(storage, 4)
+
+        storage.compact("test")
+
+        assertFalse(File(directory, "segment-1.log").exists())
+        assertEquals(5, storage.countStoredPings("test"))
+
+        val reopened = createStorage()
+        assertEquals(5, reopened.countStoredPings("test"))
+        assertEquals(documentIds.drop(2) + moreDocumentIds, processAll(reopened))
+    }
+
+    @Test
+    fun `WHEN all pings are removed THEN compaction deletes all segments`() {
+        val storage = createStorage()
+        storePings(storage, 7)
+
+        processAll(storage)
+        storage.compact("test")
+
+        assertTrue(directory.listFiles { _, name -> name.startsWith("segment-") }.isNullOrEmpty())
+        assertEquals(0, createStorage().countStoredPings("test"))
+    }
+
+    private fun createStorage() = SegmentedTelemetryStorage(configuration, serializer, SEGMENT_SIZE)
+
+    private fun storePings(storage: SegmentedTelemetryStorage, count: Int): List<String> {
+        return (0 until count).map { builder.build().also { storage.store(it) }.documentId }
+    }
+
+    private fun processAll(storage: SegmentedTelemetryStorage): List<String> {
+        val processed = mutableListOf<String>()
+        storage.process("test") { _, serializedPing -> processed.add(documentIdOf(serializedPing)) }
+        return processed
+    }
+
+    private fun documentIdOf(serializedPing: String) = serializedPing.trimEnd('-')
+
+    private companion object {
+        const val PING_SIZE = 300
+        const val SEGMENT_SIZE = 1024
+    }
+}
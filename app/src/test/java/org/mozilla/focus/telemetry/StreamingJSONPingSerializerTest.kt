@@ -0,0 +1,64 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.telemetry
+
+import androidx.test.core.app.ApplicationProvider
+import org.json.JSONArray
+import org.json.JSONObject
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mozilla.telemetry.config.TelemetryConfiguration
+import org.mozilla.telemetry.measurement.StaticMeasurement
+import org.mozilla.telemetry.ping.TelemetryPing
+import org.mozilla.telemetry.ping.TelemetryPingBuilder
+import org.mozilla.telemetry.serialize.JSONPingSerializer
+import org.mozilla.telemetry.serialize.StreamingJSONPingSerializer
+import org.robolectric.RobolectricTestRunner
+import java.io.StringWriter
+
+@RunWith(RobolectricTestRunner::class)
+class StreamingJSONPingSerializerTest {
+    @Test
+    fun `WHEN serializing a ping THEN the output matches the org_json serializer`() {
+        val ping = buildPing(
+            StaticMeasurement("string", "a \"quoted\" /path/\n\ttab \u0001 ü"),
+            StaticMeasurement("long", 42L),
+            StaticMeasurement("double", 1.5),
+            StaticMeasurement("boolean", true),
+            StaticMeasurement("null", JSONObject.NULL),
+            StaticMeasurement(
+                "object",
+                JSONObject().put("nested", JSONObject().put("key", "value")).put("empty", JSONArray()),
+            ),
+            StaticMeasurement(
+                "events",
+                JSONArray().apply {
+                    repeat(500) { index ->
+                        put(JSONArray("[$index,\"action\",\"click\",\"button\",null,{\"extra\":\"$index\"}]"))
+                    }
+                },
+            ),
+        )
+
+        val expected = JSONPingSerializer().serialize(ping)
+
+        assertEquals(expected, StreamingJSONPingSerializer().serialize(ping))
+
+        val writer = StringWriter()
+        StreamingJSONPingSerializer().serialize(ping, writer)
+        assertEquals(expected, writer.toString())
+    }
+
+    private fun buildPing(vararg measurements: StaticMeasurement): TelemetryPing {
+        val configuration = TelemetryConfiguration(ApplicationProvider.getApplicationContext())
+
+        return object : TelemetryPingBuilder(configuration, "test", 1) {
+            init {
+                measurements.forEach { addMeasurement(it) }
+            }
+        }.build()
+    }
+}
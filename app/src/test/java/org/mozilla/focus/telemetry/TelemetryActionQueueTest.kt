@@ -0,0 +1,54 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.telemetry
+
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.StandardTestDispatcher
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.advanceUntilIdle
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+@OptIn(ExperimentalCoroutinesApi::class)
+class TelemetryActionQueueTest {
+    private val scope = TestScope(StandardTestDispatcher())
+
+    @Test
+    fun `WHEN items are enqueued THEN they are processed in order and in batches`() {
+        val batches = mutableListOf<List<Int>>()
+        val queue = TelemetryActionQueue<Int>(scope, capacity = 16, batchSize = 3) { batch ->
+            batches.add(batch.toList())
+        }
+
+        repeat(7) { queue.enqueue(it) }
+
+        assertEquals(0, batches.size)
+
+        scope.advanceUntilIdle()
+
+        assertEquals(listOf(listOf(0, 1, 2), listOf(3, 4, 5), listOf(6)), batches)
+        assertEquals(7, queue.processedCount)
+        assertEquals(0, queue.droppedCount)
+    }
+
+    @Test
+    fun `GIVEN a full queue WHEN items are enqueued THEN they are dropped and counted`() {
+        val processed = mutableListOf<Int>()
+        val queue = TelemetryActionQueue<Int>(scope, capacity = 4, batchSize = 32) { batch ->
+            processed.addAll(batch)
+        }
+
+        repeat(10) { queue.enqueue(it) }
+        scope.advanceUntilIdle()
+
+        assertEquals(listOf(0, 1, 2, 3), processed)
+        assertEquals(6, queue.droppedCount)
+
+        queue.enqueue(10)
+        scope.advanceUntilIdle()
+
+        assertEquals(listOf(0, 1, 2, 3, 10), processed)
+    }
+}
@@ -0,0 +1,175 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.telemetry
+
+import mozilla.components.concept.fetch.Client
+import mozilla.components.concept.fetch.MutableHeaders
+import mozilla.components.concept.fetch.Request
+import mozilla.components.concept.fetch.Response
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.mockito.Mockito.doReturn
+import org.mockito.Mockito.mock
+import org.mozilla.telemetry.config.TelemetryConfiguration
+import org.mozilla.telemetry.net.TelemetryClient
+import java.io.IOException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.zip.GZIPInputStream
+
+class TelemetryClientTest {
+    private lateinit var configuration: TelemetryConfiguration
+
+    @Before
+    fun setUp() {
+        configuration = mock(TelemetryConfiguration::class.java)
+        doReturn("https://telemetry.example.org").`when`(configuration).serverEndpoint
+        doReturn("Telemetry/1.0 (Test)").`when`(configuration).userAgent
+        doReturn(10000).`when`(configuration).connectTimeout
+        doReturn(30000).`when`(configuration).readTimeout
+    }
+
+    @Test
+    fun `GIVEN a batch of pings WHEN uploading THEN every ping is sent gzip compressed through the same client`() {
+        val client = RecordingClient()
+        val paths = (0 until 100).map { "/submit/telemetry/$it" }
+        val pings = (0 until 100).map { "{\"seq\":$it}" }
+
+        val uploaded = TelemetryClient(client).uploadPings(configuration, paths, pings)
+
+        assertEquals(100, uploaded)
+        assertEquals(paths.map { "https://telemetry.example.org$it" }, client.requests.map { it.url })
+        assertEquals(pings, client.requests.map { it.body })
+        assertTrue(client.requests.all { it.contentEncoding == "gzip" })
+
+        // Requests are sent one after the other, never overlapping.
+        client.requests.zipWithNext { previous, next ->
+            assertTrue(previous.endNanos <= next.startNanos)
+        }
+    }
+
+    @Test
+    fun `GIVEN a server error WHEN uploading a batch THEN uploading stops at the failed ping`() {
+        val client = RecordingClient(statusForRequest = { index -> if (index == 3) 500 else 200 })
+        val paths = (0 until 10).map { "/submit/telemetry/$it" }
+        val pings = (0 until 10).map { "{\"seq\":$it}" }
+
+        val uploaded = TelemetryClient(client).uploadPings(configuration, paths, pings)
+
+        assertEquals(3, uploaded)
+        assertEquals(4, client.requests.size)
+    }
+
+    @Test
+    fun `GIVEN a client error WHEN uploading a batch THEN the ping is not retried`() {
+        val client = RecordingClient(statusForRequest = { index -> if (index == 1) 400 else 200 })
+        val paths = listOf("/a", "/b", "/c")
+        val pings = listOf("{}", "{}", "{}")
+
+        val uploaded = TelemetryClient(client).uploadPings(configuration, paths, pings)
+
+        assertEquals(3, uploaded)
+    }
+
+    @Test
+    fun `GIVEN a cancelled upload WHEN uploading a batch THEN no further requests are sent`() {
+        val client = RecordingClient()
+        val paths = (0 until 10).map { "/submit/telemetry/$it" }
+        val pings = (0 until 10).map { "{\"seq\":$it}" }
+
+        val uploaded = TelemetryClient(client).uploadPings(configuration, paths, pings) {
+            client.requests.size >= 4
+        }
+
+        assertEquals(4, uploaded)
+        assertEquals(4, client.requests.size)
+    }
+
+    @Test
+    fun `GIVEN a cancellable upload WHEN the uploading thread is interrupted THEN the request in flight is abandoned`() {
+        val client = BlockingClient()
+        val uploaded = AtomicInteger(-1)
+
+        val thread = Thread {
+            val paths = listOf("/a", "/b")
+            val pings = listOf("{}", "{}")
+            uploaded.set(TelemetryClient(client).uploadPings(configuration, paths, pings) { false })
+        }
+        thread.start()
+
+        assertTrue(client.started.await(5, TimeUnit.SECONDS))
+        thread.interrupt()
+        thread.join(5000)
+
+        assertFalse(thread.isAlive)
+        assertEquals(0, uploaded.get())
+        assertTrue(client.interrupted.await(5, TimeUnit.SECONDS))
+    }
+
+    @Test
+    fun `WHEN uploading a single ping THEN the body is not compressed`() {
+        val client = RecordingClient()
+
+        val uploaded = TelemetryClient(client).uploadPing(configuration, "/a", "{\"a\":1}")
+
+        assertTrue(uploaded)
+        assertEquals(null, client.requests.single().contentEncoding)
+        assertEquals("{\"a\":1}", client.requests.single().body)
+    }
+
+    private class RecordedRequest(
+        val url: String,
+        val contentEncoding: String?,
+        val body: String,
+        val startNanos: Long,
+        val endNanos: Long,
+    )
+
+    /**
+     * [Client] that answers all requests locally and records them together with their timings.
+     */
+    private class RecordingClient(
+        private val statusForRequest: (Int) -> Int = { 200 },
+    ) : Client() {
+        val requests = mutableListOf<RecordedRequest>()
+
+        override fun fetch(request: Request): Response {
+            val start = System.nanoTime()
+            val contentEncoding = request.headers?.get("Content-Encoding")
+
+            val body = request.body!!.useStream { stream ->
+                val input = if (contentEncoding == "gzip") GZIPInputStream(stream) else stream
+                input.bufferedReader(Charsets.UTF_8).readText()
+            }
+
+            val status = statusForRequest(requests.size)
+            requests.add(RecordedRequest(request.url, contentEncoding, body, start, System.nanoTime()))
+
+            return Response(request.url, status, MutableHeaders(), Response.Body.empty())
+        }
+    }
+
+    /**
+     * [Client] that blocks every request until it is interrupted.
+     */
+    private class BlockingClient : Client() {
+        val started = CountDownLatch(1)
+        val interrupted = CountDownLatch(1)
+
+        override fun fetch(request: Request): Response {
+            started.countDown()
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1))
+            } catch (e: InterruptedException) {
+                interrupted.countDown()
+            }
+            throw IOException("Request aborted")
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.telemetry
+
+import androidx.test.core.app.ApplicationProvider
+import org.json.JSONObject
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mozilla.telemetry.config.TelemetryConfiguration
+import org.mozilla.telemetry.measurement.TelemetryMeasurement
+import org.mozilla.telemetry.ping.TelemetryCorePingBuilder
+import org.mozilla.telemetry.ping.TelemetryPingBuilder
+import org.mozilla.telemetry.serialize.PreSerializedJSON
+import org.mozilla.telemetry.serialize.StreamingJSONPingSerializer
+import org.robolectric.RobolectricTestRunner
+import java.util.Locale
+
+@RunWith(RobolectricTestRunner::class)
+class TelemetryCorePingBuilderTest {
+    private lateinit var configuration: TelemetryConfiguration
+    private lateinit var defaultLocale: Locale
+
+    @Before
+    fun setUp() {
+        configuration = TelemetryConfiguration(ApplicationProvider.getApplicationContext())
+        defaultLocale = Locale.getDefault()
+    }
+
+    @After
+    fun tearDown() {
+        Locale.setDefault(defaultLocale)
+    }
+
+    @Test
+    fun `WHEN serializing a core ping THEN the output is the one of the flushed measurements`() {
+        val ping = TelemetryCorePingBuilder(configuration).build()
+
+        // What the builder produced before static measurements: The flushed values, in the same order.
+        val expected = JSONObject()
+        ping.measurementResults.forEach { (fieldName, value) ->
+            expected.put(fieldName, if (value is PreSerializedJSON) value.value else value)
+        }
+
+        assertEquals(
+            listOf(
+                "v", "clientId", "seq", "locale", "os", "osversion", "device", "arch", "profileDate",
+                "defaultSearch", "created", "tz", "sessions", "durations", "searches", "experiments",
+            ),
+            ping.measurementResults.keys.toList(),
+        )
+        assertEquals(expected.toString(), StreamingJSONPingSerializer().serialize(ping))
+    }
+
+    @Test
+    fun `WHEN building pings THEN static measurements are flushed once`() {
+        val builder = CountingPingBuilder(configuration)
+
+        repeat(3) { builder.build() }
+
+        assertEquals(1, builder.staticMeasurement.flushes)
+        assertEquals(3, builder.dynamicMeasurement.flushes)
+    }
+
+    @Test
+    fun `WHEN the default locale changes THEN static measurements are flushed again`() {
+        val builder = CountingPingBuilder(configuration)
+        builder.build()
+
+        Locale.setDefault(Locale.GERMANY)
+        builder.build()
+        builder.build()
+
+        assertEquals(2, builder.staticMeasurement.flushes)
+    }
+
+    @Test
+    fun `WHEN the default locale changes THEN the core ping has the new locale`() {
+        Locale.setDefault(Locale.US)
+        val builder = TelemetryCorePingBuilder(configuration)
+        val serializer = StreamingJSONPingSerializer()
+
+        val before = JSONObject(serializer.serialize(builder.build()))
+        Locale.setDefault(Locale.GERMANY)
+        val after = JSONObject(serializer.serialize(builder.build()))
+
+        assertEquals("en-US", before.getString("locale"))
+        assertEquals("de-DE", after.getString("locale"))
+        assertEquals(before.getString("clientId"), after.getString("clientId"))
+        assertNotEquals(before.getInt("seq"), after.getInt("seq"))
+    }
+
+    @Test
+    fun `WHEN static measurements are invalidated THEN they are flushed again`() {
+        val builder = CountingPingBuilder(configuration)
+        builder.build()
+
+        builder.invalidateStaticMeasurements()
+        builder.build()
+        builder.build()
+
+        assertEquals(2, builder.staticMeasurement.flushes)
+    }
+
+    private class CountingPingBuilder(configuration: TelemetryConfiguration) :
+        TelemetryPingBuilder(configuration, "test", 1) {
+        val staticMeasurement = CountingMeasurement("static")
+        val dynamicMeasurement = CountingMeasurement("dynamic")
+
+        init {
+            addStaticMeasurement(staticMeasurement)
+            addMeasurement(dynamicMeasurement)
+        }
+    }
+
+    private class CountingMeasurement(fieldName: String) : TelemetryMeasurement(fieldName) {
+        var flushes = 0
+
+        override fun flush(): Any = ++flushes
+    }
+}
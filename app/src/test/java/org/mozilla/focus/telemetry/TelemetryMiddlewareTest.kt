@@ -0,0 +1,63 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.telemetry
+
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.StandardTestDispatcher
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.advanceUntilIdle
+import mozilla.components.browser.state.action.ContentAction
+import mozilla.components.browser.state.action.TabListAction
+import mozilla.components.browser.state.state.createTab
+import mozilla.components.browser.state.store.BrowserStore
+import mozilla.components.support.test.ext.joinBlocking
+import mozilla.components.support.test.robolectric.testContext
+import mozilla.telemetry.glean.testing.GleanTestRule
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mozilla.focus.GleanMetrics.Browser
+import org.robolectric.RobolectricTestRunner
+
+@OptIn(ExperimentalCoroutinesApi::class)
+@RunWith(RobolectricTestRunner::class)
+class TelemetryMiddlewareTest {
+    @get:Rule
+    val gleanTestRule = GleanTestRule(testContext)
+
+    private lateinit var scope: TestScope
+    private lateinit var store: BrowserStore
+
+    @Before
+    fun setUp() {
+        scope = TestScope(StandardTestDispatcher())
+        store = BrowserStore(middleware = listOf(TelemetryMiddleware(scope)))
+        store.dispatch(TabListAction.AddTabAction(createTab("https://www.mozilla.org", id = "1"))).joinBlocking()
+    }
+
+    @Test
+    fun `WHEN a page finishes loading THEN the URI count is recorded in the background`() {
+        store.dispatch(ContentAction.UpdateLoadingStateAction("1", true)).joinBlocking()
+        store.dispatch(ContentAction.UpdateLoadingStateAction("1", false)).joinBlocking()
+
+        assertNull(Browser.totalUriCount.testGetValue())
+
+        scope.advanceUntilIdle()
+
+        assertEquals(1, Browser.totalUriCount.testGetValue())
+    }
+
+    @Test
+    fun `WHEN a page of an unknown tab finishes loading THEN the URI count is not recorded`() {
+        store.dispatch(ContentAction.UpdateLoadingStateAction("unknown", false)).joinBlocking()
+
+        scope.advanceUntilIdle()
+
+        assertNull(Browser.totalUriCount.testGetValue())
+    }
+}
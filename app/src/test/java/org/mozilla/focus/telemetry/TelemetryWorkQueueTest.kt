@@ -0,0 +1,107 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.telemetry
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.mozilla.telemetry.TelemetryWorkQueue
+import org.mozilla.telemetry.TelemetryWorkQueue.OverflowPolicy
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class TelemetryWorkQueueTest {
+    @Test
+    fun `GIVEN a queued task with a key WHEN submitting the same key again THEN the task runs once`() {
+        val queue = TelemetryWorkQueue(10, OverflowPolicy.DROP_NEWEST)
+        val gate = blockWorker(queue)
+        val runs = AtomicInteger()
+
+        repeat(100) { queue.submit("build_ping_core") { runs.incrementAndGet() } }
+
+        gate.countDown()
+        awaitIdle(queue)
+
+        assertEquals(1, runs.get())
+        assertEquals(99, queue.statistics.coalescedTasks)
+    }
+
+    @Test
+    fun `GIVEN a running task with a key WHEN submitting the same key THEN the task runs again`() {
+        val queue = TelemetryWorkQueue(10, OverflowPolicy.DROP_NEWEST)
+        val runs = AtomicInteger()
+
+        queue.submit("schedule_upload") { runs.incrementAndGet() }
+        awaitIdle(queue)
+        queue.submit("schedule_upload") { runs.incrementAndGet() }
+        awaitIdle(queue)
+
+        assertEquals(2, runs.get())
+    }
+
+    @Test
+    fun `GIVEN a full queue WHEN dropping the newest task THEN queued tasks are kept`() {
+        val queue = TelemetryWorkQueue(2, OverflowPolicy.DROP_NEWEST)
+        val gate = blockWorker(queue)
+        val executed = mutableListOf<Int>()
+
+        (1..4).forEach { value -> queue.submit { synchronized(executed) { executed.add(value) } } }
+
+        gate.countDown()
+        awaitIdle(queue)
+
+        assertEquals(listOf(1, 2), executed)
+        assertEquals(2, queue.statistics.droppedTasks)
+    }
+
+    @Test
+    fun `GIVEN a full queue WHEN dropping the oldest task THEN the newest tasks are kept`() {
+        val queue = TelemetryWorkQueue(2, OverflowPolicy.DROP_OLDEST)
+        val gate = blockWorker(queue)
+        val executed = mutableListOf<Int>()
+
+        (1..4).forEach { value -> queue.submit { synchronized(executed) { executed.add(value) } } }
+
+        gate.countDown()
+        awaitIdle(queue)
+
+        assertEquals(listOf(3, 4), executed)
+        assertEquals(2, queue.statistics.droppedTasks)
+    }
+
+    @Test
+    fun `GIVEN a failing task WHEN it runs THEN the following tasks still run`() {
+        val queue = TelemetryWorkQueue(10, OverflowPolicy.DROP_NEWEST)
+        val runs = AtomicInteger()
+
+        queue.submit { throw IllegalStateException("Failing task") }
+        queue.submit { runs.incrementAndGet() }
+        awaitIdle(queue)
+
+        assertEquals(1, runs.get())
+    }
+
+    /**
+     * Occupy the worker thread until the returned latch is released so that tasks pile up in the queue.
+     */
+    private fun blockWorker(queue: TelemetryWorkQueue): CountDownLatch {
+        val started = CountDownLatch(1)
+        val gate = CountDownLatch(1)
+
+        queue.submit {
+            started.countDown()
+            gate.await()
+        }
+
+        started.await(1, TimeUnit.SECONDS)
+        return gate
+    }
+
+    private fun awaitIdle(queue: TelemetryWorkQueue) {
+        val done = CountDownLatch(1)
+        queue.submit { done.countDown() }
+        done.await(1, TimeUnit.SECONDS)
+    }
+}
@@ -0,0 +1,68 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.utils
+
+import mozilla.components.support.test.robolectric.testContext
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mozilla.focus.R
+import org.mozilla.focus.browser.LocalizedContent
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class HtmlLoaderTest {
+
+    @Test
+    fun `WHEN a template is rendered THEN known tokens are replaced and unknown tokens are kept`() {
+        val template = HtmlLoader.Template.compile("<p dir=\"%dir%\">%content% %unknown% 100% 50%;</p>")
+
+        assertEquals(
+            "<p dir=\"rtl\">Hello %unknown% 100% 50%;</p>",
+            template.render(mapOf("%dir%" to "rtl", "%content%" to "Hello")),
+        )
+        assertEquals(
+            "<p dir=\"%dir%\">%content% %unknown% 100% 50%;</p>",
+            template.render(null),
+        )
+    }
+
+    @Test
+    fun `WHEN a resource file is loaded THEN it matches replacing the tokens in the file`() {
+        val substitutions = mapOf("%dir%" to "ltr", "%about-content%" to "content", "%about-version%" to "1.0")
+
+        val expected = testContext.resources.openRawResource(R.raw.about).bufferedReader().useLines { lines ->
+            lines.joinToString("") { line ->
+                substitutions.entries.fold(line) { result, (token, value) -> result.replace(token, value) }
+            }
+        }
+
+        assertEquals(expected, HtmlLoader.loadResourceFile(testContext, R.raw.about, substitutions))
+    }
+
+    @Test
+    fun `WHEN a png is loaded twice THEN the data URI is only encoded once`() {
+        val first = HtmlLoader.loadPngAsDataURI(testContext, R.drawable.wordmark2)
+
+        assertTrue(first.startsWith("data:image/png;base64,"))
+        assertSame(first, HtmlLoader.loadPngAsDataURI(testContext, R.drawable.wordmark2))
+    }
+
+    @Test
+    fun `WHEN an internal page is loaded twice THEN it is only rendered once until the cache is cleared`() {
+        val first = LocalizedContent.loadAbout(testContext)
+
+        assertSame(first, LocalizedContent.loadAbout(testContext))
+
+        LocalizedContent.clearCache()
+        val second = LocalizedContent.loadAbout(testContext)
+
+        assertNotSame(first, second)
+        assertEquals(first, second)
+    }
+}
@@ -0,0 +1,60 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.utils
+
+import androidx.preference.PreferenceManager
+import mozilla.components.concept.engine.Engine
+import mozilla.components.support.test.robolectric.testContext
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mozilla.focus.R
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class SettingsTest {
+    private val preferences = PreferenceManager.getDefaultSharedPreferences(testContext)
+
+    @Test
+    fun `WHEN reading settings THEN the defaults are returned`() {
+        val settings = Settings(testContext)
+
+        assertTrue(settings.shouldBlockAdTrackers())
+        assertFalse(settings.shouldBlockOtherTrackers())
+        assertEquals(Settings.NO_VALUE, settings.shouldBlockCookiesValue())
+        assertEquals(Engine.HttpsOnlyMode.ENABLED, settings.getHttpsOnlyMode())
+    }
+
+    @Test
+    fun `WHEN a setting is changed through Settings THEN the new value is read right away`() {
+        val settings = Settings(testContext)
+        settings.loadSnapshot()
+
+        settings.isFirstRun = false
+        settings.addClearBrowsingSessions(2)
+        settings.lightThemeSelected = true
+
+        assertFalse(settings.isFirstRun)
+        assertEquals(2, settings.getClearBrowsingSessions())
+        assertTrue(settings.lightThemeSelected)
+        assertFalse(preferences.getBoolean(testContext.getString(R.string.firstrun_shown), true))
+    }
+
+    @Test
+    fun `WHEN a preference is changed elsewhere THEN the new value is published to Settings`() {
+        val settings = Settings(testContext)
+        assertFalse(settings.shouldBlockJavaScript())
+
+        preferences.edit()
+            .putBoolean(testContext.getString(R.string.pref_key_performance_block_javascript), true)
+            .putInt(testContext.getString(R.string.pref_key_search_widget_installed), 1)
+            .apply()
+
+        assertTrue(settings.shouldBlockJavaScript())
+        assertTrue(settings.searchWidgetInstalled)
+    }
+}
@@ -62,6 +62,8 @@ object FocusVersions {
     }
 
     object ThirdParty {
+        const val android_json = "0.0.20131108.vaadin1"
+        const val jmh = "1.35"
         const val jna = "5.12.1"
         const val leakcanary = "2.10"
         const val sentry = "6.8.0"
@@ -72,6 +74,7 @@ object FocusVersions {
     // https://github.com/gradle/gradle/issues/9251
     const val google_compose_compiler = FocusVersions.Google.compose_compiler
     const val ktlint_version = FocusVersions.Testing.ktlint
+    const val jmh_version = FocusVersions.ThirdParty.jmh
 }
 
 object FocusDependencies {
@@ -112,7 +115,9 @@ object FocusDependencies {
     const val jna = "net.java.dev.jna:jna:${FocusVersions.ThirdParty.jna}@jar"
     const val leakcanary = "com.squareup.leakcanary:leakcanary-android-core:${FocusVersions.ThirdParty.leakcanary}"
     const val sentry = "io.sentry:sentry-android:${FocusVersions.ThirdParty.sentry}"
+    const val android_json = "com.vaadin.external.google:android-json:${FocusVersions.ThirdParty.android_json}"
 
+    const val kotlin_stdlib = "org.jetbrains.kotlin:kotlin-stdlib:${FocusVersions.Kotlin.compiler}"
     const val kotlin_coroutines = "org.jetbrains.kotlinx:kotlinx-coroutines-core:${FocusVersions.Kotlin.coroutines}"
     const val kotlin_coroutines_android = "org.jetbrains.kotlinx:kotlinx-coroutines-android:${FocusVersions.Kotlin.coroutines}"
 
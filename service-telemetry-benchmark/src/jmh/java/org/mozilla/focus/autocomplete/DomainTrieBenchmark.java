@@ -0,0 +1,66 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.focus.autocomplete;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * URL bar autocomplete: One lookup per keystroke while typing {@link #TYPED_DOMAINS} domains
+ * character by character, against an index of {@link #INDEXED_DOMAINS} domains. The app calls
+ * {@link DomainTrie#find(String)} on the main thread for every keystroke.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DomainTrieBenchmark {
+    private static final int INDEXED_DOMAINS = 5000;
+    private static final int TYPED_DOMAINS = 500;
+
+    @State(Scope.Thread)
+    public static class TrieState {
+        DomainTrie trie;
+        String[] queries;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            final List<String> domains = new ArrayList<>(INDEXED_DOMAINS);
+            for (int i = 0; i < INDEXED_DOMAINS; i++) {
+                domains.add("https://www.domain" + i + "-example.com");
+            }
+            trie = DomainTrie.Companion.build(domains);
+
+            final List<String> prefixes = new ArrayList<>();
+            for (String domain : domains.subList(0, TYPED_DOMAINS)) {
+                final String host = domain.substring("https://www.".length());
+                for (int length = 1; length <= host.length(); length++) {
+                    prefixes.add(host.substring(0, length));
+                }
+            }
+            queries = prefixes.toArray(new String[0]);
+        }
+
+        String nextQuery() {
+            final String query = queries[next];
+            next = (next + 1) % queries.length;
+            return query;
+        }
+    }
+
+    @Benchmark
+    public DomainTrie.Entry find(TrieState state) {
+        return state.trie.find(state.nextQuery());
+    }
+}
@@ -0,0 +1,362 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.telemetry.benchmark;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+
+import org.mozilla.telemetry.config.TelemetryConfiguration;
+import org.mozilla.telemetry.event.TelemetryEvent;
+import org.mozilla.telemetry.measurement.SettingsMeasurement;
+import org.mozilla.telemetry.measurement.StaticMeasurement;
+import org.mozilla.telemetry.ping.TelemetryPing;
+import org.mozilla.telemetry.ping.TelemetryPingBuilder;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * A telemetry configuration backed by a temporary directory and in-memory preferences, plus the
+ * fixtures shared by the benchmarks. All fixtures are generated from a fixed seed so that every run
+ * measures the same data.
+ */
+public class BenchmarkEnvironment {
+    public static final int EVENTS_PER_PING = 1000;
+    public static final int QUEUED_PINGS = 100;
+    public static final int SETTINGS_COUNT = 500;
+
+    private static final long SEED = 42;
+
+    private static final String[] CATEGORIES = { "action", "action", "action", "error" };
+    private static final String[] METHODS = { "click", "type_url", "type_query", "change", "foreground", "background" };
+    private static final String[] OBJECTS = { "search_bar", "erase_button", "setting", "browser", "custom_tab", "app" };
+
+    private final File directory;
+    private final TelemetryConfiguration configuration;
+    private final Random random = new Random(SEED);
+
+    public BenchmarkEnvironment() throws IOException {
+        this.directory = Files.createTempDirectory("telemetry-benchmark").toFile();
+        this.configuration = new TelemetryConfiguration(new BenchmarkContext(directory))
+                .setMaximumNumberOfEventsPerPing(EVENTS_PER_PING)
+                .setMaximumNumberOfPingsPerType(QUEUED_PINGS)
+                .setSettingsProvider(new LargeSettingsProvider(SETTINGS_COUNT))
+                .setPreferencesImportantForTelemetry(LargeSettingsProvider.keys(SETTINGS_COUNT));
+    }
+
+    public TelemetryConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Create an event that looks like the events Focus records: Most events have a value or extras.
+     */
+    public TelemetryEvent createEvent() {
+        final TelemetryEvent event = TelemetryEvent.create(
+                pick(CATEGORIES), pick(METHODS), pick(OBJECTS),
+                random.nextBoolean() ? "value" + random.nextInt(100) : null);
+
+        final int extras = random.nextInt(4);
+        for (int i = 0; i < extras; i++) {
+            event.extra("extra" + i, "value" + random.nextInt(1000));
+        }
+
+        return event;
+    }
+
+    /**
+     * Build a mobile-event like ping with {@link #EVENTS_PER_PING} events.
+     */
+    public TelemetryPing createEventPing() {
+        return createEventPings(1)[0];
+    }
+
+    /**
+     * Build {@code count} mobile-event like pings with {@link #EVENTS_PER_PING} events each. The
+     * pings share their content but have different document ids.
+     */
+    public TelemetryPing[] createEventPings(int count) {
+        final JSONArray events = new JSONArray();
+        try {
+            for (int i = 0; i < EVENTS_PER_PING; i++) {
+                events.put(new JSONArray(createEvent().toJSON()));
+            }
+        } catch (JSONException e) {
+            throw new AssertionError("Can't create event fixtures", e);
+        }
+
+        final TelemetryPingBuilder builder = new FixturePingBuilder(configuration, "mobile-event")
+                .with("seq", 1L)
+                .with("locale", "en-US")
+                .with("os", "Android")
+                .with("created", System.currentTimeMillis())
+                .with("events", events);
+
+        final TelemetryPing[] pings = new TelemetryPing[count];
+        for (int i = 0; i < count; i++) {
+            pings[i] = builder.build();
+        }
+        return pings;
+    }
+
+    /**
+     * Build a ping with a settings map of {@link #SETTINGS_COUNT} entries.
+     */
+    public TelemetryPing createSettingsPing() {
+        final JSONObject settings = new JSONObject();
+        try {
+            for (String key : LargeSettingsProvider.keys(SETTINGS_COUNT)) {
+                settings.put(key, "value of " + key);
+            }
+        } catch (JSONException e) {
+            throw new AssertionError("Can't create settings fixture", e);
+        }
+
+        return new FixturePingBuilder(configuration, "settings")
+                .with("seq", 1L)
+                .with("settings", settings)
+                .build();
+    }
+
+    public void delete() {
+        deleteRecursively(directory);
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static void deleteRecursively(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    /**
+     * Ping builder with static fixture measurements.
+     */
+    private static class FixturePingBuilder extends TelemetryPingBuilder {
+        private FixturePingBuilder(TelemetryConfiguration configuration, String type) {
+            super(configuration, type, 1);
+        }
+
+        private FixturePingBuilder with(String name, Object value) {
+            addMeasurement(new StaticMeasurement(name, value));
+            return this;
+        }
+    }
+
+    private static class LargeSettingsProvider implements SettingsMeasurement.SettingsProvider {
+        private final Map<String, Object> settings = new HashMap<>();
+
+        private LargeSettingsProvider(int count) {
+            for (String key : keys(count)) {
+                settings.put(key, key.hashCode() % 2 == 0 ? Boolean.TRUE : "value of " + key);
+            }
+        }
+
+        private static String[] keys(int count) {
+            final String[] keys = new String[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = "pref_setting_" + i;
+            }
+            return keys;
+        }
+
+        @Override
+        public void update(TelemetryConfiguration configuration) {}
+
+        @Override
+        public boolean containsKey(String key) {
+            return settings.containsKey(key);
+        }
+
+        @Override
+        public Object getValue(String key) {
+            return settings.get(key);
+        }
+
+        @Override
+        public void release() {}
+    }
+
+    private static class BenchmarkContext extends Context {
+        private final File directory;
+        private final Map<String, SharedPreferences> preferences = new HashMap<>();
+
+        private BenchmarkContext(File directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public Context getApplicationContext() {
+            return this;
+        }
+
+        @Override
+        public ApplicationInfo getApplicationInfo() {
+            final ApplicationInfo info = new ApplicationInfo();
+            info.dataDir = directory.getAbsolutePath();
+            info.name = "Benchmark";
+            return info;
+        }
+
+        @Override
+        public PackageManager getPackageManager() {
+            return new PackageManager() {
+                @Override
+                public PackageInfo getPackageInfo(String packageName, int flags) {
+                    final PackageInfo info = new PackageInfo();
+                    info.versionName = "1.0";
+                    info.versionCode = 1;
+                    return info;
+                }
+
+                @Override
+                public ApplicationInfo getApplicationInfo(String packageName, int flags) {
+                    return BenchmarkContext.this.getApplicationInfo();
+                }
+            };
+        }
+
+        @Override
+        public String getPackageName() {
+            return "org.mozilla.telemetry.benchmark";
+        }
+
+        @Override
+        public synchronized SharedPreferences getSharedPreferences(String name, int mode) {
+            SharedPreferences sharedPreferences = preferences.get(name);
+            if (sharedPreferences == null) {
+                sharedPreferences = new InMemorySharedPreferences();
+                preferences.put(name, sharedPreferences);
+            }
+            return sharedPreferences;
+        }
+    }
+
+    private static class InMemorySharedPreferences implements SharedPreferences {
+        private final Map<String, Object> values = new HashMap<>();
+
+        @Override
+        public synchronized Map<String, ?> getAll() {
+            return new HashMap<>(values);
+        }
+
+        @Override
+        public String getString(String key, String defValue) {
+            return (String) get(key, defValue);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<String> getStringSet(String key, Set<String> defValues) {
+            return (Set<String>) get(key, defValues);
+        }
+
+        @Override
+        public int getInt(String key, int defValue) {
+            return (Integer) get(key, defValue);
+        }
+
+        @Override
+        public long getLong(String key, long defValue) {
+            return (Long) get(key, defValue);
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defValue) {
+            return (Boolean) get(key, defValue);
+        }
+
+        @Override
+        public synchronized boolean contains(String key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            return new InMemoryEditor();
+        }
+
+        private synchronized Object get(String key, Object defValue) {
+            return values.containsKey(key) ? values.get(key) : defValue;
+        }
+
+        private class InMemoryEditor implements Editor {
+            private final Map<String, Object> changes = new HashMap<>();
+            private final Set<String> removals = new HashSet<>();
+
+            @Override
+            public Editor putString(String key, String value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putStringSet(String key, Set<String> values) {
+                changes.put(key, new HashSet<>(values));
+                return this;
+            }
+
+            @Override
+            public Editor putInt(String key, int value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putLong(String key, long value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putBoolean(String key, boolean value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor remove(String key) {
+                removals.add(key);
+                return this;
+            }
+
+            @Override
+            public boolean commit() {
+                synchronized (InMemorySharedPreferences.this) {
+                    values.keySet().removeAll(removals);
+                    values.putAll(changes);
+                }
+                return true;
+            }
+
+            @Override
+            public void apply() {
+                commit();
+            }
+        }
+    }
+}
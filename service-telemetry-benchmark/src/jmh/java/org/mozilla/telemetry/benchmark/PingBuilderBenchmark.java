@@ -0,0 +1,93 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.telemetry.benchmark;
+
+import org.mozilla.telemetry.event.TelemetryEvent;
+import org.mozilla.telemetry.ping.TelemetryCorePingBuilder;
+import org.mozilla.telemetry.ping.TelemetryMobileEventPingBuilder;
+import org.mozilla.telemetry.ping.TelemetryPing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building pings: The core ping (counters and device measurements) and a mobile-event ping with
+ * {@link BenchmarkEnvironment#EVENTS_PER_PING} recorded events and a large settings map.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PingBuilderBenchmark {
+    @State(Scope.Thread)
+    public static class CorePingState {
+        BenchmarkEnvironment environment;
+        TelemetryCorePingBuilder builder;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            environment = new BenchmarkEnvironment();
+            builder = new TelemetryCorePingBuilder(environment.getConfiguration());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            environment.delete();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class EventPingState {
+        BenchmarkEnvironment environment;
+        TelemetryMobileEventPingBuilder builder;
+        TelemetryEvent[] events;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            environment = new BenchmarkEnvironment();
+            builder = new TelemetryMobileEventPingBuilder(environment.getConfiguration());
+
+            events = new TelemetryEvent[BenchmarkEnvironment.EVENTS_PER_PING];
+            for (int i = 0; i < events.length; i++) {
+                events[i] = environment.createEvent();
+            }
+        }
+
+        /**
+         * Record the events of the next ping. Building the ping consumes them.
+         */
+        @Setup(Level.Invocation)
+        public void recordEvents() {
+            for (TelemetryEvent event : events) {
+                builder.getEventsMeasurement().add(event);
+            }
+            builder.getEventsMeasurement().persistBufferedEvents();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            environment.delete();
+        }
+    }
+
+    @Benchmark
+    public TelemetryPing buildCorePing(CorePingState state) {
+        state.builder.getSessionCountMeasurement().countSession();
+        state.builder.getSearchesMeasurement().recordSearch("actionbar", "google");
+        return state.builder.build();
+    }
+
+    @Benchmark
+    public TelemetryPing buildEventPing(EventPingState state) {
+        return state.builder.build();
+    }
+}
@@ -0,0 +1,100 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.telemetry.benchmark;
+
+import org.mozilla.telemetry.ping.TelemetryPing;
+import org.mozilla.telemetry.serialize.JSONPingSerializer;
+import org.mozilla.telemetry.serialize.StreamingJSONPingSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing pings with the org.json based serializer and with the streaming serializer. Writing
+ * to a discarding writer shows the cost of the streaming path when the ping goes straight to disk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PingSerializerBenchmark {
+    @Param({ "events", "settings" })
+    public String fixture;
+
+    private BenchmarkEnvironment environment;
+    private TelemetryPing ping;
+
+    private final JSONPingSerializer jsonSerializer = new JSONPingSerializer();
+    private final StreamingJSONPingSerializer streamingSerializer = new StreamingJSONPingSerializer();
+    private final CountingWriter writer = new CountingWriter();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        environment = new BenchmarkEnvironment();
+        ping = "events".equals(fixture)
+                ? environment.createEventPing()
+                : environment.createSettingsPing();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.delete();
+    }
+
+    @Benchmark
+    public String jsonSerializer() {
+        return jsonSerializer.serialize(ping);
+    }
+
+    @Benchmark
+    public String streamingSerializerToString() {
+        return streamingSerializer.serialize(ping);
+    }
+
+    @Benchmark
+    public long streamingSerializerToWriter() throws IOException {
+        writer.count = 0;
+        streamingSerializer.serialize(ping, writer);
+        return writer.count;
+    }
+
+    /**
+     * Writer that only counts the characters written to it.
+     */
+    private static class CountingWriter extends Writer {
+        private long count;
+
+        @Override
+        public void write(int c) {
+            count++;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            count += length;
+        }
+
+        @Override
+        public void write(String string, int offset, int length) {
+            count += length;
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
+}
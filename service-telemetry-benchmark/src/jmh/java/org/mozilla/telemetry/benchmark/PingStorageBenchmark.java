@@ -0,0 +1,111 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.telemetry.benchmark;
+
+import org.mozilla.telemetry.ping.TelemetryPing;
+import org.mozilla.telemetry.serialize.StreamingJSONPingSerializer;
+import org.mozilla.telemetry.storage.FileTelemetryStorage;
+import org.mozilla.telemetry.storage.SegmentedTelemetryStorage;
+import org.mozilla.telemetry.storage.TelemetryStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Storing pings and processing a queue of {@link BenchmarkEnvironment#QUEUED_PINGS} stored pings
+ * (the upload path without the network).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PingStorageBenchmark {
+    @State(Scope.Thread)
+    public static class StorageState {
+        @Param({ "file", "segmented" })
+        public String storageType;
+
+        BenchmarkEnvironment environment;
+        TelemetryStorage storage;
+
+        /**
+         * Pings with distinct document ids. Storing them round-robin never stores a document id
+         * that is still queued: The storage only keeps the newest QUEUED_PINGS pings.
+         */
+        private TelemetryPing[] pings;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            environment = new BenchmarkEnvironment();
+            storage = createStorage(environment, storageType);
+            pings = environment.createEventPings(2 * BenchmarkEnvironment.QUEUED_PINGS);
+        }
+
+        TelemetryPing nextPing() {
+            final TelemetryPing ping = pings[next];
+            next = (next + 1) % pings.length;
+            return ping;
+        }
+
+        String pingType() {
+            return pings[0].getType();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            environment.delete();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class QueuedPingsState extends StorageState {
+        /**
+         * Fill the queue again before every invocation: Processing removes the pings.
+         */
+        @Setup(Level.Invocation)
+        public void queuePings() {
+            for (int i = storage.countStoredPings(pingType()); i < BenchmarkEnvironment.QUEUED_PINGS; i++) {
+                storage.store(nextPing());
+            }
+        }
+    }
+
+    /**
+     * Store a 1k-event ping. Once the queue is full every store also prunes the oldest ping.
+     */
+    @Benchmark
+    public void store(StorageState state) {
+        state.storage.store(state.nextPing());
+    }
+
+    @Benchmark
+    public boolean process(QueuedPingsState state) {
+        return state.storage.process(state.pingType(), new TelemetryStorage.TelemetryStorageCallback() {
+            @Override
+            public boolean onTelemetryPingLoaded(String path, String serializedPing) {
+                return true;
+            }
+        });
+    }
+
+    private static TelemetryStorage createStorage(BenchmarkEnvironment environment, String storageType) {
+        final StreamingJSONPingSerializer serializer = new StreamingJSONPingSerializer();
+
+        if ("segmented".equals(storageType)) {
+            return new SegmentedTelemetryStorage(environment.getConfiguration(), serializer);
+        }
+
+        return new FileTelemetryStorage(environment.getConfiguration(), serializer);
+    }
+}
@@ -0,0 +1,72 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.telemetry.benchmark;
+
+import org.mozilla.telemetry.event.TelemetryEvent;
+import org.mozilla.telemetry.measurement.EventsMeasurement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recording events: Serializing a single event and adding events to (and flushing them from) the
+ * events measurement.
+ */
+@State(Scope.Thread)
+public class TelemetryEventBenchmark {
+    private BenchmarkEnvironment environment;
+    private TelemetryEvent event;
+    private TelemetryEvent[] events;
+    private EventsMeasurement measurement;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        environment = new BenchmarkEnvironment();
+        event = environment.createEvent().extra("source", "benchmark");
+
+        events = new TelemetryEvent[BenchmarkEnvironment.EVENTS_PER_PING];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = environment.createEvent();
+        }
+
+        measurement = new EventsMeasurement(environment.getConfiguration());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.delete();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public String eventToJSON() {
+        return event.toJSON();
+    }
+
+    /**
+     * Add a ping's worth of events and flush them, like recording events until the next event ping
+     * gets built.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object addAndFlushEvents() {
+        for (TelemetryEvent event : events) {
+            measurement.add(event);
+        }
+
+        return measurement.flush();
+    }
+}
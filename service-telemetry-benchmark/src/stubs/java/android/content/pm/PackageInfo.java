@@ -0,0 +1,13 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package android.content.pm;
+
+/**
+ * JVM stub of the Android class: Only the members used by service-telemetry.
+ */
+public class PackageInfo {
+    public String versionName;
+    public int versionCode;
+}
@@ -0,0 +1,23 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package android.os;
+
+/**
+ * JVM stub of the Android class with fixed values.
+ */
+public class Build {
+    public static final String MANUFACTURER = "Benchmark";
+    public static final String MODEL = "JVM";
+    public static final String CPU_ABI = "x86_64";
+    public static final String[] SUPPORTED_ABIS = { CPU_ABI };
+
+    public static class VERSION {
+        public static final int SDK_INT = 21;
+    }
+
+    public static class VERSION_CODES {
+        public static final int LOLLIPOP = 21;
+    }
+}
@@ -0,0 +1,18 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package android.util;
+
+/**
+ * JVM stub of the Android class. Benchmarks don't log.
+ */
+public final class Log {
+    public static int d(String tag, String message) {
+        return 0;
+    }
+
+    public static int w(String tag, String message) {
+        return 0;
+    }
+}
@@ -0,0 +1,20 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package mozilla.components.support.base.log.logger;
+
+/**
+ * JVM stub of the android-components logger. Benchmarks don't log.
+ */
+public class Logger {
+    public Logger(String tag) {}
+
+    public void debug(String message, Throwable throwable) {}
+
+    public void info(String message, Throwable throwable) {}
+
+    public void warn(String message, Throwable throwable) {}
+
+    public void error(String message, Throwable throwable) {}
+}
@@ -0,0 +1,36 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.telemetry.measurement;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+
+/**
+ * Java copy of the Kotlin measurement so that this module doesn't need the Kotlin compiler.
+ */
+public class ExperimentsMapMeasurement extends TelemetryMeasurement {
+    private final JSONObject map = new JSONObject();
+
+    public ExperimentsMapMeasurement() {
+        super("experiments");
+    }
+
+    public void setExperiments(Map<String, Boolean> experiments) {
+        try {
+            for (Map.Entry<String, Boolean> entry : experiments.entrySet()) {
+                map.put(entry.getKey(), entry.getValue() ? "branch" : "control");
+            }
+        } catch (JSONException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Override
+    public Object flush() {
+        return map;
+    }
+}
@@ -0,0 +1,23 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.telemetry.net;
+
+import org.mozilla.telemetry.config.TelemetryConfiguration;
+
+import java.util.List;
+
+/**
+ * Replaces the Kotlin client (which needs the Android fetch API). Benchmarks never upload: Every
+ * ping is accepted immediately.
+ */
+public class TelemetryClient {
+    public boolean uploadPing(TelemetryConfiguration configuration, String path, String serializedPing) {
+        return true;
+    }
+
+    public int uploadPings(TelemetryConfiguration configuration, List<String> paths, List<String> serializedPings) {
+        return paths.size();
+    }
+}
@@ -30,7 +30,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import kotlin.Unit;
 import kotlin.jvm.functions.Function0;
@@ -41,13 +40,17 @@ import kotlin.jvm.functions.Function0;
  */
 //@Deprecated
 public class Telemetry {
+    private static final String TASK_KEY_BUILD_PING = "build_ping_";
+    private static final String TASK_KEY_SCHEDULE_UPLOAD = "schedule_upload";
+    private static final String TASK_KEY_PERSIST_EVENTS = "persist_events";
+
     private final TelemetryConfiguration configuration;
     private final TelemetryStorage storage;
     private final TelemetryClient client;
     private final TelemetryScheduler scheduler;
 
     private final Map<String, TelemetryPingBuilder> pingBuilders;
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final TelemetryWorkQueue workQueue;
 
     public Telemetry(TelemetryConfiguration configuration, TelemetryStorage storage,
                      TelemetryClient client, TelemetryScheduler scheduler) {
@@ -55,6 +58,8 @@ public class Telemetry {
         this.storage = storage;
         this.client = client;
         this.scheduler = scheduler;
+        this.workQueue = new TelemetryWorkQueue(
+                configuration.getWorkQueueCapacity(), configuration.getWorkQueueOverflowPolicy());
 
         pingBuilders = new HashMap<>();
     }
@@ -77,7 +82,9 @@ public class Telemetry {
             return this;
         }
 
-        executor.submit(new Runnable() {
+        // Building a ping once includes everything collected until then: Multiple requests for the
+        // same ping type waiting in the queue are coalesced into one.
+        workQueue.submit(TASK_KEY_BUILD_PING + pingType, new Runnable() {
             @Override
             public void run() {
                 final TelemetryPingBuilder pingBuilder = pingBuilders.get(pingType);
@@ -102,7 +109,7 @@ public class Telemetry {
             return this;
         }
 
-        executor.submit(new Runnable() {
+        workQueue.submit(new Runnable() {
             @Override
             public void run() {
                 // We migrated from focus-event to mobile-event and unfortunately, this code was hard-coded to expect
@@ -132,6 +139,27 @@ public class Telemetry {
         return this;
     }
 
+    /**
+     * Write all events that are still buffered in memory to disk. Call this when the app is going
+     * to the background and might get killed.
+     */
+    public Telemetry persistEvents() {
+        if (!configuration.isCollectionEnabled()) {
+            return this;
+        }
+
+        workQueue.submit(TASK_KEY_PERSIST_EVENTS, new Runnable() {
+            @Override
+            public void run() {
+                for (TelemetryPingBuilder builder : pingBuilders.values()) {
+                    builder.persistMeasurements();
+                }
+            }
+        });
+
+        return this;
+    }
+
     public Collection<TelemetryPingBuilder> getBuilders() {
         return pingBuilders.values();
     }
@@ -141,7 +169,7 @@ public class Telemetry {
             return this;
         }
 
-        executor.submit(new Runnable() {
+        workQueue.submit(TASK_KEY_SCHEDULE_UPLOAD, new Runnable() {
             @Override
             public void run() {
                 scheduler.scheduleUpload(configuration);
@@ -305,11 +333,19 @@ public class Telemetry {
         return (String) new ClientIdMeasurement(configuration).flush();
     }
 
+    /**
+     * Returns statistics about the background queue running telemetry tasks (queue depth, latency,
+     * dropped and coalesced tasks).
+     */
+    public TelemetryWorkQueue.Statistics getWorkQueueStatistics() {
+        return workQueue.getStatistics();
+    }
+
     /**
      * @hide
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY)
     @VisibleForTesting ExecutorService getExecutor() {
-        return executor;
+        return workQueue.getExecutor();
     }
 }
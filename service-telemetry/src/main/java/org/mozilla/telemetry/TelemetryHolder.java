@@ -4,6 +4,8 @@
 
 package org.mozilla.telemetry;
 
+import androidx.annotation.Nullable;
+
 /**
  * Holder of a static reference to the Telemetry instance. This is required for background services
  * that somehow need to get access to the configuration and storage. This is not particular nice.
@@ -14,7 +16,7 @@ package org.mozilla.telemetry;
  */
 //@Deprecated
 public class TelemetryHolder {
-    private static Telemetry telemetry;
+    private static volatile Telemetry telemetry;
 
     public static void set(Telemetry telemetry) {
         TelemetryHolder.telemetry = telemetry;
@@ -27,4 +29,12 @@ public class TelemetryHolder {
 
         return telemetry;
     }
+
+    /**
+     * Returns the Telemetry instance, or null if set() has not been called yet.
+     */
+    @Nullable
+    public static Telemetry getOrNull() {
+        return telemetry;
+    }
 }
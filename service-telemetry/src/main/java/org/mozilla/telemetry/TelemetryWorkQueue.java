@@ -0,0 +1,232 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.telemetry;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mozilla.components.support.base.log.logger.Logger;
+
+/**
+ * Single-threaded work queue for telemetry tasks.
+ *
+ * - The queue is bounded. If it is full the {@link OverflowPolicy} decides which task gets dropped.
+ * - Tasks submitted with a key are coalesced: As long as a task with the same key is waiting in the
+ *   queue, submitting another one is a no-op. Building a ping or scheduling an upload only needs to
+ *   happen once, no matter how often it has been requested in the meantime.
+ * - The worker thread is a daemon thread and never keeps the process alive.
+ * - Queue depth, task latency and the number of dropped and coalesced tasks are available through
+ *   {@link #getStatistics()}.
+ */
+public class TelemetryWorkQueue {
+    public enum OverflowPolicy {
+        /**
+         * Drop the task that is submitted while the queue is full.
+         */
+        DROP_NEWEST,
+
+        /**
+         * Drop the oldest task waiting in the queue to make room for the new task.
+         */
+        DROP_OLDEST
+    }
+
+    /**
+     * Snapshot of the queue statistics.
+     */
+    public static class Statistics {
+        public final int queueDepth;
+        public final long completedTasks;
+        public final long droppedTasks;
+        public final long coalescedTasks;
+        public final long averageQueueTimeMillis;
+        public final long maximumQueueTimeMillis;
+        public final long averageExecutionTimeMillis;
+
+        private Statistics(int queueDepth, long completedTasks, long droppedTasks, long coalescedTasks,
+                           long averageQueueTimeMillis, long maximumQueueTimeMillis,
+                           long averageExecutionTimeMillis) {
+            this.queueDepth = queueDepth;
+            this.completedTasks = completedTasks;
+            this.droppedTasks = droppedTasks;
+            this.coalescedTasks = coalescedTasks;
+            this.averageQueueTimeMillis = averageQueueTimeMillis;
+            this.maximumQueueTimeMillis = maximumQueueTimeMillis;
+            this.averageExecutionTimeMillis = averageExecutionTimeMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics{" +
+                    "queueDepth=" + queueDepth +
+                    ", completedTasks=" + completedTasks +
+                    ", droppedTasks=" + droppedTasks +
+                    ", coalescedTasks=" + coalescedTasks +
+                    ", averageQueueTimeMillis=" + averageQueueTimeMillis +
+                    ", maximumQueueTimeMillis=" + maximumQueueTimeMillis +
+                    ", averageExecutionTimeMillis=" + averageExecutionTimeMillis +
+                    '}';
+        }
+    }
+
+    private final Logger logger = new Logger("telemetry/queue");
+
+    private final ThreadPoolExecutor executor;
+    private final OverflowPolicy overflowPolicy;
+    private final Set<String> pendingKeys =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final AtomicLong completedTasks = new AtomicLong();
+    private final AtomicLong droppedTasks = new AtomicLong();
+    private final AtomicLong coalescedTasks = new AtomicLong();
+    private final AtomicLong totalQueueTimeNanos = new AtomicLong();
+    private final AtomicLong maximumQueueTimeNanos = new AtomicLong();
+    private final AtomicLong totalExecutionTimeNanos = new AtomicLong();
+
+    public TelemetryWorkQueue(int capacity, @NonNull OverflowPolicy overflowPolicy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity needs to be >= 1");
+        }
+
+        this.overflowPolicy = overflowPolicy;
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(capacity),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@NonNull Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "Telemetry");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                },
+                new OverflowHandler());
+    }
+
+    /**
+     * Queue a task. Tasks run one after the other in the order they have been submitted.
+     */
+    public void submit(@NonNull Runnable runnable) {
+        submit(null, runnable);
+    }
+
+    /**
+     * Queue a task. If a task with the same key is still waiting in the queue then this task will
+     * not be queued.
+     */
+    public void submit(@Nullable String key, @NonNull Runnable runnable) {
+        if (key != null && !pendingKeys.add(key)) {
+            coalescedTasks.incrementAndGet();
+            return;
+        }
+
+        executor.execute(new Task(key, runnable));
+    }
+
+    public Statistics getStatistics() {
+        final long completed = completedTasks.get();
+
+        return new Statistics(
+                executor.getQueue().size(),
+                completed,
+                droppedTasks.get(),
+                coalescedTasks.get(),
+                completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalQueueTimeNanos.get() / completed),
+                TimeUnit.NANOSECONDS.toMillis(maximumQueueTimeNanos.get()),
+                completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalExecutionTimeNanos.get() / completed));
+    }
+
+    /* package */ ExecutorService getExecutor() {
+        return executor;
+    }
+
+    private class Task implements Runnable {
+        private final String key;
+        private final Runnable runnable;
+        private final long queuedAtNanos;
+
+        private Task(String key, Runnable runnable) {
+            this.key = key;
+            this.runnable = runnable;
+            this.queuedAtNanos = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            // Release the key before running: Anything requested from now on needs another run.
+            releaseKey();
+
+            final long startNanos = System.nanoTime();
+            final long queueTimeNanos = startNanos - queuedAtNanos;
+
+            try {
+                runnable.run();
+            } catch (RuntimeException e) {
+                // Like ExecutorService.submit(): A failing task must not take down the app.
+                logger.error("Telemetry task failed", e);
+            } finally {
+                completedTasks.incrementAndGet();
+                totalQueueTimeNanos.addAndGet(queueTimeNanos);
+                totalExecutionTimeNanos.addAndGet(System.nanoTime() - startNanos);
+
+                long maximum;
+                do {
+                    maximum = maximumQueueTimeNanos.get();
+                } while (queueTimeNanos > maximum && !maximumQueueTimeNanos.compareAndSet(maximum, queueTimeNanos));
+            }
+        }
+
+        private void releaseKey() {
+            if (key != null) {
+                pendingKeys.remove(key);
+            }
+        }
+    }
+
+    private class OverflowHandler implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                drop(runnable);
+                return;
+            }
+
+            switch (overflowPolicy) {
+                case DROP_OLDEST:
+                    final Runnable oldest = executor.getQueue().poll();
+                    if (oldest != null) {
+                        drop(oldest);
+                    }
+                    executor.execute(runnable);
+                    break;
+
+                case DROP_NEWEST:
+                default:
+                    drop(runnable);
+                    break;
+            }
+        }
+
+        private void drop(Runnable runnable) {
+            if (runnable instanceof Task) {
+                ((Task) runnable).releaseKey();
+            }
+
+            if (droppedTasks.incrementAndGet() == 1) {
+                logger.warn("Telemetry work queue is full. Dropping tasks.", null);
+            }
+        }
+    }
+}
@@ -7,7 +7,10 @@ package org.mozilla.telemetry.config;
 import android.content.Context;
 import android.content.SharedPreferences;
 
+import org.mozilla.telemetry.TelemetryWorkQueue;
 import org.mozilla.telemetry.measurement.SettingsMeasurement;
+import org.mozilla.telemetry.storage.CounterStore;
+import org.mozilla.telemetry.storage.MappedCounterStore;
 import org.mozilla.telemetry.util.ContextUtils;
 
 import java.io.File;
@@ -36,6 +39,11 @@ public class TelemetryConfiguration {
     private static final int DEFAULT_MAXIMUM_NUMBER_OF_PINGS_PER_EVENT = 500;
     private static final int DEFAULT_MAXIMUM_PINGS_PER_TYPE = 40;
     private static final int DEFAULT_MAXIMUM_PING_UPLOADS_PER_DAY = 100;
+    private static final int DEFAULT_UPLOAD_BATCH_SIZE = 1;
+    private static final int DEFAULT_MAXIMUM_PARALLEL_UPLOADS = 2;
+    private static final int DEFAULT_EVENT_BUFFER_SIZE = 20;
+    private static final long DEFAULT_EVENT_BUFFER_FLUSH_INTERVAL = 10000;
+    private static final int DEFAULT_WORK_QUEUE_CAPACITY = 1000;
 
     private static final long classLoadTimestampMillis = System.currentTimeMillis();
 
@@ -58,7 +66,14 @@ public class TelemetryConfiguration {
     private int maximumNumberOfEventsPerPing;
     private int maximumNumberOfPingsPerType;
     private int maximumNumberOfPingUploadsPerDay;
+    private int uploadBatchSize;
+    private int maximumParallelUploads;
+    private int eventBufferSize;
+    private long eventBufferFlushInterval;
+    private int workQueueCapacity;
+    private TelemetryWorkQueue.OverflowPolicy workQueueOverflowPolicy;
     private SettingsMeasurement.SettingsProvider settingsProvider;
+    private CounterStore counterStore;
 
     public TelemetryConfiguration(Context context) {
         this.context = context.getApplicationContext();
@@ -80,6 +95,12 @@ public class TelemetryConfiguration {
         setMaximumNumberOfEventsPerPing(DEFAULT_MAXIMUM_NUMBER_OF_PINGS_PER_EVENT);
         setMaximumNumberOfPingsPerType(DEFAULT_MAXIMUM_PINGS_PER_TYPE);
         setMaximumNumberOfPingUploadsPerDay(DEFAULT_MAXIMUM_PING_UPLOADS_PER_DAY);
+        setUploadBatchSize(DEFAULT_UPLOAD_BATCH_SIZE);
+        setMaximumParallelUploads(DEFAULT_MAXIMUM_PARALLEL_UPLOADS);
+        setEventBufferSize(DEFAULT_EVENT_BUFFER_SIZE);
+        setEventBufferFlushInterval(DEFAULT_EVENT_BUFFER_FLUSH_INTERVAL);
+        setWorkQueueCapacity(DEFAULT_WORK_QUEUE_CAPACITY);
+        setWorkQueueOverflowPolicy(TelemetryWorkQueue.OverflowPolicy.DROP_NEWEST);
         setSettingsProvider(new SettingsMeasurement.SharedPreferenceSettingsProvider());
     }
 
@@ -139,6 +160,17 @@ public class TelemetryConfiguration {
         return context.getSharedPreferences(DEFAULT_SHARED_PREFERENCE, Context.MODE_PRIVATE);
     }
 
+    /**
+     * Get the store for counters that are updated frequently (search counts, session counts,
+     * sequence numbers, upload counts). Counters are kept in the data directory.
+     */
+    public synchronized CounterStore getCounterStore() {
+        if (counterStore == null) {
+            counterStore = new MappedCounterStore(getDataDirectory());
+        }
+        return counterStore;
+    }
+
     /**
      * Set a list of preference keys that are important for telemetry. Some measurements and pings
      * might use this to determine what preferences should be reported.
@@ -399,6 +431,121 @@ public class TelemetryConfiguration {
         return this;
     }
 
+    /**
+     * Get the maximum number of pings that are loaded from storage and uploaded together.
+     */
+    public int getUploadBatchSize() {
+        return uploadBatchSize;
+    }
+
+    /**
+     * Set the maximum number of pings that are loaded from storage and uploaded together. Pings of
+     * a batch are uploaded with gzip compressed bodies over the same connection and are removed from
+     * the storage in one step. The default value is 1, which disables batching. The minimum needs
+     * to be >= 1.
+     */
+    public TelemetryConfiguration setUploadBatchSize(int uploadBatchSize) {
+        if (uploadBatchSize <= 0) {
+            throw new IllegalArgumentException("uploadBatchSize needs to be >= 1");
+        }
+
+        this.uploadBatchSize = uploadBatchSize;
+        return this;
+    }
+
+    /**
+     * Get the maximum number of ping types that are uploaded at the same time.
+     */
+    public int getMaximumParallelUploads() {
+        return maximumParallelUploads;
+    }
+
+    /**
+     * Set the maximum number of ping types that are uploaded at the same time. Pings of the same
+     * type are always uploaded one after the other. The minimum needs to be >= 1.
+     */
+    public TelemetryConfiguration setMaximumParallelUploads(int maximumParallelUploads) {
+        if (maximumParallelUploads <= 0) {
+            throw new IllegalArgumentException("maximumParallelUploads needs to be >= 1");
+        }
+
+        this.maximumParallelUploads = maximumParallelUploads;
+        return this;
+    }
+
+    /**
+     * Get the number of events that are kept in memory before they are written to disk together.
+     */
+    public int getEventBufferSize() {
+        return eventBufferSize;
+    }
+
+    /**
+     * Set the number of events that are kept in memory before they are written to disk together.
+     * Buffered events are lost if the process gets killed before they have been written. A value of
+     * 1 writes every event to disk immediately. The minimum needs to be >= 1.
+     */
+    public TelemetryConfiguration setEventBufferSize(int eventBufferSize) {
+        if (eventBufferSize <= 0) {
+            throw new IllegalArgumentException("eventBufferSize needs to be >= 1");
+        }
+
+        this.eventBufferSize = eventBufferSize;
+        return this;
+    }
+
+    /**
+     * Get the maximum time (in milliseconds) an event is kept in memory before it is written to disk.
+     */
+    public long getEventBufferFlushInterval() {
+        return eventBufferFlushInterval;
+    }
+
+    /**
+     * Set the maximum time (in milliseconds) an event is kept in memory before it is written to disk.
+     */
+    public TelemetryConfiguration setEventBufferFlushInterval(long eventBufferFlushInterval) {
+        this.eventBufferFlushInterval = eventBufferFlushInterval;
+        return this;
+    }
+
+    /**
+     * Get the maximum number of telemetry tasks (queued events, ping builds, upload scheduling)
+     * waiting to be run in the background.
+     */
+    public int getWorkQueueCapacity() {
+        return workQueueCapacity;
+    }
+
+    /**
+     * Set the maximum number of telemetry tasks (queued events, ping builds, upload scheduling)
+     * waiting to be run in the background. What happens if more tasks are queued is decided by
+     * the overflow policy. The minimum needs to be >= 1.
+     */
+    public TelemetryConfiguration setWorkQueueCapacity(int workQueueCapacity) {
+        if (workQueueCapacity <= 0) {
+            throw new IllegalArgumentException("workQueueCapacity needs to be >= 1");
+        }
+
+        this.workQueueCapacity = workQueueCapacity;
+        return this;
+    }
+
+    /**
+     * Get the policy deciding which task gets dropped when the telemetry work queue is full.
+     */
+    public TelemetryWorkQueue.OverflowPolicy getWorkQueueOverflowPolicy() {
+        return workQueueOverflowPolicy;
+    }
+
+    /**
+     * Set the policy deciding which task gets dropped when the telemetry work queue is full.
+     */
+    public TelemetryConfiguration setWorkQueueOverflowPolicy(TelemetryWorkQueue.OverflowPolicy workQueueOverflowPolicy) {
+        this.workQueueOverflowPolicy = workQueueOverflowPolicy;
+        return this;
+    }
+
     /**
      * Get the provider for reading app settings.
      */
@@ -12,8 +12,11 @@ import androidx.annotation.RestrictTo;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.mozilla.telemetry.TelemetryHolder;
+import org.mozilla.telemetry.serialize.StreamingJSONPingSerializer;
 import org.mozilla.telemetry.util.StringUtils;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -101,6 +104,20 @@ public class TelemetryEvent {
         this.extras = new HashMap<>();
     }
 
+    /**
+     * Recreate an event that has been stored by {@link TelemetryEventCodec}. All values have been
+     * truncated already when the event was created.
+     */
+    /* package */ TelemetryEvent(long timestamp, @NonNull String category, @NonNull String method,
+                                 @Nullable String object, @Nullable String value, @NonNull Map<String, Object> extras) {
+        this.timestamp = timestamp;
+        this.category = category;
+        this.method = method;
+        this.object = object;
+        this.value = value;
+        this.extras = extras;
+    }
+
     public TelemetryEvent extra(String key, String value) {
         if (extras.size() > MAX_EXTRA_KEYS) {
             throw new IllegalArgumentException("Exceeding limit of " + MAX_EXTRA_KEYS + " extra keys");
@@ -124,6 +141,14 @@ public class TelemetryEvent {
      */
     @RestrictTo(RestrictTo.Scope.LIBRARY)
     public String toJSON() {
+        return toJSONArray().toString();
+    }
+
+    /**
+     * Create the JSON array representing this event in a ping.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public JSONArray toJSONArray() {
         final JSONArray array = new JSONArray();
 
         array.put(timestamp);
@@ -143,6 +168,85 @@ public class TelemetryEvent {
             array.put(new JSONObject(extras));
         }
 
-        return array.toString();
+        return array;
+    }
+
+    /**
+     * Write the same JSON representation as {@link #toJSON()} to the writer without creating any
+     * intermediate JSON objects.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void writeJSON(Writer writer) throws IOException {
+        writer.write('[');
+        writer.write(Long.toString(timestamp));
+        writer.write(',');
+        StreamingJSONPingSerializer.writeString(writer, category);
+        writer.write(',');
+        StreamingJSONPingSerializer.writeString(writer, method);
+        writer.write(',');
+        writeNullableString(writer, object);
+
+        if (value != null) {
+            writer.write(',');
+            StreamingJSONPingSerializer.writeString(writer, value);
+        }
+
+        if (extras != null && !extras.isEmpty()) {
+            if (value == null) {
+                writer.write(",null");
+            }
+
+            writer.write(",{");
+
+            boolean first = true;
+            for (Map.Entry<String, Object> extra : extras.entrySet()) {
+                if (!first) {
+                    writer.write(',');
+                }
+                first = false;
+
+                StreamingJSONPingSerializer.writeString(writer, extra.getKey());
+                writer.write(':');
+                StreamingJSONPingSerializer.writeValue(writer, extra.getValue());
+            }
+
+            writer.write('}');
+        }
+
+        writer.write(']');
+    }
+
+    private static void writeNullableString(Writer writer, @Nullable String value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+        } else {
+            StreamingJSONPingSerializer.writeString(writer, value);
+        }
+    }
+
+    /* package */ long getTimestamp() {
+        return timestamp;
+    }
+
+    /* package */ String getCategory() {
+        return category;
+    }
+
+    /* package */ String getMethod() {
+        return method;
+    }
+
+    @Nullable
+    /* package */ String getObject() {
+        return object;
+    }
+
+    @Nullable
+    /* package */ String getValue() {
+        return value;
+    }
+
+    /* package */ Map<String, Object> getExtras() {
+        return extras;
     }
 }
@@ -0,0 +1,287 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.telemetry.event;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary encoding for storing events on disk.
+ *
+ * Events are written in blocks (one block per group of events written to disk). Every block has its
+ * own string table: Category, method, object, value and extras are stored once per block and events
+ * refer to them by index. Blocks are self-contained so that new blocks can be appended to a file.
+ *
+ * Block:   marker (byte), payload length (int), event count (int), CRC32 of payload (int), payload
+ * Payload: string count (varint), strings (modified UTF-8), events
+ * Event:   timestamp (varint), category, method, object + 1, value + 1 (0 = null),
+ *          extra count (varint), extras (key, value)
+ *
+ * A block that is incomplete, claims to be larger than the rest of the file or than
+ * {@link #MAXIMUM_PAYLOAD_LENGTH}, or doesn't match its checksum ends the readable part of the file.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public class TelemetryEventCodec {
+    private static final byte BLOCK_MARKER = (byte) 0xE7;
+    private static final int BLOCK_HEADER_SIZE = 13;
+
+    // A block holds the events buffered in memory, a few KB. The limit only protects against
+    // allocating the payload of a corrupted header.
+    private static final int MAXIMUM_PAYLOAD_LENGTH = 4 * 1024 * 1024;
+
+    private TelemetryEventCodec() {}
+
+    /**
+     * Encode the events as one block.
+     */
+    public static byte[] encode(@NonNull Collection<TelemetryEvent> events) {
+        try {
+            final StringTable strings = new StringTable();
+            final ByteArrayOutputStream eventBytes = new ByteArrayOutputStream(events.size() * 16);
+            final DataOutputStream eventOutput = new DataOutputStream(eventBytes);
+
+            for (TelemetryEvent event : events) {
+                writeVarLong(eventOutput, event.getTimestamp());
+                writeVarLong(eventOutput, strings.indexOf(event.getCategory()));
+                writeVarLong(eventOutput, strings.indexOf(event.getMethod()));
+                writeVarLong(eventOutput, strings.nullableIndexOf(event.getObject()));
+                writeVarLong(eventOutput, strings.nullableIndexOf(event.getValue()));
+
+                final Map<String, Object> extras = event.getExtras();
+                writeVarLong(eventOutput, extras.size());
+                for (Map.Entry<String, Object> extra : extras.entrySet()) {
+                    writeVarLong(eventOutput, strings.indexOf(extra.getKey()));
+                    writeVarLong(eventOutput, strings.indexOf(String.valueOf(extra.getValue())));
+                }
+            }
+
+            final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(eventBytes.size() + strings.size() * 16);
+            final DataOutputStream payloadOutput = new DataOutputStream(payloadBytes);
+
+            writeVarLong(payloadOutput, strings.size());
+            for (String string : strings.values) {
+                payloadOutput.writeUTF(string);
+            }
+            eventBytes.writeTo(payloadOutput);
+            payloadOutput.flush();
+
+            final byte[] payload = payloadBytes.toByteArray();
+
+            final CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+
+            final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream(BLOCK_HEADER_SIZE + payload.length);
+            final DataOutputStream blockOutput = new DataOutputStream(blockBytes);
+            blockOutput.writeByte(BLOCK_MARKER);
+            blockOutput.writeInt(payload.length);
+            blockOutput.writeInt(events.size());
+            blockOutput.writeInt((int) crc.getValue());
+            blockOutput.write(payload);
+            blockOutput.flush();
+
+            return blockBytes.toByteArray();
+        } catch (IOException e) {
+            throw new AssertionError("ByteArrayOutputStream should not throw IOException", e);
+        }
+    }
+
+    /**
+     * Reads the blocks of an events file one after the other.
+     */
+    public static class Reader {
+        private final DataInputStream input;
+        private final long length;
+        private final Map<String, String> internedStrings = new HashMap<>();
+
+        private long validLength;
+        private boolean corrupted;
+
+        /**
+         * @param length the number of bytes in {@code stream}, e.g. the length of the file.
+         */
+        public Reader(@NonNull InputStream stream, long length) {
+            this.input = new DataInputStream(stream);
+            this.length = length;
+        }
+
+        /**
+         * Read the next block and add its events to {@code events} (or only count them if
+         * {@code events} is null).
+         *
+         * @return the number of events in the block or -1 if there are no more readable blocks.
+         */
+        public int readBlock(@Nullable List<TelemetryEvent> events) throws IOException {
+            final int marker = input.read();
+            if (marker == -1) {
+                return -1;
+            }
+
+            try {
+                if ((byte) marker != BLOCK_MARKER) {
+                    corrupted = true;
+                    return -1;
+                }
+
+                final int payloadLength = input.readInt();
+                final int eventCount = input.readInt();
+                final int checksum = input.readInt();
+
+                // Blocks are only read after the complete blocks before them.
+                final long remainingLength = length - validLength - BLOCK_HEADER_SIZE;
+
+                if (payloadLength < 0 || payloadLength > MAXIMUM_PAYLOAD_LENGTH
+                        || payloadLength > remainingLength || eventCount < 0) {
+                    corrupted = true;
+                    return -1;
+                }
+
+                final byte[] payload = new byte[payloadLength];
+                input.readFully(payload);
+
+                final CRC32 crc = new CRC32();
+                crc.update(payload, 0, payload.length);
+                if ((int) crc.getValue() != checksum) {
+                    corrupted = true;
+                    return -1;
+                }
+
+                if (events != null) {
+                    decode(payload, eventCount, events);
+                }
+
+                validLength += BLOCK_HEADER_SIZE + payloadLength;
+
+                return eventCount;
+            } catch (EOFException e) {
+                // The last block has not been written completely.
+                corrupted = true;
+                return -1;
+            }
+        }
+
+        /**
+         * The number of bytes at the beginning of the file that contain complete blocks.
+         */
+        public long getValidLength() {
+            return validLength;
+        }
+
+        /**
+         * Returns true if reading stopped at an incomplete or corrupted block.
+         */
+        public boolean isCorrupted() {
+            return corrupted;
+        }
+
+        private void decode(byte[] payload, int eventCount, List<TelemetryEvent> events) throws IOException {
+            final DataInputStream payloadInput = new DataInputStream(new ByteArrayInputStream(payload));
+
+            final int stringCount = (int) readVarLong(payloadInput);
+            final String[] strings = new String[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                strings[i] = intern(payloadInput.readUTF());
+            }
+
+            for (int i = 0; i < eventCount; i++) {
+                final long timestamp = readVarLong(payloadInput);
+                final String category = strings[(int) readVarLong(payloadInput)];
+                final String method = strings[(int) readVarLong(payloadInput)];
+                final String object = nullableString(strings, readVarLong(payloadInput));
+                final String value = nullableString(strings, readVarLong(payloadInput));
+
+                final int extraCount = (int) readVarLong(payloadInput);
+                final Map<String, Object> extras = new HashMap<>(extraCount * 2);
+                for (int j = 0; j < extraCount; j++) {
+                    final String extraKey = strings[(int) readVarLong(payloadInput)];
+                    final String extraValue = strings[(int) readVarLong(payloadInput)];
+                    extras.put(extraKey, extraValue);
+                }
+
+                events.add(new TelemetryEvent(timestamp, category, method, object, value, extras));
+            }
+        }
+
+        /**
+         * Share one String instance for equal strings of different blocks: Most events of a file
+         * have the same handful of categories, methods and objects.
+         */
+        private String intern(String string) {
+            final String interned = internedStrings.get(string);
+            if (interned != null) {
+                return interned;
+            }
+
+            internedStrings.put(string, string);
+            return string;
+        }
+    }
+
+    private static String nullableString(String[] strings, long index) {
+        return index == 0 ? null : strings[(int) index - 1];
+    }
+
+    private static void writeVarLong(DataOutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream input) throws IOException {
+        long value = 0;
+        int shift = 0;
+
+        while (shift < 64) {
+            final byte b = input.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+
+        throw new IOException("Malformed varint");
+    }
+
+    private static class StringTable {
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> indices = new LinkedHashMap<>();
+
+        private int indexOf(String value) {
+            Integer index = indices.get(value);
+            if (index == null) {
+                index = values.size();
+                values.add(value);
+                indices.put(value, index);
+            }
+            return index;
+        }
+
+        private int nullableIndexOf(@Nullable String value) {
+            return value == null ? 0 : indexOf(value) + 1;
+        }
+
+        private int size() {
+            return values.size();
+        }
+    }
+}
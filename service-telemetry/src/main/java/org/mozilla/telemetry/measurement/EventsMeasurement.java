@@ -5,39 +5,76 @@
 package org.mozilla.telemetry.measurement;
 
 import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
-import android.util.Log;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.mozilla.telemetry.config.TelemetryConfiguration;
 import org.mozilla.telemetry.event.TelemetryEvent;
+import org.mozilla.telemetry.event.TelemetryEventCodec;
+import org.mozilla.telemetry.serialize.JSONWritable;
 import org.mozilla.telemetry.util.IOUtils;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import mozilla.components.support.base.log.logger.Logger;
 
+/**
+ * Measurement collecting all events queued since the last ping was built.
+ *
+ * Events are buffered in memory and written to disk in groups: Once the buffer holds
+ * {@link TelemetryConfiguration#getEventBufferSize()} events, once the oldest buffered event is older
+ * than {@link TelemetryConfiguration#getEventBufferFlushInterval()} or when {@link #persist()} is
+ * called (through {@link org.mozilla.telemetry.Telemetry#persistEvents()} when the app goes to the
+ * background or is asked to trim its memory).
+ *
+ * If the process gets killed, the events that are still buffered are lost: Fewer than
+ * {@link TelemetryConfiguration#getEventBufferSize()} events, all recorded within the flush interval.
+ * Only while writing to disk keeps failing the buffer grows, up to twice the buffer size. After that
+ * the oldest events are dropped.
+ *
+ * Events are stored in the binary format of {@link TelemetryEventCodec}. They are only converted to
+ * JSON when the ping is serialized.
+ */
 public class EventsMeasurement extends TelemetryMeasurement {
-    private static final String LOG_TAG = EventsMeasurement.class.getSimpleName();
-
-    private static final int VERSION = 1;
+    private static final int VERSION = 2;
+    private static final int LEGACY_VERSION = 1;
     private static final String FIELD_NAME = "events";
 
-    private static final String PREFERENCE_EVENT_COUNT = "event_count";
+    // Older versions counted the events in the preferences.
+    private static final String LEGACY_PREFERENCE_EVENT_COUNT = "event_count";
+
+    // Shared by all instances: Flushing the buffer after the flush interval is rare and cheap.
+    private static ScheduledExecutorService flushScheduler;
 
     private TelemetryConfiguration configuration;
     private Logger logger;
     private String filename;
 
+    private final ArrayDeque<TelemetryEvent> buffer = new ArrayDeque<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    // Number of events on disk and in the buffer. -1 until the events on disk have been counted once.
+    private long eventCount = -1;
+
     public EventsMeasurement(TelemetryConfiguration configuration) {
         this(configuration, "events");
     }
@@ -51,21 +88,143 @@ public class EventsMeasurement extends TelemetryMeasurement {
     }
 
     public EventsMeasurement add(final TelemetryEvent event) {
-        saveEventToDisk(event);
+        bufferEvent(event);
         return this;
     }
 
     @Override
     public Object flush() {
-        return readAndClearEventsFromDisk();
+        return readAndClearEvents();
+    }
+
+    @Override
+    public void persist() {
+        persistBufferedEvents();
+    }
+
+    /**
+     * Write all buffered events to disk.
+     */
+    public synchronized void persistBufferedEvents() {
+        cancelScheduledFlush();
+
+        if (buffer.isEmpty()) {
+            return;
+        }
+
+        final byte[] block = TelemetryEventCodec.encode(buffer);
+
+        RandomAccessFile file = null;
+        long length = -1;
+
+        try {
+            file = new RandomAccessFile(getEventFile(), "rw");
+            length = file.length();
+
+            file.seek(length);
+            file.write(block);
+
+            buffer.clear();
+        } catch (IOException e) {
+            // Keep the events in the buffer and try again with the next group.
+            logger.warn("IOException while writing events to disk", e);
+
+            // Do not leave a partially written block behind: All blocks appended later would be
+            // unreadable.
+            if (file != null && length >= 0) {
+                try {
+                    file.setLength(length);
+                } catch (IOException truncateException) {
+                    logger.warn("Could not remove partially written events", truncateException);
+                }
+            }
+        } finally {
+            IOUtils.safeClose(file);
+        }
+    }
+
+    private synchronized void bufferEvent(TelemetryEvent event) {
+        ensureEventCountLoaded();
+
+        if (buffer.size() >= getMaximumBufferedEvents()) {
+            // Writing to disk has failed repeatedly. Drop the oldest event instead of growing
+            // without limit.
+            buffer.pollFirst();
+            eventCount--;
+            logger.warn("Event buffer full, dropping oldest event", null);
+        }
+
+        buffer.addLast(event);
+        eventCount++;
+
+        if (buffer.size() >= configuration.getEventBufferSize()) {
+            persistBufferedEvents();
+        } else if (scheduledFlush == null) {
+            scheduleFlush();
+        }
+    }
+
+    private synchronized EventList readAndClearEvents() {
+        final EventList events = new EventList();
+
+        readAndClearLegacyEventsFromDisk(events.legacyEvents);
+        readAndClearEventsFromDisk(events.events);
+
+        events.events.addAll(buffer);
+
+        buffer.clear();
+        cancelScheduledFlush();
+
+        eventCount = 0;
+
+        return events;
     }
 
-    private synchronized JSONArray readAndClearEventsFromDisk() {
-        final JSONArray events = new JSONArray();
+    private void readAndClearEventsFromDisk(List<TelemetryEvent> events) {
         final File file = getEventFile();
 
         FileInputStream stream = null;
 
+        try {
+            stream = new FileInputStream(file);
+
+            final TelemetryEventCodec.Reader reader = new TelemetryEventCodec.Reader(
+                    new BufferedInputStream(stream), file.length());
+            while (reader.readBlock(events) >= 0) {
+                // Keep reading until the last complete block.
+            }
+
+            if (reader.isCorrupted()) {
+                logger.warn("Events file is corrupted. Skipping events after byte " + reader.getValidLength(), null);
+            }
+        } catch (FileNotFoundException e) {
+            // The events might all still be in the buffer or the file disappeared: Continue with
+            // no events from disk.
+            return;
+        } catch (IOException e) {
+            // Continue building the ping with the events we were able to read. The events file
+            // will be removed and the events we couldn't read are lost.
+            logger.warn("IOException while reading events from disk", e);
+        } finally {
+            IOUtils.safeClose(stream);
+        }
+
+        if (!file.delete()) {
+            logger.warn("Events file could not be deleted", new IOException());
+        }
+    }
+
+    /**
+     * Read the events an older version has written as one JSON array per line.
+     */
+    private void readAndClearLegacyEventsFromDisk(List<JSONArray> events) {
+        final File file = getLegacyEventFile();
+        if (!file.exists()) {
+            return;
+        }
+
+        FileInputStream stream = null;
+
         try {
             stream = new FileInputStream(file);
 
@@ -75,27 +234,13 @@ public class EventsMeasurement extends TelemetryMeasurement {
 
             while ((line = reader.readLine()) != null) {
                 try {
-                    JSONArray event = new JSONArray(line);
-                    events.put(event);
-
-                    resetEventCount();
+                    events.add(new JSONArray(line));
                 } catch (JSONException e) {
                     // Let's log a warning and move on. This event is lost.
                     logger.warn("Could not parse event from disk", e);
                 }
             }
-        } catch (FileNotFoundException e) {
-            // This shouldn't happen because we do not create event pings if there are no events.
-            // However in case the file disappears: Continue with no events.
-            return new JSONArray();
         } catch (IOException e) {
-            // Handling this exception at this time is tricky: We might have been able to read some
-            // events at the time this exception occurred. We can either try to add them to the
-            // ping and remove the file or we retry later again.
-
-            // We just log an error here. This means we are going to continue building the ping
-            // with the events we were able to read from disk. The events file will be removed and
-            // we might potentially lose events that we couldn't ready because of the exception.
             logger.warn("IOException while reading events from disk", e);
         } finally {
             IOUtils.safeClose(stream);
@@ -104,55 +249,216 @@ public class EventsMeasurement extends TelemetryMeasurement {
                 logger.warn("Events file could not be deleted", new IOException());
             }
         }
-
-        return events;
     }
 
     @VisibleForTesting File getEventFile() {
         return new File(configuration.getDataDirectory(), filename + VERSION);
     }
 
-    private synchronized void saveEventToDisk(TelemetryEvent event) {
-        FileOutputStream stream = null;
+    @VisibleForTesting File getLegacyEventFile() {
+        return new File(configuration.getDataDirectory(), filename + LEGACY_VERSION);
+    }
+
+    public synchronized long getEventCount() {
+        ensureEventCountLoaded();
+
+        return eventCount;
+    }
+
+    /**
+     * Count the events a previous process has written to disk. This only happens once.
+     */
+    private void ensureEventCountLoaded() {
+        if (eventCount >= 0) {
+            return;
+        }
+
+        eventCount = countEventsOnDisk() + countLegacyEventsOnDisk() + buffer.size();
+
+        removeLegacyEventCount();
+    }
+
+    private void removeLegacyEventCount() {
+        final SharedPreferences preferences = configuration.getSharedPreferences();
+
+        if (preferences.contains(LEGACY_PREFERENCE_EVENT_COUNT)) {
+            preferences.edit()
+                    .remove(LEGACY_PREFERENCE_EVENT_COUNT)
+                    .apply();
+        }
+    }
+
+    /**
+     * Count the events in the events file. If the process has been killed while writing the last
+     * block then that block is removed, so that new blocks are appended after the last complete one.
+     */
+    private long countEventsOnDisk() {
+        final File file = getEventFile();
+
+        long count = 0;
+        long validLength = 0;
+        boolean corrupted = false;
+
+        FileInputStream stream = null;
 
         try {
-            stream = new FileOutputStream(getEventFile(), true);
+            stream = new FileInputStream(file);
 
-            final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(stream));
-            writer.write(event.toJSON());
-            writer.newLine();
-            writer.flush();
-            writer.close();
+            final TelemetryEventCodec.Reader reader = new TelemetryEventCodec.Reader(
+                    new BufferedInputStream(stream), file.length());
 
-            countEvent();
+            int blockCount;
+            while ((blockCount = reader.readBlock(null)) >= 0) {
+                count += blockCount;
+            }
+
+            validLength = reader.getValidLength();
+            corrupted = reader.isCorrupted();
+        } catch (FileNotFoundException e) {
+            // No events on disk.
+            return 0;
         } catch (IOException e) {
-            logger.warn("IOException while writing event to disk", e);
+            logger.warn("IOException while counting events on disk", e);
+            return count;
         } finally {
             IOUtils.safeClose(stream);
         }
+
+        if (corrupted) {
+            logger.warn("Removing incomplete events from disk", null);
+            truncate(file, validLength);
+        }
+
+        return count;
     }
 
-    private synchronized void countEvent() {
-        final SharedPreferences preferences = configuration.getSharedPreferences();
+    private long countLegacyEventsOnDisk() {
+        final File file = getLegacyEventFile();
+        if (!file.exists()) {
+            return 0;
+        }
+
+        long count = 0;
+
+        FileInputStream stream = null;
+
+        try {
+            stream = new FileInputStream(file);
 
-        long count = preferences.getLong(PREFERENCE_EVENT_COUNT, 0);
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
+            while (reader.readLine() != null) {
+                count++;
+            }
+        } catch (IOException e) {
+            logger.warn("IOException while counting events on disk", e);
+        } finally {
+            IOUtils.safeClose(stream);
+        }
 
-        preferences.edit()
-                .putLong(PREFERENCE_EVENT_COUNT, ++count)
-                .apply();
+        return count;
     }
 
-    private synchronized void resetEventCount() {
-        final SharedPreferences preferences = configuration.getSharedPreferences();
+    private void truncate(File file, long length) {
+        RandomAccessFile randomAccessFile = null;
 
-        preferences.edit()
-                .putLong(PREFERENCE_EVENT_COUNT, 0)
-                .apply();
+        try {
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            randomAccessFile.setLength(length);
+        } catch (IOException e) {
+            logger.warn("Could not truncate events file", e);
+        } finally {
+            IOUtils.safeClose(randomAccessFile);
+        }
     }
 
-    public long getEventCount() {
-        final SharedPreferences preferences = configuration.getSharedPreferences();
+    private int getMaximumBufferedEvents() {
+        // Leave some room for events that can't be written to disk right away.
+        return configuration.getEventBufferSize() * 2;
+    }
+
+    private void scheduleFlush() {
+        scheduledFlush = getFlushScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                persistBufferedEvents();
+            }
+        }, configuration.getEventBufferFlushInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelScheduledFlush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+    }
+
+    private static synchronized ScheduledExecutorService getFlushScheduler() {
+        if (flushScheduler == null) {
+            flushScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    // Never keep the process alive just to flush events.
+                    final Thread thread = new Thread(runnable, "TelemetryEventsFlush");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return flushScheduler;
+    }
+
+    /**
+     * The events of a ping. Converted to JSON only when the ping is serialized.
+     */
+    private static class EventList implements JSONWritable {
+        private final List<JSONArray> legacyEvents = new ArrayList<>();
+        private final List<TelemetryEvent> events = new ArrayList<>();
+
+        @Override
+        public Object toJSON() {
+            final JSONArray array = new JSONArray();
+
+            for (JSONArray legacyEvent : legacyEvents) {
+                array.put(legacyEvent);
+            }
 
-        return preferences.getLong(PREFERENCE_EVENT_COUNT, 0);
+            for (TelemetryEvent event : events) {
+                array.put(event.toJSONArray());
+            }
+
+            return array;
+        }
+
+        @Override
+        public void writeJSON(Writer writer) throws IOException {
+            writer.write('[');
+
+            boolean first = true;
+
+            for (JSONArray legacyEvent : legacyEvents) {
+                if (!first) {
+                    writer.write(',');
+                }
+                first = false;
+
+                writer.write(legacyEvent.toString());
+            }
+
+            for (TelemetryEvent event : events) {
+                if (!first) {
+                    writer.write(',');
+                }
+                first = false;
+
+                event.writeJSON(writer);
+            }
+
+            writer.write(']');
+        }
+
+        @Override
+        public String toString() {
+            return toJSON().toString();
+        }
     }
 }
@@ -10,9 +10,11 @@ import androidx.annotation.NonNull;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.mozilla.telemetry.config.TelemetryConfiguration;
+import org.mozilla.telemetry.storage.CounterStore;
+import org.mozilla.telemetry.util.CounterUtils;
 
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -24,17 +26,20 @@ public class SearchesMeasurement extends TelemetryMeasurement {
 
     private static final String PREFERENCE_SEARCH_KEYSET = "measurements-search-count-keyset";
     private static final String PREFERENCE_SEARCH_PREFIX = "measurements-search-count-engine-";
+    private static final String COUNTER_SEARCH_PREFIX = "search_count_";
 
     public static final String LOCATION_ACTIONBAR = "actionbar";
     public static final String LOCATION_SUGGESTION = "suggestion";
     public static final String LOCATION_LISTITEM = "listitem";
 
-    private final TelemetryConfiguration configuration;
+    private final CounterStore counters;
 
     public SearchesMeasurement(TelemetryConfiguration configuration) {
         super(FIELD_NAME);
 
-        this.configuration = configuration;
+        this.counters = configuration.getCounterStore();
+
+        migrateFromPreferences(configuration.getSharedPreferences());
     }
 
     @Override
@@ -45,24 +50,14 @@ public class SearchesMeasurement extends TelemetryMeasurement {
     /**
      * Get the stored search counts and reset all of them.
      */
-    private synchronized JSONObject getSearchCountMapAndReset() {
+    private JSONObject getSearchCountMapAndReset() {
         try {
-            final SharedPreferences preferences = configuration.getSharedPreferences();
-            final SharedPreferences.Editor editor = preferences.edit();
-
             final JSONObject object = new JSONObject();
 
-            final Set<String> keys = preferences.getStringSet(PREFERENCE_SEARCH_KEYSET, Collections.<String>emptySet());
-            for (String locationAndIdentifier : keys) {
-                final String key = getEngineSearchCountKey(locationAndIdentifier);
-
-                object.put(locationAndIdentifier, preferences.getInt(key, 0));
-                editor.remove(key);
+            for (Map.Entry<String, Long> entry : counters.getAndResetAll(COUNTER_SEARCH_PREFIX).entrySet()) {
+                object.put(entry.getKey(), entry.getValue().longValue());
             }
 
-            editor.remove(PREFERENCE_SEARCH_KEYSET)
-                    .apply();
-
             return object;
         } catch (JSONException e) {
             throw new AssertionError("Should not happen: Can't construct search count JSON", e);
@@ -75,50 +70,27 @@ public class SearchesMeasurement extends TelemetryMeasurement {
      * @param location where search was started.
      * @param identifier of the used search engine.
      */
-    public synchronized void recordSearch(@NonNull String location, @NonNull String identifier) {
-        final String locationAndIdentifier = location + "." + identifier;
-
-        storeCount(locationAndIdentifier);
-        storeKey(locationAndIdentifier);
-    }
-
-    /**
-     * Store count for this engine in preferences.
-     */
-    private void storeCount(String locationAndIdentifier) {
-        final SharedPreferences preferences = configuration.getSharedPreferences();
-
-        final String key = getEngineSearchCountKey(locationAndIdentifier);
-
-        final int count = preferences.getInt(key, 0);
-
-        preferences.edit()
-                .putInt(key, count + 1)
-                .apply();
+    public void recordSearch(@NonNull String location, @NonNull String identifier) {
+        counters.increment(COUNTER_SEARCH_PREFIX + location + "." + identifier);
     }
 
     /**
-     * Store name of this engine in preferences so that we can retrieve the count later.
+     * Move search counts that an older version has kept in SharedPreferences into the counter store.
      */
-    private void storeKey(String locationAndIdentifier) {
-        final SharedPreferences preferences = configuration.getSharedPreferences();
-
-        final Set<String> keys = preferences.getStringSet(PREFERENCE_SEARCH_KEYSET, Collections.<String>emptySet());
-        if (keys.contains(locationAndIdentifier)) {
-            // We already know about this key.
+    private void migrateFromPreferences(SharedPreferences preferences) {
+        if (!preferences.contains(PREFERENCE_SEARCH_KEYSET)) {
             return;
         }
 
-        // Create a copy that we can modify
-        final Set<String> updatedKeys = new HashSet<>(keys);
-        updatedKeys.add(locationAndIdentifier);
+        final Set<String> keys = preferences.getStringSet(PREFERENCE_SEARCH_KEYSET, Collections.<String>emptySet());
+        for (String locationAndIdentifier : keys) {
+            CounterUtils.migrateFromPreferences(preferences, counters,
+                    PREFERENCE_SEARCH_PREFIX + locationAndIdentifier,
+                    COUNTER_SEARCH_PREFIX + locationAndIdentifier);
+        }
 
         preferences.edit()
-                .putStringSet(PREFERENCE_SEARCH_KEYSET, updatedKeys)
+                .remove(PREFERENCE_SEARCH_KEYSET)
                 .apply();
     }
-
-    private static String getEngineSearchCountKey(String locationAndIdentifier) {
-        return PREFERENCE_SEARCH_PREFIX + locationAndIdentifier;
-    }
 }
@@ -4,40 +4,32 @@
 
 package org.mozilla.telemetry.measurement;
 
-import android.content.SharedPreferences;
-
 import org.mozilla.telemetry.config.TelemetryConfiguration;
 import org.mozilla.telemetry.ping.TelemetryPingBuilder;
+import org.mozilla.telemetry.storage.CounterStore;
+import org.mozilla.telemetry.util.CounterUtils;
 
 public class SequenceMeasurement extends TelemetryMeasurement {
     private static final String FIELD_NAME = "seq";
 
     private static final String PREFERENCE_PREFIX = "sequence_";
+    private static final String COUNTER_PREFIX = "sequence_";
 
-    private final TelemetryConfiguration configuration;
-    private final String preferenceKeySequence;
+    private final CounterStore counters;
+    private final String counterKeySequence;
 
     public SequenceMeasurement(TelemetryConfiguration configuration, TelemetryPingBuilder ping) {
         super(FIELD_NAME);
 
-        this.configuration = configuration;
-        this.preferenceKeySequence = PREFERENCE_PREFIX + ping.getType();
+        this.counters = configuration.getCounterStore();
+        this.counterKeySequence = COUNTER_PREFIX + ping.getType();
+
+        CounterUtils.migrateFromPreferences(configuration.getSharedPreferences(), counters,
+                PREFERENCE_PREFIX + ping.getType(), counterKeySequence);
     }
 
     @Override
     public Object flush() {
-        return getAndIncrementSequence();
-    }
-
-    private synchronized long getAndIncrementSequence() {
-        final SharedPreferences preferences = configuration.getSharedPreferences();
-
-        long sequence = preferences.getLong(preferenceKeySequence, 0);
-
-        preferences.edit()
-                .putLong(preferenceKeySequence, ++sequence)
-                .apply();
-
-        return sequence;
+        return counters.increment(counterKeySequence);
     }
 }
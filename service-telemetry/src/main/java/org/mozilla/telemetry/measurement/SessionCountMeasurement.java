@@ -4,47 +4,33 @@
 
 package org.mozilla.telemetry.measurement;
 
-import android.content.SharedPreferences;
-
 import org.mozilla.telemetry.config.TelemetryConfiguration;
+import org.mozilla.telemetry.storage.CounterStore;
+import org.mozilla.telemetry.util.CounterUtils;
 
 public class SessionCountMeasurement extends TelemetryMeasurement {
     private static final String FIELD_NAME = "sessions";
 
     private static final String PREFERENCE_COUNT = "session_count";
+    private static final String COUNTER_COUNT = "session_count";
 
-    private final TelemetryConfiguration configuration;
+    private final CounterStore counters;
 
     public SessionCountMeasurement(TelemetryConfiguration configuration) {
         super(FIELD_NAME);
 
-        this.configuration = configuration;
-    }
-
-    public synchronized void countSession() {
-        final SharedPreferences preferences = configuration.getSharedPreferences();
+        this.counters = configuration.getCounterStore();
 
-        long count = preferences.getLong(PREFERENCE_COUNT, 0);
+        CounterUtils.migrateFromPreferences(configuration.getSharedPreferences(), counters,
+                PREFERENCE_COUNT, COUNTER_COUNT);
+    }
 
-        preferences.edit()
-                .putLong(PREFERENCE_COUNT, ++count)
-                .apply();
+    public void countSession() {
+        counters.increment(COUNTER_COUNT);
     }
 
     @Override
     public Object flush() {
-        return getAndResetCount();
-    }
-
-    private synchronized long getAndResetCount() {
-        final SharedPreferences preferences = configuration.getSharedPreferences();
-
-        long count = preferences.getLong(PREFERENCE_COUNT, 0);
-
-        preferences.edit()
-                .putLong(PREFERENCE_COUNT, 0)
-                .apply();
-
-        return count;
+        return counters.getAndReset(COUNTER_COUNT);
     }
 }
@@ -4,10 +4,11 @@
 
 package org.mozilla.telemetry.measurement;
 
-import android.content.SharedPreferences;
 import androidx.annotation.VisibleForTesting;
 
 import org.mozilla.telemetry.config.TelemetryConfiguration;
+import org.mozilla.telemetry.storage.CounterStore;
+import org.mozilla.telemetry.util.CounterUtils;
 
 import java.util.concurrent.TimeUnit;
 
@@ -15,8 +16,9 @@ public class SessionDurationMeasurement extends TelemetryMeasurement {
     private static final String FIELD_NAME = "durations";
 
     private static final String PREFERENCE_DURATION = "session_duration";
+    private static final String COUNTER_DURATION = "session_duration";
 
-    private final TelemetryConfiguration configuration;
+    private final CounterStore counters;
 
     private boolean sessionStarted = false;
     private long timeAtSessionStartNano = -1;
@@ -24,7 +26,10 @@ public class SessionDurationMeasurement extends TelemetryMeasurement {
     public SessionDurationMeasurement(TelemetryConfiguration configuration) {
         super(FIELD_NAME);
 
-        this.configuration = configuration;
+        this.counters = configuration.getCounterStore();
+
+        CounterUtils.migrateFromPreferences(configuration.getSharedPreferences(), counters,
+                PREFERENCE_DURATION, COUNTER_DURATION);
     }
 
     public synchronized void recordSessionStart() {
@@ -45,31 +50,13 @@ public class SessionDurationMeasurement extends TelemetryMeasurement {
 
         final long sessionElapsedSeconds = TimeUnit.NANOSECONDS.toSeconds(getSystemTimeNano() - timeAtSessionStartNano);
 
-        final SharedPreferences preferences = configuration.getSharedPreferences();
-
-        final long totalElapsedSeconds = preferences.getLong(PREFERENCE_DURATION, 0);
-
-        preferences.edit()
-                .putLong(PREFERENCE_DURATION, totalElapsedSeconds + sessionElapsedSeconds)
-                .apply();
+        counters.add(COUNTER_DURATION, sessionElapsedSeconds);
         return true;
     }
 
     @Override
     public Object flush() {
-        return getAndResetDuration();
-    }
-
-    private synchronized long getAndResetDuration() {
-        final SharedPreferences preferences = configuration.getSharedPreferences();
-
-        long duration = preferences.getLong(PREFERENCE_DURATION, 0);
-
-        preferences.edit()
-                .putLong(PREFERENCE_DURATION, 0)
-                .apply();
-
-        return duration;
+        return counters.getAndReset(COUNTER_DURATION);
     }
 
     /**
@@ -27,4 +27,11 @@ public abstract class TelemetryMeasurement {
      * be reset after flushing.
      */
     public abstract Object flush();
+
+    /**
+     * Write state that is only kept in memory to disk. This is called when the app might get killed
+     * soon, e.g. when it goes to the background. Most measurements have nothing to write.
+     */
+    public void persist() {
+    }
 }
@@ -11,33 +11,142 @@ import mozilla.components.concept.fetch.Request
 import mozilla.components.concept.fetch.Response
 import mozilla.components.support.base.log.logger.Logger
 import org.mozilla.telemetry.config.TelemetryConfiguration
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
 import java.io.IOException
 import java.text.SimpleDateFormat
 import java.util.Calendar
 import java.util.Locale
 import java.util.TimeZone
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
 import java.util.concurrent.TimeUnit
+import java.util.zip.GZIPOutputStream
 
 class TelemetryClient(
     private val client: Client
 ) {
     private val logger = Logger("telemetry/client")
 
-    fun uploadPing(configuration: TelemetryConfiguration, path: String, serializedPing: String): Boolean {
-        val request = Request(
+    /**
+     * Requests of uploads that can be cancelled run on this executor, so that the uploading thread
+     * can stop waiting for them.
+     */
+    private val requestExecutor: ExecutorService by lazy {
+        Executors.newCachedThreadPool { runnable ->
+            Thread(runnable, "TelemetryRequest").apply { isDaemon = true }
+        }
+    }
+
+    /**
+     * Lets the caller stop an upload. Checked before every request: Once cancelled no further
+     * request is sent.
+     *
+     * Uploads with a [Cancellation] also stop waiting for the request in flight if the uploading
+     * thread is interrupted. The request thread is interrupted in turn and the ping is reported as
+     * not uploaded, so that it stays stored and is uploaded again later.
+     */
+    fun interface Cancellation {
+        fun isCancelled(): Boolean
+    }
+
+    @JvmOverloads
+    fun uploadPing(
+        configuration: TelemetryConfiguration,
+        path: String,
+        serializedPing: String,
+        cancellation: Cancellation? = null
+    ): Boolean {
+        if (cancellation?.isCancelled() == true) {
+            return false
+        }
+
+        val request = createRequest(
+            configuration,
+            path,
+            Request.Body.fromString(serializedPing),
+            createDateHeaderValue(),
+            gzip = false
+        )
+
+        return upload(request, cancellation)
+    }
+
+    /**
+     * Upload multiple pings, one request after the other, through the same [Client]. The client
+     * keeps the connection to the telemetry endpoint alive between requests. Request bodies are
+     * compressed with gzip.
+     *
+     * Uploading stops at the first ping that should be retried later or once [cancellation] has
+     * been cancelled.
+     *
+     * @return the number of pings (counted from the start of the list) that do not need to be
+     *         uploaded again.
+     */
+    @JvmOverloads
+    fun uploadPings(
+        configuration: TelemetryConfiguration,
+        paths: List<String>,
+        serializedPings: List<String>,
+        cancellation: Cancellation? = null
+    ): Int {
+        val date = createDateHeaderValue()
+
+        for (index in paths.indices) {
+            if (cancellation?.isCancelled() == true) {
+                return index
+            }
+
+            val body = try {
+                Request.Body(ByteArrayInputStream(gzip(serializedPings[index])))
+            } catch (e: IOException) {
+                logger.warn("IOException while compressing ping", e)
+                return index
+            }
+
+            if (!upload(createRequest(configuration, paths[index], body, date, gzip = true), cancellation)) {
+                return index
+            }
+        }
+
+        return paths.size
+    }
+
+    private fun createRequest(
+        configuration: TelemetryConfiguration,
+        path: String,
+        body: Request.Body,
+        date: String,
+        gzip: Boolean
+    ): Request {
+        val headers = MutableHeaders(
+            "Content-Type" to "application/json; charset=utf-8",
+            "User-Agent" to configuration.userAgent,
+            "Date" to date
+        )
+
+        if (gzip) {
+            headers.set("Content-Encoding", "gzip")
+        }
+
+        return Request(
             url = configuration.serverEndpoint + path,
             method = Request.Method.POST,
             connectTimeout = Pair(configuration.connectTimeout.toLong(), TimeUnit.MILLISECONDS),
             readTimeout = Pair(configuration.readTimeout.toLong(), TimeUnit.MILLISECONDS),
-            headers = MutableHeaders(
-                "Content-Type" to "application/json; charset=utf-8",
-                "User-Agent" to configuration.userAgent,
-                "Date" to createDateHeaderValue()
-            ),
-            body = Request.Body.fromString(serializedPing))
+            headers = headers,
+            body = body)
+    }
 
+    private fun upload(request: Request, cancellation: Cancellation?): Boolean {
         val status = try {
-            client.fetch(request).use { response -> response.status }
+            if (cancellation == null) {
+                fetch(request)
+            } else {
+                fetchInterruptibly(request) ?: return false
+            }
         } catch (e: IOException) {
             logger.warn("IOException while uploading ping", e)
             return false
@@ -81,6 +190,37 @@ class TelemetryClient(
         }
     }
 
+    private fun fetch(request: Request): Int {
+        return client.fetch(request).use { response -> response.status }
+    }
+
+    /**
+     * Fetch on the request executor and wait for the response. Returns null if the calling thread
+     * has been interrupted while waiting.
+     */
+    private fun fetchInterruptibly(request: Request): Int? {
+        val future = requestExecutor.submit(Callable { fetch(request) })
+
+        return try {
+            future.get()
+        } catch (e: InterruptedException) {
+            logger.debug("Upload interrupted, abandoning request")
+            future.cancel(true)
+            Thread.currentThread().interrupt()
+            null
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
+        }
+    }
+
+    private fun gzip(serializedPing: String): ByteArray {
+        val output = ByteArrayOutputStream()
+        GZIPOutputStream(output).use { stream ->
+            stream.write(serializedPing.toByteArray(Charsets.UTF_8))
+        }
+        return output.toByteArray()
+    }
+
     @VisibleForTesting
     internal fun createDateHeaderValue(): String {
         val calendar = Calendar.getInstance()
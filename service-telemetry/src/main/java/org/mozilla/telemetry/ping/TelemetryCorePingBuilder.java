@@ -42,12 +42,12 @@ public class TelemetryCorePingBuilder extends TelemetryPingBuilder {
         super(configuration, TYPE, VERSION);
 
         addMeasurement(new SequenceMeasurement(configuration, this));
-        addMeasurement(new LocaleMeasurement());
-        addMeasurement(new OperatingSystemMeasurement());
-        addMeasurement(new OperatingSystemVersionMeasurement());
-        addMeasurement(new DeviceMeasurement());
-        addMeasurement(new ArchMeasurement());
-        addMeasurement(new FirstRunProfileDateMeasurement(configuration));
+        addStaticMeasurement(new LocaleMeasurement());
+        addStaticMeasurement(new OperatingSystemMeasurement());
+        addStaticMeasurement(new OperatingSystemVersionMeasurement());
+        addStaticMeasurement(new DeviceMeasurement());
+        addStaticMeasurement(new ArchMeasurement());
+        addStaticMeasurement(new FirstRunProfileDateMeasurement(configuration));
         addMeasurement(defaultSearchMeasurement = new DefaultSearchMeasurement());
         addMeasurement(new CreatedDateMeasurement());
         addMeasurement(new TimezoneOffsetMeasurement());
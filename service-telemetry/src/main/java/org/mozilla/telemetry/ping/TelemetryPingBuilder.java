@@ -12,28 +12,36 @@ import org.mozilla.telemetry.config.TelemetryConfiguration;
 import org.mozilla.telemetry.measurement.ClientIdMeasurement;
 import org.mozilla.telemetry.measurement.TelemetryMeasurement;
 import org.mozilla.telemetry.measurement.VersionMeasurement;
+import org.mozilla.telemetry.serialize.PreSerializedJSON;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
 
 public abstract class TelemetryPingBuilder {
     private final String type;
     private final List<TelemetryMeasurement> measurements;
+    private final BitSet staticMeasurements;
+
+    // Results of the static measurements, serialized once and reused until invalidated.
+    private volatile StaticSection staticSection;
 
     private TelemetryConfiguration configuration;
 
     public TelemetryPingBuilder(@NonNull TelemetryConfiguration configuration, @NonNull String type, int version) {
         this.configuration = configuration;
         this.type = type;
-        this.measurements = new LinkedList<>();
+        this.measurements = new ArrayList<>();
+        this.staticMeasurements = new BitSet();
 
         // All pings contain a version and a client id (with exception below)
-        addMeasurement(new VersionMeasurement(version));
+        addStaticMeasurement(new VersionMeasurement(version));
         if (shouldIncludeClientId()) {
-            addMeasurement(new ClientIdMeasurement(configuration));
+            addStaticMeasurement(new ClientIdMeasurement(configuration));
         }
     }
 
@@ -53,6 +61,36 @@ public abstract class TelemetryPingBuilder {
 
     protected void addMeasurement(TelemetryMeasurement measurement) {
         measurements.add(measurement);
+        staticSection = null;
+    }
+
+    /**
+     * Add a measurement whose result does not change while the process is running, unless the
+     * configuration (e.g. the locale) changes. Its result is serialized once and reused by every ping
+     * built afterwards, until the default locale changes or {@link #invalidateStaticMeasurements()} is
+     * called.
+     */
+    protected void addStaticMeasurement(TelemetryMeasurement measurement) {
+        staticMeasurements.set(measurements.size());
+        addMeasurement(measurement);
+    }
+
+    /**
+     * Write the state all measurements only keep in memory to disk, see
+     * {@link TelemetryMeasurement#persist()}.
+     */
+    public void persistMeasurements() {
+        for (TelemetryMeasurement measurement : measurements) {
+            measurement.persist();
+        }
+    }
+
+    /**
+     * Flush the static measurements again when the next ping is built, e.g. after a configuration
+     * change.
+     */
+    public void invalidateStaticMeasurements() {
+        staticSection = null;
     }
 
     public boolean canBuild() {
@@ -82,18 +120,52 @@ public abstract class TelemetryPingBuilder {
     }
 
     private Map<String, Object> flushMeasurements() {
-        final Map<String, Object> measurementResults = new LinkedHashMap<>();
+        final Object[] staticResults = getStaticSection().results;
 
-        for (TelemetryMeasurement measurement : measurements) {
-            measurementResults.put(measurement.getFieldName(), measurement.flush());
+        // Sized so that the map never needs to grow (default load factor 0.75).
+        final Map<String, Object> measurementResults = new LinkedHashMap<>(measurements.size() * 4 / 3 + 1);
+
+        for (int i = 0; i < measurements.size(); i++) {
+            final TelemetryMeasurement measurement = measurements.get(i);
+
+            measurementResults.put(measurement.getFieldName(),
+                    staticMeasurements.get(i) ? staticResults[i] : measurement.flush());
         }
 
         return measurementResults;
     }
 
+    private StaticSection getStaticSection() {
+        final Locale locale = Locale.getDefault();
+
+        StaticSection section = staticSection;
+        if (section == null || !section.locale.equals(locale)) {
+            final Object[] results = new Object[measurements.size()];
+
+            for (int i = staticMeasurements.nextSetBit(0); i >= 0; i = staticMeasurements.nextSetBit(i + 1)) {
+                results[i] = new PreSerializedJSON(measurements.get(i).flush());
+            }
+
+            section = new StaticSection(locale, results);
+            staticSection = section;
+        }
+
+        return section;
+    }
+
     @VisibleForTesting
     @RestrictTo(RestrictTo.Scope.LIBRARY)
     public String generateDocumentId() {
         return UUID.randomUUID().toString();
     }
+
+    private static final class StaticSection {
+        private final Locale locale;
+        private final Object[] results;
+
+        private StaticSection(Locale locale, Object[] results) {
+            this.locale = locale;
+            this.results = results;
+        }
+    }
 }
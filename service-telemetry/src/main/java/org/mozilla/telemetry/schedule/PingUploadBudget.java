@@ -0,0 +1,138 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.telemetry.schedule;
+
+import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
+
+import org.mozilla.telemetry.config.TelemetryConfiguration;
+import org.mozilla.telemetry.storage.CounterStore;
+import org.mozilla.telemetry.util.CounterUtils;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the daily upload limit ({@link TelemetryConfiguration#getMaximumNumberOfPingUploadsPerDay()})
+ * and the upload backoff of every ping type. The state is kept in the counter store of the
+ * configuration, so it survives process restarts and is shared by everything that uploads pings.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public class PingUploadBudget {
+    private static final String PREFERENCE_UPLOAD_COUNT_PREFIX = "upload_count_";
+    private static final String PREFERENCE_LAST_UPLOAD_PREFIX = "last_uploade_";
+
+    private static final String COUNTER_UPLOAD_COUNT_PREFIX = "upload_count_";
+    private static final String COUNTER_LAST_UPLOAD_PREFIX = "last_upload_";
+    private static final String COUNTER_FAILED_UPLOADS_PREFIX = "failed_uploads_";
+    private static final String COUNTER_BACKOFF_UNTIL_PREFIX = "upload_backoff_until_";
+
+    private static final long MAXIMUM_BACKOFF = TimeUnit.HOURS.toMillis(6);
+
+    private final TelemetryConfiguration configuration;
+
+    public PingUploadBudget(TelemetryConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Move the upload counters of this ping type that an older version has kept in SharedPreferences
+     * into the counter store.
+     */
+    public void migrate(String pingType) {
+        final CounterStore counters = configuration.getCounterStore();
+
+        CounterUtils.migrateFromPreferences(configuration.getSharedPreferences(), counters,
+                PREFERENCE_UPLOAD_COUNT_PREFIX + pingType, COUNTER_UPLOAD_COUNT_PREFIX + pingType);
+        CounterUtils.migrateFromPreferences(configuration.getSharedPreferences(), counters,
+                PREFERENCE_LAST_UPLOAD_PREFIX + pingType, COUNTER_LAST_UPLOAD_PREFIX + pingType);
+    }
+
+    /**
+     * Return the number of pings of this type that can still be uploaded today.
+     */
+    public long getRemainingUploads(String pingType) {
+        final CounterStore counters = configuration.getCounterStore();
+
+        final long lastUpload = counters.get(COUNTER_LAST_UPLOAD_PREFIX + pingType);
+        final long count = isSameDay(lastUpload, now())
+                ? counters.get(COUNTER_UPLOAD_COUNT_PREFIX + pingType)
+                : 0;
+
+        return configuration.getMaximumNumberOfPingUploadsPerDay() - count;
+    }
+
+    /**
+     * Return true if the upload limit for this ping type has been reached.
+     */
+    public boolean hasReachedUploadLimit(String pingType) {
+        return getRemainingUploads(pingType) <= 0;
+    }
+
+    /**
+     * Count the given number of uploads of this ping type against today's limit.
+     */
+    public void recordUploads(String pingType, int uploads) {
+        final CounterStore counters = configuration.getCounterStore();
+
+        final long lastUpload = counters.get(COUNTER_LAST_UPLOAD_PREFIX + pingType);
+        final long now = now();
+
+        if (isSameDay(lastUpload, now)) {
+            counters.add(COUNTER_UPLOAD_COUNT_PREFIX + pingType, uploads);
+        } else {
+            counters.set(COUNTER_UPLOAD_COUNT_PREFIX + pingType, uploads);
+        }
+
+        counters.set(COUNTER_LAST_UPLOAD_PREFIX + pingType, now);
+    }
+
+    /**
+     * Return true if uploads of this ping type have failed recently and should not be retried yet.
+     */
+    public boolean isBackingOff(String pingType) {
+        return configuration.getCounterStore().get(COUNTER_BACKOFF_UNTIL_PREFIX + pingType) > now();
+    }
+
+    /**
+     * Double the time to wait before uploading pings of this type again, starting with
+     * {@link TelemetryConfiguration#getInitialBackoffForUpload()}.
+     */
+    public void recordFailure(String pingType) {
+        final CounterStore counters = configuration.getCounterStore();
+
+        final long failures = counters.increment(COUNTER_FAILED_UPLOADS_PREFIX + pingType);
+        final long backoff = Math.min(MAXIMUM_BACKOFF,
+                configuration.getInitialBackoffForUpload() << Math.min(failures - 1, 20));
+
+        counters.set(COUNTER_BACKOFF_UNTIL_PREFIX + pingType, now() + backoff);
+    }
+
+    /**
+     * Reset the backoff of this ping type after pings have been uploaded successfully.
+     */
+    public void recordSuccess(String pingType) {
+        final CounterStore counters = configuration.getCounterStore();
+
+        counters.set(COUNTER_FAILED_UPLOADS_PREFIX + pingType, 0);
+        counters.set(COUNTER_BACKOFF_UNTIL_PREFIX + pingType, 0);
+    }
+
+    @VisibleForTesting boolean isSameDay(long timestamp1, long timestamp2) {
+        final Calendar calendar1 = Calendar.getInstance();
+        calendar1.setTimeInMillis(timestamp1);
+
+        final Calendar calendar2 = Calendar.getInstance();
+        calendar2.setTimeInMillis(timestamp2);
+
+        return (calendar1.get(Calendar.ERA) == calendar2.get(Calendar.ERA) &&
+                calendar1.get(Calendar.YEAR) == calendar2.get(Calendar.YEAR) &&
+                calendar1.get(Calendar.DAY_OF_YEAR) == calendar2.get(Calendar.DAY_OF_YEAR));
+    }
+
+    @VisibleForTesting long now() {
+        return System.currentTimeMillis();
+    }
+}
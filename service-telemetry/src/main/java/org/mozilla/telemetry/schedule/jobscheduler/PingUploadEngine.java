@@ -0,0 +1,272 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.telemetry.schedule.jobscheduler;
+
+import androidx.annotation.NonNull;
+
+import org.mozilla.telemetry.Telemetry;
+import org.mozilla.telemetry.config.TelemetryConfiguration;
+import org.mozilla.telemetry.net.TelemetryClient;
+import org.mozilla.telemetry.ping.TelemetryPingBuilder;
+import org.mozilla.telemetry.schedule.PingUploadBudget;
+import org.mozilla.telemetry.storage.TelemetryStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mozilla.components.support.base.log.logger.Logger;
+
+/**
+ * Uploads the stored pings of all ping types.
+ *
+ * - Ping types are independent of each other and are uploaded in parallel by a small pool of
+ *   worker threads ({@link TelemetryConfiguration#getMaximumParallelUploads()}). Pings of the same
+ *   type are uploaded one after the other. All workers share the same {@link TelemetryClient} and
+ *   with that the connections to the telemetry endpoint.
+ * - Every ping type has its own daily upload budget and its own backoff (see {@link PingUploadBudget}):
+ *   If uploading pings of a type fails then this type is skipped until its backoff has passed. Other
+ *   types are not affected.
+ * - {@link #cancel()} interrupts the workers: No new request is started and workers stop waiting for
+ *   requests in flight (see {@link TelemetryClient}). Pings whose request was abandoned stay stored
+ *   and are uploaded again by the next job.
+ */
+public class PingUploadEngine {
+    public interface Callback {
+        /**
+         * Called once the pings of all types have been processed. Not called if the engine has been
+         * cancelled.
+         *
+         * @param needsReschedule true if some pings could not be uploaded and should be retried.
+         */
+        void onUploadsFinished(boolean needsReschedule);
+    }
+
+    private enum UploadResult {
+        /**
+         * Nothing left to do for this ping type (right now).
+         */
+        DONE,
+
+        /**
+         * Pings of this type are left that should be retried later.
+         */
+        RETRY
+    }
+
+    private final Logger logger = new Logger("telemetry/upload");
+
+    private final Telemetry telemetry;
+    private final TelemetryConfiguration configuration;
+    private final PingUploadBudget budget;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final List<Future<?>> uploads = new ArrayList<>();
+
+    private ExecutorService executor;
+
+    public PingUploadEngine(@NonNull Telemetry telemetry) {
+        this.telemetry = telemetry;
+        this.configuration = telemetry.getConfiguration();
+        this.budget = new PingUploadBudget(configuration);
+    }
+
+    /**
+     * Start uploading the pings of all types in the background.
+     */
+    public synchronized void start(@NonNull final Callback callback) {
+        if (executor != null) {
+            throw new IllegalStateException("Upload engine has already been started");
+        }
+
+        final List<String> pingTypes = new ArrayList<>();
+        for (TelemetryPingBuilder builder : telemetry.getBuilders()) {
+            pingTypes.add(builder.getType());
+        }
+
+        executor = createExecutor(Math.max(1, Math.min(pingTypes.size(), configuration.getMaximumParallelUploads())));
+
+        if (pingTypes.isEmpty()) {
+            executor.shutdown();
+            callback.onUploadsFinished(false);
+            return;
+        }
+
+        final AtomicInteger remainingTypes = new AtomicInteger(pingTypes.size());
+        final AtomicBoolean needsReschedule = new AtomicBoolean();
+
+        for (final String pingType : pingTypes) {
+            uploads.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (upload(pingType) == UploadResult.RETRY) {
+                            needsReschedule.set(true);
+                        }
+                    } catch (RuntimeException e) {
+                        // Do not let one ping type prevent the job from finishing.
+                        logger.error("Upload of ping type " + pingType + " failed", e);
+                        needsReschedule.set(true);
+                    } finally {
+                        if (remainingTypes.decrementAndGet() == 0) {
+                            finish(callback, needsReschedule.get());
+                        }
+                    }
+                }
+            }));
+        }
+    }
+
+    /**
+     * Stop uploading. Workers abandon the request they are currently waiting for and exit.
+     */
+    public synchronized void cancel() {
+        cancelled.set(true);
+
+        for (Future<?> upload : uploads) {
+            upload.cancel(true);
+        }
+        uploads.clear();
+
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    private synchronized void finish(Callback callback, boolean needsReschedule) {
+        executor.shutdown();
+        uploads.clear();
+
+        if (cancelled.get()) {
+            logger.debug("Upload cancelled.", null);
+            return;
+        }
+
+        logger.debug("All uploads performed", null);
+        callback.onUploadsFinished(needsReschedule);
+    }
+
+    private UploadResult upload(String pingType) {
+        final TelemetryStorage storage = telemetry.getStorage();
+
+        if (isCancelled()) {
+            return UploadResult.RETRY;
+        }
+
+        logger.debug("Performing upload of ping type: " + pingType, null);
+
+        budget.migrate(pingType);
+
+        if (storage.countStoredPings(pingType) == 0) {
+            logger.debug("No pings of type " + pingType + " to upload", null);
+            return UploadResult.DONE;
+        }
+
+        if (budget.hasReachedUploadLimit(pingType)) {
+            logger.debug("Daily upload limit for type " + pingType + " reached", null);
+            return UploadResult.DONE;
+        }
+
+        if (budget.isBackingOff(pingType)) {
+            logger.debug("Uploads of type " + pingType + " are backing off", null);
+            return UploadResult.RETRY;
+        }
+
+        if (performPingUpload(pingType)) {
+            budget.recordSuccess(pingType);
+            return UploadResult.DONE;
+        }
+
+        if (isCancelled()) {
+            return UploadResult.RETRY;
+        }
+
+        if (budget.hasReachedUploadLimit(pingType)) {
+            // Stopped because the daily limit has been reached in the meantime.
+            return UploadResult.DONE;
+        }
+
+        logger.info("Upload of type " + pingType + " failed. Backing off.", null);
+        budget.recordFailure(pingType);
+
+        return UploadResult.RETRY;
+    }
+
+    private boolean performPingUpload(final String pingType) {
+        final TelemetryStorage storage = telemetry.getStorage();
+        final TelemetryClient client = telemetry.getClient();
+
+        final TelemetryClient.Cancellation cancellation = new TelemetryClient.Cancellation() {
+            @Override
+            public boolean isCancelled() {
+                return cancelled.get();
+            }
+        };
+
+        if (configuration.getUploadBatchSize() > 1) {
+            return storage.processBatch(pingType, configuration.getUploadBatchSize(), new TelemetryStorage.TelemetryStorageBatchCallback() {
+                @Override
+                public int onTelemetryPingsLoaded(List<String> paths, List<String> serializedPings) {
+                    // Check the daily limit once per batch and only upload what is left of it.
+                    final int allowedUploads = (int) Math.max(0,
+                            Math.min(budget.getRemainingUploads(pingType), paths.size()));
+                    if (allowedUploads == 0 || isCancelled()) {
+                        return 0;
+                    }
+
+                    final int uploaded = client.uploadPings(configuration,
+                            paths.subList(0, allowedUploads),
+                            serializedPings.subList(0, allowedUploads),
+                            cancellation);
+
+                    if (uploaded > 0) {
+                        budget.recordUploads(pingType, uploaded);
+                    }
+
+                    return uploaded;
+                }
+            });
+        }
+
+        return storage.process(pingType, new TelemetryStorage.TelemetryStorageCallback() {
+            @Override
+            public boolean onTelemetryPingLoaded(String path, String serializedPing) {
+                if (isCancelled()
+                        || budget.hasReachedUploadLimit(pingType)
+                        || !client.uploadPing(configuration, path, serializedPing, cancellation)) {
+                    return false;
+                }
+
+                budget.recordUploads(pingType, 1);
+                return true;
+            }
+        });
+    }
+
+    private static ExecutorService createExecutor(int threads) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(@NonNull Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "TelemetryUpload-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+}
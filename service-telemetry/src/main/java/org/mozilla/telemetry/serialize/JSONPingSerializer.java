@@ -20,7 +20,8 @@ public class JSONPingSerializer implements TelemetryPingSerializer {
             final JSONObject object = new JSONObject();
 
             for (Map.Entry<String, Object> result : ping.getMeasurementResults().entrySet()) {
-                object.put(result.getKey(), result.getValue());
+                final Object value = result.getValue();
+                object.put(result.getKey(), value instanceof JSONWritable ? ((JSONWritable) value).toJSON() : value);
             }
 
             return object.toString();
@@ -0,0 +1,24 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.telemetry.serialize;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A measurement result that isn't kept as org.json objects. It gets converted to JSON only when the
+ * ping is serialized.
+ */
+public interface JSONWritable {
+    /**
+     * Convert to an org.json value (used by {@link JSONPingSerializer}).
+     */
+    Object toJSON();
+
+    /**
+     * Write the JSON representation directly to the writer (used by {@link StreamingJSONPingSerializer}).
+     */
+    void writeJSON(Writer writer) throws IOException;
+}
@@ -0,0 +1,51 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.telemetry.serialize;
+
+import androidx.annotation.RestrictTo;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * A measurement result that has been serialized to JSON once, so that it can be written to every ping
+ * without being serialized again.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public class PreSerializedJSON implements JSONWritable {
+    private final Object value;
+    private final String json;
+
+    public PreSerializedJSON(Object value) {
+        final StringWriter writer = new StringWriter();
+
+        try {
+            StreamingJSONPingSerializer.writeValue(writer, value);
+        } catch (IOException e) {
+            throw new AssertionError("StringWriter should not throw IOException", e);
+        }
+
+        this.value = value;
+        this.json = writer.toString();
+    }
+
+    /**
+     * The original value, as returned by the measurement.
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public Object toJSON() {
+        return value instanceof JSONWritable ? ((JSONWritable) value).toJSON() : value;
+    }
+
+    @Override
+    public void writeJSON(Writer writer) throws IOException {
+        writer.write(json);
+    }
+}
@@ -0,0 +1,177 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.telemetry.serialize;
+
+import androidx.annotation.RestrictTo;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.mozilla.telemetry.ping.TelemetryPing;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * TelemetryPingSerializer that writes the measurement results of a ping as JSON directly to a
+ * {@link Writer}. The output is the same as the one of {@link JSONPingSerializer}, but neither a
+ * JSONObject for the whole ping nor a String of the serialized ping is created.
+ */
+public class StreamingJSONPingSerializer implements StreamingTelemetryPingSerializer {
+    @Override
+    public String serialize(TelemetryPing ping) {
+        final StringWriter writer = new StringWriter();
+
+        try {
+            serialize(ping, writer);
+        } catch (IOException e) {
+            throw new AssertionError("StringWriter should not throw IOException", e);
+        }
+
+        return writer.toString();
+    }
+
+    @Override
+    public void serialize(TelemetryPing ping, Writer writer) throws IOException {
+        writer.write('{');
+
+        boolean first = true;
+        for (Map.Entry<String, Object> result : ping.getMeasurementResults().entrySet()) {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+
+            writeString(writer, result.getKey());
+            writer.write(':');
+            writeValue(writer, result.getValue());
+        }
+
+        writer.write('}');
+    }
+
+    /**
+     * Write a value (String, Boolean, Number, org.json object or array, {@link JSONWritable}) the way
+     * org.json would serialize it.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public static void writeValue(Writer writer, Object value) throws IOException {
+        if (value == null || value == JSONObject.NULL) {
+            writer.write("null");
+        } else if (value instanceof String) {
+            writeString(writer, (String) value);
+        } else if (value instanceof Boolean) {
+            writer.write(value.toString());
+        } else if (value instanceof Number) {
+            try {
+                writer.write(JSONObject.numberToString((Number) value));
+            } catch (JSONException e) {
+                throw new AssertionError("Can't serialize ping", e);
+            }
+        } else if (value instanceof JSONObject) {
+            writeObject(writer, (JSONObject) value);
+        } else if (value instanceof JSONArray) {
+            writeArray(writer, (JSONArray) value);
+        } else if (value instanceof JSONWritable) {
+            ((JSONWritable) value).writeJSON(writer);
+        } else {
+            // org.json serializes all other objects as strings.
+            writeString(writer, value.toString());
+        }
+    }
+
+    private static void writeObject(Writer writer, JSONObject object) throws IOException {
+        writer.write('{');
+
+        boolean first = true;
+        final Iterator<String> keys = object.keys();
+        while (keys.hasNext()) {
+            final String key = keys.next();
+
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+
+            writeString(writer, key);
+            writer.write(':');
+            writeValue(writer, object.opt(key));
+        }
+
+        writer.write('}');
+    }
+
+    private static void writeArray(Writer writer, JSONArray array) throws IOException {
+        writer.write('[');
+
+        for (int i = 0; i < array.length(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeValue(writer, array.opt(i));
+        }
+
+        writer.write(']');
+    }
+
+    /**
+     * Writes a quoted and escaped string. The escaping matches the one of org.json.JSONStringer.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public static void writeString(Writer writer, String value) throws IOException {
+        writer.write('"');
+
+        final int length = value.length();
+        int start = 0;
+
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+
+            final String replacement;
+            switch (c) {
+                case '"':
+                    replacement = "\\\"";
+                    break;
+                case '\\':
+                    replacement = "\\\\";
+                    break;
+                case '/':
+                    replacement = "\\/";
+                    break;
+                case '\t':
+                    replacement = "\\t";
+                    break;
+                case '\b':
+                    replacement = "\\b";
+                    break;
+                case '\n':
+                    replacement = "\\n";
+                    break;
+                case '\r':
+                    replacement = "\\r";
+                    break;
+                case '\f':
+                    replacement = "\\f";
+                    break;
+                default:
+                    replacement = c <= 0x1F ? String.format("\\u%04x", (int) c) : null;
+                    break;
+            }
+
+            if (replacement != null) {
+                // Write the unescaped run in one go.
+                writer.write(value, start, i - start);
+                writer.write(replacement);
+                start = i + 1;
+            }
+        }
+
+        writer.write(value, start, length - start);
+        writer.write('"');
+    }
+}
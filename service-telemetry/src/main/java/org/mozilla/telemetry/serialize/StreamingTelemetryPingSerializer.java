@@ -0,0 +1,18 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.telemetry.serialize;
+
+import org.mozilla.telemetry.ping.TelemetryPing;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * TelemetryPingSerializer that can write a ping directly to a {@link Writer} without building the
+ * serialized ping as a String in memory first.
+ */
+public interface StreamingTelemetryPingSerializer extends TelemetryPingSerializer {
+    void serialize(TelemetryPing ping, Writer writer) throws IOException;
+}
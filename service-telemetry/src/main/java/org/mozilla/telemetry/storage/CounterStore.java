@@ -0,0 +1,41 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.telemetry.storage;
+
+import androidx.annotation.NonNull;
+
+import java.util.Map;
+
+/**
+ * Persistent storage for named long counters. All operations are atomic. Counters that have never
+ * been written have the value 0.
+ */
+public interface CounterStore {
+    long get(@NonNull String key);
+
+    void set(@NonNull String key, long value);
+
+    /**
+     * Add {@code delta} to the counter and return the new value.
+     */
+    long add(@NonNull String key, long delta);
+
+    /**
+     * Increment the counter by one and return the new value.
+     */
+    long increment(@NonNull String key);
+
+    /**
+     * Return the current value of the counter and reset it to 0.
+     */
+    long getAndReset(@NonNull String key);
+
+    /**
+     * Return all non-zero counters whose key starts with {@code prefix} and reset them to 0. The keys
+     * of the returned map have the prefix removed.
+     */
+    @NonNull
+    Map<String, Long> getAndResetAll(@NonNull String prefix);
+}
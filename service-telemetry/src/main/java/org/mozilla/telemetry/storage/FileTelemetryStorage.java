@@ -10,6 +10,7 @@ import android.util.Log;
 
 import org.mozilla.telemetry.config.TelemetryConfiguration;
 import org.mozilla.telemetry.ping.TelemetryPing;
+import org.mozilla.telemetry.serialize.StreamingTelemetryPingSerializer;
 import org.mozilla.telemetry.serialize.TelemetryPingSerializer;
 import org.mozilla.telemetry.util.FileUtils;
 import org.mozilla.telemetry.util.IOUtils;
@@ -23,10 +24,14 @@ import java.io.FileReader;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 import mozilla.components.support.base.log.logger.Logger;
@@ -36,6 +41,7 @@ import mozilla.components.support.base.log.logger.Logger;
  */
 public class FileTelemetryStorage implements TelemetryStorage {
     private static final String FILE_PATTERN = "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}";
+    private static final Pattern UUID_PATTERN = Pattern.compile(FILE_PATTERN);
     private static final String STORAGE_DIRECTORY = "storage";
 
     private final Logger logger;
@@ -44,6 +50,12 @@ public class FileTelemetryStorage implements TelemetryStorage {
 
     private final File storageDirectory;
 
+    /**
+     * Stored ping files per ping type, oldest first. The index of a ping type is built from disk the
+     * first time the type is accessed and is updated whenever a ping is stored or deleted.
+     */
+    private final Map<String, ArrayDeque<File>> index = new HashMap<>();
+
     public FileTelemetryStorage(TelemetryConfiguration configuration, TelemetryPingSerializer serializer) {
         this.logger = new Logger("telemetry/storage");
         this.configuration = configuration;
@@ -56,13 +68,17 @@ public class FileTelemetryStorage implements TelemetryStorage {
 
     @Override
     public synchronized void store(TelemetryPing ping) {
-        storePing(ping);
+        final File pingFile = storePing(ping);
+        if (pingFile != null) {
+            addToIndex(ping.getType(), pingFile);
+        }
+
         maybePrunePings(ping.getType());
     }
 
     @Override
     public boolean process(String pingType, TelemetryStorageCallback callback) {
-        for (File file : listPingFiles(pingType)) {
+        for (File file : getPingFiles(pingType)) {
             FileReader reader = null;
 
             try {
@@ -73,15 +89,14 @@ public class FileTelemetryStorage implements TelemetryStorage {
                 final boolean processed = serializedPing == null || callback.onTelemetryPingLoaded(path, serializedPing);
 
                 if (processed) {
-                    if (!file.delete()) {
-                        logger.warn("Could not delete local ping file after processing", new IOException());
-                    }
+                    deletePingFile(pingType, file);
                 } else {
                     // The callback couldn't process this file. Let's stop and rety later.
                     return false;
                 }
             } catch (FileNotFoundException e) {
-                // This shouldn't happen after we queried the directory. But whatever. Let's continue.
+                // The file has been pruned in the meantime. Let's continue.
+                removeFromIndex(pingType, file);
             } catch(IOException e) {
                 // Something is not right. Let's stop.
                 return false;
@@ -93,12 +108,80 @@ public class FileTelemetryStorage implements TelemetryStorage {
         return true;
     }
 
-    private void storePing(TelemetryPing ping) {
+    @Override
+    public boolean processBatch(String pingType, int maximumBatchSize, TelemetryStorageBatchCallback callback) {
+        final List<File> files = getPingFiles(pingType);
+
+        int index = 0;
+
+        while (index < files.size()) {
+            final List<File> batchFiles = new ArrayList<>(maximumBatchSize);
+            final List<String> paths = new ArrayList<>(maximumBatchSize);
+            final List<String> serializedPings = new ArrayList<>(maximumBatchSize);
+
+            for (; index < files.size() && batchFiles.size() < maximumBatchSize; index++) {
+                final File file = files.get(index);
+                FileReader reader = null;
+
+                try {
+                    final BufferedReader bufferedReader = new BufferedReader(reader = new FileReader(file));
+                    final String path = bufferedReader.readLine();
+                    final String serializedPing = bufferedReader.readLine();
+
+                    if (serializedPing == null) {
+                        // Nothing to upload in this file. Just get rid of it.
+                        deletePingFile(pingType, file);
+                        continue;
+                    }
+
+                    batchFiles.add(file);
+                    paths.add(path);
+                    serializedPings.add(serializedPing);
+                } catch (FileNotFoundException e) {
+                    // The file has been pruned in the meantime. Let's continue.
+                    removeFromIndex(pingType, file);
+                } catch (IOException e) {
+                    // Something is not right. Let's stop.
+                    return false;
+                } finally {
+                    IOUtils.safeClose(reader);
+                }
+            }
+
+            if (batchFiles.isEmpty()) {
+                continue;
+            }
+
+            final int processed = callback.onTelemetryPingsLoaded(paths, serializedPings);
+
+            for (int i = 0; i < processed && i < batchFiles.size(); i++) {
+                deletePingFile(pingType, batchFiles.get(i));
+            }
+
+            if (processed < batchFiles.size()) {
+                // The callback couldn't process all pings of this batch. Let's stop and retry later.
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void deletePingFile(String pingType, File file) {
+        removeFromIndex(pingType, file);
+
+        if (!file.delete()) {
+            logger.warn("Could not delete local ping file after processing", new IOException());
+        }
+    }
+
+    /**
+     * Write the ping to disk and return the file or null if the ping couldn't be written.
+     */
+    private File storePing(TelemetryPing ping) {
         final File pingStorageDirectory = new File(storageDirectory, ping.getType());
         FileUtils.assertDirectory(pingStorageDirectory);
 
-        final String serializedPing = serializer.serialize(ping);
-
         final File pingFile = new File(pingStorageDirectory, ping.getDocumentId());
 
         FileOutputStream stream = null;
@@ -109,48 +192,99 @@ public class FileTelemetryStorage implements TelemetryStorage {
             final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(stream));
             writer.write(ping.getUploadPath());
             writer.newLine();
-            writer.write(serializedPing);
+
+            if (serializer instanceof StreamingTelemetryPingSerializer) {
+                // Write the ping straight to disk without creating a String of the whole ping first.
+                ((StreamingTelemetryPingSerializer) serializer).serialize(ping, writer);
+            } else {
+                writer.write(serializer.serialize(ping));
+            }
+
             writer.newLine();
             writer.flush();
             writer.close();
+
+            return pingFile;
         } catch (IOException e) {
             logger.warn("IOException while writing event to disk", e);
+
+            // Do not leave a partially written ping behind.
+            IOUtils.safeClose(stream);
+            if (!pingFile.delete()) {
+                logger.warn("Could not delete partially written ping file", new IOException());
+            }
+
+            return null;
         } finally {
             IOUtils.safeClose(stream);
         }
     }
 
-    private void maybePrunePings(final String pingType) {
-        final File[] files = listPingFiles(pingType);
+    private synchronized void maybePrunePings(final String pingType) {
+        final ArrayDeque<File> files = getIndex(pingType);
 
-        final int pingsToRemove = files.length - configuration.getMaximumNumberOfPingsPerType();
+        int pingsToRemove = files.size() - configuration.getMaximumNumberOfPingsPerType();
 
-        if (pingsToRemove <= 0) {
-            return;
+        for (; pingsToRemove > 0; pingsToRemove--) {
+            final File file = files.pollFirst();
+
+            if (!file.delete()) {
+                logger.warn("Can't prune ping file: " + file.getAbsolutePath(), new IOException());
+            }
         }
+    }
 
-        final List<File> sortedFiles = new ArrayList<>(Arrays.asList(files));
-        Collections.sort(sortedFiles, new FileUtils.FileLastModifiedComparator());
+    /**
+     * Return a snapshot of the stored ping files of this type, oldest first.
+     */
+    private synchronized List<File> getPingFiles(String pingType) {
+        return new ArrayList<>(getIndex(pingType));
+    }
 
-        for (File file : sortedFiles) {
-            System.out.println(file.lastModified() + " " + file.getAbsolutePath());
+    private synchronized void addToIndex(String pingType, File file) {
+        getIndex(pingType).addLast(file);
+    }
+
+    private synchronized void removeFromIndex(String pingType, File file) {
+        // Pings are almost always removed oldest first: This is usually the first element.
+        getIndex(pingType).remove(file);
+    }
+
+    private synchronized ArrayDeque<File> getIndex(String pingType) {
+        ArrayDeque<File> files = index.get(pingType);
+
+        if (files == null) {
+            files = loadIndex(pingType);
+            index.put(pingType, files);
         }
 
-        for (int i = 0; i < pingsToRemove; i++) {
-            final File file = sortedFiles.get(i);
+        return files;
+    }
 
-            if (!file.delete()) {
-                logger.warn("Can't prune ping file: " + file.getAbsolutePath(), new IOException());
+    /**
+     * Build the index of this ping type from disk. Ping files are never modified after they have
+     * been written, so the modification date is the creation date.
+     */
+    private ArrayDeque<File> loadIndex(String pingType) {
+        final List<File> files = new ArrayList<>(Arrays.asList(listPingFiles(pingType)));
+
+        Collections.sort(files, new Comparator<File>() {
+            private final Comparator<File> lastModifiedComparator = new FileUtils.FileLastModifiedComparator();
+
+            @Override
+            public int compare(File lhs, File rhs) {
+                final int result = lastModifiedComparator.compare(lhs, rhs);
+                return result != 0 ? result : lhs.getName().compareTo(rhs.getName());
             }
-        }
+        });
+
+        return new ArrayDeque<>(files);
     }
 
     @VisibleForTesting File[] listPingFiles(String pingType) {
         final File pingStorageDirectory = new File(storageDirectory, pingType);
 
-        final Pattern uuidPattern = Pattern.compile(FILE_PATTERN);
-
-        final FilenameFilter uuidFilenameFilter = new FileUtils.FilenameRegexFilter(uuidPattern);
+        final FilenameFilter uuidFilenameFilter = new FileUtils.FilenameRegexFilter(UUID_PATTERN);
         final File[] files = pingStorageDirectory.listFiles(uuidFilenameFilter);
         if (files == null) {
             return new File[0];
@@ -160,7 +294,7 @@ public class FileTelemetryStorage implements TelemetryStorage {
 
     @Override
     @RestrictTo(RestrictTo.Scope.LIBRARY)
-    public int countStoredPings(String pingType) {
-        return listPingFiles(pingType).length;
+    public synchronized int countStoredPings(String pingType) {
+        return getIndex(pingType).size();
     }
 }
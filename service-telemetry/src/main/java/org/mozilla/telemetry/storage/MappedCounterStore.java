@@ -0,0 +1,280 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.telemetry.storage;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import org.mozilla.telemetry.util.FileUtils;
+import org.mozilla.telemetry.util.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import mozilla.components.support.base.log.logger.Logger;
+
+/**
+ * CounterStore implementation that keeps the counters in a memory-mapped file with fixed-size slots.
+ *
+ * Every counter owns one slot holding its key and its value. Updating a counter is a single write to
+ * mapped memory: There's no serialization, no file rewrite and no allocation once the slot exists.
+ * The kernel writes the dirty pages back to disk, even if the process gets killed.
+ *
+ * File layout:
+ *
+ * Header: magic (int), version (int), number of slots (int), reserved (int)
+ * Slot:   key length (short), UTF-8 key (up to 118 bytes), value (long)
+ *
+ * Slots are allocated in order and never freed. The file grows (doubling the number of slots) if all
+ * slots are in use. If the file can't be mapped the counters are kept in memory only.
+ */
+public class MappedCounterStore implements CounterStore {
+    private static final String FILE_NAME = "counters";
+
+    private static final int MAGIC = 0x54434e54; // "TCNT"
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int HEADER_OFFSET_SLOT_COUNT = 8;
+
+    private static final int SLOT_SIZE = 128;
+    private static final int SLOT_OFFSET_KEY = 2;
+    private static final int SLOT_OFFSET_VALUE = 120;
+    @VisibleForTesting static final int MAXIMUM_KEY_LENGTH = SLOT_OFFSET_VALUE - SLOT_OFFSET_KEY;
+
+    private static final int DEFAULT_SLOT_COUNT = 64;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Logger logger = new Logger("telemetry/counters");
+
+    private final File file;
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    private ByteBuffer buffer;
+    private int slotCount;
+
+    public MappedCounterStore(File directory) {
+        this(directory, DEFAULT_SLOT_COUNT);
+    }
+
+    @VisibleForTesting MappedCounterStore(File directory, int initialSlotCount) {
+        FileUtils.assertDirectory(directory);
+
+        this.file = new File(directory, FILE_NAME);
+
+        load(initialSlotCount);
+    }
+
+    @Override
+    public synchronized long get(@NonNull String key) {
+        final Integer slot = slots.get(key);
+        return slot != null ? buffer.getLong(valueOffset(slot)) : 0;
+    }
+
+    @Override
+    public synchronized void set(@NonNull String key, long value) {
+        final int slot = findOrAllocateSlot(key);
+        if (slot >= 0) {
+            buffer.putLong(valueOffset(slot), value);
+        }
+    }
+
+    @Override
+    public synchronized long add(@NonNull String key, long delta) {
+        final int slot = findOrAllocateSlot(key);
+        if (slot < 0) {
+            return 0;
+        }
+
+        final int offset = valueOffset(slot);
+        final long value = buffer.getLong(offset) + delta;
+        buffer.putLong(offset, value);
+        return value;
+    }
+
+    @Override
+    public long increment(@NonNull String key) {
+        return add(key, 1);
+    }
+
+    @Override
+    public synchronized long getAndReset(@NonNull String key) {
+        final Integer slot = slots.get(key);
+        if (slot == null) {
+            return 0;
+        }
+
+        final int offset = valueOffset(slot);
+        final long value = buffer.getLong(offset);
+        buffer.putLong(offset, 0);
+        return value;
+    }
+
+    @NonNull
+    @Override
+    public synchronized Map<String, Long> getAndResetAll(@NonNull String prefix) {
+        final Map<String, Long> values = new HashMap<>();
+
+        for (Map.Entry<String, Integer> entry : slots.entrySet()) {
+            final String key = entry.getKey();
+            if (!key.startsWith(prefix)) {
+                continue;
+            }
+
+            final int offset = valueOffset(entry.getValue());
+            final long value = buffer.getLong(offset);
+            if (value != 0) {
+                values.put(key.substring(prefix.length()), value);
+                buffer.putLong(offset, 0);
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Return the slot of this key, allocating a new slot if needed. Returns -1 if the key can't be
+     * stored.
+     */
+    private int findOrAllocateSlot(String key) {
+        final Integer slot = slots.get(key);
+        if (slot != null) {
+            return slot;
+        }
+
+        final byte[] keyBytes = key.getBytes(UTF_8);
+        if (keyBytes.length == 0 || keyBytes.length > MAXIMUM_KEY_LENGTH) {
+            logger.warn("Can't store counter with key length " + keyBytes.length, null);
+            return -1;
+        }
+
+        final int newSlot = slots.size();
+        if (newSlot >= slotCount) {
+            resize(slotCount * 2);
+        }
+
+        // Write the key length last: A slot only becomes visible once it has been written completely.
+        final int offset = slotOffset(newSlot);
+        buffer.putLong(offset + SLOT_OFFSET_VALUE, 0);
+        for (int i = 0; i < keyBytes.length; i++) {
+            buffer.put(offset + SLOT_OFFSET_KEY + i, keyBytes[i]);
+        }
+        buffer.putShort(offset, (short) keyBytes.length);
+
+        slots.put(key, newSlot);
+
+        return newSlot;
+    }
+
+    private void load(int initialSlotCount) {
+        final boolean exists = file.exists();
+
+        buffer = map(Math.max(file.length(), size(initialSlotCount)));
+
+        if (!exists || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            if (exists) {
+                logger.warn("Counter file is corrupted. Resetting counters.", null);
+            }
+            format(initialSlotCount);
+            return;
+        }
+
+        slotCount = buffer.getInt(HEADER_OFFSET_SLOT_COUNT);
+        if (slotCount <= 0 || size(slotCount) > buffer.capacity()) {
+            logger.warn("Counter file has invalid slot count. Resetting counters.", null);
+            format(initialSlotCount);
+            return;
+        }
+
+        for (int slot = 0; slot < slotCount; slot++) {
+            final int offset = slotOffset(slot);
+
+            final int keyLength = buffer.getShort(offset);
+            if (keyLength <= 0 || keyLength > MAXIMUM_KEY_LENGTH) {
+                // Slots are allocated in order: This is the first unused slot.
+                break;
+            }
+
+            final byte[] keyBytes = new byte[keyLength];
+            for (int i = 0; i < keyLength; i++) {
+                keyBytes[i] = buffer.get(offset + SLOT_OFFSET_KEY + i);
+            }
+
+            slots.put(new String(keyBytes, UTF_8), slot);
+        }
+    }
+
+    private void format(int initialSlotCount) {
+        for (int i = 0; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) 0);
+        }
+
+        slots.clear();
+        slotCount = initialSlotCount;
+
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(HEADER_OFFSET_SLOT_COUNT, slotCount);
+    }
+
+    private void resize(int newSlotCount) {
+        final ByteBuffer oldBuffer = buffer;
+
+        buffer = map(size(newSlotCount));
+
+        if (!isMapped(oldBuffer) || !isMapped(buffer)) {
+            // Not both views of the same file: Copy the existing counters over.
+            for (int i = 0; i < oldBuffer.capacity(); i++) {
+                buffer.put(i, oldBuffer.get(i));
+            }
+        }
+
+        slotCount = newSlotCount;
+        buffer.putInt(HEADER_OFFSET_SLOT_COUNT, slotCount);
+    }
+
+    /**
+     * Map the counter file with the given size (growing the file if needed). Falls back to a buffer
+     * in memory if the file can't be mapped.
+     */
+    private ByteBuffer map(long size) {
+        RandomAccessFile randomAccessFile = null;
+
+        try {
+            randomAccessFile = new RandomAccessFile(file, "rw");
+
+            // The mapping stays valid after the file has been closed.
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            logger.warn("Can't map counter file. Counters will not be persisted.", e);
+            return ByteBuffer.allocate((int) size);
+        } finally {
+            IOUtils.safeClose(randomAccessFile);
+        }
+    }
+
+    private static boolean isMapped(ByteBuffer buffer) {
+        return buffer.isDirect();
+    }
+
+    private static long size(int slotCount) {
+        return HEADER_SIZE + (long) slotCount * SLOT_SIZE;
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static int valueOffset(int slot) {
+        return slotOffset(slot) + SLOT_OFFSET_VALUE;
+    }
+}
@@ -0,0 +1,835 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.telemetry.storage;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.VisibleForTesting;
+
+import org.mozilla.telemetry.config.TelemetryConfiguration;
+import org.mozilla.telemetry.ping.TelemetryPing;
+import org.mozilla.telemetry.serialize.StreamingTelemetryPingSerializer;
+import org.mozilla.telemetry.serialize.TelemetryPingSerializer;
+import org.mozilla.telemetry.util.FileUtils;
+import org.mozilla.telemetry.util.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import mozilla.components.support.base.log.logger.Logger;
+
+/**
+ * TelemetryStorage implementation that appends pings to rolling segment files (one log per ping type)
+ * instead of creating a file per ping.
+ *
+ * Every record in a segment is length-prefixed and protected by a CRC32 checksum. Removing a ping
+ * (after an upload or when pruning) appends a small acknowledgement record instead of touching
+ * the file that contains the ping. Since pings are always uploaded and pruned oldest first an
+ * acknowledgement just needs to store the sequence number of the newest ping that has been removed.
+ *
+ * An in-memory index of all live records is built the first time a ping type is accessed. Counting
+ * and pruning stored pings does not need to touch the file system. Segments are compacted in the
+ * background: A segment that mostly contains removed pings has its live pings copied to the end of
+ * the log and is deleted.
+ *
+ * Pings stored by {@link FileTelemetryStorage} (one UUID named file per ping) are migrated into the
+ * log the first time a ping type is accessed.
+ */
+public class SegmentedTelemetryStorage implements TelemetryStorage {
+    private static final String STORAGE_DIRECTORY = "storage";
+    private static final String LEGACY_FILE_PATTERN = "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final int DEFAULT_MAXIMUM_SEGMENT_SIZE = 256 * 1024;
+
+    private static final byte RECORD_TYPE_PING = 1;
+    private static final byte RECORD_TYPE_ACK = 2;
+
+    // type (1 byte) + sequence (8 bytes) + length (4 bytes) + checksum (8 bytes)
+    private static final int RECORD_HEADER_SIZE = 1 + 8 + 4 + 8;
+
+    // A single ping is never bigger than a couple of hundred kilobytes. Everything above this limit
+    // is a corrupted length field.
+    private static final int MAXIMUM_RECORD_SIZE = 8 * 1024 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Logger logger;
+    private final TelemetryConfiguration configuration;
+    private final TelemetryPingSerializer serializer;
+    private final File storageDirectory;
+    private final int maximumSegmentSize;
+
+    private final Map<String, PingLog> logs = new HashMap<>();
+    private final Pattern legacyFilePattern = Pattern.compile(LEGACY_FILE_PATTERN);
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            final Thread thread = new Thread(runnable, "TelemetryCompaction");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    public SegmentedTelemetryStorage(TelemetryConfiguration configuration, TelemetryPingSerializer serializer) {
+        this(configuration, serializer, DEFAULT_MAXIMUM_SEGMENT_SIZE);
+    }
+
+    @VisibleForTesting
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public SegmentedTelemetryStorage(TelemetryConfiguration configuration,
+                                     TelemetryPingSerializer serializer, int maximumSegmentSize) {
+        this.logger = new Logger("telemetry/storage");
+        this.configuration = configuration;
+        this.serializer = serializer;
+        this.maximumSegmentSize = maximumSegmentSize;
+
+        this.storageDirectory = new File(configuration.getDataDirectory(), STORAGE_DIRECTORY);
+
+        FileUtils.assertDirectory(storageDirectory);
+    }
+
+    @Override
+    public synchronized void store(TelemetryPing ping) {
+        final PingLog log = getLog(ping.getType());
+
+        try {
+            if (serializer instanceof StreamingTelemetryPingSerializer) {
+                // Write the ping straight to disk without creating a String of the whole ping first.
+                log.append(ping, (StreamingTelemetryPingSerializer) serializer);
+            } else {
+                log.append(ping.getUploadPath(), serializer.serialize(ping));
+            }
+        } catch (IOException e) {
+            logger.warn("IOException while writing ping to disk", e);
+            return;
+        }
+
+        // Pruning always removes the oldest pings. One acknowledgement record is enough for all
+        // of them.
+        final int pingsToRemove = log.size() - configuration.getMaximumNumberOfPingsPerType();
+        if (pingsToRemove > 0) {
+            try {
+                log.removeOldest(pingsToRemove);
+            } catch (IOException e) {
+                logger.warn("Can't prune pings of type " + ping.getType(), e);
+            }
+
+            scheduleCompaction(log);
+        }
+    }
+
+    @Override
+    public boolean process(String pingType, TelemetryStorageCallback callback) {
+        final PingLog log;
+        synchronized (this) {
+            log = getLog(pingType);
+        }
+
+        try {
+            while (true) {
+                final Record record;
+                final String[] ping;
+
+                synchronized (this) {
+                    record = log.peekOldest();
+                    if (record == null) {
+                        return true;
+                    }
+
+                    ping = log.read(record);
+                }
+
+                // Do not hold the lock while the callback is running: Uploading a ping can take a
+                // while and we do not want to block storing new pings in the meantime.
+                final boolean processed = ping == null || callback.onTelemetryPingLoaded(ping[0], ping[1]);
+
+                if (!processed) {
+                    // The callback couldn't process this ping. Let's stop and retry later.
+                    return false;
+                }
+
+                synchronized (this) {
+                    // The ping might have been pruned while the callback was running.
+                    log.removeThrough(record.sequence);
+                }
+            }
+        } catch (IOException e) {
+            // Something is not right. Let's stop.
+            logger.warn("IOException while processing pings", e);
+            return false;
+        } finally {
+            scheduleCompaction(log);
+        }
+    }
+
+    @Override
+    public boolean processBatch(String pingType, int maximumBatchSize, TelemetryStorageBatchCallback callback) {
+        final PingLog log;
+        synchronized (this) {
+            log = getLog(pingType);
+        }
+
+        try {
+            while (true) {
+                final List<Record> batch;
+                final List<Record> validRecords = new ArrayList<>(maximumBatchSize);
+                final List<String> paths = new ArrayList<>(maximumBatchSize);
+                final List<String> serializedPings = new ArrayList<>(maximumBatchSize);
+
+                synchronized (this) {
+                    batch = log.peekOldest(maximumBatchSize);
+                    if (batch.isEmpty()) {
+                        return true;
+                    }
+
+                    for (Record record : batch) {
+                        final String[] ping = log.read(record);
+                        if (ping != null) {
+                            validRecords.add(record);
+                            paths.add(ping[0]);
+                            serializedPings.add(ping[1]);
+                        }
+                    }
+                }
+
+                final int processed = validRecords.isEmpty()
+                        ? 0
+                        : callback.onTelemetryPingsLoaded(paths, serializedPings);
+
+                // Records that do not contain a valid ping are removed together with the processed
+                // pings in front of them.
+                final long processedSequence = processed >= validRecords.size()
+                        ? batch.get(batch.size() - 1).sequence
+                        : validRecords.get(processed).sequence - 1;
+
+                synchronized (this) {
+                    log.removeThrough(processedSequence);
+                }
+
+                if (processed < validRecords.size()) {
+                    // The callback couldn't process all pings of this batch. Let's stop and retry later.
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            // Something is not right. Let's stop.
+            logger.warn("IOException while processing pings", e);
+            return false;
+        } finally {
+            scheduleCompaction(log);
+        }
+    }
+
+    @Override
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public synchronized int countStoredPings(String pingType) {
+        return getLog(pingType).size();
+    }
+
+    /**
+     * Delete all segments that only contain removed pings, after copying the live pings of segments
+     * that mostly contain removed pings to the end of the log.
+     */
+    @VisibleForTesting
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public synchronized void compact(String pingType) {
+        getLog(pingType).compact();
+    }
+
+    private void scheduleCompaction(final PingLog log) {
+        compactionExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (SegmentedTelemetryStorage.this) {
+                    log.compact();
+                }
+            }
+        });
+    }
+
+    private PingLog getLog(String pingType) {
+        PingLog log = logs.get(pingType);
+        if (log == null) {
+            final File directory = new File(storageDirectory, pingType);
+            FileUtils.assertDirectory(directory);
+
+            log = new PingLog(directory);
+            log.load();
+            migrateLegacyPings(log);
+
+            logs.put(pingType, log);
+        }
+        return log;
+    }
+
+    /**
+     * Move pings stored as separate files by {@link FileTelemetryStorage} into the log (oldest first)
+     * and delete the files afterwards.
+     */
+    private void migrateLegacyPings(PingLog log) {
+        final File[] files = log.directory.listFiles(new FileUtils.FilenameRegexFilter(legacyFilePattern));
+        if (files == null || files.length == 0) {
+            return;
+        }
+
+        final List<File> sortedFiles = new ArrayList<>(Arrays.asList(files));
+        Collections.sort(sortedFiles, new FileUtils.FileLastModifiedComparator());
+
+        for (File file : sortedFiles) {
+            FileReader reader = null;
+
+            try {
+                final BufferedReader bufferedReader = new BufferedReader(reader = new FileReader(file));
+                final String path = bufferedReader.readLine();
+                final String serializedPing = bufferedReader.readLine();
+
+                if (path != null && serializedPing != null) {
+                    log.append(path, serializedPing);
+                }
+            } catch (IOException e) {
+                // Keep the file and try again next time.
+                logger.warn("IOException while migrating ping file", e);
+                continue;
+            } finally {
+                IOUtils.safeClose(reader);
+            }
+
+            if (!file.delete()) {
+                logger.warn("Could not delete local ping file after migration", new IOException());
+            }
+        }
+    }
+
+    /**
+     * Position of a live ping record inside a segment.
+     */
+    private static class Record {
+        private final long sequence;
+        private final Segment segment;
+        private final long offset;
+        private final int length;
+
+        private Record(long sequence, Segment segment, long offset, int length) {
+            this.sequence = sequence;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static class Segment {
+        private final long id;
+        private final File file;
+        private long size;
+
+        private Segment(long id, File file) {
+            this.id = id;
+            this.file = file;
+        }
+    }
+
+    /**
+     * The log of pings of one type. This class is not thread-safe: All access is guarded by the
+     * storage instance.
+     */
+    private class PingLog {
+        private final File directory;
+        private final TreeMap<Long, Segment> segments = new TreeMap<>();
+        private final ArrayDeque<Record> records = new ArrayDeque<>();
+
+        private long nextSequence = 1;
+        private long acknowledgedSequence = 0;
+
+        private PingLog(File directory) {
+            this.directory = directory;
+        }
+
+        int size() {
+            return records.size();
+        }
+
+        Record peekOldest() {
+            return records.peekFirst();
+        }
+
+        /**
+         * Rebuild the index by scanning all segments. A torn or corrupted record ends the segment: It
+         * is truncated so that new records can be appended safely.
+         */
+        void load() {
+            final File[] files = directory.listFiles(new FilenameFilter() {
+                @Override
+                public boolean accept(File dir, String name) {
+                    return parseSegmentId(name) >= 0;
+                }
+            });
+
+            if (files == null) {
+                return;
+            }
+
+            for (File file : files) {
+                final long id = parseSegmentId(file.getName());
+                segments.put(id, new Segment(id, file));
+            }
+
+            // Compaction copies pings to newer segments, so the segment order is not the sequence
+            // order. If the process died during compaction a ping can also be found twice.
+            final TreeMap<Long, Record> scannedRecords = new TreeMap<>();
+
+            for (Segment segment : segments.values()) {
+                acknowledgedSequence = Math.max(acknowledgedSequence, scan(segment, scannedRecords));
+            }
+
+            // Drop everything that has been acknowledged.
+            records.addAll(scannedRecords.tailMap(acknowledgedSequence, false).values());
+
+            nextSequence = Math.max(nextSequence, acknowledgedSequence + 1);
+        }
+
+        /**
+         * Read all ping records of the given segment into the map and return the highest acknowledged
+         * sequence number found in it.
+         */
+        private long scan(Segment segment, Map<Long, Record> scannedRecords) {
+            long acknowledgedSequence = 0;
+            long offset = 0;
+
+            DataInputStream stream = null;
+
+            try {
+                stream = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.file)));
+
+                final CRC32 checksum = new CRC32();
+
+                while (true) {
+                    final byte type;
+                    try {
+                        type = stream.readByte();
+                    } catch (EOFException e) {
+                        break;
+                    }
+
+                    final long sequence = stream.readLong();
+                    final int length = stream.readInt();
+                    final long expectedChecksum = stream.readLong();
+
+                    if ((type != RECORD_TYPE_PING && type != RECORD_TYPE_ACK)
+                            || length < 0 || length > MAXIMUM_RECORD_SIZE) {
+                        throw new IOException("Corrupted record header");
+                    }
+
+                    final byte[] payload = new byte[length];
+                    stream.readFully(payload);
+
+                    checksum.reset();
+                    checksum.update(type);
+                    checksum.update(longToBytes(sequence));
+                    checksum.update(payload);
+
+                    if (checksum.getValue() != expectedChecksum) {
+                        throw new IOException("Record checksum mismatch");
+                    }
+
+                    if (type == RECORD_TYPE_PING) {
+                        scannedRecords.put(sequence, new Record(sequence, segment, offset, length));
+                    } else {
+                        acknowledgedSequence = Math.max(acknowledgedSequence, sequence);
+                    }
+
+                    nextSequence = Math.max(nextSequence, sequence + 1);
+                    offset += RECORD_HEADER_SIZE + length;
+                }
+            } catch (IOException e) {
+                // EOFException in the middle of a record (torn write) or a corrupted record. Everything
+                // up to the last valid record is kept.
+                logger.warn("Truncating corrupted ping segment: " + segment.file.getName(), e);
+                truncate(segment.file, offset);
+            } finally {
+                IOUtils.safeClose(stream);
+            }
+
+            segment.size = offset;
+
+            return acknowledgedSequence;
+        }
+
+        void append(String path, String serializedPing) throws IOException {
+            final byte[] payload = (path + "\n" + serializedPing).getBytes(UTF_8);
+            final long sequence = nextSequence++;
+
+            final Segment segment = getWritableSegment();
+            final long offset = segment.size;
+
+            writeRecord(segment, RECORD_TYPE_PING, sequence, payload);
+
+            records.addLast(new Record(sequence, segment, offset, payload.length));
+        }
+
+        /**
+         * Stream the serialized ping into the segment. The header (length and checksum) is only
+         * known afterwards: A placeholder is written first and replaced once the payload is on disk.
+         * If the process dies in between, the placeholder is an invalid record and the segment is
+         * truncated at this position the next time it is loaded.
+         */
+        void append(TelemetryPing ping, StreamingTelemetryPingSerializer serializer) throws IOException {
+            final long sequence = nextSequence++;
+
+            final Segment segment = getWritableSegment();
+            final long offset = segment.size;
+
+            final CRC32 checksum = new CRC32();
+            checksum.update(RECORD_TYPE_PING);
+            checksum.update(longToBytes(sequence));
+
+            FileOutputStream stream = null;
+            RandomAccessFile file = null;
+            final long length;
+
+            try {
+                stream = new FileOutputStream(segment.file, true);
+                stream.write(new byte[RECORD_HEADER_SIZE]);
+
+                final Writer writer = new BufferedWriter(new OutputStreamWriter(
+                        new CheckedOutputStream(stream, checksum), UTF_8));
+                writer.write(ping.getUploadPath());
+                writer.write('\n');
+                serializer.serialize(ping, writer);
+                writer.flush();
+
+                stream.close();
+                stream = null;
+
+                length = segment.file.length() - offset - RECORD_HEADER_SIZE;
+                if (length < 0 || length > MAXIMUM_RECORD_SIZE) {
+                    throw new IOException("Serialized ping has unexpected size: " + length);
+                }
+
+                file = new RandomAccessFile(segment.file, "rw");
+                file.seek(offset);
+                file.write(encodeHeader(RECORD_TYPE_PING, sequence, (int) length, checksum.getValue()));
+
+                segment.size = offset + RECORD_HEADER_SIZE + length;
+            } catch (IOException e) {
+                // Make sure a partially written record does not end up in the middle of the segment.
+                IOUtils.safeClose(stream);
+                stream = null;
+                IOUtils.safeClose(file);
+                file = null;
+                truncate(segment.file, segment.size);
+                throw e;
+            } finally {
+                IOUtils.safeClose(stream);
+                IOUtils.safeClose(file);
+            }
+
+            records.addLast(new Record(sequence, segment, offset, (int) length));
+        }
+
+        List<Record> peekOldest(int count) {
+            final List<Record> oldest = new ArrayList<>(Math.min(count, records.size()));
+
+            final Iterator<Record> iterator = records.iterator();
+            while (iterator.hasNext() && oldest.size() < count) {
+                oldest.add(iterator.next());
+            }
+
+            return oldest;
+        }
+
+        /**
+         * Remove all pings up to and including the given sequence number.
+         */
+        void removeThrough(long sequence) throws IOException {
+            int count = 0;
+
+            for (Record record : records) {
+                if (record.sequence > sequence) {
+                    break;
+                }
+                count++;
+            }
+
+            removeOldest(count);
+        }
+
+        void removeOldest(int count) throws IOException {
+            Record last = null;
+
+            for (int i = 0; i < count && !records.isEmpty(); i++) {
+                last = records.pollFirst();
+            }
+
+            if (last != null) {
+                acknowledgedSequence = last.sequence;
+                writeRecord(getWritableSegment(), RECORD_TYPE_ACK, last.sequence, new byte[0]);
+            }
+        }
+
+        /**
+         * Read the upload path and the serialized ping of the given record. Returns null if the
+         * record does not contain a valid ping.
+         */
+        String[] read(Record record) throws IOException {
+            final byte[] payload = readPayload(record);
+            if (payload == null) {
+                return null;
+            }
+
+            final String content = new String(payload, UTF_8);
+            final int separator = content.indexOf('\n');
+            if (separator < 0) {
+                return null;
+            }
+
+            return new String[] { content.substring(0, separator), content.substring(separator + 1) };
+        }
+
+        /**
+         * Read the payload of the given record. Returns null if the record is not the expected ping
+         * record.
+         */
+        private byte[] readPayload(Record record) throws IOException {
+            RandomAccessFile file = null;
+
+            try {
+                file = new RandomAccessFile(record.segment.file, "r");
+                file.seek(record.offset);
+
+                final byte type = file.readByte();
+                final long sequence = file.readLong();
+                final int length = file.readInt();
+                file.readLong(); // Checksum: verified when the index was built.
+
+                if (type != RECORD_TYPE_PING || sequence != record.sequence
+                        || length < 0 || length > MAXIMUM_RECORD_SIZE) {
+                    logger.warn("Unexpected record in ping segment: " + record.segment.file.getName(), null);
+                    return null;
+                }
+
+                final byte[] payload = new byte[length];
+                file.readFully(payload);
+                return payload;
+            } finally {
+                IOUtils.safeClose(file);
+            }
+        }
+
+        /**
+         * Delete all segments except the one that is currently written to, if they contain no live
+         * pings or if at most half of their size is live pings. The live pings of those segments are
+         * copied to the end of the log first, so a ping that can't be uploaded for a long time does
+         * not keep the segments around it on disk.
+         *
+         * The copies keep their sequence numbers and the acknowledged sequence number is written
+         * again before any segment is deleted. If the process dies in between, the next load finds
+         * the pings twice and keeps one of them.
+         */
+        void compact() {
+            if (segments.isEmpty()) {
+                return;
+            }
+
+            if (records.isEmpty()) {
+                // Nothing is live: All segments can go, including their acknowledgements.
+                deleteSegments(new ArrayList<>(segments.values()));
+                return;
+            }
+
+            final Segment writableSegment = segments.lastEntry().getValue();
+
+            final Map<Segment, Long> liveBytes = new HashMap<>();
+            for (Record record : records) {
+                if (record.segment != writableSegment) {
+                    final Long bytes = liveBytes.get(record.segment);
+                    final long recordSize = RECORD_HEADER_SIZE + record.length;
+                    liveBytes.put(record.segment, bytes != null ? bytes + recordSize : recordSize);
+                }
+            }
+
+            final List<Segment> obsoleteSegments = new ArrayList<>();
+            for (Segment segment : segments.headMap(writableSegment.id).values()) {
+                final Long bytes = liveBytes.get(segment);
+                if (bytes == null || bytes * 2 <= segment.size) {
+                    obsoleteSegments.add(segment);
+                }
+            }
+
+            if (obsoleteSegments.isEmpty()) {
+                return;
+            }
+
+            try {
+                copyForward(obsoleteSegments);
+
+                if (acknowledgedSequence > 0) {
+                    writeRecord(getWritableSegment(), RECORD_TYPE_ACK, acknowledgedSequence, new byte[0]);
+                }
+            } catch (IOException e) {
+                // Keep all segments: Nothing has been lost and the copies are dropped on the next load.
+                logger.warn("IOException while compacting ping segments", e);
+                return;
+            }
+
+            deleteSegments(obsoleteSegments);
+        }
+
+        /**
+         * Append the live pings stored in the given segments to the end of the log and point the
+         * index to the copies.
+         */
+        private void copyForward(List<Segment> sourceSegments) throws IOException {
+            final ArrayDeque<Record> copiedRecords = new ArrayDeque<>(records.size());
+
+            for (Record record : records) {
+                if (!sourceSegments.contains(record.segment)) {
+                    copiedRecords.addLast(record);
+                    continue;
+                }
+
+                final byte[] payload = readPayload(record);
+                if (payload == null) {
+                    // Not a valid ping: Processing would have dropped it anyway.
+                    continue;
+                }
+
+                final Segment segment = getWritableSegment();
+                final long offset = segment.size;
+                writeRecord(segment, RECORD_TYPE_PING, record.sequence, payload);
+
+                copiedRecords.addLast(new Record(record.sequence, segment, offset, payload.length));
+            }
+
+            records.clear();
+            records.addAll(copiedRecords);
+        }
+
+        private void deleteSegments(List<Segment> obsoleteSegments) {
+            for (Segment segment : obsoleteSegments) {
+                if (!segment.file.delete() && segment.file.exists()) {
+                    logger.warn("Can't delete ping segment: " + segment.file.getAbsolutePath(), new IOException());
+                    // Stop here: Later segments may hold the acknowledgements for pings in this one.
+                    return;
+                }
+
+                segments.remove(segment.id);
+            }
+        }
+
+        private Segment getWritableSegment() {
+            if (!segments.isEmpty()) {
+                final Segment segment = segments.lastEntry().getValue();
+                if (segment.size < maximumSegmentSize) {
+                    return segment;
+                }
+            }
+
+            final long id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+            final Segment segment = new Segment(id, new File(directory, SEGMENT_PREFIX + id + SEGMENT_SUFFIX));
+            segments.put(id, segment);
+            return segment;
+        }
+
+        private void writeRecord(Segment segment, byte type, long sequence, byte[] payload) throws IOException {
+            final CRC32 checksum = new CRC32();
+            checksum.update(type);
+            checksum.update(longToBytes(sequence));
+            checksum.update(payload);
+
+            FileOutputStream stream = null;
+
+            try {
+                stream = new FileOutputStream(segment.file, true);
+
+                // Write the whole record with a single call so that a crash can only produce a torn
+                // record at the end of the segment.
+                final byte[] header = encodeHeader(type, sequence, payload.length, checksum.getValue());
+                final byte[] record = new byte[RECORD_HEADER_SIZE + payload.length];
+                System.arraycopy(header, 0, record, 0, RECORD_HEADER_SIZE);
+                System.arraycopy(payload, 0, record, RECORD_HEADER_SIZE, payload.length);
+
+                stream.write(record);
+            } catch (IOException e) {
+                // Make sure a partially written record does not end up in the middle of the segment.
+                IOUtils.safeClose(stream);
+                stream = null;
+                truncate(segment.file, segment.size);
+                throw e;
+            } finally {
+                IOUtils.safeClose(stream);
+            }
+
+            segment.size += RECORD_HEADER_SIZE + payload.length;
+        }
+
+        private void truncate(File file, long size) {
+            RandomAccessFile randomAccessFile = null;
+            try {
+                randomAccessFile = new RandomAccessFile(file, "rw");
+                randomAccessFile.setLength(size);
+            } catch (IOException e) {
+                logger.warn("Can't truncate ping segment: " + file.getAbsolutePath(), e);
+            } finally {
+                IOUtils.safeClose(randomAccessFile);
+            }
+        }
+    }
+
+    private static long parseSegmentId(String name) {
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] longToBytes(long value) {
+        return ByteBuffer.allocate(8).putLong(value).array();
+    }
+
+    private static byte[] encodeHeader(byte type, long sequence, int length, long checksum) {
+        final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        header.put(type);
+        header.putLong(sequence);
+        header.putInt(length);
+        header.putLong(checksum);
+        return header.array();
+    }
+}
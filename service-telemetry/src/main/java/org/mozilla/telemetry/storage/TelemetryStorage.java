@@ -6,14 +6,41 @@ package org.mozilla.telemetry.storage;
 
 import org.mozilla.telemetry.ping.TelemetryPing;
 
+import java.util.List;
+
 public interface TelemetryStorage {
     interface TelemetryStorageCallback {
         boolean onTelemetryPingLoaded(String path, String serializedPing);
     }
 
+    interface TelemetryStorageBatchCallback {
+        /**
+         * Process a batch of stored pings (oldest first). {@code paths} and {@code serializedPings}
+         * have the same size.
+         *
+         * @return the number of pings, counted from the start of the batch, that have been processed
+         *         and can be removed from the storage.
+         */
+        int onTelemetryPingsLoaded(List<String> paths, List<String> serializedPings);
+    }
+
     void store(TelemetryPing ping);
 
+    /**
+     * Process the stored pings of this type, oldest first. Processing stops at the first ping the
+     * callback couldn't process.
+     *
+     * @return true if all stored pings have been processed, false if the callback stopped early.
+     */
     boolean process(String pingType, TelemetryStorageCallback callback);
 
+    /**
+     * Process stored pings in batches of up to {@code maximumBatchSize} pings. The pings the
+     * callback reports as processed are removed from the storage in one step after every batch.
+     *
+     * @return true if all stored pings have been processed, false if the callback stopped early.
+     */
+    boolean processBatch(String pingType, int maximumBatchSize, TelemetryStorageBatchCallback callback);
+
     int countStoredPings(String pingType);
 }
@@ -0,0 +1,32 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.telemetry.util;
+
+import android.content.SharedPreferences;
+import androidx.annotation.RestrictTo;
+
+import org.mozilla.telemetry.storage.CounterStore;
+
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public class CounterUtils {
+    /**
+     * Move a counter that an older version has kept in SharedPreferences into the counter store.
+     */
+    public static void migrateFromPreferences(SharedPreferences preferences, CounterStore counters,
+                                              String preferenceKey, String counterKey) {
+        if (!preferences.contains(preferenceKey)) {
+            return;
+        }
+
+        final Object value = preferences.getAll().get(preferenceKey);
+        if (value instanceof Number) {
+            counters.add(counterKey, ((Number) value).longValue());
+        }
+
+        preferences.edit()
+                .remove(preferenceKey)
+                .apply();
+    }
+}